@@ -2,6 +2,8 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -30,20 +32,49 @@ public class GraphBuildingHandler extends DefaultHandler {
      * roads, but in practice we walk all over them with such impunity that we forget cars can
      * actually drive on them.
      */
-    private static final Set<String> ALLOWED_HIGHWAY_TYPES = Set.of(
+    static final Set<String> ALLOWED_HIGHWAY_TYPES = Set.of(
             "motorway", "trunk", "primary", "secondary", "tertiary", "unclassified", "residential",
             "living_street", "motorway_link", "trunk_link", "primary_link", "secondary_link",
             "tertiary_link"
     );
     private String activeState = "";
     private final GraphDB g;
+    /**
+     * Coordinates of every node seen so far. Only the nodes referenced by valid ways are copied
+     * into the graph, so the rest never become heap objects. The graph keeps the store once the
+     * document ends, so that later changes can still find the other nodes.
+     */
+    private final OffHeapNodeStore nodes;
+
+    /** The most recently seen node, which any following name tag belongs to. */
+    private long lastNodeId;
+    private double lastNodeLon, lastNodeLat;
+
+    /** The way currently being read. */
+    private long wayId;
+    private final List<Long> wayRefs = new ArrayList<>();
+    private boolean wayValid;
+    private String wayName;
+    private String wayMaxSpeed;
 
     /**
      * Create a new GraphBuildingHandler.
      * @param g The graph to populate with the XML data.
      */
     public GraphBuildingHandler(GraphDB g) {
+        this(g, OffHeapNodeStore.direct());
+    }
+
+    /**
+     * Create a new GraphBuildingHandler that buffers node coordinates in the given store, for
+     * example one backed by a memory-mapped file. The store is handed to the graph at the end of
+     * the document.
+     * @param g The graph to populate with the XML data.
+     * @param nodes The store used to hold node coordinates until ways reference them.
+     */
+    GraphBuildingHandler(GraphDB g, OffHeapNodeStore nodes) {
         this.g = g;
+        this.nodes = nodes;
     }
 
     /**
@@ -70,23 +101,27 @@ public class GraphBuildingHandler extends DefaultHandler {
             // System.out.println("Node lon: " + attributes.getValue("lon"));
             // System.out.println("Node lat: " + attributes.getValue("lat"));
 
-            /* TODO: Use the above information to save a "node" to somewhere.
-             * Hint: A graph-like structure would be nice. */
+            lastNodeId = Long.parseLong(attributes.getValue("id"));
+            lastNodeLon = Double.parseDouble(attributes.getValue("lon"));
+            lastNodeLat = Double.parseDouble(attributes.getValue("lat"));
+            nodes.add(lastNodeId, lastNodeLon, lastNodeLat);
 
         } else if (qName.equals("way")) {
             /* Encountering a new <way...> tag. */
             activeState = "way";
             // System.out.println("Beginning a way...");
+            wayId = Long.parseLong(attributes.getValue("id"));
+            wayRefs.clear();
+            wayValid = false;
+            wayName = null;
+            wayMaxSpeed = null;
         } else if (activeState.equals("way") && qName.equals("nd")) {
             /* While looking at a way, found a <nd...> tag. */
             // System.out.println("Node id in this way: " + attributes.getValue("ref"));
 
-            /* TODO: Use the above id to make "possible" connections between the nodes in this way.
-             * Hint 1: It would be useful to remember what was the last node in this way.
-             * Hint 2: Not all ways are valid. So, directly connecting the nodes here would be
-               cumbersome since you might have to remove the connections if you later see a tag that
-               makes this way invalid. Instead, think of keeping a list of possible connections and
-               remember whether this way is valid or not. */
+            /* Not all ways are valid, and the highway tag comes after the nodes, so remember the
+             * possible connections until the end of the way. */
+            wayRefs.add(Long.parseLong(attributes.getValue("ref")));
 
         } else if (activeState.equals("way") && qName.equals("tag")) {
             /* While looking at a way, found a <tag...> tag. */
@@ -95,26 +130,24 @@ public class GraphBuildingHandler extends DefaultHandler {
             if (k.equals("maxspeed")) {
                 // System.out.println("Max Speed: " + v);
 
-                /* TODO: Set the max speed of the "current way" here. */
+                wayMaxSpeed = v;
 
             } else if (k.equals("highway")) {
                 // System.out.println("Highway type: " + v);
 
-                /* TODO: Figure out whether this way and its connections are valid.
-                 * Hint: Set a "flag". */
+                wayValid = ALLOWED_HIGHWAY_TYPES.contains(v);
 
             } else if (k.equals("name")) {
                 // System.out.println("Way Name: " + v);
+                wayName = v;
             }
             // System.out.println("Tag with k=" + k + ", v=" + v + ".");
         } else if (activeState.equals("node") && qName.equals("tag") && attributes.getValue("k")
                 .equals("name")) {
             /* While looking at a node, found a <tag...> with k="name". */
 
-            /* TODO: Create a location.
-             * Hint: Since we found this <tag...> INSIDE a node, we should probably remember which
-             * node this tag belongs to. Remember XML is parsed top-to-bottom, so probably it's the
-             * last node that you looked at (check the first if-case). */
+            /* XML is parsed top-to-bottom, so this tag belongs to the last node we looked at. */
+            g.addLocation(lastNodeId, lastNodeLon, lastNodeLat, attributes.getValue("v"));
 
             // System.out.println("Node's name: " + attributes.getValue("v"));
         }
@@ -136,11 +169,33 @@ public class GraphBuildingHandler extends DefaultHandler {
         if (qName.equals("way")) {
             /* Done looking at a way. (Finished looking at the nodes, speeds, etc.) */
 
-            /* Hint: If you have stored the possible connections for this way, here's your chance to
-             * actually connect the nodes together if the way is valid. */
+            if (wayValid) {
+                /* Nodes precede ways in OSM files, so this only sorts (at most) once. */
+                nodes.seal();
+                long[] refs = new long[wayRefs.size()];
+                for (int i = 0; i < refs.length; i += 1) {
+                    refs[i] = wayRefs.get(i);
+                    int at = nodes.indexOf(refs[i]);
+                    if (at >= 0) {
+                        g.addNode(refs[i], nodes.lon(at), nodes.lat(at));
+                    }
+                }
+                g.addWay(wayId, refs, wayName, wayMaxSpeed);
+            }
+            activeState = "";
 
             // System.out.println("Finishing a way...");
         }
     }
 
+    /**
+     * Receive notification of the end of the document, handing the node store to the graph.
+     * @throws SAXException Any SAX exception, possibly wrapping another exception.
+     */
+    @Override
+    public void endDocument() throws SAXException {
+        nodes.finish();
+        g.retainNodes(nodes);
+    }
+
 }
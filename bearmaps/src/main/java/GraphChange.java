@@ -0,0 +1,85 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of node and way edits to apply to a <code>GraphSnapshot</code>, typically parsed from an
+ * osmChange file by <code>OsmChangeHandler</code>. Created and modified elements are both stored
+ * as full replacements, since an osmChange file always carries the complete new element.
+ */
+class GraphChange {
+    /** Nodes created or modified by this change. */
+    private final List<NodeRecord> nodes = new ArrayList<>();
+    /** Ways created or modified by this change, including ways that are not valid roads. */
+    private final List<GraphSnapshot.Way> ways = new ArrayList<>();
+    /** IDs of nodes deleted by this change. */
+    private final List<Long> deletedNodes = new ArrayList<>();
+    /** IDs of ways deleted by this change. */
+    private final List<Long> deletedWays = new ArrayList<>();
+
+    /**
+     * Records a created or modified node.
+     * @param id The node ID.
+     * @param lon The node's new longitude.
+     * @param lat The node's new latitude.
+     * @param name The node's name tag, or <code>null</code> if it is not a named location.
+     */
+    void putNode(long id, double lon, double lat, String name) {
+        nodes.add(new NodeRecord(id, lon, lat, name));
+    }
+
+    /**
+     * Records a created or modified way. Ways that are not valid roads are still recorded so that
+     * a modification that turns a road into, say, a footpath removes it from the graph.
+     * @param way The complete new version of the way.
+     */
+    void putWay(GraphSnapshot.Way way) {
+        ways.add(way);
+    }
+
+    /** Records a deleted node. */
+    void deleteNode(long id) {
+        deletedNodes.add(id);
+    }
+
+    /** Records a deleted way. */
+    void deleteWay(long id) {
+        deletedWays.add(id);
+    }
+
+    List<NodeRecord> nodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    List<GraphSnapshot.Way> ways() {
+        return Collections.unmodifiableList(ways);
+    }
+
+    List<Long> deletedNodes() {
+        return Collections.unmodifiableList(deletedNodes);
+    }
+
+    List<Long> deletedWays() {
+        return Collections.unmodifiableList(deletedWays);
+    }
+
+    /** Returns true if this change contains no edits. */
+    boolean isEmpty() {
+        return nodes.isEmpty() && ways.isEmpty() && deletedNodes.isEmpty()
+                && deletedWays.isEmpty();
+    }
+
+    /** The new state of a single created or modified node. */
+    static final class NodeRecord {
+        final long id;
+        final double lon, lat;
+        final String name;
+
+        NodeRecord(long id, double lon, double lat, String name) {
+            this.id = id;
+            this.lon = lon;
+            this.lat = lat;
+            this.name = name;
+        }
+    }
+}
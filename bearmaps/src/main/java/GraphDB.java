@@ -6,8 +6,10 @@ import java.io.IOException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Graph for storing all of the intersection (vertex) and road (edge) information.
@@ -19,6 +21,17 @@ import java.util.List;
  * @author Kevin Lowe, Antares Chen, Kevin Lin
  */
 public class GraphDB {
+    /**
+     * The current version of the graph. Queries that need a consistent view across several calls
+     * should read this once through <code>snapshot</code>; <code>applyChange</code> publishes a
+     * new version without blocking readers of the old one.
+     */
+    private volatile GraphSnapshot snapshot;
+    /** Accumulates nodes and ways while the OSM file is parsed; null once construction is done. */
+    private GraphSnapshot.Builder builder = new GraphSnapshot.Builder();
+    /** Serializes writers so that concurrent changes are not lost. */
+    private final Object updateLock = new Object();
+
     /**
      * This constructor creates and starts an XML parser, cleans the nodes, and prepares the
      * data structures for processing. Modify this constructor to initialize your data structures.
@@ -26,14 +39,112 @@ public class GraphDB {
      */
     public GraphDB(String dbPath) {
         File inputFile = new File(dbPath);
+        OffHeapNodeStore nodes = null;
+        boolean parsed = false;
         try (FileInputStream inputStream = new FileInputStream(inputFile)) {
+            nodes = OffHeapNodeStore.forExtract(inputFile.length());
             SAXParserFactory factory = SAXParserFactory.newInstance();
             SAXParser saxParser = factory.newSAXParser();
-            saxParser.parse(inputStream, new GraphBuildingHandler(this));
+            saxParser.parse(inputStream, new GraphBuildingHandler(this, nodes));
+            parsed = true;
         } catch (ParserConfigurationException | SAXException | IOException e) {
             e.printStackTrace();
+        } finally {
+            /* A complete parse hands the store to the graph; otherwise free it here. */
+            if (nodes != null && !parsed) {
+                nodes.close();
+            }
         }
         clean();
+        snapshot = builder.build(0);
+        builder = null;
+    }
+
+    /**
+     * Applies an osmChange diff to this graph, adding, moving and removing nodes, ways and
+     * locations. The change is applied to a copy of the current version, which is then published
+     * atomically, so queries already running keep seeing the graph as it was when they started.
+     * @param changePath Path to the osmChange XML file.
+     * @throws IllegalArgumentException If the file cannot be read or parsed; the graph is left
+     * unchanged.
+     */
+    public void applyChange(String changePath) {
+        GraphChange change = new GraphChange();
+        try (FileInputStream inputStream = new FileInputStream(new File(changePath))) {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            SAXParser saxParser = factory.newSAXParser();
+            saxParser.parse(inputStream, new OsmChangeHandler(change));
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            String msg = String.format("Unable to apply change %s: %s", changePath, e);
+            throw new IllegalArgumentException(msg, e);
+        }
+        applyChange(change);
+    }
+
+    /**
+     * Applies a parsed change to this graph and publishes the result as the new version.
+     * @param change The change to apply.
+     */
+    void applyChange(GraphChange change) {
+        if (change.isEmpty()) {
+            return;
+        }
+        synchronized (updateLock) {
+            snapshot = snapshot.apply(change);
+        }
+    }
+
+    /**
+     * Returns the current version of the graph. Every read from the returned snapshot sees the
+     * same graph, regardless of changes applied afterwards.
+     * @return The current <code>GraphSnapshot</code>.
+     */
+    GraphSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Adds a node to the graph under construction. Only valid while the OSM file is parsed.
+     * @param id The node ID.
+     * @param lon The node's longitude.
+     * @param lat The node's latitude.
+     */
+    void addNode(long id, double lon, double lat) {
+        builder.putNode(id, lon, lat);
+    }
+
+    /**
+     * Adds a valid way to the graph under construction, connecting each consecutive pair of its
+     * nodes. Only valid while the OSM file is parsed.
+     * @param id The way ID.
+     * @param refs The node IDs along the way, in order.
+     * @param name The way's name, or <code>null</code> if it has none.
+     * @param maxSpeed The way's max speed tag, or <code>null</code> if it has none.
+     */
+    void addWay(long id, long[] refs, String name, String maxSpeed) {
+        builder.addWay(new GraphSnapshot.Way(id, refs, name, maxSpeed, true));
+    }
+
+    /**
+     * Keeps the coordinates of every node in the OSM file, including the nodes on no road, so
+     * that a later change can connect them without resending them. Only valid while the OSM file
+     * is parsed.
+     * @param nodes The sealed store of every parsed node. The graph owns it from now on.
+     */
+    void retainNodes(OffHeapNodeStore nodes) {
+        builder.setParsedNodes(nodes);
+    }
+
+    /**
+     * Adds a named location to the graph under construction. Only valid while the OSM file is
+     * parsed.
+     * @param id The node ID of the location.
+     * @param lon The location's longitude.
+     * @param lat The location's latitude.
+     * @param name The location's full name.
+     */
+    void addLocation(long id, double lon, double lat, String name) {
+        builder.addLocation(id, lon, lat, name);
     }
 
     /**
@@ -41,7 +152,7 @@ public class GraphDB {
      * @param s Input string.
      * @return Cleaned string.
      */
-    private static String cleanString(String s) {
+    static String cleanString(String s) {
         return s.replaceAll("[^a-zA-Z ]", "").toLowerCase();
     }
 
@@ -51,7 +162,7 @@ public class GraphDB {
      * we can reasonably assume this since typically roads are connected.
      */
     private void clean() {
-        // TODO
+        builder.removeDisconnected();
     }
 
     /**
@@ -60,8 +171,8 @@ public class GraphDB {
      * @return The longitude of that vertex, or 0.0 if the vertex is not in the graph.
      */
     double lon(long v) {
-        // TODO
-        return 0;
+        GraphSnapshot.Node n = snapshot.node(v);
+        return n == null ? 0.0 : n.lon;
     }
 
     /**
@@ -70,8 +181,8 @@ public class GraphDB {
      * @return The latitude of that vertex, or 0.0 if the vertex is not in the graph.
      */
     double lat(long v) {
-        // TODO
-        return 0;
+        GraphSnapshot.Node n = snapshot.node(v);
+        return n == null ? 0.0 : n.lat;
     }
 
     /**
@@ -79,8 +190,7 @@ public class GraphDB {
      * @return An iterable of all vertex IDs in the graph.
      */
     Iterable<Long> vertices() {
-        // TODO
-        return Collections.emptySet();
+        return snapshot.vertices();
     }
 
     /**
@@ -90,8 +200,7 @@ public class GraphDB {
      * iterable if the vertex is not in the graph.
      */
     Iterable<Long> adjacent(long v) {
-        // TODO
-        return Collections.emptySet();
+        return snapshot.adjacent(v);
     }
 
     /**
@@ -103,10 +212,23 @@ public class GraphDB {
      * @source https://www.movable-type.co.uk/scripts/latlong.html
      */
     public double distance(long v, long w) {
-        double phi1 = Math.toRadians(lat(v));
-        double phi2 = Math.toRadians(lat(w));
-        double dphi = Math.toRadians(lat(w) - lat(v));
-        double dlambda = Math.toRadians(lon(w) - lon(v));
+        return distance(lon(v), lat(v), lon(w), lat(w));
+    }
+
+    /**
+     * Returns the great-circle distance between two points, in miles.
+     * @param lonV The longitude of the first point.
+     * @param latV The latitude of the first point.
+     * @param lonW The longitude of the second point.
+     * @param latW The latitude of the second point.
+     * @return The great-circle distance between the two points.
+     * @source https://www.movable-type.co.uk/scripts/latlong.html
+     */
+    static double distance(double lonV, double latV, double lonW, double latW) {
+        double phi1 = Math.toRadians(latV);
+        double phi2 = Math.toRadians(latW);
+        double dphi = Math.toRadians(latW - latV);
+        double dlambda = Math.toRadians(lonW - lonV);
 
         double a = Math.sin(dphi / 2.0) * Math.sin(dphi / 2.0);
         a += Math.cos(phi1) * Math.cos(phi2) * Math.sin(dlambda / 2.0) * Math.sin(dlambda / 2.0);
@@ -121,8 +243,7 @@ public class GraphDB {
      * @return The ID for the vertex closest to the <code>lon</code> and <code>lat</code>.
      */
     public long closest(double lon, double lat) {
-        // TODO
-        return 0;
+        return snapshot.closest(lon, lat);
     }
 
     /**
@@ -163,7 +284,17 @@ public class GraphDB {
      * cleaned <code>prefix</code>.
      */
     public List<String> getLocationsByPrefix(String prefix) {
-        return Collections.emptyList();
+        GraphSnapshot current = snapshot;
+        String cleaned = cleanString(prefix);
+        Set<String> names = new LinkedHashSet<>();
+        for (String key : current.locationNames()) {
+            if (key.startsWith(cleaned)) {
+                for (LocationParams loc : current.locations(key)) {
+                    names.add(loc.name);
+                }
+            }
+        }
+        return new ArrayList<>(names);
     }
 
     /**
@@ -174,7 +305,7 @@ public class GraphDB {
      * cleaned <code>locationName</code>
      */
     public List<LocationParams> getLocations(String locationName) {
-        return Collections.emptyList();
+        return new ArrayList<>(snapshot.locations(cleanString(locationName)));
     }
 
     /**
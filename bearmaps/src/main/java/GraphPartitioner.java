@@ -0,0 +1,125 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits a road graph into geographic shards for <code>ShardedRouter</code>. The map is divided
+ * into square cells in the projected coordinates of <code>GraphDB.projectToX</code> and
+ * <code>GraphDB.projectToY</code>, and every vertex belongs to the shard of the cell containing
+ * it.
+ *
+ * Each shard stores its own vertices plus an overlay of the vertices just across its border: an
+ * edge that crosses between two cells is stored in both shards. The vertices of a shard that have
+ * such a crossing edge are its boundary vertices, which the coordinator routes between.
+ *
+ * Large maps are partitioned offline by <code>main</code>, which writes each shard to its own
+ * file, so that every <code>ShardServer</code> only loads the shards it serves.
+ */
+final class GraphPartitioner {
+    private GraphPartitioner() {
+    }
+
+    /**
+     * Partitions a graph into shards.
+     * @param g The graph to partition.
+     * @param cellSize Side length of each cell, in projected units. See
+     *                 <code>SpatialGrid.CELL_SIZE</code> for the scale.
+     * @return The non-empty shards, numbered from 0 in the order of the returned list.
+     */
+    static List<GraphShard> partition(GraphSnapshot g, double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        Map<Long, Integer> cellToShard = new HashMap<>();
+        Map<Long, Integer> shardOf = new HashMap<>();
+        List<GraphSnapshot.Builder> builders = new ArrayList<>();
+        List<Set<Long>> interiors = new ArrayList<>();
+
+        for (long v : g.vertices()) {
+            GraphSnapshot.Node n = g.node(v);
+            long cell = cellOf(n.x, cellSize) << 32 | (cellOf(n.y, cellSize) & 0xffffffffL);
+            Integer shard = cellToShard.get(cell);
+            if (shard == null) {
+                shard = builders.size();
+                cellToShard.put(cell, shard);
+                builders.add(new GraphSnapshot.Builder());
+                interiors.add(new HashSet<>());
+            }
+            shardOf.put(v, shard);
+            builders.get(shard).putNode(v, n.lon, n.lat);
+            interiors.get(shard).add(v);
+        }
+
+        for (long v : g.vertices()) {
+            int sv = shardOf.get(v);
+            long[] edges = g.edges(v);
+            for (int i = 0; i < edges.length; i += 2) {
+                long u = edges[i];
+                if (u < v) {
+                    continue;
+                }
+                GraphSnapshot.Way w = g.way(edges[i + 1]);
+                int su = shardOf.get(u);
+                if (su != sv) {
+                    /* A crossing edge: each shard gets the other endpoint as an overlay node. */
+                    GraphSnapshot.Node un = g.node(u), vn = g.node(v);
+                    builders.get(sv).putNode(u, un.lon, un.lat);
+                    builders.get(su).putNode(v, vn.lon, vn.lat);
+                    builders.get(su).connect(v, u, w);
+                }
+                builders.get(sv).connect(v, u, w);
+            }
+        }
+
+        List<GraphShard> shards = new ArrayList<>();
+        for (int i = 0; i < builders.size(); i += 1) {
+            shards.add(new GraphShard(i, builders.get(i).build(0), interiors.get(i)));
+        }
+        return shards;
+    }
+
+    /**
+     * Partitions a graph and writes each shard to the file named by <code>GraphShard.file</code>.
+     * @param g The graph to partition.
+     * @param cellSize Side length of each cell, in projected units.
+     * @param dir The directory to write to, which is created if needed.
+     * @return The number of shards written.
+     * @throws IOException If a shard cannot be written.
+     */
+    static int write(GraphSnapshot g, double cellSize, File dir) throws IOException {
+        List<GraphShard> shards = partition(g, cellSize);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory: " + dir);
+        }
+        for (GraphShard shard : shards) {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(GraphShard.file(dir, shard.id()))))) {
+                shard.write(out);
+            }
+        }
+        return shards.size();
+    }
+
+    /**
+     * Partitions an OSM extract into shard files for <code>ShardServer</code>.
+     *
+     * Usage: java GraphPartitioner [osm file] [cell size] [output directory]
+     */
+    public static void main(String[] args) throws IOException {
+        GraphDB graph = new GraphDB(args[0]);
+        int n = write(graph.snapshot(), Double.parseDouble(args[1]), new File(args[2]));
+        System.out.println("Wrote " + n + " shards to " + args[2]);
+    }
+
+    private static long cellOf(double coord, double cellSize) {
+        return (long) Math.floor(coord / cellSize);
+    }
+}
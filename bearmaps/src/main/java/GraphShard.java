@@ -0,0 +1,284 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One geographic piece of a partitioned road graph, produced by <code>GraphPartitioner</code>.
+ * A shard answers routing requests about its own interior on behalf of a
+ * <code>ShardedRouter</code>. Requests and responses are plain byte arrays, so that a shard can
+ * be served over any <code>ShardTransport</code>.
+ *
+ * Every request starts with a one-byte opcode followed by its arguments, written with
+ * <code>DataOutputStream</code>. Searches run on the shard's interior only, so that the distances
+ * a shard reports compose correctly with the crossing edges the coordinator adds between shards.
+ *
+ * A shard can also be written to a file of its own with <code>write</code> and loaded back with
+ * <code>read</code>, so that a <code>ShardServer</code> only ever holds the shards it serves. The
+ * file holds the shard number, then its nodes as (ID, lon, lat, interior), its ways as (ID, name,
+ * max speed, refs) and its edges as (from, to, way), each list prefixed by its length.
+ */
+final class GraphShard {
+    /** Request: (lon, lat). Response: closest interior vertex and its squared distance to it. */
+    static final byte CLOSEST = 1;
+    /** Request: (). Response: the boundary vertices, as a length-prefixed array of IDs. */
+    static final byte BOUNDARY = 2;
+    /** Request: (). Response: for each boundary vertex, the distances to every boundary vertex. */
+    static final byte CLIQUE = 3;
+    /** Request: (). Response: (from, to, length) for every edge leaving the shard. */
+    static final byte CUT_EDGES = 4;
+    /** Request: (source, targets). Response: the distance from source to each target. */
+    static final byte DISTANCES = 5;
+    /** Request: (from, to). Response: the vertex IDs along the shortest interior path. */
+    static final byte PATH = 6;
+
+    private final int id;
+    /** The shard's vertices, plus the overlay vertices just across its border. */
+    private final GraphSnapshot graph;
+    private final Set<Long> interior;
+    /** Interior vertices that have an edge leaving the shard. */
+    private final long[] boundary;
+    /** Spatial index over the interior vertices only. */
+    private final SpatialGrid interiorGrid;
+    private final RouteSearch search = new RouteSearch();
+
+    /**
+     * Creates a shard.
+     * @param id The shard's number.
+     * @param graph The shard's subgraph, including overlay vertices across its border.
+     * @param interior The vertices that belong to this shard.
+     */
+    GraphShard(int id, GraphSnapshot graph, Set<Long> interior) {
+        this.id = id;
+        this.graph = graph;
+        this.interior = interior;
+
+        List<Long> border = new ArrayList<>();
+        List<GraphSnapshot.Node> nodes = new ArrayList<>();
+        for (long v : interior) {
+            nodes.add(graph.node(v));
+            long[] edges = graph.edges(v);
+            for (int i = 0; i < edges.length; i += 2) {
+                if (!interior.contains(edges[i])) {
+                    border.add(v);
+                    break;
+                }
+            }
+        }
+        boundary = new long[border.size()];
+        for (int i = 0; i < boundary.length; i += 1) {
+            boundary[i] = border.get(i);
+        }
+        Arrays.sort(boundary);
+        interiorGrid = SpatialGrid.of(nodes, interior);
+        search.reset(graph);
+        search.setFilter(interior::contains);
+    }
+
+    /** Returns this shard's number. */
+    int id() {
+        return id;
+    }
+
+    /**
+     * Handles a single encoded request.
+     * @param request The request bytes.
+     * @return The response bytes.
+     * @throws IOException If the request is malformed.
+     */
+    synchronized byte[] handle(byte[] request) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(request));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte op = in.readByte();
+        switch (op) {
+            case CLOSEST: {
+                double lon = in.readDouble(), lat = in.readDouble();
+                double x = GraphDB.projectToX(lon, lat), y = GraphDB.projectToY(lon, lat);
+                long v = interiorGrid.closest(x, y);
+                GraphSnapshot.Node n = graph.node(v);
+                out.writeLong(v);
+                out.writeDouble(n == null ? Double.POSITIVE_INFINITY
+                        : (n.x - x) * (n.x - x) + (n.y - y) * (n.y - y));
+                break;
+            }
+            case BOUNDARY:
+                writeIds(out, boundary);
+                break;
+            case CLIQUE:
+                for (long b : boundary) {
+                    for (double d : search.distances(b, boundary)) {
+                        out.writeDouble(d);
+                    }
+                }
+                break;
+            case CUT_EDGES: {
+                List<long[]> cut = new ArrayList<>();
+                for (long b : boundary) {
+                    long[] edges = graph.edges(b);
+                    for (int i = 0; i < edges.length; i += 2) {
+                        if (!interior.contains(edges[i])) {
+                            cut.add(new long[]{b, edges[i]});
+                        }
+                    }
+                }
+                out.writeInt(cut.size());
+                for (long[] e : cut) {
+                    GraphSnapshot.Node from = graph.node(e[0]), to = graph.node(e[1]);
+                    out.writeLong(e[0]);
+                    out.writeLong(e[1]);
+                    out.writeDouble(GraphDB.distance(from.lon, from.lat, to.lon, to.lat));
+                }
+                break;
+            }
+            case DISTANCES: {
+                long source = in.readLong();
+                long[] targets = readIds(in);
+                for (double d : search.distances(source, targets)) {
+                    out.writeDouble(d);
+                }
+                break;
+            }
+            case PATH: {
+                long from = in.readLong(), to = in.readLong();
+                List<Long> path = search.shortestPath(from, to);
+                out.writeInt(path.size());
+                for (long v : path) {
+                    out.writeLong(v);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown shard request: " + op);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes this shard in the file format described above.
+     * @param out The stream to write to.
+     * @throws IOException If the stream cannot be written.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(id);
+        out.writeInt(graph.numVertices());
+        int numEdges = 0;
+        Map<Long, GraphSnapshot.Way> ways = new LinkedHashMap<>();
+        for (long v : graph.vertices()) {
+            GraphSnapshot.Node n = graph.node(v);
+            out.writeLong(v);
+            out.writeDouble(n.lon);
+            out.writeDouble(n.lat);
+            out.writeBoolean(interior.contains(v));
+            long[] edges = graph.edges(v);
+            for (int i = 0; i < edges.length; i += 2) {
+                if (edges[i] > v) {
+                    numEdges += 1;
+                    ways.putIfAbsent(edges[i + 1], graph.way(edges[i + 1]));
+                }
+            }
+        }
+        out.writeInt(ways.size());
+        for (GraphSnapshot.Way w : ways.values()) {
+            out.writeLong(w.id);
+            out.writeUTF(w.name);
+            out.writeBoolean(w.maxSpeed != null);
+            if (w.maxSpeed != null) {
+                out.writeUTF(w.maxSpeed);
+            }
+            writeIds(out, w.refs);
+        }
+        out.writeInt(numEdges);
+        for (long v : graph.vertices()) {
+            long[] edges = graph.edges(v);
+            for (int i = 0; i < edges.length; i += 2) {
+                if (edges[i] > v) {
+                    out.writeLong(v);
+                    out.writeLong(edges[i]);
+                    out.writeLong(edges[i + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a shard written by <code>write</code>.
+     * @param in The stream to read from.
+     * @return The shard.
+     * @throws IOException If the stream is truncated or malformed.
+     */
+    static GraphShard read(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        GraphSnapshot.Builder b = new GraphSnapshot.Builder();
+        Set<Long> interior = new HashSet<>();
+        for (int i = in.readInt(); i > 0; i -= 1) {
+            long v = in.readLong();
+            b.putNode(v, in.readDouble(), in.readDouble());
+            if (in.readBoolean()) {
+                interior.add(v);
+            }
+        }
+        Map<Long, GraphSnapshot.Way> ways = new LinkedHashMap<>();
+        for (int i = in.readInt(); i > 0; i -= 1) {
+            long w = in.readLong();
+            String name = in.readUTF();
+            String maxSpeed = in.readBoolean() ? in.readUTF() : null;
+            ways.put(w, new GraphSnapshot.Way(w, readIds(in), name, maxSpeed, true));
+        }
+        for (int i = in.readInt(); i > 0; i -= 1) {
+            long v = in.readLong(), u = in.readLong(), w = in.readLong();
+            GraphSnapshot.Way way = ways.get(w);
+            if (way == null) {
+                throw new IOException("Edge refers to a missing way: " + w);
+            }
+            b.connect(v, u, way);
+        }
+        return new GraphShard(id, b.build(0), interior);
+    }
+
+    /**
+     * Returns the file that shard <code>id</code> of a partition is written to.
+     * @param dir The directory holding the partition's shards.
+     * @param id The shard number.
+     */
+    static File file(File dir, int id) {
+        return new File(dir, "shard-" + id + ".bin");
+    }
+
+    /**
+     * Writes a length-prefixed array of IDs.
+     * @param out The stream to write to.
+     * @param ids The IDs.
+     * @throws IOException If the stream cannot be written.
+     */
+    static void writeIds(DataOutputStream out, long[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (long v : ids) {
+            out.writeLong(v);
+        }
+    }
+
+    /**
+     * Reads a length-prefixed array of IDs.
+     * @param in The stream to read from.
+     * @return The IDs.
+     * @throws IOException If the stream is truncated.
+     */
+    static long[] readIds(DataInputStream in) throws IOException {
+        long[] ids = new long[in.readInt()];
+        for (int i = 0; i < ids.length; i += 1) {
+            ids[i] = in.readLong();
+        }
+        return ids;
+    }
+}
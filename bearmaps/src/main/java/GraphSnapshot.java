@@ -0,0 +1,631 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable version of the road graph held by a <code>GraphDB</code>. Every query against a
+ * single snapshot sees a consistent graph, even while a newer version is being published.
+ *
+ * New versions are produced by <code>apply</code>. Every map is a <code>ShardedMap</code>, so the
+ * new version shares all of the old one's shards except those the change writes to, which are
+ * copied: a change touching k entries costs about O(k * N / 1024) time rather than O(N). Arrays
+ * stored in a snapshot are never mutated once the snapshot is published, so unchanged entries
+ * are shared between versions.
+ *
+ * Only road vertices are kept as <code>Node</code> objects. The coordinates of every other node
+ * in the original OSM file stay in the <code>OffHeapNodeStore</code> used to parse it, which all
+ * versions share, so that a change that turns an existing path into a road without resending its
+ * nodes still connects them, as a full rebuild would.
+ *
+ * Adjacency is stored per vertex as a flat <code>long[]</code> of (neighbor, way) pairs, so that
+ * removing a way only has to filter the adjacency of the vertices on that way.
+ */
+final class GraphSnapshot {
+    /** Monotonically increasing version number, starting at 0 for the initial build. */
+    private final long version;
+    /** Every retained node, including nodes left without edges by a later change. */
+    private final ShardedMap<Long, Node> nodes;
+    /** (neighbor, way) pairs for each vertex with at least one edge. */
+    private final ShardedMap<Long, long[]> adjacency;
+    /** Every valid way currently in the graph. */
+    private final ShardedMap<Long, Way> ways;
+    /** Named locations, by node ID. */
+    private final ShardedMap<Long, LocationParams> locationsById;
+    /** Named locations, by cleaned name. */
+    private final ShardedMap<String, List<LocationParams>> locationsByName;
+    /** Spatial index over the named locations, by node ID. */
+    private final SpatialGrid locationGrid;
+    /** Spatial index over the vertices of the graph. */
+    private final SpatialGrid grid;
+    /**
+     * Points along the edges longer than a grid cell, spaced at most a cell apart and indexed
+     * under the edge's lower endpoint ID, so that every point of every edge lies within half a
+     * cell of a vertex in <code>grid</code> or of a point here.
+     */
+    private final SpatialGrid spans;
+    /** Every node of the original OSM file, or <code>null</code>. Never modified. */
+    private final OffHeapNodeStore parsedNodes;
+    /** Nodes of <code>parsedNodes</code> deleted by a later change. */
+    private final ShardedMap<Long, Boolean> deletedNodes;
+
+    private GraphSnapshot(long version, Builder b, SpatialGrid grid, SpatialGrid spans) {
+        this.version = version;
+        this.nodes = b.nodes;
+        this.adjacency = b.adjacency;
+        this.ways = b.ways;
+        this.locationsById = b.locationsById;
+        this.locationsByName = b.locationsByName;
+        this.locationGrid = b.locationGrid.build();
+        this.grid = grid;
+        this.spans = spans;
+        this.parsedNodes = b.parsedNodes;
+        this.deletedNodes = b.deletedNodes;
+    }
+
+    /** Returns the version number of this snapshot. */
+    long version() {
+        return version;
+    }
+
+    /**
+     * Returns the node with the given ID.
+     * @param id The node ID.
+     * @return The node, or <code>null</code> if no such node is retained.
+     */
+    Node node(long id) {
+        return nodes.get(id);
+    }
+
+    /**
+     * Returns the way with the given ID.
+     * @param id The way ID.
+     * @return The way, or <code>null</code> if it is not a valid way in this graph.
+     */
+    Way way(long id) {
+        return ways.get(id);
+    }
+
+    /** Returns every valid way in this graph. */
+    Iterable<Way> ways() {
+        return Collections.unmodifiableCollection(ways.values());
+    }
+
+    /** Returns the IDs of all vertices, the nodes with at least one edge. */
+    Iterable<Long> vertices() {
+        return Collections.unmodifiableSet(adjacency.keySet());
+    }
+
+    /** Returns the number of vertices in this graph. */
+    int numVertices() {
+        return adjacency.size();
+    }
+
+    /**
+     * Returns the (neighbor, way) pairs of a vertex. The returned array must not be modified.
+     * @param v The vertex ID.
+     * @return An array of even length alternating neighbor ID and way ID, or an empty array if
+     * <code>v</code> is not a vertex.
+     */
+    long[] edges(long v) {
+        long[] e = adjacency.get(v);
+        return e == null ? EMPTY : e;
+    }
+
+    /**
+     * Returns the distinct neighbors of a vertex.
+     * @param v The vertex ID.
+     * @return A <code>List</code> of neighbor IDs, empty if <code>v</code> is not a vertex.
+     */
+    List<Long> adjacent(long v) {
+        long[] e = edges(v);
+        if (e.length == 2) {
+            return Collections.singletonList(e[0]);
+        }
+        Set<Long> neighbors = new LinkedHashSet<>();
+        for (int i = 0; i < e.length; i += 2) {
+            neighbors.add(e[i]);
+        }
+        return new ArrayList<>(neighbors);
+    }
+
+    /**
+     * Returns the vertex closest to the given point under the projection used by
+     * <code>GraphDB.projectToX</code> and <code>GraphDB.projectToY</code>.
+     * @param lon The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return The closest vertex ID, or 0 if the graph is empty.
+     */
+    long closest(double lon, double lat) {
+        return grid.closest(GraphDB.projectToX(lon, lat), GraphDB.projectToY(lon, lat));
+    }
+
+    /** Returns the spatial index over the vertices of this graph. */
+    SpatialGrid grid() {
+        return grid;
+    }
+
+    /**
+     * Calls <code>visitor</code> with a set of vertices whose edges include every edge that
+     * passes within <code>radius</code> of the projected point (x, y). Like
+     * <code>SpatialGrid.near</code>, it may visit vertices whose edges are all farther away, so
+     * callers must check the exact distance themselves. A vertex may be visited more than once,
+     * and with the coordinates of a point on one of its edges rather than its own.
+     * @param x The projected x-coordinate.
+     * @param y The projected y-coordinate.
+     * @param radius The search radius in projected units.
+     * @param visitor Called with each candidate vertex ID.
+     */
+    void edgesNear(double x, double y, double radius, SpatialGrid.Visitor visitor) {
+        double reach = radius + SpatialGrid.CELL_SIZE / 2;
+        grid.near(x, y, reach, visitor);
+        spans.near(x, y, reach, visitor);
+    }
+
+    /** Returns every named location in this graph. */
+    Iterable<LocationParams> locations() {
+        return Collections.unmodifiableCollection(locationsById.values());
+    }
+
+    /**
+     * Returns the named location at a node.
+     * @param id The node ID.
+     * @return The location, or <code>null</code> if the node has no name.
+     */
+    LocationParams location(long id) {
+        return locationsById.get(id);
+    }
+
+    /**
+     * Calls <code>visitor</code> for every named location whose point may lie within
+     * <code>radius</code> of the projected point (x, y), with the location's node ID. As with
+     * <code>SpatialGrid.near</code>, callers must check the exact position themselves.
+     * @param x The projected x-coordinate.
+     * @param y The projected y-coordinate.
+     * @param radius The search radius in projected units.
+     * @param visitor Called with each candidate location's ID and projected coordinates.
+     */
+    void locationsNear(double x, double y, double radius, SpatialGrid.Visitor visitor) {
+        locationGrid.near(x, y, radius, visitor);
+    }
+
+    /**
+     * Returns the locations whose cleaned name equals <code>cleanedName</code>.
+     * @param cleanedName A name already passed through <code>GraphDB.cleanString</code>.
+     * @return A <code>List</code> of matching locations, possibly empty.
+     */
+    List<LocationParams> locations(String cleanedName) {
+        List<LocationParams> matches = locationsByName.get(cleanedName);
+        return matches == null ? Collections.emptyList() : Collections.unmodifiableList(matches);
+    }
+
+    /** Returns the distinct cleaned names of all locations. */
+    Iterable<String> locationNames() {
+        return Collections.unmodifiableSet(locationsByName.keySet());
+    }
+
+    /**
+     * Returns a new snapshot with <code>change</code> applied. This snapshot is left untouched, so
+     * readers still holding it continue to see the previous version of the graph.
+     * @param change The change to apply.
+     * @return The next version of the graph.
+     */
+    GraphSnapshot apply(GraphChange change) {
+        Builder b = new Builder(this);
+
+        for (long id : change.deletedWays()) {
+            b.removeWay(id);
+        }
+        for (Way w : change.ways()) {
+            b.removeWay(w.id);
+        }
+        for (long id : change.deletedNodes()) {
+            b.removeNode(id);
+        }
+        for (GraphChange.NodeRecord n : change.nodes()) {
+            b.putNode(n.id, n.lon, n.lat);
+            b.removeLocation(n.id);
+            if (n.name != null) {
+                b.addLocation(n.id, n.lon, n.lat, n.name);
+            }
+        }
+        for (Way w : change.ways()) {
+            if (w.valid) {
+                b.addWay(w);
+            }
+        }
+        return b.build(version + 1);
+    }
+
+    /** A node, with its position and its position under the Berkeley projection. */
+    static final class Node {
+        final long id;
+        final double lon, lat;
+        final double x, y;
+
+        Node(long id, double lon, double lat) {
+            this.id = id;
+            this.lon = lon;
+            this.lat = lat;
+            this.x = GraphDB.projectToX(lon, lat);
+            this.y = GraphDB.projectToY(lon, lat);
+        }
+    }
+
+    /** A way, the ordered list of nodes along a single road. */
+    static final class Way {
+        final long id;
+        /** Node IDs along the way, in order. Must not be modified. */
+        final long[] refs;
+        /** The way's name, or the empty string if it has none. */
+        final String name;
+        /** The way's max speed tag, or <code>null</code> if it has none. */
+        final String maxSpeed;
+        /** Whether this way is a road that should be part of the graph. */
+        final boolean valid;
+
+        Way(long id, long[] refs, String name, String maxSpeed, boolean valid) {
+            this.id = id;
+            this.refs = refs;
+            this.name = name == null ? "" : name;
+            this.maxSpeed = maxSpeed;
+            this.valid = valid;
+        }
+    }
+
+    /**
+     * Accumulates nodes, ways and locations and produces a <code>GraphSnapshot</code>. A builder
+     * created from an existing snapshot copies its maps on construction, so mutating the builder
+     * never affects the original.
+     */
+    static final class Builder {
+        private final ShardedMap<Long, Node> nodes;
+        private final ShardedMap<Long, long[]> adjacency;
+        private final ShardedMap<Long, Way> ways;
+        private final ShardedMap<Long, LocationParams> locationsById;
+        private final ShardedMap<String, List<LocationParams>> locationsByName;
+        private final SpatialGrid.Editor locationGrid;
+        private final SpatialGrid.Editor grid;
+        private OffHeapNodeStore parsedNodes;
+        private final ShardedMap<Long, Boolean> deletedNodes;
+        /** The snapshot this builder started from, or <code>null</code>. */
+        private final GraphSnapshot base;
+        /** Vertices whose edges or position changed, and so may need re-indexing in the grid. */
+        private final Set<Long> touched = new HashSet<>();
+
+        /** Creates an empty builder. */
+        Builder() {
+            nodes = new ShardedMap<>();
+            adjacency = new ShardedMap<>();
+            ways = new ShardedMap<>();
+            locationsById = new ShardedMap<>();
+            locationsByName = new ShardedMap<>();
+            locationGrid = SpatialGrid.editor();
+            grid = null;
+            deletedNodes = new ShardedMap<>();
+            base = null;
+        }
+
+        /**
+         * Creates a builder starting from the contents of <code>base</code>. Takes time
+         * proportional to the number of shards, not the size of the graph.
+         */
+        private Builder(GraphSnapshot base) {
+            nodes = base.nodes.copy();
+            adjacency = base.adjacency.copy();
+            ways = base.ways.copy();
+            locationsById = base.locationsById.copy();
+            locationsByName = base.locationsByName.copy();
+            locationGrid = base.locationGrid.edit();
+            grid = base.grid.edit();
+            parsedNodes = base.parsedNodes;
+            deletedNodes = base.deletedNodes.copy();
+            this.base = base;
+        }
+
+        /**
+         * Sets the store holding every node of the original OSM file, which later versions fall
+         * back on for nodes that are not retained. The store must be sealed, and must not be
+         * modified or closed while any version built from this builder is in use.
+         * @param store The parsed nodes.
+         */
+        void setParsedNodes(OffHeapNodeStore store) {
+            parsedNodes = store;
+        }
+
+        /**
+         * Adds a node, or moves it if it already exists.
+         * @param id The node ID.
+         * @param lon The node's longitude.
+         * @param lat The node's latitude.
+         */
+        void putNode(long id, double lon, double lat) {
+            deletedNodes.remove(id);
+            Node old = nodes.put(id, new Node(id, lon, lat));
+            if (old != null && grid != null && adjacency.containsKey(id)) {
+                grid.remove(old.id, old.x, old.y);
+                touched.add(id);
+            }
+        }
+
+        /**
+         * Removes a node, along with any edges and location that refer to it.
+         * @param id The node ID.
+         */
+        void removeNode(long id) {
+            long[] e = adjacency.get(id);
+            if (e != null) {
+                for (int i = 0; i < e.length; i += 2) {
+                    removeEdges(e[i], NEIGHBOR, id);
+                }
+                adjacency.remove(id);
+            }
+            removeLocation(id);
+            Node old = nodes.remove(id);
+            if (old != null && grid != null && e != null) {
+                grid.remove(old.id, old.x, old.y);
+            }
+            if (parsedNodes != null && parsedNodes.indexOf(id) >= 0) {
+                deletedNodes.put(id, true);
+            }
+            touched.remove(id);
+        }
+
+        /**
+         * Adds a valid way, connecting each consecutive pair of its nodes. Nodes that are not
+         * retained are looked up among the parsed nodes; pairs where either node is unknown are
+         * skipped.
+         * @param w The way.
+         */
+        void addWay(Way w) {
+            ways.put(w.id, w);
+            for (int i = 1; i < w.refs.length; i += 1) {
+                long v = w.refs[i - 1];
+                long u = w.refs[i];
+                if (v != u && resolve(v) != null && resolve(u) != null) {
+                    addEdge(v, u, w.id);
+                    addEdge(u, v, w.id);
+                }
+            }
+        }
+
+        /**
+         * Adds a single edge of a way in both directions, recording the way if it is new. Unlike
+         * <code>addWay</code>, the rest of the way is not connected; this is used to build
+         * subgraphs that only hold part of a way. Both nodes must already have been added.
+         * @param v One endpoint of the edge.
+         * @param u The other endpoint of the edge.
+         * @param w The way the edge belongs to.
+         */
+        void connect(long v, long u, Way w) {
+            ways.putIfAbsent(w.id, w);
+            addEdge(v, u, w.id);
+            addEdge(u, v, w.id);
+        }
+
+        /**
+         * Removes a way and all of the edges it contributed.
+         * @param id The way ID. Ways that are not in the graph are ignored.
+         */
+        void removeWay(long id) {
+            Way w = ways.remove(id);
+            if (w == null) {
+                return;
+            }
+            for (long v : w.refs) {
+                removeEdges(v, WAY, id);
+            }
+        }
+
+        /**
+         * Adds a named location.
+         * @param id The node ID.
+         * @param lon The node's longitude.
+         * @param lat The node's latitude.
+         * @param name The location's full name.
+         */
+        void addLocation(long id, double lon, double lat, String name) {
+            LocationParams loc = new LocationParams(lat, lon, name, id);
+            removeLocation(id);
+            locationsById.put(id, loc);
+            locationGrid.add(id, GraphDB.projectToX(lon, lat), GraphDB.projectToY(lon, lat));
+            String key = GraphDB.cleanString(name);
+            List<LocationParams> old = locationsByName.get(key);
+            List<LocationParams> updated = old == null ? new ArrayList<>(1) : new ArrayList<>(old);
+            updated.add(loc);
+            locationsByName.put(key, updated);
+        }
+
+        /**
+         * Removes the named location at a node, if there is one.
+         * @param id The node ID.
+         */
+        void removeLocation(long id) {
+            LocationParams old = locationsById.remove(id);
+            if (old == null) {
+                return;
+            }
+            locationGrid.remove(id, GraphDB.projectToX(old.lon, old.lat),
+                    GraphDB.projectToY(old.lon, old.lat));
+            String key = GraphDB.cleanString(old.name);
+            List<LocationParams> updated = new ArrayList<>(locationsByName.get(key));
+            updated.remove(old);
+            if (updated.isEmpty()) {
+                locationsByName.remove(key);
+            } else {
+                locationsByName.put(key, updated);
+            }
+        }
+
+        /**
+         * Drops every node that has no edges. Only used during the initial build, where most
+         * parsed nodes belong to buildings and other non-road ways. Their coordinates remain
+         * available to later versions through the parsed nodes.
+         */
+        void removeDisconnected() {
+            List<Long> disconnected = new ArrayList<>();
+            for (long id : nodes.keySet()) {
+                if (!adjacency.containsKey(id)) {
+                    disconnected.add(id);
+                }
+            }
+            for (long id : disconnected) {
+                nodes.remove(id);
+            }
+        }
+
+        /** Returns the number of vertices added so far. */
+        int numVertices() {
+            return adjacency.size();
+        }
+
+        /**
+         * Returns the new snapshot.
+         * @param version The version number of the new snapshot.
+         * @return A <code>GraphSnapshot</code> holding the builder's contents.
+         */
+        GraphSnapshot build(long version) {
+            SpatialGrid g;
+            SpatialGrid.Editor spans;
+            if (grid == null) {
+                g = SpatialGrid.of(nodes.values(), adjacency.keySet());
+                spans = SpatialGrid.editor();
+                for (long id : adjacency.keySet()) {
+                    sampleEdges(spans, id, nodes, adjacency.get(id), true);
+                }
+            } else {
+                for (long id : touched) {
+                    Node n = nodes.get(id);
+                    if (n == null) {
+                        continue;
+                    }
+                    grid.remove(id, n.x, n.y);
+                    if (adjacency.containsKey(id)) {
+                        grid.add(id, n.x, n.y);
+                    }
+                }
+                g = grid.build();
+                /* A moved vertex changes the edges of its neighbors too, so resample every
+                 * edge at a touched vertex, before and after the change. */
+                spans = base.spans.edit();
+                Set<Long> resampled = new HashSet<>(touched);
+                for (long id : touched) {
+                    long[] before = base.edges(id), after = adjacency.getOrDefault(id, EMPTY);
+                    for (int i = 0; i < before.length; i += 2) {
+                        resampled.add(before[i]);
+                    }
+                    for (int i = 0; i < after.length; i += 2) {
+                        resampled.add(after[i]);
+                    }
+                }
+                for (long id : resampled) {
+                    sampleEdges(spans, id, base.nodes, base.edges(id), false);
+                    sampleEdges(spans, id, nodes, adjacency.getOrDefault(id, EMPTY), true);
+                }
+            }
+            return new GraphSnapshot(version, this, g, spans.build());
+        }
+
+        /**
+         * Returns the retained node with the given ID, first retaining it from the parsed nodes
+         * if it is only there and has not been deleted since.
+         * @param id The node ID.
+         * @return The node, or <code>null</code> if it is unknown.
+         */
+        private Node resolve(long id) {
+            Node n = nodes.get(id);
+            if (n != null || parsedNodes == null || deletedNodes.containsKey(id)) {
+                return n;
+            }
+            int at = parsedNodes.indexOf(id);
+            if (at < 0) {
+                return null;
+            }
+            n = new Node(id, parsedNodes.lon(at), parsedNodes.lat(at));
+            nodes.put(id, n);
+            return n;
+        }
+
+        /**
+         * Adds or removes the span points of the edges of <code>v</code> to higher neighbors
+         * that are longer than a grid cell. Removal recomputes the exact points that were added
+         * for the same edges and node positions.
+         */
+        private static void sampleEdges(SpatialGrid.Editor spans, long v,
+                                        ShardedMap<Long, Node> nodes, long[] e, boolean add) {
+            for (int i = 0; i < e.length; i += 2) {
+                if (e[i] < v) {
+                    continue;
+                }
+                Node vn = nodes.get(v), wn = nodes.get(e[i]);
+                double dx = wn.x - vn.x, dy = wn.y - vn.y;
+                int pieces = (int) Math.ceil(Math.hypot(dx, dy) / SpatialGrid.CELL_SIZE);
+                for (int k = 1; k < pieces; k += 1) {
+                    double x = vn.x + dx * k / pieces, y = vn.y + dy * k / pieces;
+                    if (add) {
+                        spans.add(v, x, y);
+                    } else {
+                        spans.remove(v, x, y);
+                    }
+                }
+            }
+        }
+
+        private void addEdge(long from, long to, long way) {
+            long[] old = adjacency.get(from);
+            long[] e;
+            if (old == null) {
+                e = new long[2];
+            } else {
+                e = Arrays.copyOf(old, old.length + 2);
+            }
+            e[e.length - 2] = to;
+            e[e.length - 1] = way;
+            adjacency.put(from, e);
+            touched.add(from);
+        }
+
+        /**
+         * Removes edges out of <code>from</code> whose neighbor or way is <code>id</code>. Every
+         * ID is matched exactly, since negative IDs are legal in changes.
+         * @param from The vertex whose edges are filtered.
+         * @param field <code>NEIGHBOR</code> or <code>WAY</code>, the half of each (neighbor,
+         *              way) pair to compare.
+         * @param id The neighbor or way ID to remove edges to.
+         */
+        private void removeEdges(long from, int field, long id) {
+            long[] old = adjacency.get(from);
+            if (old == null) {
+                return;
+            }
+            long[] e = new long[old.length];
+            int n = 0;
+            for (int i = 0; i < old.length; i += 2) {
+                if (old[i + field] == id) {
+                    continue;
+                }
+                e[n] = old[i];
+                e[n + 1] = old[i + 1];
+                n += 2;
+            }
+            if (n == old.length) {
+                return;
+            }
+            if (n == 0) {
+                adjacency.remove(from);
+            } else {
+                adjacency.put(from, Arrays.copyOf(e, n));
+            }
+            touched.add(from);
+        }
+    }
+
+    /** Offsets of the neighbor and the way within each adjacency pair. */
+    private static final int NEIGHBOR = 0, WAY = 1;
+
+    /** Shared empty adjacency array. */
+    private static final long[] EMPTY = new long[0];
+}
@@ -0,0 +1,419 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This LoadGenerator class replays recorded BearMaps traffic against a running
+ * <code>MapServer</code> and reports throughput and latency percentiles.
+ *
+ * Requests are read from the same files the unit tests use (<code>raster_params.txt</code> and
+ * <code>path_params.txt</code>), and optionally from a captured access log. They are issued
+ * open-loop: every request has an intended start time derived from the arrival rate, whether or
+ * not earlier requests have finished. Latencies are measured from the intended start time rather
+ * than from the moment a worker picked the request up, so a stalled server is charged for every
+ * request that should have been sent during the stall (coordinated-omission correction).
+ *
+ * Usage: <code>java LoadGenerator [--host URL] [--raster FILE] [--route FILE] [--log FILE]
+ * [--rate REQ_PER_SEC] [--concurrency THREADS] [--duration SECONDS] [--poisson]</code>
+ */
+public class LoadGenerator {
+    /** The server requests are sent to, e.g. <code>http://localhost:4567</code>. */
+    private final String host;
+    /** The request paths (including query strings) to replay in order, wrapping around. */
+    private final List<String> workload;
+    /** Target arrival rate in requests per second. */
+    private final double rate;
+    /** Number of worker threads issuing requests concurrently. */
+    private final int concurrency;
+    /** Total number of requests to issue. */
+    private final long numRequests;
+    /** Whether inter-arrival times are exponentially distributed rather than uniform. */
+    private final boolean poisson;
+
+    /** Latencies measured from the intended start time. */
+    private final LatencyHistogram correctedLatency = new LatencyHistogram();
+    /** Latencies measured from the time a worker actually sent the request. */
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    /** Number of requests that failed with an I/O error or a non-2xx status. */
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Creates a new LoadGenerator.
+     * @param host The server to send requests to.
+     * @param workload The request paths to replay.
+     * @param rate The target arrival rate in requests per second.
+     * @param concurrency The number of worker threads.
+     * @param durationSeconds How long to generate load for.
+     * @param poisson Whether to use exponentially distributed inter-arrival times.
+     */
+    public LoadGenerator(String host, List<String> workload, double rate, int concurrency,
+                         double durationSeconds, boolean poisson) {
+        if (workload.isEmpty()) {
+            throw new IllegalArgumentException("Workload is empty: nothing to replay.");
+        }
+        if (rate <= 0 || concurrency <= 0 || durationSeconds <= 0) {
+            throw new IllegalArgumentException("Rate, concurrency and duration must be positive.");
+        }
+        this.host = host;
+        this.workload = workload;
+        this.rate = rate;
+        this.concurrency = concurrency;
+        this.numRequests = Math.max(1, (long) (rate * durationSeconds));
+        this.poisson = poisson;
+    }
+
+    /**
+     * Issues all requests at their scheduled times, waits for them to complete and prints a
+     * report to standard out.
+     * @throws InterruptedException If interrupted while waiting for outstanding requests.
+     */
+    public void run() throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        Random arrivals = new Random(SEED);
+        double intervalNanos = 1e9 / rate;
+
+        long start = System.nanoTime();
+        double offset = 0;
+        for (long i = 0; i < numRequests; i += 1) {
+            long intended = start + (long) offset;
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String path = workload.get((int) (i % workload.size()));
+            workers.execute(() -> issue(path, intended));
+            if (poisson) {
+                offset += -Math.log(1 - arrivals.nextDouble()) * intervalNanos;
+            } else {
+                offset += intervalNanos;
+            }
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        report(elapsed);
+    }
+
+    /**
+     * Sends a single GET request and records its latencies.
+     * @param path The request path, including the query string.
+     * @param intended The <code>System.nanoTime</code> at which the request should have been sent.
+     */
+    private void issue(String path, long intended) {
+        long sent = System.nanoTime();
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(host + path).openConnection();
+            conn.setConnectTimeout(TIMEOUT_MS);
+            conn.setReadTimeout(TIMEOUT_MS);
+            int status = conn.getResponseCode();
+            InputStream body = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+            if (body != null) {
+                try (InputStream in = body) {
+                    byte[] buf = new byte[BUFFER_SIZE];
+                    while (in.read(buf) != -1) {
+                        continue;
+                    }
+                }
+            }
+            if (status / 100 != 2) {
+                errors.incrementAndGet();
+            }
+        } catch (IOException e) {
+            errors.incrementAndGet();
+        }
+        long done = System.nanoTime();
+        correctedLatency.record(done - intended);
+        serviceTime.record(done - sent);
+    }
+
+    /**
+     * Prints the throughput, error count and latency percentiles of a completed run.
+     * @param elapsedNanos Wall-clock time taken by the whole run.
+     */
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println(String.format(Locale.ROOT,
+                "%d requests in %.2f s (target %.1f req/s, achieved %.1f req/s), %d errors",
+                numRequests, seconds, rate, numRequests / seconds, errors.get()));
+        System.out.println(String.format("%-10s %14s %14s", "percentile", "latency (ms)",
+                "service (ms)"));
+        for (double p : PERCENTILES) {
+            System.out.println(String.format(Locale.ROOT, "%-10s %14.3f %14.3f",
+                    String.format(Locale.ROOT, "p%s", trim(p)),
+                    correctedLatency.percentile(p) / 1e6, serviceTime.percentile(p) / 1e6));
+        }
+        System.out.println(String.format(Locale.ROOT, "%-10s %14.3f %14.3f", "max",
+                correctedLatency.max() / 1e6, serviceTime.max() / 1e6));
+    }
+
+    /**
+     * Formats a percentile without trailing zeros, e.g. 99.9 and 50 rather than 50.0.
+     * @param p The percentile.
+     * @return The formatted percentile.
+     */
+    private static String trim(double p) {
+        return p == Math.rint(p) ? Long.toString((long) p) : Double.toString(p);
+    }
+
+    /**
+     * Reads raster requests from a file in the format of <code>raster_params.txt</code>.
+     * @param file Path to the parameter file.
+     * @return A <code>List</code> of <code>/raster</code> request paths.
+     * @throws IOException If the file cannot be read.
+     */
+    static List<String> rasterRequests(String file) throws IOException {
+        List<String> values = paramLines(file);
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i + RASTER_PARAMS.length <= values.size(); i += RASTER_PARAMS.length) {
+            paths.add("/raster?" + query(RASTER_PARAMS, values, i));
+        }
+        return paths;
+    }
+
+    /**
+     * Reads route requests from a file in the format of <code>path_params.txt</code>.
+     * @param file Path to the parameter file.
+     * @return A <code>List</code> of <code>/route</code> request paths.
+     * @throws IOException If the file cannot be read.
+     */
+    static List<String> routeRequests(String file) throws IOException {
+        List<String> values = paramLines(file);
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i + ROUTE_PARAMS.length <= values.size(); i += ROUTE_PARAMS.length) {
+            paths.add("/route?" + query(ROUTE_PARAMS, values, i));
+        }
+        return paths;
+    }
+
+    /**
+     * Reads request paths from an access log. Lines in the common or combined log format are
+     * supported, as is a bare request path per line. Only GET requests are replayed.
+     * @param file Path to the access log.
+     * @return A <code>List</code> of request paths in log order.
+     * @throws IOException If the file cannot be read.
+     */
+    static List<String> logRequests(String file) throws IOException {
+        List<String> paths = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(file), Charset.defaultCharset())) {
+            Matcher m = LOG_REQUEST.matcher(line);
+            if (m.find()) {
+                if (m.group(1).equals("GET")) {
+                    paths.add(m.group(2));
+                }
+            } else if (line.trim().startsWith("/")) {
+                paths.add(line.trim());
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the non-comment, non-blank lines of a parameter file.
+     * @param file Path to the parameter file.
+     * @return The trimmed value lines.
+     * @throws IOException If the file cannot be read.
+     */
+    private static List<String> paramLines(String file) throws IOException {
+        List<String> values = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(file), Charset.defaultCharset())) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                values.add(line);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Builds a query string from consecutive parameter values.
+     * @param names The query parameter names, in file order.
+     * @param values All parameter values in the file.
+     * @param from Index of the first value for this request.
+     * @return The query string, without the leading <code>?</code>.
+     */
+    private static String query(String[] names, List<String> values, int from) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < names.length; j += 1) {
+            if (j > 0) {
+                sb.append('&');
+            }
+            sb.append(names[j]).append('=').append(values.get(from + j));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses the command line, builds the workload and runs the load test.
+     * @param args See the class documentation for supported flags.
+     * @throws Exception If a workload file cannot be read or the run is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        String host = DEFAULT_HOST;
+        List<String> workload = new ArrayList<>();
+        double rate = DEFAULT_RATE;
+        int concurrency = DEFAULT_CONCURRENCY;
+        double duration = DEFAULT_DURATION;
+        boolean poisson = false;
+
+        for (int i = 0; i < args.length; i += 1) {
+            switch (args[i]) {
+                case "--host":
+                    host = args[++i];
+                    break;
+                case "--raster":
+                    workload.addAll(rasterRequests(args[++i]));
+                    break;
+                case "--route":
+                    workload.addAll(routeRequests(args[++i]));
+                    break;
+                case "--log":
+                    workload.addAll(logRequests(args[++i]));
+                    break;
+                case "--rate":
+                    rate = Double.parseDouble(args[++i]);
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(args[++i]);
+                    break;
+                case "--duration":
+                    duration = Double.parseDouble(args[++i]);
+                    break;
+                case "--poisson":
+                    poisson = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (workload.isEmpty()) {
+            workload.addAll(rasterRequests(RASTER_PARAMS_FILE));
+            workload.addAll(routeRequests(ROUTE_PARAMS_FILE));
+        }
+        new LoadGenerator(host, workload, rate, concurrency, duration, poisson).run();
+    }
+
+    /**
+     * A concurrent log-linear histogram of nanosecond latencies. Each power of two is split into
+     * <code>SUB_BUCKETS</code> linear buckets, so recorded values are accurate to within
+     * 1 / <code>SUB_BUCKETS</code> of their magnitude while using a fixed, small amount of memory.
+     */
+    static class LatencyHistogram {
+        /** Number of linear buckets per power of two. Must be a power of two. */
+        private static final int SUB_BUCKETS = 128;
+        /** log2 of <code>SUB_BUCKETS</code>. */
+        private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+        private final AtomicLongArray counts = new AtomicLongArray(
+                (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Records a single value.
+         * @param value The latency in nanoseconds. Negative values are recorded as 0.
+         */
+        void record(long value) {
+            value = Math.max(0, value);
+            counts.incrementAndGet(bucketOf(value));
+            total.incrementAndGet();
+            long m;
+            while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+                continue;
+            }
+        }
+
+        /**
+         * Returns an upper bound on the value at the given percentile.
+         * @param p A percentile between 0 and 100.
+         * @return The upper edge of the bucket containing the <code>p</code>th percentile, or 0
+         * if nothing has been recorded.
+         */
+        long percentile(double p) {
+            long n = total.get();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i += 1) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperEdge(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        /** Returns the largest value recorded. */
+        long max() {
+            return max.get();
+        }
+
+        /**
+         * Returns the bucket index for a non-negative value.
+         * @param value The value.
+         * @return Its bucket index.
+         */
+        private static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+        }
+
+        /**
+         * Returns the largest value that falls into the given bucket.
+         * @param bucket The bucket index.
+         * @return The inclusive upper edge of the bucket.
+         */
+        private static long upperEdge(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return low + (1L << shift) - 1;
+        }
+    }
+
+    /** Query parameter names for each request in <code>raster_params.txt</code>, in file order. */
+    private static final String[] RASTER_PARAMS = {"ullon", "ullat", "lrlon", "lrlat", "w", "h"};
+    /** Query parameter names for each request in <code>path_params.txt</code>, in file order. */
+    private static final String[] ROUTE_PARAMS = {"start_lon", "start_lat", "end_lon", "end_lat"};
+    /** Matches the quoted request line of a common or combined log format entry. */
+    private static final Pattern LOG_REQUEST = Pattern.compile("\"([A-Z]+) (\\S+) HTTP/[0-9.]+\"");
+    /** Percentiles included in the report. */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    /** Default workload files, relative to the bearmaps directory. */
+    private static final String RASTER_PARAMS_FILE = "raster_params.txt",
+            ROUTE_PARAMS_FILE = "path_params.txt";
+    /** Default server address; Spark listens on port 4567 unless configured otherwise. */
+    private static final String DEFAULT_HOST = "http://localhost:4567";
+    /** Default arrival rate, worker count and run length. */
+    private static final double DEFAULT_RATE = 50, DEFAULT_DURATION = 30;
+    private static final int DEFAULT_CONCURRENCY = 16;
+    /** Connect and read timeout for each request. */
+    private static final int TIMEOUT_MS = 30000;
+    /** Size of the buffer used to drain response bodies. */
+    private static final int BUFFER_SIZE = 8192;
+    /** Seed for the Poisson arrival process so runs are repeatable. */
+    private static final long SEED = 61;
+}
@@ -0,0 +1,33 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A <code>ShardTransport</code> that calls shards in the same process. Requests and responses
+ * still pass through their byte encoding, so the coordinator behaves exactly as it would with
+ * remote shards reached through a <code>SocketTransport</code>.
+ */
+class LoopbackTransport implements ShardTransport {
+    private final List<GraphShard> shards;
+
+    /**
+     * Creates a transport to the given shards.
+     * @param shards The shards, where shard <code>i</code> is at index <code>i</code>.
+     */
+    LoopbackTransport(List<GraphShard> shards) {
+        this.shards = new ArrayList<>(shards);
+    }
+
+    @Override
+    public byte[] call(int shard, byte[] request) throws IOException {
+        if (shard < 0 || shard >= shards.size()) {
+            throw new IOException("No such shard: " + shard);
+        }
+        return shards.get(shard).handle(request);
+    }
+
+    @Override
+    public int numShards() {
+        return shards.size();
+    }
+}
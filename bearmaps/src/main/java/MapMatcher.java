@@ -0,0 +1,567 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snaps GPS traces onto the road network of a <code>GraphDB</code>, using the hidden Markov
+ * model of Newson and Krumm, "Hidden Markov Map Matching Through Noise and Sparseness".
+ *
+ * Each GPS point has a few candidate positions: its projections onto nearby road edges, found
+ * with the graph's spatial index by searching far enough around the point to reach an endpoint
+ * of even the longest edge. A candidate is likely if it is close to the point, and a move
+ * between candidates of consecutive points is likely if its road distance is close to the
+ * straight-line distance between the points. The Viterbi algorithm picks the most likely
+ * sequence of candidates.
+ *
+ * Matching is streaming: points are added one at a time to a <code>Session</code>, and a point's
+ * match is emitted as soon as every surviving candidate sequence agrees on it, or once it falls
+ * <code>MAX_LAG</code> points behind the newest point. Road distances between candidates come
+ * from bounded searches that are cached per session, so steady-state matching allocates only
+ * the matches it emits.
+ */
+public class MapMatcher {
+    private final GraphDB g;
+    private final double sigma;
+    private final double beta;
+    private final double radius;
+
+    /**
+     * Creates a matcher with default model parameters.
+     * @param g The graph to match onto.
+     */
+    public MapMatcher(GraphDB g) {
+        this(g, DEFAULT_SIGMA, DEFAULT_BETA, DEFAULT_RADIUS);
+    }
+
+    /**
+     * Creates a matcher.
+     * @param g The graph to match onto.
+     * @param sigma Standard deviation of GPS noise, in miles.
+     * @param beta Scale of the difference between road and straight-line distance between
+     *             consecutive points, in miles.
+     * @param radius Largest distance from a point to its candidates, in miles.
+     */
+    public MapMatcher(GraphDB g, double sigma, double beta, double radius) {
+        if (!(sigma > 0) || !(beta > 0) || !(radius > 0)) {
+            throw new IllegalArgumentException("Model parameters must be positive.");
+        }
+        this.g = g;
+        this.sigma = sigma;
+        this.beta = beta;
+        this.radius = radius;
+    }
+
+    /**
+     * Starts matching a new trace against the graph's current snapshot. Updates applied to the
+     * graph afterwards are not seen by the session.
+     * @param listener Receives the matches, in trace order.
+     * @return A session to add the trace's points to.
+     */
+    public Session start(Listener listener) {
+        return new Session(g.snapshot(), listener);
+    }
+
+    /**
+     * Matches a whole trace at once.
+     * @param lons The longitudes of the trace's points.
+     * @param lats The latitudes of the trace's points.
+     * @return The matches, in trace order. Points with no road nearby have no match.
+     */
+    public List<Match> match(double[] lons, double[] lats) {
+        if (lons.length != lats.length) {
+            throw new IllegalArgumentException("Longitudes and latitudes differ in length.");
+        }
+        List<Match> matches = new ArrayList<>();
+        Session session = start(matches::add);
+        for (int i = 0; i < lons.length; i += 1) {
+            session.add(lons[i], lats[i]);
+        }
+        session.finish();
+        return matches;
+    }
+
+    /** Receives the matches of a <code>Session</code>. */
+    public interface Listener {
+        void matched(Match match);
+    }
+
+    /** The position on the road network chosen for one GPS point. */
+    public static class Match {
+        /** The index of the GPS point in its trace. */
+        public final int index;
+        /** The matched edge, with <code>from</code> the smaller vertex ID. */
+        public final long from, to;
+        /** How far along the edge the match lies, from 0 at <code>from</code> to 1. */
+        public final double fraction;
+        /** The matched position. */
+        public final double lon, lat;
+        /** Whether <code>path</code> connects this match to the previous one. */
+        public final boolean connected;
+        /**
+         * The vertices passed since the previous match, starting at an endpoint of its edge and
+         * ending at an endpoint of this one. Empty if both lie on the same edge, or if this match
+         * is not connected.
+         */
+        public final List<Long> path;
+
+        Match(int index, long from, long to, double fraction, double lon, double lat,
+              boolean connected, List<Long> path) {
+            this.index = index;
+            this.from = from;
+            this.to = to;
+            this.fraction = fraction;
+            this.lon = lon;
+            this.lat = lat;
+            this.connected = connected;
+            this.path = path;
+        }
+
+        @Override
+        public String toString() {
+            return "Match(" + index + ": " + from + "-" + to + " @ " + fraction + ")";
+        }
+    }
+
+    /** The candidates of one GPS point, and their Viterbi scores. Reused across points. */
+    private static final class Step {
+        int index;
+        double lon, lat;
+        int size;
+        final long[] from = new long[MAX_CANDIDATES];
+        final long[] to = new long[MAX_CANDIDATES];
+        final double[] fraction = new double[MAX_CANDIDATES];
+        final double[] length = new double[MAX_CANDIDATES];
+        final double[] lons = new double[MAX_CANDIDATES];
+        final double[] lats = new double[MAX_CANDIDATES];
+        /** Distance from the GPS point to each candidate. */
+        final double[] offset = new double[MAX_CANDIDATES];
+        /** Log-probability of the best candidate sequence ending at each candidate. */
+        final double[] score = new double[MAX_CANDIDATES];
+        /** Index of each candidate's predecessor in the previous step. */
+        final int[] back = new int[MAX_CANDIDATES];
+
+        int best() {
+            int b = 0;
+            for (int i = 1; i < size; i += 1) {
+                if (score[i] > score[b]) {
+                    b = i;
+                }
+            }
+            return b;
+        }
+    }
+
+    /**
+     * Matches one trace. Not thread-safe; use one session per trace. Call <code>finish</code>
+     * after the last point to emit the remaining matches.
+     */
+    public class Session {
+        private final GraphSnapshot graph;
+        private final Listener listener;
+        private final RouteSearch search = new RouteSearch();
+
+        /** Steps not yet emitted, as a ring buffer starting at <code>head</code>. */
+        private final Step[] window = new Step[MAX_LAG];
+        private int head, size;
+        /** Candidate chosen at each window position, when emitting. */
+        private final int[] chosen = new int[MAX_LAG];
+        private int numPoints;
+
+        /** The last match emitted, and the GPS point it was for. */
+        private Match last;
+        private double lastLon, lastLat, lastLength;
+        /** Whether the candidate sequence broke since the last match was emitted. */
+        private boolean broken = true;
+
+        /*
+         * Direct-mapped cache of road distances between vertices. A non-negative entry is an
+         * exact distance. A negative entry -b records that the distance exceeds b.
+         */
+        private final long[] cacheFrom = new long[CACHE_SIZE];
+        private final long[] cacheTo = new long[CACHE_SIZE];
+        private final double[] cacheDist = new double[CACHE_SIZE];
+        /**
+         * Road distances from each candidate endpoint of the previous step to each candidate
+         * endpoint of the newest, for the transition being scored, or infinity beyond the bound.
+         * Endpoint <code>2 * i</code> is <code>from[i]</code> and <code>2 * i + 1</code> is
+         * <code>to[i]</code>; the distance from endpoint p to endpoint q is at
+         * <code>p * ENDPOINTS + q</code>.
+         */
+        private final double[] endpointDist = new double[ENDPOINTS * ENDPOINTS];
+
+        /* Candidate collection state, read by the spatial index visitor. */
+        private final SpatialGrid.Visitor collector = this::collect;
+        private Step collecting;
+        private double pointX, pointY, unitsPerMile;
+
+        Session(GraphSnapshot graph, Listener listener) {
+            this.graph = graph;
+            this.listener = listener;
+            search.reset(graph);
+            for (int i = 0; i < window.length; i += 1) {
+                window[i] = new Step();
+            }
+            Arrays.fill(cacheFrom, RouteSearch.NO_TARGET);
+        }
+
+        /**
+         * Adds the next point of the trace. Points with no road within the candidate radius are
+         * skipped. If no road path links the candidates of this point to those of the previous
+         * one, the trace is split there: pending matches are emitted and matching starts again.
+         * @param lon The point's longitude.
+         * @param lat The point's latitude.
+         */
+        public void add(double lon, double lat) {
+            int index = numPoints;
+            numPoints += 1;
+            if (size == window.length) {
+                emitBestThrough(0);
+            }
+            Step step = window[(head + size) % window.length];
+            collectCandidates(step, index, lon, lat);
+            if (step.size == 0) {
+                return;
+            }
+
+            if (size > 0 && !transition(window[(head + size - 1) % window.length], step)) {
+                emitBestThrough(size - 1);
+                broken = true;
+            }
+            if (size == 0) {
+                for (int j = 0; j < step.size; j += 1) {
+                    step.score[j] = emission(step.offset[j]);
+                    step.back[j] = -1;
+                }
+            }
+            size += 1;
+            emitConverged();
+        }
+
+        /** Emits every pending match. The session may be reused for a new, unrelated trace. */
+        public void finish() {
+            if (size > 0) {
+                emitBestThrough(size - 1);
+            }
+            broken = true;
+            last = null;
+        }
+
+        /** Finds the candidates of a point, closest first. */
+        private void collectCandidates(Step step, int index, double lon, double lat) {
+            step.index = index;
+            step.lon = lon;
+            step.lat = lat;
+            step.size = 0;
+            pointX = GraphDB.projectToX(lon, lat);
+            pointY = GraphDB.projectToY(lon, lat);
+            double dy = GraphDB.projectToY(lon, lat + PROBE) - pointY;
+            unitsPerMile = Math.abs(dy) / GraphDB.distance(lon, lat, lon, lat + PROBE);
+            collecting = step;
+            graph.edgesNear(pointX, pointY, radius * unitsPerMile, collector);
+            collecting = null;
+        }
+
+        /** Considers every edge at a vertex near the point being collected. */
+        private void collect(long v, double px, double py) {
+            Step step = collecting;
+            GraphSnapshot.Node vn = graph.node(v);
+            long[] edges = graph.edges(v);
+            for (int e = 0; e < edges.length; e += 2) {
+                GraphSnapshot.Node wn = graph.node(edges[e]);
+                double ex = wn.x - vn.x, ey = wn.y - vn.y;
+                double len2 = ex * ex + ey * ey;
+                double t = len2 == 0 ? 0
+                        : ((pointX - vn.x) * ex + (pointY - vn.y) * ey) / len2;
+                t = Math.max(0, Math.min(1, t));
+                double lon = vn.lon + t * (wn.lon - vn.lon);
+                double lat = vn.lat + t * (wn.lat - vn.lat);
+                double offset = GraphDB.distance(step.lon, step.lat, lon, lat);
+                if (offset > radius) {
+                    continue;
+                }
+                long from = Math.min(v, wn.id), to = Math.max(v, wn.id);
+                insertCandidate(step, from, to, from == v ? t : 1 - t, lon, lat, offset,
+                        GraphDB.distance(vn.lon, vn.lat, wn.lon, wn.lat));
+            }
+        }
+
+        /** Adds a candidate, keeping the step's candidates sorted by offset and deduplicated. */
+        private void insertCandidate(Step s, long from, long to, double fraction,
+                                     double lon, double lat, double offset, double length) {
+            for (int i = 0; i < s.size; i += 1) {
+                if (s.from[i] == from && s.to[i] == to) {
+                    return;
+                }
+            }
+            int i = Math.min(s.size, MAX_CANDIDATES - 1);
+            if (i == MAX_CANDIDATES - 1 && s.size == MAX_CANDIDATES && offset >= s.offset[i]) {
+                return;
+            }
+            for (; i > 0 && s.offset[i - 1] > offset; i -= 1) {
+                s.from[i] = s.from[i - 1];
+                s.to[i] = s.to[i - 1];
+                s.fraction[i] = s.fraction[i - 1];
+                s.lons[i] = s.lons[i - 1];
+                s.lats[i] = s.lats[i - 1];
+                s.offset[i] = s.offset[i - 1];
+                s.length[i] = s.length[i - 1];
+            }
+            s.from[i] = from;
+            s.to[i] = to;
+            s.fraction[i] = fraction;
+            s.lons[i] = lon;
+            s.lats[i] = lat;
+            s.offset[i] = offset;
+            s.length[i] = length;
+            s.size = Math.min(s.size + 1, MAX_CANDIDATES);
+        }
+
+        /**
+         * Runs one Viterbi step from <code>a</code> to <code>b</code>.
+         * @return Whether any candidate of <code>b</code> is reachable.
+         */
+        private boolean transition(Step a, Step b) {
+            double straight = GraphDB.distance(a.lon, a.lat, b.lon, b.lat);
+            double bound = MAX_DETOUR * straight + 2 * radius;
+            prepareDistances(a, b, bound);
+            boolean reachable = false;
+            for (int j = 0; j < b.size; j += 1) {
+                double best = Double.NEGATIVE_INFINITY;
+                int back = -1;
+                for (int i = 0; i < a.size; i += 1) {
+                    double road = roadDistance(a, i, b, j);
+                    if (road > bound) {
+                        continue;
+                    }
+                    double score = a.score[i] - Math.abs(road - straight) / beta;
+                    if (score > best) {
+                        best = score;
+                        back = i;
+                    }
+                }
+                b.score[j] = best + emission(b.offset[j]);
+                b.back[j] = back;
+                reachable |= back >= 0;
+            }
+            return reachable;
+        }
+
+        /**
+         * Fills <code>endpointDist</code> for the transition from <code>a</code> to
+         * <code>b</code>, up to <code>bound</code>. Distances still in the cache from earlier
+         * steps are reused; any other pair is searched for, at most once per distinct source
+         * endpoint. The cache is only a shortcut, so a pair it has lost is searched again.
+         */
+        private void prepareDistances(Step a, Step b, double bound) {
+            for (int i = 0; i < 2 * a.size; i += 1) {
+                long source = i % 2 == 0 ? a.from[i / 2] : a.to[i / 2];
+                int earlier = firstIndexOf(a, i, source);
+                if (earlier < i) {
+                    System.arraycopy(endpointDist, earlier * ENDPOINTS, endpointDist,
+                            i * ENDPOINTS, 2 * b.size);
+                    continue;
+                }
+                boolean searched = false;
+                for (int j = 0; j < 2 * b.size; j += 1) {
+                    long target = j % 2 == 0 ? b.from[j / 2] : b.to[j / 2];
+                    double d = cacheGet(source, target, bound);
+                    if (Double.isNaN(d)) {
+                        if (!searched) {
+                            search.search(source, RouteSearch.NO_TARGET, bound);
+                            searched = true;
+                        }
+                        d = search.distanceTo(target);
+                        cachePut(source, target, d <= bound ? d : -bound);
+                        if (d > bound) {
+                            d = Double.POSITIVE_INFINITY;
+                        }
+                    }
+                    endpointDist[i * ENDPOINTS + j] = d;
+                }
+            }
+        }
+
+        /** Returns the first endpoint of <code>a</code>, up to <code>i</code>, that is source. */
+        private int firstIndexOf(Step a, int i, long source) {
+            for (int k = 0; k < i; k += 1) {
+                if ((k % 2 == 0 ? a.from[k / 2] : a.to[k / 2]) == source) {
+                    return k;
+                }
+            }
+            return i;
+        }
+
+        /**
+         * Returns the road distance from candidate <code>i</code> of <code>a</code> to candidate
+         * <code>j</code> of <code>b</code>, or infinity if it exceeds the bound passed to
+         * <code>prepareDistances</code>.
+         */
+        private double roadDistance(Step a, int i, Step b, int j) {
+            if (a.from[i] == b.from[j] && a.to[i] == b.to[j]) {
+                return Math.abs(a.fraction[i] - b.fraction[j]) * a.length[i];
+            }
+            double best = Double.POSITIVE_INFINITY;
+            for (int p = 0; p < 2; p += 1) {
+                double toU = (p == 0 ? a.fraction[i] : 1 - a.fraction[i]) * a.length[i];
+                for (int q = 0; q < 2; q += 1) {
+                    double fromW = (q == 0 ? b.fraction[j] : 1 - b.fraction[j]) * b.length[j];
+                    double d = endpointDist[(2 * i + p) * ENDPOINTS + 2 * j + q];
+                    best = Math.min(best, toU + d + fromW);
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Returns the cached distance between two vertices, infinity if it is known to exceed
+         * <code>bound</code>, or NaN if the cache cannot tell.
+         */
+        private double cacheGet(long u, long w, double bound) {
+            int k = cacheSlot(u, w);
+            if (cacheFrom[k] != u || cacheTo[k] != w) {
+                return Double.NaN;
+            }
+            double d = cacheDist[k];
+            if (d >= 0) {
+                return d;
+            }
+            return -d >= bound ? Double.POSITIVE_INFINITY : Double.NaN;
+        }
+
+        private void cachePut(long u, long w, double d) {
+            int k = cacheSlot(u, w);
+            cacheFrom[k] = u;
+            cacheTo[k] = w;
+            cacheDist[k] = d;
+        }
+
+        /** Emits the longest prefix of the window that every candidate sequence agrees on. */
+        private void emitConverged() {
+            Step newest = window[(head + size - 1) % window.length];
+            int mask = 0;
+            for (int j = 0; j < newest.size; j += 1) {
+                if (newest.score[j] > Double.NEGATIVE_INFINITY) {
+                    mask |= 1 << j;
+                }
+            }
+            for (int k = size - 1; k >= 0; k -= 1) {
+                if (Integer.bitCount(mask) == 1) {
+                    chosen[k] = Integer.numberOfTrailingZeros(mask);
+                    emitThrough(k);
+                    return;
+                }
+                if (k > 0) {
+                    Step s = window[(head + k) % window.length];
+                    int previous = 0;
+                    for (int j = 0; j < s.size; j += 1) {
+                        if ((mask & (1 << j)) != 0 && s.back[j] >= 0) {
+                            previous |= 1 << s.back[j];
+                        }
+                    }
+                    mask = previous;
+                }
+            }
+        }
+
+        /**
+         * Emits the window through position <code>k</code>, following the most likely candidate
+         * sequence ending at the newest step.
+         */
+        private void emitBestThrough(int k) {
+            int c = window[(head + size - 1) % window.length].best();
+            for (int p = size - 1; p > k; p -= 1) {
+                c = window[(head + p) % window.length].back[c];
+            }
+            chosen[k] = c;
+            emitThrough(k);
+        }
+
+        /**
+         * Emits the window through position <code>k</code>, whose chosen candidate is already
+         * set in <code>chosen</code>, and removes those steps from the window.
+         */
+        private void emitThrough(int k) {
+            for (int p = k; p > 0; p -= 1) {
+                int back = window[(head + p) % window.length].back[chosen[p]];
+                chosen[p - 1] = Math.max(back, 0);
+            }
+            for (int p = 0; p <= k; p += 1) {
+                emit(window[(head + p) % window.length], chosen[p]);
+            }
+            head = (head + k + 1) % window.length;
+            size -= k + 1;
+        }
+
+        private void emit(Step s, int c) {
+            boolean connected = false;
+            List<Long> path = Collections.emptyList();
+            if (last != null && !broken) {
+                if (last.from == s.from[c] && last.to == s.to[c]) {
+                    connected = true;
+                } else {
+                    path = connect(s, c);
+                    connected = !path.isEmpty();
+                }
+            }
+            last = new Match(s.index, s.from[c], s.to[c], s.fraction[c], s.lons[c], s.lats[c],
+                    connected, path);
+            lastLon = s.lon;
+            lastLat = s.lat;
+            lastLength = s.length[c];
+            broken = false;
+            listener.matched(last);
+        }
+
+        /** Returns the vertices along the shortest road path from the last match to a candidate. */
+        private List<Long> connect(Step s, int c) {
+            double straight = GraphDB.distance(lastLon, lastLat, s.lon, s.lat);
+            double bound = MAX_DETOUR * straight + 2 * radius;
+            double best = Double.POSITIVE_INFINITY;
+            List<Long> path = Collections.emptyList();
+            for (int p = 0; p < 2; p += 1) {
+                long u = p == 0 ? last.from : last.to;
+                double toU = (p == 0 ? last.fraction : 1 - last.fraction) * lastLength;
+                search.search(u, RouteSearch.NO_TARGET, bound);
+                for (int q = 0; q < 2; q += 1) {
+                    long w = q == 0 ? s.from[c] : s.to[c];
+                    double fromW = (q == 0 ? s.fraction[c] : 1 - s.fraction[c]) * s.length[c];
+                    double d = toU + search.distanceTo(w) + fromW;
+                    if (d < best) {
+                        best = d;
+                        path = search.pathTo(w);
+                    }
+                }
+            }
+            return path;
+        }
+
+        private double emission(double offset) {
+            return -0.5 * (offset / sigma) * (offset / sigma);
+        }
+    }
+
+    private static int cacheSlot(long u, long w) {
+        long h = (u * 0x9E3779B97F4A7C15L) ^ (w * 0xC2B2AE3D27D4EB4FL);
+        return (int) (h ^ (h >>> 29)) & (CACHE_SIZE - 1);
+    }
+
+    /** Default standard deviation of GPS noise: about 4 meters, as measured by Newson and Krumm. */
+    private static final double DEFAULT_SIGMA = 0.0025;
+    /** Default transition scale: about 5 meters. */
+    private static final double DEFAULT_BETA = 0.003;
+    /** Default candidate radius: about 50 meters. */
+    private static final double DEFAULT_RADIUS = 0.031;
+    /** Most candidates kept per point. */
+    private static final int MAX_CANDIDATES = 8;
+    /** Most points held back before the oldest is emitted without waiting for convergence. */
+    private static final int MAX_LAG = 32;
+    /** Road distances longer than this times the straight-line distance, plus slack, are cut. */
+    private static final double MAX_DETOUR = 2.0;
+    /** Most candidate endpoints per point. */
+    private static final int ENDPOINTS = 2 * MAX_CANDIDATES;
+    /** Number of cached vertex-to-vertex distances per session; a power of two. */
+    private static final int CACHE_SIZE = 1 << 12;
+    /** Latitude step used to measure the local scale of the projection. */
+    private static final double PROBE = 1e-4;
+}
@@ -48,11 +48,15 @@ public class MapServer {
     private static GraphDB graph;
     /** The <code>Rasterer</code> responsible for computing the shortest path and directions. */
     private static Rasterer rasterer;
+    /** Generates and caches vector tiles of the map data. */
+    private static VectorTiles vectorTiles;
     /**
      * The most recently-requested shortest-paths route. The <code>renderImage</code> method redraws
      * this route every time a new rastering result is requested from the browser.
      */
     private static List<Long> route;
+    /** The geometry of <code>route</code>, simplified as needed for each raster depth. */
+    private static RoutePolyline routeLine;
     /** The configured Gson Java serializer. */
     private static Gson gson;
 
@@ -63,7 +67,9 @@ public class MapServer {
     public static void initialize() {
         graph = new GraphDB(OSM_DB_PATH);
         rasterer = new Rasterer();
+        vectorTiles = new VectorTiles(graph);
         route = Collections.emptyList();
+        routeLine = RoutePolyline.EMPTY;
         gson = new GsonBuilder()
                 .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
                 .create();
@@ -108,6 +114,19 @@ public class MapServer {
             return gson.toJson(resultParams);
         });
 
+        /* Define the vector tile endpoint, an alternative to the rastered PNG images. */
+        get("/tiles/:depth/:x/:y", (req, res) -> {
+            byte[] tile = null;
+            try {
+                tile = vectorTiles.tile(Integer.parseInt(req.params(":depth")),
+                        Integer.parseInt(req.params(":x")), Integer.parseInt(req.params(":y")));
+            } catch (IllegalArgumentException e) {
+                halt(HALT_RESPONSE, e.getMessage());
+            }
+            res.type(VectorTiles.MEDIA_TYPE);
+            return tile;
+        });
+
         /* Define the routing endpoint for HTTP GET requests. */
         get("/route", (req, res) -> {
             RouteRequestParams  params = null;
@@ -118,14 +137,17 @@ public class MapServer {
             }
             route = Router.shortestPath(graph,
                     params.startLon, params.startLat, params.endLon, params.endLat);
+            routeLine = RoutePolyline.of(graph, route);
             String directions = getDirectionsText(Router.routeDirections(graph, route));
-            RouteResultParams routeParams = new RouteResultParams(!route.isEmpty(), directions);
+            RouteResultParams routeParams = new RouteResultParams(!route.isEmpty(), directions,
+                    routeLine.encoded(params.depth));
             return gson.toJson(routeParams);
         });
 
         /* Define the API endpoint for clearing the current route. */
         get("/clear_route", (req, res) -> {
             route = Collections.emptyList();
+            routeLine = RoutePolyline.EMPTY;
             return true;
         });
 
@@ -174,8 +196,9 @@ public class MapServer {
                 }
             }
         }
-        /* If there is a route, draw it. */
-        if (route != null && !route.isEmpty()) {
+        /* If there is a route, draw it, simplified for the depth of the tiles. */
+        RoutePolyline line = routeLine;
+        if (line != null && line.size() > 0) {
             double ullon = resultParams.rasterUlLon;
             double ullat = resultParams.rasterUlLat;
             double lrlon = resultParams.rasterLrLon;
@@ -186,13 +209,14 @@ public class MapServer {
             g2d.setColor(MapServer.ROUTE_STROKE_COLOR);
             g2d.setStroke(new BasicStroke(MapServer.ROUTE_STROKE_WIDTH_PX,
                     BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            route.stream().reduce((v, w) -> {
-                g2d.drawLine((int) ((graph.lon(v) - ullon) * (1 / wdpp)),
-                        (int) ((ullat - graph.lat(v)) * (1 / hdpp)),
-                        (int) ((graph.lon(w) - ullon) * (1 / wdpp)),
-                        (int) ((ullat - graph.lat(w)) * (1 / hdpp)));
-                return w;
-            });
+            int depth = Math.max(0, Math.min(Rasterer.MAX_DEPTH, resultParams.depth));
+            int[] kept = line.simplified(depth);
+            int[] xs = new int[kept.length], ys = new int[kept.length];
+            for (int i = 0; i < kept.length; i += 1) {
+                xs[i] = (int) ((line.lon(kept[i]) - ullon) * (1 / wdpp));
+                ys[i] = (int) ((ullat - line.lat(kept[i])) * (1 / hdpp));
+            }
+            g2d.drawPolyline(xs, ys, kept.length);
         }
         return img;
     }
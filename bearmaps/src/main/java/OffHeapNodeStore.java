@@ -0,0 +1,275 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Storage for OSM node coordinates, kept outside of the Java heap. During parsing every
+ * <code>node</code> element has to be remembered until the ways that reference it are seen, but
+ * most nodes belong to buildings and other non-road ways and are never used. Storing them as
+ * fixed-size (id, lon, lat) records in a single off-heap buffer avoids creating millions of
+ * short-lived objects and the heap growth and GC pauses that come with them.
+ *
+ * Once parsing is done the graph keeps the store, read-only, so that an osmChange that turns a
+ * footpath into a road can connect nodes that were never part of the graph. That costs 24 bytes
+ * of off-heap memory per node of the extract for as long as the graph lives.
+ *
+ * Records are appended in file order, sorted by ID once by <code>seal</code> (OSM extracts are
+ * usually sorted already, in which case no work is done), and then looked up by binary search.
+ * The buffer is either a direct <code>ByteBuffer</code> or, for extracts of at least
+ * <code>MAPPED_EXTRACT_BYTES</code>, a memory-mapped temporary file, which lets the operating
+ * system page records out under memory pressure.
+ *
+ * A single buffer is limited to 2 GB, or about 89 million nodes.
+ */
+final class OffHeapNodeStore implements AutoCloseable {
+    /** Bytes per record: a long ID followed by a double longitude and a double latitude. */
+    private static final int RECORD = 24;
+    private static final int LON = 8, LAT = 16;
+    /** Number of records the buffer initially has room for. */
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    /**
+     * Size of the smallest OSM extract whose nodes are stored in a mapped file. At roughly 100
+     * bytes of XML per node, that is about 5 million nodes, or 120 MB of records.
+     */
+    static final long MAPPED_EXTRACT_BYTES = 512L << 20;
+
+    /** The temporary file backing a mapped store, or <code>null</code> for a direct store. */
+    private final File file;
+    /** The channel of <code>file</code>, or <code>null</code> once the store is finished. */
+    private FileChannel channel;
+    /** Whether <code>finish</code> has been called, after which no records can be added. */
+    private boolean finished;
+    private ByteBuffer buf;
+    private int size;
+    /** Whether the records are known to be sorted by ID. */
+    private boolean sorted = true;
+    private long lastId = Long.MIN_VALUE;
+
+    private OffHeapNodeStore(File file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.buf = allocate(INITIAL_CAPACITY);
+    }
+
+    /** Returns a new store backed by a direct <code>ByteBuffer</code>. */
+    static OffHeapNodeStore direct() {
+        try {
+            return new OffHeapNodeStore(null, null);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns a new store backed by a memory-mapped temporary file, which is deleted on close.
+     * @return A new mapped <code>OffHeapNodeStore</code>.
+     * @throws IOException If the temporary file cannot be created.
+     */
+    static OffHeapNodeStore mapped() throws IOException {
+        File f = File.createTempFile("bearmaps-nodes", ".bin");
+        f.deleteOnExit();
+        return new OffHeapNodeStore(f, new RandomAccessFile(f, "rw").getChannel());
+    }
+
+    /**
+     * Returns a new store suited to an OSM extract of the given size: mapped for large extracts,
+     * direct otherwise.
+     * @param extractBytes The size of the OSM file in bytes.
+     * @return A new <code>OffHeapNodeStore</code>.
+     * @throws IOException If a temporary file is needed but cannot be created.
+     */
+    static OffHeapNodeStore forExtract(long extractBytes) throws IOException {
+        return extractBytes >= MAPPED_EXTRACT_BYTES ? mapped() : direct();
+    }
+
+    /** Returns true if this store is backed by a memory-mapped file. */
+    boolean isMapped() {
+        return file != null;
+    }
+
+    /**
+     * Appends a node. IDs may arrive in any order, but sorted input avoids a sort in
+     * <code>seal</code>.
+     * @param id The node ID.
+     * @param lon The node's longitude.
+     * @param lat The node's latitude.
+     * @throws IllegalStateException If the store has been finished.
+     */
+    void add(long id, double lon, double lat) {
+        if (finished) {
+            throw new IllegalStateException("Node store is finished.");
+        }
+        if (size == buf.capacity() / RECORD) {
+            grow();
+        }
+        int at = size * RECORD;
+        buf.putLong(at, id);
+        buf.putDouble(at + LON, lon);
+        buf.putDouble(at + LAT, lat);
+        size += 1;
+        if (id < lastId) {
+            sorted = false;
+        }
+        lastId = Math.max(lastId, id);
+    }
+
+    /** Returns the number of nodes stored. */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sorts the records by ID so that they can be looked up. Does nothing if they are already
+     * sorted. Further calls to <code>add</code> are allowed, but require another seal.
+     */
+    void seal() {
+        if (sorted) {
+            return;
+        }
+        heapSort();
+        sorted = true;
+    }
+
+    /**
+     * Returns the index of the node with the given ID. The store must be sealed.
+     * @param id The node ID.
+     * @return The index of the node's record, or -1 if it is not stored.
+     */
+    int indexOf(long id) {
+        if (!sorted) {
+            throw new IllegalStateException("Node store must be sealed before lookups.");
+        }
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midId = idAt(mid);
+            if (midId < id) {
+                lo = mid + 1;
+            } else if (midId > id) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the ID of the record at index <code>i</code>. */
+    long idAt(int i) {
+        return buf.getLong(i * RECORD);
+    }
+
+    /** Returns the longitude of the record at index <code>i</code>. */
+    double lon(int i) {
+        return buf.getDouble(i * RECORD + LON);
+    }
+
+    /** Returns the latitude of the record at index <code>i</code>. */
+    double lat(int i) {
+        return buf.getDouble(i * RECORD + LAT);
+    }
+
+    /**
+     * Seals the store for good, once every node has been added, so that it can be kept for
+     * lookups. A mapped store also closes and deletes its backing file: the mapping, and so every
+     * record, stays readable until the store is garbage-collected, but no file handle is held.
+     */
+    void finish() {
+        seal();
+        finished = true;
+        closeFile();
+    }
+
+    /** Releases the buffer and deletes the backing file, if any. */
+    @Override
+    public void close() {
+        buf = null;
+        size = 0;
+        finished = true;
+        closeFile();
+    }
+
+    private void closeFile() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+        /* Some platforms refuse to delete a mapped file; deleteOnExit covers them. */
+        file.delete();
+    }
+
+    /** Doubles the capacity of the buffer, preserving its records. */
+    private void grow() {
+        long capacity = 2L * buf.capacity() / RECORD;
+        if (capacity * RECORD > Integer.MAX_VALUE) {
+            capacity = Integer.MAX_VALUE / RECORD;
+            if (capacity == size) {
+                throw new IllegalStateException("Too many nodes for an OffHeapNodeStore.");
+            }
+        }
+        ByteBuffer old = buf;
+        try {
+            buf = allocate((int) capacity);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to grow node store: " + e, e);
+        }
+        if (file == null) {
+            /* A mapped file keeps its contents when re-mapped larger; a direct buffer does not. */
+            old.clear();
+            old.limit(size * RECORD);
+            buf.put(old);
+            buf.clear();
+        }
+    }
+
+    private ByteBuffer allocate(int records) throws IOException {
+        int bytes = records * RECORD;
+        if (file == null) {
+            return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        }
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes)
+                .order(ByteOrder.nativeOrder());
+    }
+
+    /** Sorts records by ID in place, so that no heap memory proportional to size is needed. */
+    private void heapSort() {
+        for (int i = size / 2 - 1; i >= 0; i -= 1) {
+            siftDown(i, size);
+        }
+        for (int end = size - 1; end > 0; end -= 1) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    private void siftDown(int i, int n) {
+        while (2 * i + 1 < n) {
+            int child = 2 * i + 1;
+            if (child + 1 < n && idAt(child + 1) > idAt(child)) {
+                child += 1;
+            }
+            if (idAt(i) >= idAt(child)) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int a = i * RECORD, b = j * RECORD;
+        for (int k = 0; k < RECORD; k += 8) {
+            long t = buf.getLong(a + k);
+            buf.putLong(a + k, buf.getLong(b + k));
+            buf.putLong(b + k, t);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Parses osmChange XML diffs into a <code>GraphChange</code> using an XML SAX parser.
+ *  An osmChange document groups complete <code>node</code> and <code>way</code> elements under
+ *  <code>create</code>, <code>modify</code> and <code>delete</code> sections. See the OSM
+ *  documentation on <a href="https://wiki.openstreetmap.org/wiki/OsmChange">OsmChange</a>.
+ *
+ *  Way validity follows the same highway rules as <code>GraphBuildingHandler</code>, so a change
+ *  produces exactly the graph that a full rebuild from the patched map would.
+ */
+public class OsmChangeHandler extends DefaultHandler {
+    private final GraphChange change;
+    /** The enclosing section: "create", "modify", "delete", or "" outside of any section. */
+    private String action = "";
+    /** The element currently being read: "node", "way", or "". */
+    private String activeState = "";
+
+    private long id;
+    private double lon, lat;
+    private String name;
+    private String highway;
+    private String maxSpeed;
+    private final List<Long> refs = new ArrayList<>();
+
+    /**
+     * Create a new OsmChangeHandler.
+     * @param change The change to record parsed edits into.
+     */
+    public OsmChangeHandler(GraphChange change) {
+        this.change = change;
+    }
+
+    /**
+     * Called at the beginning of an element.
+     * @param uri The Namespace URI, or the empty string if the element has no Namespace URI or if
+     *            Namespace processing is not being performed.
+     * @param localName The local name (without prefix), or the empty string if Namespace processing
+     *                  is not being performed.
+     * @param qName The qualified name (with prefix), or the empty string if qualified names are not
+     *              available. This tells us which element we're looking at.
+     * @param attributes The attributes attached to the element.
+     * @throws SAXException Any SAX exception, possibly wrapping another exception.
+     */
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes)
+            throws SAXException {
+        if (qName.equals("create") || qName.equals("modify") || qName.equals("delete")) {
+            action = qName;
+        } else if (qName.equals("node") || qName.equals("way")) {
+            activeState = qName;
+            id = Long.parseLong(attributes.getValue("id"));
+            name = null;
+            highway = null;
+            maxSpeed = null;
+            refs.clear();
+            if (qName.equals("node") && !action.equals("delete")) {
+                lon = Double.parseDouble(attributes.getValue("lon"));
+                lat = Double.parseDouble(attributes.getValue("lat"));
+            }
+        } else if (activeState.equals("way") && qName.equals("nd")) {
+            refs.add(Long.parseLong(attributes.getValue("ref")));
+        } else if (!activeState.isEmpty() && qName.equals("tag")) {
+            String k = attributes.getValue("k");
+            String v = attributes.getValue("v");
+            if (k.equals("name")) {
+                name = v;
+            } else if (k.equals("highway")) {
+                highway = v;
+            } else if (k.equals("maxspeed")) {
+                maxSpeed = v;
+            }
+        }
+    }
+
+    /**
+     * Receive notification of the end of an element, recording finished nodes and ways.
+     * @param uri The Namespace URI, or the empty string if the element has no Namespace URI or
+     *            if Namespace processing is not being performed.
+     * @param localName The local name (without prefix), or the empty string if Namespace
+     *                  processing is not being performed.
+     * @param qName The qualified name (with prefix), or the empty string if qualified names are
+     *              not available.
+     * @throws SAXException  Any SAX exception, possibly wrapping another exception.
+     */
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (qName.equals("node") && activeState.equals("node")) {
+            if (action.equals("delete")) {
+                change.deleteNode(id);
+            } else if (!action.isEmpty()) {
+                change.putNode(id, lon, lat, name);
+            }
+            activeState = "";
+        } else if (qName.equals("way") && activeState.equals("way")) {
+            if (action.equals("delete")) {
+                change.deleteWay(id);
+            } else if (!action.isEmpty()) {
+                long[] nodeIds = new long[refs.size()];
+                for (int i = 0; i < nodeIds.length; i += 1) {
+                    nodeIds[i] = refs.get(i);
+                }
+                boolean valid = highway != null
+                        && GraphBuildingHandler.ALLOWED_HIGHWAY_TYPES.contains(highway);
+                change.putWay(new GraphSnapshot.Way(id, nodeIds, name, maxSpeed, valid));
+            }
+            activeState = "";
+        } else if (qName.equals(action)) {
+            action = "";
+        }
+    }
+}
@@ -0,0 +1,234 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The geometry of a route, simplified for display at each raster depth.
+ *
+ * Routes are simplified with the Douglas-Peucker algorithm, using a tolerance of
+ * <code>TOLERANCE_PX</code> pixels at the requested depth, so that the simplified route is
+ * indistinguishable from the full one when drawn at that depth. Simplified routes can be
+ * serialized with Google's encoded polyline format, which is far smaller than a list of
+ * coordinates. Each depth's simplification is computed at most once.
+ *
+ * @source https://developers.google.com/maps/documentation/utilities/polylinealgorithm
+ */
+final class RoutePolyline {
+    /** An empty route. */
+    static final RoutePolyline EMPTY = new RoutePolyline(new double[0], new double[0]);
+
+    private final double[] lons, lats;
+    /** Indices of the vertices kept at each depth, computed on first use. */
+    private final int[][] simplified = new int[Rasterer.MAX_DEPTH + 1][];
+
+    private RoutePolyline(double[] lons, double[] lats) {
+        this.lons = lons;
+        this.lats = lats;
+    }
+
+    /**
+     * Returns the geometry of a route.
+     * @param g The graph the route was found in.
+     * @param route The route's vertex IDs.
+     * @return The route's geometry.
+     */
+    static RoutePolyline of(GraphDB g, List<Long> route) {
+        double[] lons = new double[route.size()], lats = new double[route.size()];
+        for (int i = 0; i < lons.length; i += 1) {
+            lons[i] = g.lon(route.get(i));
+            lats[i] = g.lat(route.get(i));
+        }
+        return new RoutePolyline(lons, lats);
+    }
+
+    /** Returns the number of vertices in the full route. */
+    int size() {
+        return lons.length;
+    }
+
+    double lon(int i) {
+        return lons[i];
+    }
+
+    double lat(int i) {
+        return lats[i];
+    }
+
+    /**
+     * Returns the vertices to draw at a raster depth.
+     * @param depth The raster depth, from 0 to <code>Rasterer.MAX_DEPTH</code>.
+     * @return The indices of the kept vertices, in route order. Always includes both ends.
+     */
+    synchronized int[] simplified(int depth) {
+        if (depth < 0 || depth > Rasterer.MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth out of range: " + depth);
+        }
+        if (simplified[depth] == null) {
+            simplified[depth] = simplify(lons, lats, tolerance(depth));
+        }
+        return simplified[depth];
+    }
+
+    /**
+     * Returns the route simplified for a raster depth, as a Google encoded polyline.
+     * @param depth The raster depth, from 0 to <code>Rasterer.MAX_DEPTH</code>.
+     * @return The encoded polyline, which is empty for an empty route.
+     */
+    String encoded(int depth) {
+        return encode(lons, lats, simplified(depth));
+    }
+
+    /**
+     * Returns the simplification tolerance at a depth, in degrees of latitude. Tiles at depth
+     * <code>d</code> cover <code>ROOT_LONDPP / 2^d</code> degrees of longitude per pixel.
+     */
+    static double tolerance(int depth) {
+        double lonDPP = MapServer.ROOT_LONDPP / (1 << depth);
+        return TOLERANCE_PX * lonDPP * Math.cos(Math.toRadians(MapServer.ROOT_ULLAT));
+    }
+
+    /**
+     * Simplifies a polyline with the Douglas-Peucker algorithm. Distances are measured with
+     * longitudes scaled by the cosine of the first vertex's latitude, so that a degree of
+     * latitude and a scaled degree of longitude are about the same length.
+     * @param lons The longitudes of the vertices.
+     * @param lats The latitudes of the vertices.
+     * @param tolerance The largest distance, in degrees of latitude, between a dropped vertex
+     *                  and the simplified line.
+     * @return The indices of the kept vertices, in order.
+     */
+    static int[] simplify(double[] lons, double[] lats, double tolerance) {
+        int n = lons.length;
+        if (n <= 2) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i += 1) {
+                all[i] = i;
+            }
+            return all;
+        }
+        double scale = Math.cos(Math.toRadians(lats[0]));
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int kept = 2;
+
+        /* Explicit stack of (first, last) ranges, so long routes cannot overflow the call stack. */
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        double tolerance2 = tolerance * tolerance;
+        while (top > 0) {
+            int last = stack[--top], first = stack[--top];
+            double ax = lons[first] * scale, ay = lats[first];
+            double dx = lons[last] * scale - ax, dy = lats[last] - ay;
+            double len2 = dx * dx + dy * dy;
+            int farthest = -1;
+            double max = tolerance2;
+            for (int i = first + 1; i < last; i += 1) {
+                double px = lons[i] * scale - ax, py = lats[i] - ay;
+                double d2;
+                if (len2 == 0) {
+                    d2 = px * px + py * py;
+                } else {
+                    double t = Math.max(0, Math.min(1, (px * dx + py * dy) / len2));
+                    double ex = px - t * dx, ey = py - t * dy;
+                    d2 = ex * ex + ey * ey;
+                }
+                if (d2 > max) {
+                    max = d2;
+                    farthest = i;
+                }
+            }
+            if (farthest < 0) {
+                continue;
+            }
+            keep[farthest] = true;
+            kept += 1;
+            if (top + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = first;
+            stack[top++] = farthest;
+            stack[top++] = farthest;
+            stack[top++] = last;
+        }
+
+        int[] result = new int[kept];
+        for (int i = 0, k = 0; i < n; i += 1) {
+            if (keep[i]) {
+                result[k++] = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Encodes some vertices of a polyline in Google's encoded polyline format, with five decimal
+     * places of precision.
+     * @param lons The longitudes of the vertices.
+     * @param lats The latitudes of the vertices.
+     * @param indices The indices of the vertices to encode, in order.
+     * @return The encoded polyline.
+     */
+    static String encode(double[] lons, double[] lats, int[] indices) {
+        StringBuilder sb = new StringBuilder(indices.length * 8);
+        long prevLat = 0, prevLon = 0;
+        for (int i : indices) {
+            long lat = Math.round(lats[i] * PRECISION), lon = Math.round(lons[i] * PRECISION);
+            encodeValue(sb, lat - prevLat);
+            encodeValue(sb, lon - prevLon);
+            prevLat = lat;
+            prevLon = lon;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decodes a polyline in Google's encoded polyline format.
+     * @param encoded The encoded polyline.
+     * @return A pair of arrays: the longitudes and the latitudes of the vertices.
+     */
+    static double[][] decode(String encoded) {
+        double[] lons = new double[encoded.length()], lats = new double[encoded.length()];
+        int n = 0;
+        long lat = 0, lon = 0;
+        int[] pos = {0};
+        while (pos[0] < encoded.length()) {
+            lat += decodeValue(encoded, pos);
+            lon += decodeValue(encoded, pos);
+            lats[n] = lat / PRECISION;
+            lons[n] = lon / PRECISION;
+            n += 1;
+        }
+        return new double[][]{Arrays.copyOf(lons, n), Arrays.copyOf(lats, n)};
+    }
+
+    private static void encodeValue(StringBuilder sb, long value) {
+        long v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            sb.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        sb.append((char) (v + 63));
+    }
+
+    private static long decodeValue(String encoded, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (pos[0] >= encoded.length()) {
+                throw new IllegalArgumentException("Truncated polyline.");
+            }
+            b = encoded.charAt(pos[0]++) - 63;
+            result |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        return (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+    }
+
+    /** Largest distance, in pixels, between the full route and the route as drawn. */
+    private static final double TOLERANCE_PX = 0.5;
+    /** Scale of coordinates in an encoded polyline. */
+    private static final double PRECISION = 1e5;
+}
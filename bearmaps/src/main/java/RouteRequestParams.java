@@ -19,10 +19,14 @@ public class RouteRequestParams {
     public final double endLat;
     /** The end point longitude. */
     public final double endLon;
+    /** The raster depth the route will be displayed at, which sets its simplification. */
+    public final int depth;
 
     /**
      * Validate and return a parameter map of the required request parameters.
-     * Requires that all input parameters are doubles.
+     * Requires that all input parameters are doubles. The optional <code>depth</code> parameter
+     * must be an integer between 0 and <code>Rasterer.MAX_DEPTH</code>, and defaults to the
+     * deepest level.
      * @param req The queryParams map from a Spark HTTP Request.
      * @return A populated map of input parameter to it's numerical value.
      */
@@ -42,6 +46,15 @@ public class RouteRequestParams {
                 }
             }
         }
+        if (req.containsKey(DEPTH_PARAM)) {
+            try {
+                builder.setDepth(Integer.parseInt(req.get(DEPTH_PARAM)[0]));
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                String msg = String.format("Incorrect parameters: unable to parse %s.",
+                        DEPTH_PARAM);
+                throw new IllegalArgumentException(msg);
+            }
+        }
         return builder.create();
     }
 
@@ -50,18 +63,21 @@ public class RouteRequestParams {
      * instance. Use the the factory method, from, instead.
      */
     private RouteRequestParams() {
-        this(0.0, 0.0, 0.0, 0.0);
+        this(0.0, 0.0, 0.0, 0.0, Rasterer.MAX_DEPTH);
     }
 
-    private RouteRequestParams(double startLat, double startLon, double endLat, double endLon) {
+    private RouteRequestParams(double startLat, double startLon, double endLat, double endLon,
+                               int depth) {
         this.startLat = startLat;
         this.startLon = startLon;
         this.endLat = endLat;
         this.endLon = endLon;
+        this.depth = depth;
     }
 
     public static class Builder {
         private double startLat, startLon, endLat, endLon;
+        private int depth = Rasterer.MAX_DEPTH;
 
         /**
          * Creates a RouteRequestParams.Builder instance that can be used to build
@@ -71,7 +87,7 @@ public class RouteRequestParams {
         }
 
         public RouteRequestParams create() {
-            return new RouteRequestParams(startLat, startLon, endLat, endLon);
+            return new RouteRequestParams(startLat, startLon, endLat, endLon, depth);
         }
 
         public Builder setStartLat(double value) {
@@ -94,6 +110,15 @@ public class RouteRequestParams {
             return this;
         }
 
+        public Builder setDepth(int value) {
+            if (value < 0 || value > Rasterer.MAX_DEPTH) {
+                String msg = String.format("Incorrect parameters: depth %d out of range.", value);
+                throw new IllegalArgumentException(msg);
+            }
+            this.depth = value;
+            return this;
+        }
+
         private Builder set(String field, double value) {
             switch (field) {
                 case "start_lat":
@@ -120,4 +145,6 @@ public class RouteRequestParams {
     private static final String[] REQUIRED_PARAMS = {
         "start_lat", "start_lon", "end_lat", "end_lon"
     };
+    /** Optional key for the raster depth the route will be displayed at. */
+    private static final String DEPTH_PARAM = "depth";
 }
@@ -11,19 +11,24 @@ class RouteResultParams {
     private final boolean routingSuccess;
     /** The HTML-friendly String representation of the navigation directions. */
     private final String directions;
+    /** The route, simplified for the requested depth, as a Google encoded polyline. */
+    private final String polyline;
 
     /** Private constructor to prevent direct instantiation of a RouteResultParams instance. */
     private RouteResultParams() {
-        this(false, "");
+        this(false, "", "");
     }
 
     /**
-     * Constructs a RouteResultParams instance and sets the routingSuccess and distance fields.
+     * Constructs a RouteResultParams instance and sets the routingSuccess, directions and
+     * polyline fields.
      * @param routingSuccess The routingSuccess field.
      * @param directions The directions field.
+     * @param polyline The polyline field.
      */
-    RouteResultParams(boolean routingSuccess, String directions) {
+    RouteResultParams(boolean routingSuccess, String directions, String polyline) {
         this.routingSuccess = routingSuccess;
         this.directions = directions;
+        this.polyline = polyline;
     }
 }
@@ -0,0 +1,422 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A reusable shortest-paths search over a <code>GraphSnapshot</code>. Runs A* when a target is
+ * given, using the great-circle distance to the target as the heuristic, and Dijkstra's algorithm
+ * otherwise.
+ *
+ * All per-vertex search state lives in flat arrays indexed through an open-addressing table of
+ * vertex IDs. Starting a new search only bumps an epoch counter instead of clearing the arrays,
+ * so once the arrays have grown to fit the largest search, running further searches allocates
+ * nothing. A RouteSearch is not thread-safe; use one per thread.
+ */
+final class RouteSearch {
+    /** Restricts a search to a subset of the graph's vertices. */
+    interface VertexFilter {
+        boolean allows(long v);
+    }
+
+    /** Assigns a cost to traversing an edge, in place of its length. */
+    interface EdgeWeight {
+        /**
+         * Returns the cost of the edge from <code>v</code> to <code>w</code>.
+         * @param v The edge's source.
+         * @param w The edge's destination.
+         * @param way The ID of the way the edge belongs to.
+         * @param length The edge's great-circle length in miles.
+         * @return The edge's cost, which must be at least <code>length</code> so that the A*
+         * heuristic stays admissible.
+         */
+        double weight(long v, long w, long way, double length);
+    }
+
+    /** Sentinel meaning "no target": run Dijkstra until the frontier is exhausted or bounded. */
+    static final long NO_TARGET = Long.MIN_VALUE;
+
+    private GraphSnapshot g;
+    private VertexFilter filter;
+    private EdgeWeight weight;
+
+    /* Open-addressing table from vertex ID to slot. A slot is in use iff its epoch is current. */
+    private long[] ids;
+    private int[] epochs;
+    private int epoch;
+    private int mask;
+    private int used;
+
+    /* Per-slot labels. */
+    private double[] dist;
+    private int[] parent;
+    private boolean[] settled;
+    private int[] heapPos;
+
+    /* Binary min-heap of slots, keyed by dist + heuristic. */
+    private int[] heap;
+    private double[] heapKey;
+    private int heapSize;
+
+    /** The target of the last search, for the A* heuristic. */
+    private double targetLon, targetLat;
+    private boolean hasTarget;
+
+    /** Creates a RouteSearch with room for a small search; it grows as needed. */
+    RouteSearch() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Points this search at a graph, typically the current snapshot of a <code>GraphDB</code>,
+     * and removes any filter or edge weight.
+     * @param graph The graph to search.
+     * @return This RouteSearch.
+     */
+    RouteSearch reset(GraphSnapshot graph) {
+        this.g = graph;
+        this.filter = null;
+        this.weight = null;
+        return this;
+    }
+
+    /**
+     * Restricts subsequent searches to vertices accepted by <code>f</code>. The source of a
+     * search is always allowed.
+     * @param f The filter, or <code>null</code> to allow every vertex.
+     */
+    void setFilter(VertexFilter f) {
+        this.filter = f;
+    }
+
+    /**
+     * Makes subsequent searches minimize total edge weight instead of total length. Distances
+     * reported by <code>distanceTo</code> are then total weights.
+     * @param w The edge weight, or <code>null</code> to use edge lengths.
+     */
+    void setEdgeWeight(EdgeWeight w) {
+        this.weight = w;
+    }
+
+    /**
+     * Returns the shortest path between two vertices.
+     * @param s The source vertex.
+     * @param t The target vertex.
+     * @return The vertex IDs along the path from <code>s</code> to <code>t</code>, or an empty
+     * <code>List</code> if <code>t</code> cannot be reached.
+     */
+    List<Long> shortestPath(long s, long t) {
+        search(s, t, Double.POSITIVE_INFINITY);
+        return pathTo(t);
+    }
+
+    /**
+     * Returns the shortest-path distances from <code>s</code> to each of <code>targets</code>.
+     * @param s The source vertex.
+     * @param targets The target vertices.
+     * @return Distances in miles, with <code>Double.POSITIVE_INFINITY</code> for unreachable
+     * targets.
+     */
+    double[] distances(long s, long[] targets) {
+        search(s, NO_TARGET, Double.POSITIVE_INFINITY);
+        double[] result = new double[targets.length];
+        for (int i = 0; i < targets.length; i += 1) {
+            result[i] = distanceTo(targets[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Runs a search from <code>s</code>. Stops once <code>t</code> is settled, or once every
+     * vertex within <code>maxDist</code> of <code>s</code> is settled. Afterwards,
+     * <code>distanceTo</code> and <code>pathTo</code> report results for settled vertices.
+     * @param s The source vertex.
+     * @param t The target vertex, or <code>NO_TARGET</code>.
+     * @param maxDist Distance bound in miles.
+     * @return The distance to <code>t</code>, or <code>Double.POSITIVE_INFINITY</code> if it was
+     * not reached (or no target was given).
+     */
+    double search(long s, long t, double maxDist) {
+        clear();
+        if (g == null || g.node(s) == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        GraphSnapshot.Node target = t == NO_TARGET ? null : g.node(t);
+        hasTarget = target != null;
+        if (hasTarget) {
+            targetLon = target.lon;
+            targetLat = target.lat;
+        }
+
+        ensureCapacity(1);
+        int src = slot(s);
+        dist[src] = 0;
+        push(src, heuristic(g.node(s)));
+
+        while (heapSize > 0) {
+            int v = pop();
+            if (dist[v] > maxDist) {
+                break;
+            }
+            settled[v] = true;
+            long vid = ids[v];
+            if (vid == t) {
+                return dist[v];
+            }
+            GraphSnapshot.Node vn = g.node(vid);
+            long[] edges = g.edges(vid);
+            if (ensureCapacity(edges.length / 2)) {
+                v = find(vid);
+            }
+            for (int i = 0; i < edges.length; i += 2) {
+                long wid = edges[i];
+                if (filter != null && !filter.allows(wid)) {
+                    continue;
+                }
+                GraphSnapshot.Node wn = g.node(wid);
+                double d = dist[v] + edgeCost(vn, wn, edges[i + 1]);
+                int w = slot(wid);
+                if (settled[w] || d >= dist[w]) {
+                    continue;
+                }
+                dist[w] = d;
+                parent[w] = v;
+                double key = d + heuristic(wn);
+                if (heapPos[w] >= 0) {
+                    decrease(w, key);
+                } else {
+                    push(w, key);
+                }
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /** Returns the cost of an edge: its length, or its weight if an edge weight is set. */
+    private double edgeCost(GraphSnapshot.Node v, GraphSnapshot.Node w, long way) {
+        double length = GraphDB.distance(v.lon, v.lat, w.lon, w.lat);
+        return weight == null ? length : weight.weight(v.id, w.id, way, length);
+    }
+
+    /**
+     * Returns the distance to <code>v</code> found by the last search.
+     * @param v A vertex ID.
+     * @return The distance if <code>v</code> was settled, otherwise
+     * <code>Double.POSITIVE_INFINITY</code>.
+     */
+    double distanceTo(long v) {
+        int i = find(v);
+        return i >= 0 && settled[i] ? dist[i] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the path to <code>v</code> found by the last search.
+     * @param v A vertex ID.
+     * @return The vertex IDs from the source to <code>v</code>, or an empty <code>List</code> if
+     * <code>v</code> was not settled.
+     */
+    List<Long> pathTo(long v) {
+        int i = find(v);
+        if (i < 0 || !settled[i]) {
+            return Collections.emptyList();
+        }
+        List<Long> path = new ArrayList<>();
+        for (; i >= 0; i = parent[i]) {
+            path.add(ids[i]);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /** Returns the graph currently being searched. */
+    GraphSnapshot graph() {
+        return g;
+    }
+
+    private double heuristic(GraphSnapshot.Node n) {
+        return hasTarget ? GraphDB.distance(n.lon, n.lat, targetLon, targetLat) : 0;
+    }
+
+    /** Forgets the previous search in O(1), except when the epoch counter wraps around. */
+    private void clear() {
+        epoch += 1;
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(epochs, 0);
+            epoch = 1;
+        }
+        used = 0;
+        heapSize = 0;
+    }
+
+    /** Returns the slot of vertex <code>v</code>, or -1 if it has not been reached. */
+    private int find(long v) {
+        for (int i = hash(v) & mask; epochs[i] == epoch; i = (i + 1) & mask) {
+            if (ids[i] == v) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Grows the table, if needed, so that <code>extra</code> more vertices can be added while
+     * keeping it at most half full. Slots move when the table grows.
+     * @param extra The number of vertices about to be added.
+     * @return Whether the table grew.
+     */
+    private boolean ensureCapacity(int extra) {
+        boolean grew = false;
+        while (2 * (used + extra) > ids.length) {
+            rehash();
+            grew = true;
+        }
+        return grew;
+    }
+
+    /**
+     * Returns the slot of vertex <code>v</code>, creating fresh labels for it if necessary. The
+     * caller must have made room with <code>ensureCapacity</code>.
+     */
+    private int slot(long v) {
+        int i = hash(v) & mask;
+        for (; epochs[i] == epoch; i = (i + 1) & mask) {
+            if (ids[i] == v) {
+                return i;
+            }
+        }
+        used += 1;
+        epochs[i] = epoch;
+        ids[i] = v;
+        dist[i] = Double.POSITIVE_INFINITY;
+        parent[i] = -1;
+        settled[i] = false;
+        heapPos[i] = -1;
+        return i;
+    }
+
+    /** Doubles the table, moving every live slot and remapping parent and heap references. */
+    private void rehash() {
+        long[] oldIds = ids;
+        int[] oldEpochs = epochs;
+        double[] oldDist = dist;
+        int[] oldParent = parent;
+        boolean[] oldSettled = settled;
+        int[] oldHeap = heap;
+        double[] oldHeapKey = heapKey;
+        int oldEpoch = epoch;
+        int oldHeapSize = heapSize;
+
+        allocate(oldIds.length * 2);
+        epoch = 1;
+        int[] moved = new int[oldIds.length];
+        for (int i = 0; i < oldIds.length; i += 1) {
+            if (oldEpochs[i] != oldEpoch) {
+                continue;
+            }
+            int j = hash(oldIds[i]) & mask;
+            while (epochs[j] == epoch) {
+                j = (j + 1) & mask;
+            }
+            epochs[j] = epoch;
+            ids[j] = oldIds[i];
+            dist[j] = oldDist[i];
+            settled[j] = oldSettled[i];
+            heapPos[j] = -1;
+            moved[i] = j;
+            used += 1;
+        }
+        for (int i = 0; i < oldIds.length; i += 1) {
+            if (oldEpochs[i] == oldEpoch) {
+                parent[moved[i]] = oldParent[i] < 0 ? -1 : moved[oldParent[i]];
+            }
+        }
+        for (int k = 0; k < oldHeapSize; k += 1) {
+            int s = moved[oldHeap[k]];
+            heap[k] = s;
+            heapPos[s] = k;
+            heapKey[s] = oldHeapKey[oldHeap[k]];
+        }
+        heapSize = oldHeapSize;
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        epochs = new int[capacity];
+        dist = new double[capacity];
+        parent = new int[capacity];
+        settled = new boolean[capacity];
+        heapPos = new int[capacity];
+        heap = new int[capacity];
+        heapKey = new double[capacity];
+        mask = capacity - 1;
+        used = 0;
+        epoch = 1;
+        heapSize = 0;
+    }
+
+    private static int hash(long v) {
+        long h = v * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void push(int s, double key) {
+        heapKey[s] = key;
+        heap[heapSize] = s;
+        heapPos[s] = heapSize;
+        heapSize += 1;
+        siftUp(heapSize - 1);
+    }
+
+    private int pop() {
+        int top = heap[0];
+        heapPos[top] = -1;
+        heapSize -= 1;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapPos[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void decrease(int s, double key) {
+        heapKey[s] = key;
+        siftUp(heapPos[s]);
+    }
+
+    private void siftUp(int k) {
+        int s = heap[k];
+        while (k > 0) {
+            int p = (k - 1) >>> 1;
+            if (heapKey[heap[p]] <= heapKey[s]) {
+                break;
+            }
+            heap[k] = heap[p];
+            heapPos[heap[k]] = k;
+            k = p;
+        }
+        heap[k] = s;
+        heapPos[s] = k;
+    }
+
+    private void siftDown(int k) {
+        int s = heap[k];
+        while (2 * k + 1 < heapSize) {
+            int c = 2 * k + 1;
+            if (c + 1 < heapSize && heapKey[heap[c + 1]] < heapKey[heap[c]]) {
+                c += 1;
+            }
+            if (heapKey[s] <= heapKey[heap[c]]) {
+                break;
+            }
+            heap[k] = heap[c];
+            heapPos[heap[k]] = k;
+            k = c;
+        }
+        heap[k] = s;
+        heapPos[s] = k;
+    }
+
+    /** Initial table capacity; must be a power of two. */
+    private static final int INITIAL_CAPACITY = 1 << 10;
+}
@@ -1,5 +1,10 @@
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -9,6 +14,10 @@ import java.util.regex.Pattern;
  * finding routes between two points on the map.
  */
 public class Router {
+    /** Per-thread search state, reused across requests so that routing allocates little. */
+    private static final ThreadLocal<RouteSearch> SEARCH =
+            ThreadLocal.withInitial(RouteSearch::new);
+
     /**
      * Return a <code>List</code> of vertex IDs corresponding to the shortest path from a given
      * starting coordinate and destination coordinate.
@@ -22,8 +31,191 @@ public class Router {
     public static List<Long> shortestPath(GraphDB g,
                                           double stlon, double stlat,
                                           double destlon, double destlat) {
-        // TODO
-        return Collections.emptyList();
+        GraphSnapshot snapshot = g.snapshot();
+        long s = snapshot.closest(stlon, stlat);
+        long t = snapshot.closest(destlon, destlat);
+        return SEARCH.get().reset(snapshot).shortestPath(s, t);
+    }
+
+    /**
+     * Return up to <code>k</code> reasonably different routes between a starting coordinate and a
+     * destination coordinate, shortest first. The first route is the one returned by
+     * <code>shortestPath</code>.
+     *
+     * Uses the penalty method: after each search, the edges of the route found are made more
+     * expensive and the search is repeated, which pushes later searches onto different roads. A
+     * route is kept only if it shares at most <code>MAX_SIMILARITY</code> of its length with
+     * every route already kept, and is at most <code>MAX_STRETCH</code> times the length of the
+     * shortest route. A candidate that fails either test is still penalized, and at most
+     * <code>MAX_ATTEMPTS_PER_ROUTE * k</code> candidates are tried. All searches reuse the same
+     * <code>RouteSearch</code> state.
+     * @param g <code>GraphDB</code> data source.
+     * @param stlon The longitude of the starting coordinate.
+     * @param stlat The latitude of the starting coordinate.
+     * @param destlon The longitude of the destination coordinate.
+     * @param destlat The latitude of the destination coordinate.
+     * @param k The maximum number of routes to return.
+     * @return A <code>List</code> of at most <code>k</code> routes, each a <code>List</code> of
+     * vertex IDs, or an empty <code>List</code> if the destination cannot be reached.
+     */
+    public static List<List<Long>> alternativeRoutes(GraphDB g,
+                                                     double stlon, double stlat,
+                                                     double destlon, double destlat, int k) {
+        GraphSnapshot snapshot = g.snapshot();
+        long s = snapshot.closest(stlon, stlat);
+        long t = snapshot.closest(destlon, destlat);
+        RouteSearch search = SEARCH.get().reset(snapshot);
+
+        List<List<Long>> routes = new ArrayList<>();
+        List<Map<Long, Set<Long>>> routeEdges = new ArrayList<>();
+        List<Long> best = search.shortestPath(s, t);
+        if (best.isEmpty() || k <= 0) {
+            return routes;
+        }
+        routes.add(best);
+        if (s == t) {
+            return routes;
+        }
+        double bestLength = length(snapshot, best);
+        routeEdges.add(edgesOf(best));
+
+        EdgePenalties penalties = new EdgePenalties();
+        search.setEdgeWeight((v, w, way, length) -> length * penalties.factor(v, w));
+        penalize(penalties, best);
+
+        for (int i = 0; routes.size() < k && i < MAX_ATTEMPTS_PER_ROUTE * k; i += 1) {
+            List<Long> candidate = search.shortestPath(s, t);
+            double length = length(snapshot, candidate);
+            if (length > MAX_STRETCH * bestLength) {
+                /* Penalties raise weights, not lengths, so a later candidate may still be
+                 * short enough. Penalize this one so that the search moves past it. */
+                penalize(penalties, candidate);
+                continue;
+            }
+            boolean distinct = true;
+            for (Map<Long, Set<Long>> edges : routeEdges) {
+                if (sharedLength(snapshot, candidate, edges) > MAX_SIMILARITY * length) {
+                    distinct = false;
+                    break;
+                }
+            }
+            if (distinct) {
+                routes.add(candidate);
+                routeEdges.add(edgesOf(candidate));
+            }
+            penalize(penalties, candidate);
+        }
+        search.setEdgeWeight(null);
+        return routes;
+    }
+
+    /** Multiplies the weight of every edge on <code>route</code>, in both directions. */
+    private static void penalize(EdgePenalties penalties, List<Long> route) {
+        for (int i = 1; i < route.size(); i += 1) {
+            penalties.penalize(route.get(i - 1), route.get(i));
+        }
+    }
+
+    /** Returns the undirected edges of <code>route</code>, as adjacency sets. */
+    private static Map<Long, Set<Long>> edgesOf(List<Long> route) {
+        Map<Long, Set<Long>> edges = new HashMap<>();
+        for (int i = 1; i < route.size(); i += 1) {
+            long v = route.get(i - 1), w = route.get(i);
+            edges.computeIfAbsent(v, x -> new HashSet<>()).add(w);
+            edges.computeIfAbsent(w, x -> new HashSet<>()).add(v);
+        }
+        return edges;
+    }
+
+    /** Returns the length of the part of <code>route</code> that runs along <code>edges</code>. */
+    private static double sharedLength(GraphSnapshot g, List<Long> route,
+                                       Map<Long, Set<Long>> edges) {
+        double shared = 0;
+        for (int i = 1; i < route.size(); i += 1) {
+            long v = route.get(i - 1), w = route.get(i);
+            Set<Long> out = edges.get(v);
+            if (out != null && out.contains(w)) {
+                shared += length(g, route.subList(i - 1, i + 1));
+            }
+        }
+        return shared;
+    }
+
+    /** Returns the length of <code>route</code> in miles, or infinity if it is empty. */
+    private static double length(GraphSnapshot g, List<Long> route) {
+        if (route.isEmpty()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double total = 0;
+        for (int i = 1; i < route.size(); i += 1) {
+            GraphSnapshot.Node v = g.node(route.get(i - 1)), w = g.node(route.get(i));
+            total += GraphDB.distance(v.lon, v.lat, w.lon, w.lat);
+        }
+        return total;
+    }
+
+    /**
+     * The weight factors of penalized edges, in an open-addressing table of primitive arrays
+     * keyed by each edge's endpoints in increasing order, so that looking up a weight during a
+     * search neither boxes nor allocates. The search's own vertex slots cannot hold them, since
+     * they are reassigned on every search.
+     */
+    private static final class EdgePenalties {
+        private long[] from = new long[INITIAL_PENALTIES], to = new long[INITIAL_PENALTIES];
+        /** The factor of each slot, or 0 if the slot is empty. */
+        private double[] factor = new double[INITIAL_PENALTIES];
+        private int size;
+
+        /** Returns the factor of the edge between <code>v</code> and <code>w</code>. */
+        double factor(long v, long w) {
+            int i = find(Math.min(v, w), Math.max(v, w));
+            return factor[i] == 0 ? 1 : factor[i];
+        }
+
+        /** Multiplies the factor of the edge between <code>v</code> and <code>w</code>. */
+        void penalize(long v, long w) {
+            if (2 * (size + 1) > factor.length) {
+                grow();
+            }
+            long a = Math.min(v, w), b = Math.max(v, w);
+            int i = find(a, b);
+            if (factor[i] == 0) {
+                from[i] = a;
+                to[i] = b;
+                factor[i] = PENALTY_FACTOR;
+                size += 1;
+            } else {
+                factor[i] *= PENALTY_FACTOR;
+            }
+        }
+
+        /** Returns the slot of edge (a, b), or the empty slot where it would go. */
+        private int find(long a, long b) {
+            int mask = factor.length - 1;
+            long h = (a * 0x9E3779B97F4A7C15L + b) * 0xC2B2AE3D27D4EB4FL;
+            int i = (int) (h ^ (h >>> 32)) & mask;
+            while (factor[i] != 0 && (from[i] != a || to[i] != b)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        /** Doubles the table, reinserting every edge. */
+        private void grow() {
+            long[] oldFrom = from, oldTo = to;
+            double[] oldFactor = factor;
+            from = new long[2 * oldFactor.length];
+            to = new long[from.length];
+            factor = new double[from.length];
+            for (int j = 0; j < oldFactor.length; j += 1) {
+                if (oldFactor[j] != 0) {
+                    int i = find(oldFrom[j], oldTo[j]);
+                    from[i] = oldFrom[j];
+                    to[i] = oldTo[j];
+                    factor[i] = oldFactor[j];
+                }
+            }
+        }
     }
 
     /**
@@ -38,6 +230,17 @@ public class Router {
         return Collections.emptyList();
     }
 
+    /** Factor applied to an edge's weight each time a route found by the search uses it. */
+    private static final double PENALTY_FACTOR = 1.4;
+    /** Starting capacity of an <code>EdgePenalties</code> table, a power of two. */
+    private static final int INITIAL_PENALTIES = 64;
+    /** Largest fraction of its length an alternative route may share with another route. */
+    private static final double MAX_SIMILARITY = 0.7;
+    /** Largest ratio of an alternative route's length to the shortest route's length. */
+    private static final double MAX_STRETCH = 1.5;
+    /** Searches allowed per requested route before giving up on finding more. */
+    private static final int MAX_ATTEMPTS_PER_ROUTE = 4;
+
     /**
      * Class to represent a navigation direction, which consists of 3 attributes:
      * a direction to go, a way, and the distance to travel for.
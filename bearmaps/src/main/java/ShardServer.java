@@ -0,0 +1,211 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves <code>GraphShard</code>s over TCP to <code>ShardedRouter</code>s in other processes,
+ * which reach them through a <code>SocketTransport</code>. One server may host any number of
+ * shards, so a partitioned map can be spread over as many machines as it needs.
+ *
+ * A connection carries any number of calls, one at a time. Each request frame is the shard
+ * number, the request length and the request bytes; each response frame is a status byte
+ * followed either by the response length and bytes (<code>OK</code>) or by an error message
+ * (<code>ERROR</code>). Requests themselves are the encoding documented in
+ * <code>GraphShard</code>. Each connection is served by its own thread.
+ */
+final class ShardServer implements AutoCloseable {
+    /** Status byte of a successful response. */
+    static final byte OK = 0;
+    /** Status byte of a failed response, followed by a message written with writeUTF. */
+    static final byte ERROR = 1;
+    /** The largest request or response, in bytes, either side will accept. */
+    static final int MAX_FRAME = 64 << 20;
+
+    private final ServerSocket server;
+    private final Map<Integer, GraphShard> shards = new HashMap<>();
+    /** Open client connections, closed along with the server. */
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "shard-server");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Starts serving the given shards on the loopback interface.
+     * @param shards The shards to serve, each under its own number.
+     * @param port The port to listen on, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    ShardServer(List<GraphShard> shards, int port) throws IOException {
+        this(shards, new ServerSocket(port, 0, InetAddress.getLoopbackAddress()));
+    }
+
+    /**
+     * Starts serving the given shards on an already bound socket.
+     * @param shards The shards to serve, each under its own number.
+     * @param server The bound server socket, which this server closes when it is closed.
+     */
+    ShardServer(List<GraphShard> shards, ServerSocket server) {
+        this.server = server;
+        for (GraphShard s : shards) {
+            this.shards.put(s.id(), s);
+        }
+        workers.execute(this::accept);
+    }
+
+    /** Returns the port this server listens on. */
+    int port() {
+        return server.getLocalPort();
+    }
+
+    /** Stops accepting connections and closes the open ones. */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Socket c : clients) {
+            c.close();
+        }
+        workers.shutdownNow();
+    }
+
+    /** Accepts connections until the server socket is closed. */
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket client = server.accept();
+                workers.execute(() -> serve(client));
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /** Answers calls on one connection until the client closes it. */
+    private void serve(Socket client) {
+        clients.add(client);
+        try (Socket c = client) {
+            c.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(c.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(c.getOutputStream()));
+            while (!Thread.currentThread().isInterrupted()) {
+                int shard;
+                try {
+                    shard = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                byte[] request = readFrame(in);
+                GraphShard s = shards.get(shard);
+                byte[] response;
+                try {
+                    if (s == null) {
+                        throw new IOException("No such shard here: " + shard);
+                    }
+                    response = s.handle(request);
+                } catch (IOException | RuntimeException e) {
+                    out.writeByte(ERROR);
+                    out.writeUTF(String.valueOf(e.getMessage()));
+                    out.flush();
+                    continue;
+                }
+                out.writeByte(OK);
+                writeFrame(out, response);
+                out.flush();
+            }
+        } catch (SocketException e) {
+            /* The client went away, or the server is closing. */
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    /**
+     * Loads one shard file.
+     * @param file A file written by <code>GraphPartitioner.write</code>.
+     * @return The shard.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    static GraphShard read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            return GraphShard.read(in);
+        }
+    }
+
+    /**
+     * Writes a length-prefixed frame.
+     * @param out The stream to write to.
+     * @param bytes The frame's contents.
+     * @throws IOException If the stream cannot be written.
+     */
+    static void writeFrame(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a length-prefixed frame.
+     * @param in The stream to read from.
+     * @return The frame's contents.
+     * @throws IOException If the stream is truncated or the frame is larger than
+     * <code>MAX_FRAME</code>.
+     */
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("Bad frame length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Loads shards written by <code>GraphPartitioner.main</code> and serves them. Only the
+     * served shards are ever read, so the map as a whole never has to fit in one process.
+     *
+     * Usage: java ShardServer [shard directory] [port] [shard numbers...]
+     * With no shard numbers, every shard in the directory is served.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File dir = new File(args[0]);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 2; i < args.length; i += 1) {
+            ids.add(Integer.parseInt(args[i]));
+        }
+        for (int i = 0; args.length == 2 && GraphShard.file(dir, i).isFile(); i += 1) {
+            ids.add(i);
+        }
+        List<GraphShard> served = new ArrayList<>();
+        for (int id : ids) {
+            served.add(read(GraphShard.file(dir, id)));
+        }
+        ShardServer server = new ShardServer(served, new ServerSocket(Integer.parseInt(args[1])));
+        System.out.println("Serving " + served.size() + " shards on port " + server.port());
+        /* The server's threads are daemons, so keep the process alive. */
+        Thread.currentThread().join();
+    }
+}
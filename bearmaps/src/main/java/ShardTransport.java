@@ -0,0 +1,21 @@
+import java.io.IOException;
+
+/**
+ * Carries encoded requests from a <code>ShardedRouter</code> to the <code>GraphShard</code>s it
+ * coordinates. <code>SocketTransport</code> sends them over TCP to shards hosted by
+ * <code>ShardServer</code>s in other processes; <code>LoopbackTransport</code> calls shards in
+ * the same process, for tests and for maps small enough to shard within one JVM.
+ */
+interface ShardTransport {
+    /**
+     * Sends a request to a shard and waits for its response.
+     * @param shard The number of the shard to call.
+     * @param request The encoded request.
+     * @return The encoded response.
+     * @throws IOException If the shard cannot be reached or rejects the request.
+     */
+    byte[] call(int shard, byte[] request) throws IOException;
+
+    /** Returns the number of shards reachable through this transport. */
+    int numShards();
+}
@@ -0,0 +1,156 @@
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A hash map split into a fixed number of shards, each an ordinary <code>HashMap</code>, that can
+ * be copied without copying its entries. A copy shares every shard with the map it came from and
+ * copies a shard only the first time it writes to it, so copying a map and then changing k of its
+ * entries costs O(<code>SHARDS</code>) plus the size of at most k shards, rather than O(N).
+ *
+ * This is what lets <code>GraphSnapshot.apply</code> produce a new version of the graph in time
+ * proportional to the size of the change. Once copied, the two maps are independent: a write to
+ * either one copies the shard it lands in first.
+ *
+ * Null keys are not supported, and the entry set is read-only: entries can only be changed
+ * through <code>put</code> and <code>remove</code>.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ */
+final class ShardedMap<K, V> extends AbstractMap<K, V> {
+    /** The shards, or <code>null</code> where a shard has never held an entry. */
+    private final HashMap<K, V>[] shards;
+    /** Whether each shard belongs to this map alone, and so may be written in place. */
+    private final boolean[] owned;
+    private int size;
+
+    /** Creates an empty map. */
+    ShardedMap() {
+        this(newShards(), 0);
+    }
+
+    private ShardedMap(HashMap<K, V>[] shards, int size) {
+        this.shards = shards;
+        this.owned = new boolean[SHARDS];
+        this.size = size;
+    }
+
+    /**
+     * Returns a copy of this map that shares all of its shards. Takes O(<code>SHARDS</code>)
+     * time.
+     * @return A new <code>ShardedMap</code> with the same entries.
+     */
+    ShardedMap<K, V> copy() {
+        /* Neither map may now write a shared shard in place. */
+        Arrays.fill(owned, false);
+        return new ShardedMap<>(shards.clone(), size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public V get(Object key) {
+        HashMap<K, V> shard = shards[shardOf(key)];
+        return shard == null ? null : shard.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        HashMap<K, V> shard = shards[shardOf(key)];
+        return shard != null && shard.containsKey(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        HashMap<K, V> shard = writable(shardOf(key));
+        int before = shard.size();
+        V old = shard.put(key, value);
+        size += shard.size() - before;
+        return old;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int i = shardOf(key);
+        if (!containsKey(key)) {
+            /* Avoid copying a shared shard just to find nothing to remove. */
+            return null;
+        }
+        size -= 1;
+        return writable(i).remove(key);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    /** Returns shard <code>i</code>, first copying it if it is shared with another map. */
+    private HashMap<K, V> writable(int i) {
+        if (!owned[i]) {
+            HashMap<K, V> shard = shards[i];
+            shards[i] = shard == null ? new HashMap<>() : new HashMap<>(shard);
+            owned[i] = true;
+        }
+        return shards[i];
+    }
+
+    private static int shardOf(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (SHARDS - 1);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> HashMap<K, V>[] newShards() {
+        return (HashMap<K, V>[]) new HashMap[SHARDS];
+    }
+
+    /** Iterates over the entries of each shard in turn, without allowing them to be changed. */
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private int next;
+        private Iterator<Map.Entry<K, V>> current = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && next < shards.length) {
+                HashMap<K, V> shard = shards[next];
+                next += 1;
+                if (shard != null) {
+                    current = Collections.unmodifiableMap(shard).entrySet().iterator();
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+
+    /** Number of shards; a power of two. */
+    private static final int SHARDS = 1024;
+}
@@ -0,0 +1,279 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Coordinates shortest-path searches over a graph partitioned into <code>GraphShard</code>s, for
+ * maps too large to hold in a single <code>GraphDB</code>.
+ *
+ * On construction, the coordinator asks every shard for its boundary vertices, the shortest
+ * distances between them through the shard's interior, and the edges that leave the shard. These
+ * form a small overlay graph. A query connects its start and end vertices to the overlay with one
+ * request to each of their shards, searches the overlay locally, and then expands each overlay
+ * edge back into road vertices with one request per shard crossed. The result is identical to
+ * <code>Router.shortestPath</code> on the unpartitioned graph, up to ties between equal-length
+ * paths.
+ */
+public class ShardedRouter {
+    private final ShardTransport transport;
+    /** Boundary vertices of each shard. */
+    private final long[][] boundaries;
+    /** Overlay edges out of each boundary vertex. */
+    private final Map<Long, List<OverlayEdge>> overlay = new HashMap<>();
+
+    /**
+     * Creates a coordinator and loads the overlay graph from every shard.
+     * @param transport The transport used to reach the shards.
+     * @throws IOException If a shard cannot be reached.
+     */
+    public ShardedRouter(ShardTransport transport) throws IOException {
+        this.transport = transport;
+        int n = transport.numShards();
+        boundaries = new long[n][];
+        for (int k = 0; k < n; k += 1) {
+            boundaries[k] = GraphShard.readIds(call(k, GraphShard.BOUNDARY));
+
+            long[] b = boundaries[k];
+            DataInputStream clique = call(k, GraphShard.CLIQUE);
+            for (int i = 0; i < b.length; i += 1) {
+                for (int j = 0; j < b.length; j += 1) {
+                    double d = clique.readDouble();
+                    if (i != j && d < Double.POSITIVE_INFINITY) {
+                        addEdge(overlay, b[i], b[j], d, k);
+                    }
+                }
+            }
+
+            DataInputStream cut = call(k, GraphShard.CUT_EDGES);
+            for (int i = cut.readInt(); i > 0; i -= 1) {
+                long from = cut.readLong(), to = cut.readLong();
+                addEdge(overlay, from, to, cut.readDouble(), CROSSING);
+            }
+        }
+    }
+
+    /**
+     * Return a <code>List</code> of vertex IDs corresponding to the shortest path from a given
+     * starting coordinate and destination coordinate.
+     * @param stlon The longitude of the starting coordinate.
+     * @param stlat The latitude of the starting coordinate.
+     * @param destlon The longitude of the destination coordinate.
+     * @param destlat The latitude of the destination coordinate.
+     * @return The <code>List</code> of vertex IDs corresponding to the shortest path, or an empty
+     * <code>List</code> if there is none.
+     * @throws IOException If a shard cannot be reached.
+     */
+    public List<Long> shortestPath(double stlon, double stlat, double destlon, double destlat)
+            throws IOException {
+        long[] start = closest(stlon, stlat);
+        long[] dest = closest(destlon, destlat);
+        long s = start[0], t = dest[0];
+        int shardS = (int) start[1], shardT = (int) dest[1];
+        if (shardS < 0 || shardT < 0) {
+            return Collections.emptyList();
+        }
+        if (s == t) {
+            return Collections.singletonList(s);
+        }
+
+        /* Edges that only exist for this query: into and out of the overlay, and within a shard. */
+        Map<Long, List<OverlayEdge>> local = new HashMap<>();
+        double[] fromS = distances(shardS, s, boundaries[shardS]);
+        for (int i = 0; i < fromS.length; i += 1) {
+            if (fromS[i] < Double.POSITIVE_INFINITY) {
+                addEdge(local, s, boundaries[shardS][i], fromS[i], shardS);
+            }
+        }
+        double[] toT = distances(shardT, t, boundaries[shardT]);
+        for (int i = 0; i < toT.length; i += 1) {
+            if (toT[i] < Double.POSITIVE_INFINITY) {
+                addEdge(local, boundaries[shardT][i], t, toT[i], shardT);
+            }
+        }
+        if (shardS == shardT) {
+            double direct = distances(shardS, s, new long[]{t})[0];
+            if (direct < Double.POSITIVE_INFINITY) {
+                addEdge(local, s, t, direct, shardS);
+            }
+        }
+
+        Map<Long, Hop> best = searchOverlay(s, t, local);
+        if (!best.containsKey(t)) {
+            return Collections.emptyList();
+        }
+        List<Hop> hops = new ArrayList<>();
+        for (Hop h = best.get(t); h.edge != null; h = best.get(h.from)) {
+            hops.add(h);
+        }
+        Collections.reverse(hops);
+
+        List<Long> route = new ArrayList<>();
+        route.add(s);
+        for (Hop h : hops) {
+            if (h.edge.shard == CROSSING) {
+                route.add(h.edge.to);
+            } else {
+                List<Long> segment = path(h.edge.shard, h.from, h.edge.to);
+                route.addAll(segment.subList(1, segment.size()));
+            }
+        }
+        return route;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm over the overlay plus the query's local edges.
+     * @return The final label of every settled vertex, stopping once <code>t</code> is settled.
+     */
+    private Map<Long, Hop> searchOverlay(long s, long t, Map<Long, List<OverlayEdge>> local) {
+        Map<Long, Hop> settled = new HashMap<>();
+        Map<Long, Double> dist = new HashMap<>();
+        PriorityQueue<Hop> fringe = new PriorityQueue<>();
+        fringe.add(new Hop(s, null, 0));
+        dist.put(s, 0.0);
+        while (!fringe.isEmpty()) {
+            Hop h = fringe.poll();
+            long v = h.edge == null ? s : h.edge.to;
+            if (settled.containsKey(v)) {
+                continue;
+            }
+            settled.put(v, h);
+            if (v == t) {
+                break;
+            }
+            for (Map<Long, List<OverlayEdge>> edges : List.of(overlay, local)) {
+                for (OverlayEdge e : edges.getOrDefault(v, Collections.emptyList())) {
+                    double d = h.dist + e.weight;
+                    if (!settled.containsKey(e.to) && d < dist.getOrDefault(e.to, INF)) {
+                        dist.put(e.to, d);
+                        fringe.add(new Hop(v, e, d));
+                    }
+                }
+            }
+        }
+        return settled;
+    }
+
+    /**
+     * Returns the vertex closest to a point across all shards, and the shard it belongs to.
+     * @return A pair of (vertex ID, shard number), with a shard number of -1 if every shard is
+     * empty.
+     */
+    private long[] closest(double lon, double lat) throws IOException {
+        long bestId = 0, bestShard = -1;
+        double bestDist = INF;
+        for (int k = 0; k < boundaries.length; k += 1) {
+            DataInputStream in = call(k, GraphShard.CLOSEST, out -> {
+                out.writeDouble(lon);
+                out.writeDouble(lat);
+            });
+            long v = in.readLong();
+            double d = in.readDouble();
+            if (d < bestDist) {
+                bestDist = d;
+                bestId = v;
+                bestShard = k;
+            }
+        }
+        return new long[]{bestId, bestShard};
+    }
+
+    private double[] distances(int shard, long source, long[] targets) throws IOException {
+        DataInputStream in = call(shard, GraphShard.DISTANCES, out -> {
+            out.writeLong(source);
+            GraphShard.writeIds(out, targets);
+        });
+        double[] result = new double[targets.length];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = in.readDouble();
+        }
+        return result;
+    }
+
+    private List<Long> path(int shard, long from, long to) throws IOException {
+        DataInputStream in = call(shard, GraphShard.PATH, out -> {
+            out.writeLong(from);
+            out.writeLong(to);
+        });
+        List<Long> result = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i -= 1) {
+            result.add(in.readLong());
+        }
+        return result;
+    }
+
+    private DataInputStream call(int shard, byte op) throws IOException {
+        return call(shard, op, out -> { });
+    }
+
+    /**
+     * Encodes a request, sends it to a shard and returns a stream over the response.
+     * @param shard The shard to call.
+     * @param op The request opcode, one of the constants in <code>GraphShard</code>.
+     * @param args Writes the request's arguments.
+     * @return A stream over the response bytes.
+     * @throws IOException If the shard cannot be reached.
+     */
+    private DataInputStream call(int shard, byte op, Arguments args) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(op);
+        args.write(out);
+        out.flush();
+        return new DataInputStream(new ByteArrayInputStream(
+                transport.call(shard, bytes.toByteArray())));
+    }
+
+    private static void addEdge(Map<Long, List<OverlayEdge>> edges, long from, long to,
+                                double weight, int shard) {
+        edges.computeIfAbsent(from, k -> new ArrayList<>()).add(new OverlayEdge(to, weight, shard));
+    }
+
+    /** Writes the arguments of a shard request. */
+    private interface Arguments {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /** An edge in the overlay: either a path through one shard, or a road crossing between two. */
+    private static class OverlayEdge {
+        final long to;
+        final double weight;
+        /** The shard whose interior this edge passes through, or <code>CROSSING</code>. */
+        final int shard;
+
+        OverlayEdge(long to, double weight, int shard) {
+            this.to = to;
+            this.weight = weight;
+            this.shard = shard;
+        }
+    }
+
+    /** A search label: the overlay edge used to reach a vertex, and the distance so far. */
+    private static class Hop implements Comparable<Hop> {
+        final long from;
+        final OverlayEdge edge;
+        final double dist;
+
+        Hop(long from, OverlayEdge edge, double dist) {
+            this.from = from;
+            this.edge = edge;
+            this.dist = dist;
+        }
+
+        @Override
+        public int compareTo(Hop o) {
+            return Double.compare(dist, o.dist);
+        }
+    }
+
+    /** Shard number marking an overlay edge that crosses directly between two shards. */
+    private static final int CROSSING = -1;
+    private static final double INF = Double.POSITIVE_INFINITY;
+}
@@ -0,0 +1,126 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A <code>ShardTransport</code> that reaches shards served by <code>ShardServer</code>s over TCP,
+ * so that the shards of one map can live in other processes or on other machines.
+ *
+ * Connections are kept open and reused. Each call borrows an idle connection to the shard's
+ * server, or opens a new one, so concurrent queries never wait on each other's calls. A
+ * connection that fails mid-call is closed rather than reused.
+ */
+class SocketTransport implements ShardTransport, AutoCloseable {
+    /** The server of each shard, where shard <code>i</code> is at index <code>i</code>. */
+    private final List<InetSocketAddress> addresses;
+    /** Idle connections to each shard's server. */
+    private final List<ConcurrentLinkedQueue<Connection>> idle = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Creates a transport to shards at the given addresses. No connection is opened until the
+     * first call.
+     * @param addresses The server of each shard, where shard <code>i</code> is at index
+     *                  <code>i</code>. Several shards may share a server.
+     */
+    SocketTransport(List<InetSocketAddress> addresses) {
+        this.addresses = new ArrayList<>(addresses);
+        for (int i = 0; i < addresses.size(); i += 1) {
+            idle.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    @Override
+    public byte[] call(int shard, byte[] request) throws IOException {
+        if (shard < 0 || shard >= addresses.size()) {
+            throw new IOException("No such shard: " + shard);
+        }
+        if (closed) {
+            throw new IOException("Transport is closed.");
+        }
+        Connection c = idle.get(shard).poll();
+        if (c == null) {
+            c = new Connection(addresses.get(shard));
+        }
+        byte[] response;
+        try {
+            response = c.call(shard, request);
+        } catch (IOException e) {
+            c.close();
+            throw e;
+        }
+        idle.get(shard).add(c);
+        if (closed) {
+            c.close();
+        }
+        return response;
+    }
+
+    @Override
+    public int numShards() {
+        return addresses.size();
+    }
+
+    /** Closes every idle connection. Calls still in progress close theirs when they finish. */
+    @Override
+    public void close() {
+        closed = true;
+        for (ConcurrentLinkedQueue<Connection> q : idle) {
+            for (Connection c = q.poll(); c != null; c = q.poll()) {
+                c.close();
+            }
+        }
+    }
+
+    /** One open connection to a <code>ShardServer</code>. */
+    private static final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            try {
+                socket.connect(address, TIMEOUT_MILLIS);
+                socket.setSoTimeout(TIMEOUT_MILLIS);
+                socket.setTcpNoDelay(true);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        byte[] call(int shard, byte[] request) throws IOException {
+            out.writeInt(shard);
+            ShardServer.writeFrame(out, request);
+            out.flush();
+            byte status = in.readByte();
+            if (status == ShardServer.OK) {
+                return ShardServer.readFrame(in);
+            } else if (status == ShardServer.ERROR) {
+                throw new IOException("Shard " + shard + " failed: " + in.readUTF());
+            }
+            throw new IOException("Bad response status: " + status);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /** How long to wait to connect to, or hear back from, a shard. */
+    private static final int TIMEOUT_MILLIS = 30000;
+}
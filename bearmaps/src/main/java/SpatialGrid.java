@@ -0,0 +1,271 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable uniform-grid spatial index over graph vertices, in the projected coordinates
+ * returned by <code>GraphDB.projectToX</code> and <code>GraphDB.projectToY</code>.
+ *
+ * A grid is cheap to patch: an <code>Editor</code> shares the cells of the grid it starts from
+ * through a <code>ShardedMap</code> and rebuilds only the cells that an update touches, so
+ * successive <code>GraphSnapshot</code> versions share every untouched cell, and an edit costs
+ * time proportional to its size rather than to the number of cells.
+ */
+final class SpatialGrid {
+    /** Side length of a cell in projected units, about 160 meters. */
+    static final double CELL_SIZE = 0.000025;
+
+    /** Non-empty cells, keyed by <code>key(cx, cy)</code>. */
+    private final ShardedMap<Long, Cell> cells;
+    /**
+     * Bounds of the occupied cells, inclusive. Edits only ever widen them, so after removals they
+     * may enclose some empty cells, which costs queries a little time but never a wrong answer.
+     */
+    private final int minCx, maxCx, minCy, maxCy;
+
+    private SpatialGrid(ShardedMap<Long, Cell> cells, int minCx, int maxCx, int minCy,
+                        int maxCy) {
+        this.cells = cells;
+        this.minCx = minCx;
+        this.maxCx = maxCx;
+        this.minCy = minCy;
+        this.maxCy = maxCy;
+    }
+
+    /**
+     * Builds a grid over the given nodes.
+     * @param nodes Candidate nodes.
+     * @param include IDs of the nodes to index; other nodes are skipped.
+     * @return A new <code>SpatialGrid</code>.
+     */
+    static SpatialGrid of(Collection<GraphSnapshot.Node> nodes, Set<Long> include) {
+        Map<Long, List<GraphSnapshot.Node>> groups = new HashMap<>();
+        for (GraphSnapshot.Node n : nodes) {
+            if (include.contains(n.id)) {
+                groups.computeIfAbsent(key(cellOf(n.x), cellOf(n.y)), k -> new ArrayList<>())
+                        .add(n);
+            }
+        }
+        ShardedMap<Long, Cell> cells = new ShardedMap<>();
+        int x0 = Integer.MAX_VALUE, x1 = Integer.MIN_VALUE;
+        int y0 = Integer.MAX_VALUE, y1 = Integer.MIN_VALUE;
+        for (Map.Entry<Long, List<GraphSnapshot.Node>> entry : groups.entrySet()) {
+            long k = entry.getKey();
+            int cx = (int) (k >> 32), cy = (int) k;
+            x0 = Math.min(x0, cx);
+            x1 = Math.max(x1, cx);
+            y0 = Math.min(y0, cy);
+            y1 = Math.max(y1, cy);
+            List<GraphSnapshot.Node> group = entry.getValue();
+            long[] ids = new long[group.size()];
+            double[] xs = new double[ids.length], ys = new double[ids.length];
+            for (int i = 0; i < ids.length; i += 1) {
+                ids[i] = group.get(i).id;
+                xs[i] = group.get(i).x;
+                ys[i] = group.get(i).y;
+            }
+            cells.put(k, new Cell(ids, xs, ys));
+        }
+        return new SpatialGrid(cells, x0, x1, y0, y1);
+    }
+
+    /** Returns an <code>Editor</code> that starts from an empty grid. */
+    static Editor editor() {
+        return new Editor(new ShardedMap<>(), Integer.MAX_VALUE, Integer.MIN_VALUE,
+                Integer.MAX_VALUE, Integer.MIN_VALUE);
+    }
+
+    /** Returns an <code>Editor</code> that starts from the contents of this grid. */
+    Editor edit() {
+        return new Editor(cells.copy(), minCx, maxCx, minCy, maxCy);
+    }
+
+    /**
+     * Returns the ID closest to the projected point (x, y) by Euclidean distance.
+     * @param x The projected x-coordinate.
+     * @param y The projected y-coordinate.
+     * @return The closest ID, or 0 if the grid is empty.
+     */
+    long closest(double x, double y) {
+        if (cells.isEmpty()) {
+            return 0;
+        }
+        int cx = cellOf(x), cy = cellOf(y);
+        long best = 0;
+        double bestDist = Double.POSITIVE_INFINITY;
+        /* Start at the first ring that reaches the occupied cells. */
+        int r0 = Math.max(Math.max(minCx - cx, cx - maxCx), Math.max(minCy - cy, cy - maxCy));
+        for (int r = Math.max(0, r0); ; r += 1) {
+            for (int i = Math.max(cx - r, minCx); i <= Math.min(cx + r, maxCx); i += 1) {
+                boolean edge = Math.abs(i - cx) == r;
+                int step = edge ? 1 : 2 * r;
+                for (int j = cy - r; j <= cy + r; j += Math.max(step, 1)) {
+                    if (j < minCy || j > maxCy) {
+                        continue;
+                    }
+                    Cell c = cells.get(key(i, j));
+                    if (c == null) {
+                        continue;
+                    }
+                    for (int k = 0; k < c.ids.length; k += 1) {
+                        double dx = c.xs[k] - x, dy = c.ys[k] - y;
+                        double d = dx * dx + dy * dy;
+                        if (d < bestDist) {
+                            bestDist = d;
+                            best = c.ids[k];
+                        }
+                    }
+                }
+            }
+            /* Anything in ring r + 1 is at least r cells away from (x, y). */
+            double reach = r * CELL_SIZE;
+            boolean covered = cx - r <= minCx && cx + r >= maxCx
+                    && cy - r <= minCy && cy + r >= maxCy;
+            if (covered || bestDist <= reach * reach) {
+                return best;
+            }
+        }
+    }
+
+    /**
+     * Calls <code>visitor</code> for every ID whose point may lie within <code>radius</code> of
+     * (x, y). Points in the cells overlapping the query square are all visited, so callers must
+     * check the exact distance themselves.
+     * @param x The projected x-coordinate.
+     * @param y The projected y-coordinate.
+     * @param radius The search radius in projected units.
+     * @param visitor Called with each candidate ID and its projected coordinates.
+     */
+    void near(double x, double y, double radius, Visitor visitor) {
+        int i0 = cellOf(x - radius), i1 = cellOf(x + radius);
+        int j0 = cellOf(y - radius), j1 = cellOf(y + radius);
+        for (int i = Math.max(i0, minCx); i <= Math.min(i1, maxCx); i += 1) {
+            for (int j = Math.max(j0, minCy); j <= Math.min(j1, maxCy); j += 1) {
+                Cell c = cells.get(key(i, j));
+                if (c == null) {
+                    continue;
+                }
+                for (int k = 0; k < c.ids.length; k += 1) {
+                    visitor.visit(c.ids[k], c.xs[k], c.ys[k]);
+                }
+            }
+        }
+    }
+
+    /** Receives the points found by <code>near</code>. */
+    interface Visitor {
+        void visit(long id, double x, double y);
+    }
+
+    private static int cellOf(double coord) {
+        return (int) Math.floor(coord / CELL_SIZE);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    /** The points in one cell, as parallel arrays. Never modified once built. */
+    private static final class Cell {
+        final long[] ids;
+        final double[] xs, ys;
+
+        Cell(long[] ids, double[] xs, double[] ys) {
+            this.ids = ids;
+            this.xs = xs;
+            this.ys = ys;
+        }
+    }
+
+    /**
+     * Accumulates additions and removals against a private copy of a grid's cell map. Cells are
+     * replaced rather than modified, so the grid the editor started from is unaffected.
+     */
+    static final class Editor {
+        private final ShardedMap<Long, Cell> cells;
+        private int minCx, maxCx, minCy, maxCy;
+
+        private Editor(ShardedMap<Long, Cell> cells, int minCx, int maxCx, int minCy,
+                       int maxCy) {
+            this.cells = cells;
+            this.minCx = minCx;
+            this.maxCx = maxCx;
+            this.minCy = minCy;
+            this.maxCy = maxCy;
+        }
+
+        /**
+         * Adds a point to the grid.
+         * @param id The point's ID.
+         * @param x The projected x-coordinate.
+         * @param y The projected y-coordinate.
+         */
+        void add(long id, double x, double y) {
+            int cx = cellOf(x), cy = cellOf(y);
+            minCx = Math.min(minCx, cx);
+            maxCx = Math.max(maxCx, cx);
+            minCy = Math.min(minCy, cy);
+            maxCy = Math.max(maxCy, cy);
+            long k = key(cx, cy);
+            Cell old = cells.get(k);
+            int n = old == null ? 0 : old.ids.length;
+            long[] ids = new long[n + 1];
+            double[] xs = new double[n + 1], ys = new double[n + 1];
+            if (old != null) {
+                System.arraycopy(old.ids, 0, ids, 0, n);
+                System.arraycopy(old.xs, 0, xs, 0, n);
+                System.arraycopy(old.ys, 0, ys, 0, n);
+            }
+            ids[n] = id;
+            xs[n] = x;
+            ys[n] = y;
+            cells.put(k, new Cell(ids, xs, ys));
+        }
+
+        /**
+         * Removes a point from the grid. Points that are not present are ignored.
+         * @param id The point's ID.
+         * @param x The projected x-coordinate the point was added with.
+         * @param y The projected y-coordinate the point was added with.
+         */
+        void remove(long id, double x, double y) {
+            long k = key(cellOf(x), cellOf(y));
+            Cell old = cells.get(k);
+            if (old == null) {
+                return;
+            }
+            int at = -1;
+            for (int i = 0; i < old.ids.length; i += 1) {
+                if (old.ids[i] == id) {
+                    at = i;
+                    break;
+                }
+            }
+            if (at < 0) {
+                return;
+            }
+            int n = old.ids.length - 1;
+            if (n == 0) {
+                cells.remove(k);
+                return;
+            }
+            long[] ids = new long[n];
+            double[] xs = new double[n], ys = new double[n];
+            System.arraycopy(old.ids, 0, ids, 0, at);
+            System.arraycopy(old.xs, 0, xs, 0, at);
+            System.arraycopy(old.ys, 0, ys, 0, at);
+            System.arraycopy(old.ids, at + 1, ids, at, n - at);
+            System.arraycopy(old.xs, at + 1, xs, at, n - at);
+            System.arraycopy(old.ys, at + 1, ys, at, n - at);
+            cells.put(k, new Cell(ids, xs, ys));
+        }
+
+        /** Returns the edited grid. */
+        SpatialGrid build() {
+            return new SpatialGrid(cells, minCx, maxCx, minCy, maxCy);
+        }
+    }
+}
@@ -0,0 +1,472 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Generates vector tiles directly from the road graph of a <code>GraphDB</code>, as an
+ * alternative to compositing prerendered PNG tiles.
+ *
+ * Tiles follow the same quadtree as the raster images: the tile at depth <code>d</code>, column
+ * <code>x</code> and row <code>y</code> covers the same area as image
+ * <code>d{d}_x{x}_y{y}.png</code>, with row 0 at the top. Each tile is encoded as a Mapbox Vector
+ * Tile with two layers: <code>roads</code>, with one line feature per way, and
+ * <code>locations</code>, with one point feature per named location. Road geometry is simplified
+ * for the tile's depth and clipped to the tile plus a small buffer.
+ *
+ * Encoded tiles are cached per graph version, so repeated requests for a tile only pay for
+ * encoding once, and tiles are regenerated after an update is applied to the graph.
+ *
+ * @source https://github.com/mapbox/vector-tile-spec/tree/master/2.1
+ */
+final class VectorTiles {
+    /** Deepest tile depth served. Vector tiles can be generated well past the raster depths. */
+    static final int MAX_DEPTH = 20;
+    /** Media type of an encoded tile. */
+    static final String MEDIA_TYPE = "application/vnd.mapbox-vector-tile";
+
+    private final GraphDB g;
+    /** Encoded tiles of graph version <code>cachedVersion</code>, least recently used first. */
+    private final Map<Long, byte[]> cache = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > MAX_CACHED_TILES;
+        }
+    };
+    private long cachedVersion = -1;
+
+    /**
+     * Creates a tile generator.
+     * @param g The graph to draw. Tiles always reflect its current snapshot.
+     */
+    VectorTiles(GraphDB g) {
+        this.g = g;
+    }
+
+    /**
+     * Returns an encoded tile.
+     * @param depth The tile's depth, from 0 to <code>MAX_DEPTH</code>.
+     * @param x The tile's column, from 0 to <code>2^depth - 1</code>.
+     * @param y The tile's row, from 0 to <code>2^depth - 1</code>, counting down from the top.
+     * @return The encoded tile. Callers must not modify it.
+     */
+    byte[] tile(int depth, int x, int y) {
+        if (depth < 0 || depth > MAX_DEPTH || x < 0 || y < 0 || x >= 1 << depth
+                || y >= 1 << depth) {
+            String msg = String.format("No tile at depth %d, x %d, y %d.", depth, x, y);
+            throw new IllegalArgumentException(msg);
+        }
+        GraphSnapshot snapshot = g.snapshot();
+        long key = ((long) depth << 56) | ((long) x << 28) | y;
+        synchronized (cache) {
+            if (cachedVersion != snapshot.version()) {
+                cache.clear();
+                cachedVersion = snapshot.version();
+            }
+            byte[] cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        byte[] encoded = render(snapshot, depth, x, y);
+        synchronized (cache) {
+            if (cachedVersion == snapshot.version()) {
+                cache.put(key, encoded);
+            }
+        }
+        return encoded;
+    }
+
+    /** Encodes one tile of a snapshot. */
+    private static byte[] render(GraphSnapshot s, int depth, int x, int y) {
+        double lonWidth = MapServer.ROOT_LON_DELTA / (1 << depth);
+        double latHeight = MapServer.ROOT_LAT_DELTA / (1 << depth);
+        double ullon = MapServer.ROOT_ULLON + x * lonWidth;
+        double ullat = MapServer.ROOT_ULLAT - y * latHeight;
+        Frame frame = new Frame(ullon, ullat, EXTENT / lonWidth, EXTENT / latHeight);
+
+        Layer roads = new Layer("roads");
+        double tolerance = RoutePolyline.tolerance(Math.min(depth, Rasterer.MAX_DEPTH));
+        for (long wayId : waysNear(s, frame, lonWidth, latHeight)) {
+            GraphSnapshot.Way way = s.way(wayId);
+            if (way == null) {
+                continue;
+            }
+            double[] lons = new double[way.refs.length], lats = new double[way.refs.length];
+            Geometry geometry = new Geometry();
+            int n = 0;
+            for (int i = 0; i <= way.refs.length; i += 1) {
+                GraphSnapshot.Node node = i < way.refs.length ? s.node(way.refs[i]) : null;
+                if (node != null) {
+                    lons[n] = node.lon;
+                    lats[n] = node.lat;
+                    n += 1;
+                    continue;
+                }
+                /* A way may refer to nodes that were never in the extract or were deleted by a
+                 * later change. Draw the runs between such gaps as separate lines. */
+                clipRun(geometry, frame, Arrays.copyOf(lons, n), Arrays.copyOf(lats, n),
+                        tolerance);
+                geometry.finishLine();
+                n = 0;
+            }
+            if (geometry.isEmpty()) {
+                continue;
+            }
+            Feature f = roads.feature(way.id, LINESTRING, geometry);
+            if (!way.name.isEmpty()) {
+                roads.tag(f, "name", way.name);
+            }
+            if (way.maxSpeed != null) {
+                roads.tag(f, "maxspeed", way.maxSpeed);
+            }
+        }
+
+        Layer locations = new Layer("locations");
+        double[] box = project(ullon, ullon + lonWidth, ullat - latHeight, ullat);
+        s.locationsNear((box[0] + box[1]) / 2, (box[2] + box[3]) / 2,
+            Math.max(box[1] - box[0], box[3] - box[2]) / 2, (id, lx, ly) -> {
+                LocationParams l = s.location(id);
+                int px = frame.x(l.lon), py = frame.y(l.lat);
+                if (px >= 0 && px < EXTENT && py >= 0 && py < EXTENT) {
+                    Geometry geometry = new Geometry();
+                    geometry.point(px, py);
+                    locations.tag(locations.feature(l.id, POINT, geometry), "name", l.name);
+                }
+            });
+
+        Protobuf tile = new Protobuf();
+        for (Layer layer : List.of(roads, locations)) {
+            if (!layer.features.isEmpty()) {
+                tile.message(TILE_LAYERS, layer.encode());
+            }
+        }
+        return tile.toByteArray();
+    }
+
+    /** Simplifies a run of consecutive vertices and adds its part within the tile. */
+    private static void clipRun(Geometry geometry, Frame frame, double[] lons, double[] lats,
+                                double tolerance) {
+        if (lons.length < 2) {
+            return;
+        }
+        int[] kept = RoutePolyline.simplify(lons, lats, tolerance);
+        for (int k = 1; k < kept.length; k += 1) {
+            frame.clip(geometry, lons[kept[k - 1]], lats[kept[k - 1]],
+                    lons[kept[k]], lats[kept[k]]);
+        }
+    }
+
+    /**
+     * Returns the IDs of the ways with an edge that passes through a tile or within
+     * <code>MARGIN</code> tile widths of it, in increasing order, along with some ways nearby.
+     */
+    private static Iterable<Long> waysNear(GraphSnapshot s, Frame frame, double lonWidth,
+                                           double latHeight) {
+        double lon0 = frame.ullon - MARGIN * lonWidth;
+        double lon1 = frame.ullon + (1 + MARGIN) * lonWidth;
+        double lat0 = frame.ullat - (1 + MARGIN) * latHeight;
+        double lat1 = frame.ullat + MARGIN * latHeight;
+        double[] box = project(lon0, lon1, lat0, lat1);
+        double x0 = box[0], x1 = box[1], y0 = box[2], y1 = box[3];
+        /* Every point of an edge in the box is within half a cell of a point that edgesNear
+         * visits for one of its endpoints, so only points this close to the box matter. */
+        double slack = SpatialGrid.CELL_SIZE / 2;
+        double bx0 = x0 - slack, bx1 = x1 + slack, by0 = y0 - slack, by1 = y1 + slack;
+        TreeSet<Long> ways = new TreeSet<>();
+        s.edgesNear((x0 + x1) / 2, (y0 + y1) / 2, Math.max(x1 - x0, y1 - y0) / 2,
+            (id, px, py) -> {
+                if (px >= bx0 && px <= bx1 && py >= by0 && py <= by1) {
+                    long[] edges = s.edges(id);
+                    for (int i = 1; i < edges.length; i += 2) {
+                        ways.add(edges[i]);
+                    }
+                }
+            });
+        return ways;
+    }
+
+    /**
+     * Returns the projected bounding box of the corners of a longitude and latitude box, as
+     * <code>{x0, x1, y0, y1}</code>.
+     */
+    private static double[] project(double lon0, double lon1, double lat0, double lat1) {
+        double[] box = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double lon : new double[]{lon0, lon1}) {
+            for (double lat : new double[]{lat0, lat1}) {
+                box[0] = Math.min(box[0], GraphDB.projectToX(lon, lat));
+                box[1] = Math.max(box[1], GraphDB.projectToX(lon, lat));
+                box[2] = Math.min(box[2], GraphDB.projectToY(lon, lat));
+                box[3] = Math.max(box[3], GraphDB.projectToY(lon, lat));
+            }
+        }
+        return box;
+    }
+
+    /** Maps coordinates into a tile's integer grid, where y grows downwards. */
+    private static final class Frame {
+        final double ullon, ullat;
+        final double xScale, yScale;
+
+        Frame(double ullon, double ullat, double xScale, double yScale) {
+            this.ullon = ullon;
+            this.ullat = ullat;
+            this.xScale = xScale;
+            this.yScale = yScale;
+        }
+
+        int x(double lon) {
+            return (int) Math.floor((lon - ullon) * xScale);
+        }
+
+        int y(double lat) {
+            return (int) Math.floor((ullat - lat) * yScale);
+        }
+
+        /**
+         * Clips a segment to the tile plus <code>BUFFER</code> with the Liang-Barsky algorithm,
+         * and appends what remains to <code>geometry</code>.
+         */
+        void clip(Geometry geometry, double lonA, double latA, double lonB, double latB) {
+            double ax = (lonA - ullon) * xScale, ay = (ullat - latA) * yScale;
+            double dx = (lonB - ullon) * xScale - ax, dy = (ullat - latB) * yScale - ay;
+            double[] t = {0, 1};
+            double lo = -BUFFER, hi = EXTENT + BUFFER;
+            if (clipEdge(-dx, ax - lo, t) && clipEdge(dx, hi - ax, t)
+                    && clipEdge(-dy, ay - lo, t) && clipEdge(dy, hi - ay, t)) {
+                geometry.segment((int) Math.floor(ax + t[0] * dx),
+                        (int) Math.floor(ay + t[0] * dy),
+                        (int) Math.floor(ax + t[1] * dx), (int) Math.floor(ay + t[1] * dy));
+            }
+        }
+
+        private static boolean clipEdge(double p, double q, double[] t) {
+            if (p == 0) {
+                return q >= 0;
+            }
+            double r = q / p;
+            if (p < 0) {
+                if (r > t[1]) {
+                    return false;
+                }
+                t[0] = Math.max(t[0], r);
+            } else {
+                if (r < t[0]) {
+                    return false;
+                }
+                t[1] = Math.min(t[1], r);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The geometry of one feature: a point, or a set of lines assembled from consecutive
+     * segments, encoded as tile drawing commands.
+     */
+    private static final class Geometry {
+        /** Finished lines, as flattened (x, y) pairs. */
+        private final List<int[]> lines = new ArrayList<>();
+        private int[] current = new int[8];
+        private int length;
+
+        void point(int x, int y) {
+            lines.add(new int[]{x, y});
+        }
+
+        /** Adds a segment, continuing the current line if the segment starts where it ends. */
+        void segment(int x0, int y0, int x1, int y1) {
+            if (length == 0 || current[length - 2] != x0 || current[length - 1] != y0) {
+                finishLine();
+                append(x0, y0);
+            }
+            if (current[length - 2] != x1 || current[length - 1] != y1) {
+                append(x1, y1);
+            }
+        }
+
+        boolean isEmpty() {
+            finishLine();
+            return lines.isEmpty();
+        }
+
+        private void append(int x, int y) {
+            if (length + 2 > current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[length++] = x;
+            current[length++] = y;
+        }
+
+        /** Ends the current line, so that the next segment starts a new one. */
+        void finishLine() {
+            if (length >= 4) {
+                lines.add(Arrays.copyOf(current, length));
+            }
+            length = 0;
+        }
+
+        /** Encodes the drawing commands, with coordinates relative to the previous point. */
+        void encode(Protobuf out) {
+            finishLine();
+            int cx = 0, cy = 0;
+            for (int[] line : lines) {
+                out.rawVarint(command(MOVE_TO, 1));
+                out.rawVarint(zigzag(line[0] - cx));
+                out.rawVarint(zigzag(line[1] - cy));
+                if (line.length > 2) {
+                    out.rawVarint(command(LINE_TO, line.length / 2 - 1));
+                    for (int i = 2; i < line.length; i += 2) {
+                        out.rawVarint(zigzag(line[i] - line[i - 2]));
+                        out.rawVarint(zigzag(line[i + 1] - line[i - 1]));
+                    }
+                }
+                cx = line[line.length - 2];
+                cy = line[line.length - 1];
+            }
+        }
+
+        private static int command(int id, int count) {
+            return (id & 0x7) | (count << 3);
+        }
+
+        private static int zigzag(int n) {
+            return (n << 1) ^ (n >> 31);
+        }
+    }
+
+    /** A feature awaiting encoding: its ID, type, geometry and key/value index pairs. */
+    private static final class Feature {
+        final long id;
+        final int type;
+        final Geometry geometry;
+        final List<Integer> tags = new ArrayList<>();
+
+        Feature(long id, int type, Geometry geometry) {
+            this.id = id;
+            this.type = type;
+            this.geometry = geometry;
+        }
+    }
+
+    /** One layer of a tile, with its key and value tables. */
+    private static final class Layer {
+        final String name;
+        final List<Feature> features = new ArrayList<>();
+        final Map<String, Integer> keys = new LinkedHashMap<>();
+        final Map<String, Integer> values = new HashMap<>();
+        final List<String> valueList = new ArrayList<>();
+
+        Layer(String name) {
+            this.name = name;
+        }
+
+        Feature feature(long id, int type, Geometry geometry) {
+            Feature f = new Feature(id, type, geometry);
+            features.add(f);
+            return f;
+        }
+
+        void tag(Feature f, String key, String value) {
+            f.tags.add(keys.computeIfAbsent(key, k -> keys.size()));
+            Integer v = values.get(value);
+            if (v == null) {
+                v = valueList.size();
+                values.put(value, v);
+                valueList.add(value);
+            }
+            f.tags.add(v);
+        }
+
+        byte[] encode() {
+            Protobuf layer = new Protobuf();
+            layer.varint(LAYER_VERSION, 2);
+            layer.string(LAYER_NAME, name);
+            for (Feature f : features) {
+                Protobuf feature = new Protobuf();
+                feature.varint(FEATURE_ID, f.id);
+                if (!f.tags.isEmpty()) {
+                    Protobuf tags = new Protobuf();
+                    for (int t : f.tags) {
+                        tags.rawVarint(t);
+                    }
+                    feature.message(FEATURE_TAGS, tags.toByteArray());
+                }
+                feature.varint(FEATURE_TYPE, f.type);
+                Protobuf geometry = new Protobuf();
+                f.geometry.encode(geometry);
+                feature.message(FEATURE_GEOMETRY, geometry.toByteArray());
+                layer.message(LAYER_FEATURES, feature.toByteArray());
+            }
+            for (String key : keys.keySet()) {
+                layer.string(LAYER_KEYS, key);
+            }
+            for (String value : valueList) {
+                Protobuf v = new Protobuf();
+                v.string(VALUE_STRING, value);
+                layer.message(LAYER_VALUES, v.toByteArray());
+            }
+            layer.varint(LAYER_EXTENT, EXTENT);
+            return layer.toByteArray();
+        }
+    }
+
+    /** Writes the subset of the protocol buffer wire format used by vector tiles. */
+    private static final class Protobuf {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        void varint(int field, long value) {
+            rawVarint(field << 3);
+            rawVarint(value);
+        }
+
+        void string(int field, String value) {
+            message(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void message(int field, byte[] bytes) {
+            rawVarint((field << 3) | 2);
+            rawVarint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        void rawVarint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                out.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    /** Side length of a tile's integer grid. */
+    private static final int EXTENT = 4096;
+    /** Geometry is kept this far outside the tile, in grid units, so strokes join seamlessly. */
+    private static final int BUFFER = 64;
+    /** Ways are looked up this many tile widths around the tile. */
+    private static final double MARGIN = 0.1;
+    /** Most tiles kept in the cache. */
+    private static final int MAX_CACHED_TILES = 4096;
+
+    /* Geometry types and commands. */
+    private static final int POINT = 1, LINESTRING = 2;
+    private static final int MOVE_TO = 1, LINE_TO = 2;
+
+    /* Field numbers of the vector tile schema. */
+    private static final int TILE_LAYERS = 3;
+    private static final int LAYER_NAME = 1, LAYER_FEATURES = 2, LAYER_KEYS = 3, LAYER_VALUES = 4,
+            LAYER_EXTENT = 5, LAYER_VERSION = 15;
+    private static final int FEATURE_ID = 1, FEATURE_TAGS = 2, FEATURE_TYPE = 3,
+            FEATURE_GEOMETRY = 4;
+    private static final int VALUE_STRING = 1;
+}
@@ -167,6 +167,7 @@ $(function() {
     }
 
     function updateRoute() {
+        route_params.depth = current_level;
         $.get({
             async: true,
             url: route_server,
@@ -0,0 +1,83 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Writes small OSM files for tests, most often regular street grids whose intersections are
+ * SPACING degrees apart with the bottom-left corner at (LON0, LAT0).
+ */
+final class GridFixture {
+    static final double SPACING = 0.001;
+    static final double LON0 = -122.27, LAT0 = 37.85;
+
+    /** The number of rows and columns of intersections. */
+    private final int side;
+
+    GridFixture(int side) {
+        this.side = side;
+    }
+
+    /** Returns the ID of the intersection in row I and column J. */
+    long id(int i, int j) {
+        return 1000 + i * side + j;
+    }
+
+    /** Writes a complete grid, where every pair of neighboring intersections is connected. */
+    String write() throws IOException {
+        return write((Random) null);
+    }
+
+    /**
+     * Writes a grid. If R is not null, each intersection is moved up to 0.3 SPACING north and
+     * east, and each block has a 20% chance of being missing, so that shortest paths are unique.
+     */
+    String write(Random r) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < side; i += 1) {
+            for (int j = 0; j < side; j += 1) {
+                double di = r == null ? 0 : 0.3 * r.nextDouble();
+                double dj = r == null ? 0 : 0.3 * r.nextDouble();
+                sb.append(node(id(i, j), LON0 + (j + dj) * SPACING, LAT0 + (i + di) * SPACING));
+            }
+        }
+        long way = 1;
+        for (int i = 0; i < side; i += 1) {
+            for (int j = 0; j < side; j += 1) {
+                if (j + 1 < side && (r == null || r.nextDouble() > 0.2)) {
+                    sb.append(way(way++, id(i, j), id(i, j + 1)));
+                }
+                if (i + 1 < side && (r == null || r.nextDouble() > 0.2)) {
+                    sb.append(way(way++, id(i, j), id(i + 1, j)));
+                }
+            }
+        }
+        return writeElements(sb.toString());
+    }
+
+    static String node(long id, double lon, double lat) {
+        return String.format(Locale.ROOT, "<node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\"/>%n",
+                id, lat, lon);
+    }
+
+    /** Returns a residential way from node A to node B. */
+    static String way(long id, long a, long b) {
+        return String.format(Locale.ROOT, "<way id=\"%d\"><nd ref=\"%d\"/><nd ref=\"%d\"/>"
+                + "<tag k=\"highway\" v=\"residential\"/></way>%n", id, a, b);
+    }
+
+    /** Writes an OSM document holding the given nodes and ways, and returns its path. */
+    static String writeElements(String elements) throws IOException {
+        return write("<?xml version='1.0' encoding='UTF-8'?>\n<osm>\n" + elements + "</osm>\n");
+    }
+
+    /** Writes a whole OSM document to a temporary file, and returns its path. */
+    static String write(String xml) throws IOException {
+        File f = File.createTempFile("bearmaps", ".osm.xml");
+        f.deleteOnExit();
+        Files.write(f.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        return f.getPath();
+    }
+}
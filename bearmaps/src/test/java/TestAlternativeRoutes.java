@@ -0,0 +1,138 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the alternative routes found by the penalty method on a regular street grid, where
+ * there are many routes of similar length between opposite corners.
+ */
+public class TestAlternativeRoutes {
+    private static final int SIDE = 8;
+    private static final double SPACING = GridFixture.SPACING;
+    private static final double LON0 = GridFixture.LON0, LAT0 = GridFixture.LAT0;
+    private static final GridFixture GRID = new GridFixture(SIDE);
+
+    private GraphDB graph;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = new GraphDB(GRID.write());
+    }
+
+    @Test
+    public void testFirstRouteIsShortest() {
+        double destlon = LON0 + (SIDE - 1) * SPACING, destlat = LAT0 + (SIDE - 1) * SPACING;
+        List<Long> shortest = Router.shortestPath(graph, LON0, LAT0, destlon, destlat);
+        List<List<Long>> routes = Router.alternativeRoutes(graph, LON0, LAT0, destlon, destlat, 3);
+        assertEquals(3, routes.size());
+        assertEquals(length(shortest), length(routes.get(0)), 1e-9);
+    }
+
+    @Test
+    public void testRoutesAreDistinctAndBounded() {
+        double destlon = LON0 + (SIDE - 1) * SPACING, destlat = LAT0 + (SIDE - 1) * SPACING;
+        List<List<Long>> routes = Router.alternativeRoutes(graph, LON0, LAT0, destlon, destlat, 4);
+        assertTrue(routes.size() >= 2);
+        double best = length(routes.get(0));
+        Set<List<Long>> seen = new HashSet<>();
+        for (List<Long> route : routes) {
+            assertEquals(GRID.id(0, 0), (long) route.get(0));
+            assertEquals(GRID.id(SIDE - 1, SIDE - 1), (long) route.get(route.size() - 1));
+            assertTrue("Route too long", length(route) <= 1.5 * best + 1e-9);
+            assertTrue("Duplicate route", seen.add(route));
+        }
+        assertNotEquals(routes.get(0), routes.get(1));
+        for (int i = 0; i < routes.size(); i += 1) {
+            for (int j = i + 1; j < routes.size(); j += 1) {
+                List<Long> later = routes.get(j);
+                assertTrue("Routes too similar",
+                        sharedLength(later, routes.get(i)) <= 0.7 * length(later) + 1e-9);
+            }
+        }
+    }
+
+    /**
+     * A long detour can be the cheapest candidate after one penalty, while a shorter route that
+     * shares the penalized edges only becomes cheapest later. The detour must not end the search.
+     */
+    @Test
+    public void testSkipsOverStretchedCandidate() throws Exception {
+        /* s-a-t is the shortest route, 10 units long. s-a-b-t is 14 units long and shares s-a
+         * with it, and s-c-t is 16 units long, more than 1.5 times the shortest. */
+        StringBuilder sb = new StringBuilder();
+        sb.append(node(1, 0, 0)).append(node(2, 8, 0)).append(node(3, 10, 0))
+                .append(node(4, 9, Math.sqrt(8))).append(node(5, 5, -Math.sqrt(39)));
+        long[][] ends = {{1, 2}, {2, 3}, {2, 4}, {4, 3}, {1, 5}, {5, 3}};
+        for (int i = 0; i < ends.length; i += 1) {
+            sb.append(GridFixture.way(i + 1, ends[i][0], ends[i][1]));
+        }
+        graph = new GraphDB(GridFixture.writeElements(sb.toString()));
+        List<List<Long>> routes = Router.alternativeRoutes(graph, LON0, LAT0,
+                LON0 + 10 * SPACING / Math.cos(Math.toRadians(LAT0)), LAT0, 2);
+        assertEquals(2, routes.size());
+        assertEquals(List.of(1L, 2L, 3L), routes.get(0));
+        assertEquals(List.of(1L, 2L, 4L, 3L), routes.get(1));
+    }
+
+    @Test
+    public void testSearchStateIsRestored() {
+        double destlon = LON0 + (SIDE - 1) * SPACING, destlat = LAT0 + (SIDE - 1) * SPACING;
+        double before = length(Router.shortestPath(graph, LON0, LAT0, destlon, destlat));
+        Router.alternativeRoutes(graph, LON0, LAT0, destlon, destlat, 3);
+        double after = length(Router.shortestPath(graph, LON0, LAT0, destlon, destlat));
+        assertEquals(before, after, 1e-9);
+    }
+
+    @Test
+    public void testSameStartAndEnd() {
+        List<List<Long>> routes = Router.alternativeRoutes(graph, LON0, LAT0, LON0, LAT0, 3);
+        assertEquals(1, routes.size());
+        assertEquals(1, routes.get(0).size());
+    }
+
+    /** Returns the length of a path, checking that consecutive vertices are adjacent. */
+    private double length(List<Long> path) {
+        double total = 0;
+        for (int i = 1; i < path.size(); i += 1) {
+            boolean adjacent = false;
+            for (long w : graph.adjacent(path.get(i - 1))) {
+                adjacent |= w == path.get(i);
+            }
+            assertTrue("Path uses a missing edge", adjacent);
+            total += graph.distance(path.get(i - 1), path.get(i));
+        }
+        return total;
+    }
+
+    /** Returns the length of PATH that runs along edges of OTHER, in either direction. */
+    private double sharedLength(List<Long> path, List<Long> other) {
+        double shared = 0;
+        for (int i = 1; i < path.size(); i += 1) {
+            for (int j = 1; j < other.size(); j += 1) {
+                long v = path.get(i - 1), w = path.get(i);
+                long x = other.get(j - 1), y = other.get(j);
+                if (v == x && w == y || v == y && w == x) {
+                    shared += graph.distance(v, w);
+                    break;
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Returns a node X units east and Y units north of (LON0, LAT0), where a unit is SPACING
+     * degrees of latitude and the same distance in longitude.
+     */
+    private static String node(long id, double x, double y) {
+        return GridFixture.node(id, LON0 + x * SPACING / Math.cos(Math.toRadians(LAT0)),
+                LAT0 + y * SPACING);
+    }
+}
@@ -0,0 +1,206 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that osmChange diffs applied through GraphDB.applyChange patch the graph, and that
+ * snapshots taken before a change are unaffected by it.
+ */
+public class TestGraphUpdates {
+    private static final String BASE = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<osm version=\"0.6\">\n"
+            + "  <node id=\"1\" lat=\"37.87\" lon=\"-122.25\"/>\n"
+            + "  <node id=\"2\" lat=\"37.87\" lon=\"-122.24\"/>\n"
+            + "  <node id=\"3\" lat=\"37.87\" lon=\"-122.23\"/>\n"
+            + "  <node id=\"4\" lat=\"37.86\" lon=\"-122.24\">\n"
+            + "    <tag k=\"name\" v=\"Cafe Strada\"/>\n"
+            + "  </node>\n"
+            + "  <node id=\"5\" lat=\"37.85\" lon=\"-122.24\"/>\n"
+            + "  <way id=\"10\">\n"
+            + "    <nd ref=\"1\"/><nd ref=\"2\"/><nd ref=\"3\"/>\n"
+            + "    <tag k=\"highway\" v=\"residential\"/>\n"
+            + "    <tag k=\"name\" v=\"Main Street\"/>\n"
+            + "  </way>\n"
+            + "  <way id=\"11\">\n"
+            + "    <nd ref=\"2\"/><nd ref=\"4\"/><nd ref=\"5\"/>\n"
+            + "    <tag k=\"highway\" v=\"footway\"/>\n"
+            + "  </way>\n"
+            + "</osm>\n";
+
+    private static final String CHANGE = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<osmChange version=\"0.6\">\n"
+            + "  <delete>\n"
+            + "    <way id=\"10\"/>\n"
+            + "  </delete>\n"
+            + "  <create>\n"
+            + "    <node id=\"6\" lat=\"37.88\" lon=\"-122.25\"/>\n"
+            + "    <way id=\"12\">\n"
+            + "      <nd ref=\"1\"/><nd ref=\"6\"/>\n"
+            + "      <tag k=\"highway\" v=\"tertiary\"/>\n"
+            + "      <tag k=\"name\" v=\"New Road\"/>\n"
+            + "    </way>\n"
+            + "  </create>\n"
+            + "  <modify>\n"
+            + "    <node id=\"4\" lat=\"37.86\" lon=\"-122.24\">\n"
+            + "      <tag k=\"name\" v=\"Strada Cafe\"/>\n"
+            + "    </node>\n"
+            + "  </modify>\n"
+            + "</osmChange>\n";
+
+    private GraphDB graph;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = new GraphDB(write(BASE));
+    }
+
+    @Test
+    public void testInitialBuild() {
+        assertEquals(Set.of(1L, 2L, 3L), toSet(graph.vertices()));
+        assertEquals(Set.of(1L, 3L), toSet(graph.adjacent(2)));
+        assertEquals(List.of("Cafe Strada"), graph.getLocationsByPrefix("caf"));
+        assertEquals(0, graph.snapshot().version());
+    }
+
+    @Test
+    public void testApplyChange() throws Exception {
+        GraphSnapshot before = graph.snapshot();
+        graph.applyChange(write(CHANGE));
+
+        assertEquals(Set.of(1L, 6L), toSet(graph.vertices()));
+        assertEquals(Set.of(6L), toSet(graph.adjacent(1)));
+        assertEquals(0, toSet(graph.adjacent(2)).size());
+        assertEquals(37.88, graph.lat(6), 1e-9);
+        assertEquals(6L, graph.closest(-122.25, 37.89));
+        assertEquals(1L, graph.closest(-122.23, 37.87));
+        assertEquals(List.of("Strada Cafe"), graph.getLocationsByPrefix("s"));
+        assertTrue(graph.getLocations("Cafe Strada").isEmpty());
+        assertEquals(1, graph.snapshot().version());
+
+        /* The snapshot taken before the change still sees the old graph. */
+        assertEquals(Set.of(1L, 2L, 3L), toSet(before.vertices()));
+        assertEquals(Set.of(1L, 3L), toSet(before.adjacent(2)));
+        assertEquals(3L, before.closest(-122.23, 37.87));
+        assertEquals("Cafe Strada", before.locations("cafe strada").get(0).name);
+    }
+
+    @Test
+    public void testModifyWayToInvalidRemovesIt() throws Exception {
+        graph.applyChange(write("<osmChange version=\"0.6\"><modify>"
+                + "<way id=\"10\"><nd ref=\"1\"/><nd ref=\"2\"/><nd ref=\"3\"/>"
+                + "<tag k=\"highway\" v=\"footway\"/></way>"
+                + "</modify></osmChange>"));
+        assertEquals(0, toSet(graph.vertices()).size());
+        assertEquals(0L, graph.closest(-122.24, 37.87));
+
+        graph.applyChange(write("<osmChange version=\"0.6\"><create>"
+                + "<way id=\"13\"><nd ref=\"3\"/><nd ref=\"2\"/>"
+                + "<tag k=\"highway\" v=\"primary\"/></way>"
+                + "</create></osmChange>"));
+        assertEquals(Set.of(2L, 3L), toSet(graph.vertices()));
+        assertEquals(-122.23, graph.lon(3), 1e-9);
+    }
+
+    /**
+     * Upgrading a footpath to a road without resending its nodes connects them, as a full rebuild
+     * would, unless a change has deleted them since.
+     */
+    @Test
+    public void testUpgradeWayToRoad() throws Exception {
+        graph.applyChange(write("<osmChange version=\"0.6\"><delete>"
+                + "<node id=\"5\"/>"
+                + "</delete></osmChange>"));
+        graph.applyChange(write("<osmChange version=\"0.6\"><modify>"
+                + "<way id=\"11\"><nd ref=\"2\"/><nd ref=\"4\"/><nd ref=\"5\"/>"
+                + "<tag k=\"highway\" v=\"residential\"/></way>"
+                + "</modify></osmChange>"));
+        assertEquals(Set.of(1L, 2L, 3L, 4L), toSet(graph.vertices()));
+        assertEquals(Set.of(1L, 3L, 4L), toSet(graph.adjacent(2)));
+        assertEquals(-122.24, graph.lon(4), 1e-9);
+        assertEquals(37.86, graph.lat(4), 1e-9);
+        assertEquals(4L, graph.closest(-122.24, 37.855));
+
+        GraphDB rebuilt = new GraphDB(write(BASE.replace("footway", "residential")));
+        assertEquals(Set.of(1L, 2L, 3L, 4L, 5L), toSet(rebuilt.vertices()));
+        graph = new GraphDB(write(BASE));
+        graph.applyChange(write("<osmChange version=\"0.6\"><modify>"
+                + "<way id=\"11\"><nd ref=\"2\"/><nd ref=\"4\"/><nd ref=\"5\"/>"
+                + "<tag k=\"highway\" v=\"residential\"/></way>"
+                + "</modify></osmChange>"));
+        assertEquals(toSet(rebuilt.vertices()), toSet(graph.vertices()));
+        for (long v : rebuilt.vertices()) {
+            assertEquals(toSet(rebuilt.adjacent(v)), toSet(graph.adjacent(v)));
+        }
+    }
+
+    /**
+     * Deleting a node or way with a negative ID, as osmChange placeholders have, removes only its
+     * own edges.
+     */
+    @Test
+    public void testNegativeIds() throws Exception {
+        graph.applyChange(write("<osmChange version=\"0.6\"><create>"
+                + "<node id=\"-1\" lat=\"37.88\" lon=\"-122.24\"/>"
+                + "<way id=\"-1\"><nd ref=\"2\"/><nd ref=\"-1\"/>"
+                + "<tag k=\"highway\" v=\"residential\"/></way>"
+                + "<way id=\"-2\"><nd ref=\"3\"/><nd ref=\"-1\"/>"
+                + "<tag k=\"highway\" v=\"residential\"/></way>"
+                + "</create></osmChange>"));
+        assertEquals(Set.of(1L, 3L, -1L), toSet(graph.adjacent(2)));
+
+        graph.applyChange(write("<osmChange version=\"0.6\"><delete>"
+                + "<way id=\"-1\"/>"
+                + "</delete></osmChange>"));
+        assertEquals(Set.of(1L, 3L), toSet(graph.adjacent(2)));
+        assertEquals(Set.of(2L, -1L), toSet(graph.adjacent(3)));
+
+        graph.applyChange(write("<osmChange version=\"0.6\"><delete>"
+                + "<node id=\"-1\"/>"
+                + "</delete></osmChange>"));
+        assertEquals(Set.of(1L, 2L, 3L), toSet(graph.vertices()));
+        assertEquals(Set.of(2L), toSet(graph.adjacent(3)));
+        assertEquals(Set.of(1L, 3L), toSet(graph.adjacent(2)));
+    }
+
+    /** Many changes in a row each leave every earlier version intact. */
+    @Test
+    public void testManyVersions() throws Exception {
+        GraphSnapshot first = graph.snapshot();
+        for (int i = 0; i < 50; i += 1) {
+            GraphChange change = new GraphChange();
+            change.putNode(100 + i, -122.25 + i * 0.0001, 37.88, null);
+            change.putWay(new GraphSnapshot.Way(200 + i, new long[] {100 + i, 1}, "Spur", null,
+                    true));
+            graph.applyChange(change);
+        }
+        assertEquals(53, graph.snapshot().numVertices());
+        assertEquals(51, toSet(graph.adjacent(1)).size());
+        assertEquals(3, first.numVertices());
+        assertEquals(Set.of(2L), toSet(first.adjacent(1)));
+    }
+
+    private static Set<Long> toSet(Iterable<Long> ids) {
+        Set<Long> result = new HashSet<>();
+        for (long id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    private static String write(String xml) throws IOException {
+        File f = File.createTempFile("bearmaps", ".osm.xml");
+        f.deleteOnExit();
+        Files.write(f.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        return f.getPath();
+    }
+}
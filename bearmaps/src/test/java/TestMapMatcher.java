@@ -0,0 +1,162 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks map matching of noisy traces driven along known routes of a regular street grid.
+ */
+public class TestMapMatcher {
+    private static final int SIDE = 8;
+    private static final double SPACING = GridFixture.SPACING;
+    private static final double LON0 = GridFixture.LON0, LAT0 = GridFixture.LAT0;
+    private static final GridFixture GRID = new GridFixture(SIDE);
+    /** GPS noise, in degrees: about 5 meters. */
+    private static final double NOISE = 0.00004;
+
+    private GraphDB graph;
+    private MapMatcher matcher;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = new GraphDB(GRID.write());
+        matcher = new MapMatcher(graph);
+    }
+
+    @Test
+    public void testFollowsRoute() {
+        /* East along the bottom row, then north up column 5. */
+        List<Long> route = new ArrayList<>();
+        for (int j = 0; j <= 5; j += 1) {
+            route.add(GRID.id(0, j));
+        }
+        for (int i = 1; i <= 6; i += 1) {
+            route.add(GRID.id(i, 5));
+        }
+        List<double[]> trace = drive(route, 0.0002, new Random(7));
+        List<MapMatcher.Match> matches = matcher.match(lons(trace), lats(trace));
+        assertEquals(trace.size(), matches.size());
+
+        Set<Long> onRoute = new HashSet<>(route);
+        for (int k = 0; k < matches.size(); k += 1) {
+            MapMatcher.Match m = matches.get(k);
+            assertEquals(k, m.index);
+            assertEquals(k > 0, m.connected);
+            for (long v : m.path) {
+                assertTrue("Path leaves the route at " + v, onRoute.contains(v));
+            }
+            if (m.fraction > 0.1 && m.fraction < 0.9) {
+                assertTrue("Matched off the route: " + m,
+                        onRoute.contains(m.from) && onRoute.contains(m.to));
+            }
+        }
+    }
+
+    @Test
+    public void testEmitsBeforeFinish() {
+        List<Long> route = new ArrayList<>();
+        for (int j = 0; j < SIDE; j += 1) {
+            route.add(GRID.id(3, j));
+        }
+        List<double[]> trace = drive(route, 0.0001, new Random(3));
+        List<MapMatcher.Match> matches = new ArrayList<>();
+        MapMatcher.Session session = matcher.start(matches::add);
+        for (double[] p : trace) {
+            session.add(p[0], p[1]);
+        }
+        assertFalse("Expected matches to stream", matches.isEmpty());
+        session.finish();
+        assertEquals(trace.size(), matches.size());
+    }
+
+    @Test
+    public void testSkipsPointsFarFromRoads() {
+        double[] lons = {LON0 + 0.00015, LON0 + 0.5, LON0 + 0.00035};
+        double[] lats = {LAT0, LAT0 + 0.5, LAT0};
+        List<MapMatcher.Match> matches = matcher.match(lons, lats);
+        assertEquals(2, matches.size());
+        assertEquals(0, matches.get(0).index);
+        assertEquals(2, matches.get(1).index);
+        assertEquals(GRID.id(0, 0), matches.get(1).from);
+        assertEquals(GRID.id(0, 1), matches.get(1).to);
+        assertTrue(matches.get(1).connected);
+    }
+
+    /** A point near the middle of an edge far longer than the radius still matches it. */
+    @Test
+    public void testMatchesMiddleOfLongEdge() throws Exception {
+        /* A 0.01 degree road is about half a mile, while the default radius is 50 meters. */
+        String elements = GridFixture.node(1, LON0, LAT0) + GridFixture.node(2, LON0 + 0.01, LAT0)
+                + GridFixture.way(1, 1, 2);
+        matcher = new MapMatcher(new GraphDB(GridFixture.writeElements(elements)));
+        List<MapMatcher.Match> matches = matcher.match(new double[]{LON0 + 0.005},
+                new double[]{LAT0 + NOISE});
+        assertEquals(1, matches.size());
+        assertEquals(1, matches.get(0).from);
+        assertEquals(2, matches.get(0).to);
+        assertEquals(0.5, matches.get(0).fraction, 1e-3);
+    }
+
+    /** Moving an endpoint of a long edge moves every point of it that can be matched. */
+    @Test
+    public void testMatchesMovedLongEdge() throws Exception {
+        String elements = GridFixture.node(1, LON0, LAT0) + GridFixture.node(2, LON0 + 0.01, LAT0)
+                + GridFixture.way(1, 1, 2);
+        graph = new GraphDB(GridFixture.writeElements(elements));
+        graph.applyChange(GridFixture.write("<osmChange version=\"0.6\"><modify>"
+                + GridFixture.node(2, LON0 + 0.01, LAT0 + 0.01)
+                + "</modify></osmChange>"));
+        matcher = new MapMatcher(graph);
+        List<MapMatcher.Match> matches = matcher.match(new double[]{LON0 + 0.005},
+                new double[]{LAT0 + 0.005 + NOISE});
+        assertEquals(1, matches.size());
+        assertEquals(0.5, matches.get(0).fraction, 1e-2);
+        assertEquals(0, matcher.match(new double[]{LON0 + 0.005}, new double[]{LAT0}).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedTrace() {
+        matcher.match(new double[2], new double[3]);
+    }
+
+    /** Samples points every <code>step</code> degrees along a route, with Gaussian noise. */
+    private List<double[]> drive(List<Long> route, double step, Random r) {
+        List<double[]> trace = new ArrayList<>();
+        for (int k = 1; k < route.size(); k += 1) {
+            double lon0 = graph.lon(route.get(k - 1)), lat0 = graph.lat(route.get(k - 1));
+            double lon1 = graph.lon(route.get(k)), lat1 = graph.lat(route.get(k));
+            double len = Math.hypot(lon1 - lon0, lat1 - lat0);
+            for (double d = 0; d < len; d += step) {
+                double t = d / len;
+                trace.add(new double[]{
+                    lon0 + t * (lon1 - lon0) + NOISE * r.nextGaussian(),
+                    lat0 + t * (lat1 - lat0) + NOISE * r.nextGaussian()});
+            }
+        }
+        return trace;
+    }
+
+    private static double[] lons(List<double[]> trace) {
+        double[] result = new double[trace.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = trace.get(i)[0];
+        }
+        return result;
+    }
+
+    private static double[] lats(List<double[]> trace) {
+        double[] result = new double[trace.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = trace.get(i)[1];
+        }
+        return result;
+    }
+}
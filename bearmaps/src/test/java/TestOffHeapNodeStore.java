@@ -0,0 +1,115 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that OffHeapNodeStore finds every stored node, whether its input arrives sorted or not,
+ * across buffer growth, and for both direct and mapped buffers.
+ */
+public class TestOffHeapNodeStore {
+    /** More than the initial capacity, so that the buffer has to grow. */
+    private static final int N = 100000;
+
+    @Test
+    public void testSortedInput() {
+        OffHeapNodeStore store = OffHeapNodeStore.direct();
+        for (long id = 10; id <= 50; id += 10) {
+            store.add(id, -122.0 - id, 37.0 + id);
+        }
+        store.seal();
+        assertEquals(5, store.size());
+        assertEquals(2, store.indexOf(30));
+        assertEquals(-152.0, store.lon(2), 0);
+        assertEquals(67.0, store.lat(2), 0);
+        /* Misses below, between and above the stored IDs. */
+        assertEquals(-1, store.indexOf(5));
+        assertEquals(-1, store.indexOf(35));
+        assertEquals(-1, store.indexOf(55));
+        store.close();
+    }
+
+    @Test
+    public void testUnsortedDirect() {
+        checkUnsorted(OffHeapNodeStore.direct());
+    }
+
+    @Test
+    public void testUnsortedMapped() throws IOException {
+        OffHeapNodeStore store = OffHeapNodeStore.mapped();
+        assertTrue(store.isMapped());
+        checkUnsorted(store);
+    }
+
+    @Test
+    public void testLookupBeforeSeal() {
+        OffHeapNodeStore store = OffHeapNodeStore.direct();
+        store.add(2, 0, 0);
+        store.add(1, 0, 0);
+        try {
+            store.indexOf(1);
+            fail("Looked up an unsealed store.");
+        } catch (IllegalStateException e) {
+            store.seal();
+            assertEquals(0, store.indexOf(1));
+        }
+    }
+
+    @Test
+    public void testFinish() throws IOException {
+        OffHeapNodeStore store = OffHeapNodeStore.mapped();
+        store.add(7, 1.5, 2.5);
+        store.add(3, 0.5, 0.25);
+        store.finish();
+        /* The file is gone, but the mapping still reads. */
+        assertEquals(1, store.indexOf(7));
+        assertEquals(2.5, store.lat(1), 0);
+        try {
+            store.add(9, 0, 0);
+            fail("Added to a finished store.");
+        } catch (IllegalStateException e) {
+            assertEquals(2, store.size());
+        }
+    }
+
+    @Test
+    public void testForExtract() throws IOException {
+        assertFalse(OffHeapNodeStore.forExtract(1 << 20).isMapped());
+        OffHeapNodeStore large = OffHeapNodeStore.forExtract(OffHeapNodeStore.MAPPED_EXTRACT_BYTES);
+        assertTrue(large.isMapped());
+        large.close();
+    }
+
+    /** Adds N nodes with shuffled IDs to STORE, then checks that each is found after a seal. */
+    private static void checkUnsorted(OffHeapNodeStore store) {
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i < N; i += 1) {
+            ids.add(3 * i + 1);
+        }
+        Collections.shuffle(ids, new Random(28));
+        for (long id : ids) {
+            store.add(id, id * 1e-6, -id * 1e-6);
+        }
+        store.seal();
+        assertEquals(N, store.size());
+        for (int i = 1; i < N; i += 1) {
+            assertTrue(store.idAt(i - 1) < store.idAt(i));
+        }
+        for (long id : ids) {
+            int at = store.indexOf(id);
+            assertEquals(id, store.idAt(at));
+            assertEquals(id * 1e-6, store.lon(at), 0);
+            assertEquals(-id * 1e-6, store.lat(at), 0);
+            assertEquals(-1, store.indexOf(id + 1));
+        }
+        store.close();
+    }
+}
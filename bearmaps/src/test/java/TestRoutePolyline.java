@@ -0,0 +1,66 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks route simplification and the encoded polyline format.
+ */
+public class TestRoutePolyline {
+    @Test
+    public void testEncodeReferenceExample() {
+        /* The example from Google's description of the format. */
+        double[] lats = {38.5, 40.7, 43.252};
+        double[] lons = {-120.2, -120.95, -126.453};
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@",
+                RoutePolyline.encode(lons, lats, new int[]{0, 1, 2}));
+    }
+
+    @Test
+    public void testDecodeRoundTrip() {
+        double[] lons = {-122.2585, -122.2591, -122.26, -122.2413};
+        double[] lats = {37.8722, 37.8719, 37.8731, 37.8705};
+        double[][] decoded = RoutePolyline.decode(
+                RoutePolyline.encode(lons, lats, new int[]{0, 1, 2, 3}));
+        assertArrayEquals(lons, decoded[0], 1e-9);
+        assertArrayEquals(lats, decoded[1], 1e-9);
+    }
+
+    @Test
+    public void testSimplifyKeepsOnlyCorners() {
+        double[] lons = new double[11], lats = new double[11];
+        for (int i = 0; i <= 10; i += 1) {
+            lons[i] = -122.26 + i * 0.001;
+            lats[i] = 37.87 + 0.0002 * (5 - Math.abs(i - 5));
+        }
+        assertArrayEquals(new int[]{0, 5, 10}, RoutePolyline.simplify(lons, lats, 0.0001));
+    }
+
+    @Test
+    public void testSimplifyKeepsWithinTolerance() {
+        int n = 20000;
+        double[] lons = new double[n], lats = new double[n];
+        for (int i = 0; i < n; i += 1) {
+            lons[i] = -122.26 + i * 1e-5;
+            lats[i] = 37.87 + 0.001 * Math.sin(i / 300.0);
+        }
+        double tolerance = 2e-5;
+        int[] kept = RoutePolyline.simplify(lons, lats, tolerance);
+        assertEquals(0, kept[0]);
+        assertEquals(n - 1, kept[kept.length - 1]);
+        assertTrue("Expected substantial simplification", kept.length < n / 20);
+
+        /* Every dropped vertex lies close to the segment between its kept neighbors. */
+        double scale = Math.cos(Math.toRadians(lats[0]));
+        for (int k = 1; k < kept.length; k += 1) {
+            int a = kept[k - 1], b = kept[k];
+            double dx = (lons[b] - lons[a]) * scale, dy = lats[b] - lats[a];
+            for (int i = a + 1; i < b; i += 1) {
+                double px = (lons[i] - lons[a]) * scale, py = lats[i] - lats[a];
+                double d = Math.abs(px * dy - py * dx) / Math.hypot(dx, dy);
+                assertTrue(d <= tolerance);
+            }
+        }
+    }
+}
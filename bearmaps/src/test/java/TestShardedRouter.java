@@ -0,0 +1,155 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that routing across shards of a partitioned graph finds paths as short as routing on
+ * the whole graph, on a randomly thinned street grid.
+ */
+public class TestShardedRouter {
+    private static final int SIDE = 20;
+    private static final double SPACING = GridFixture.SPACING;
+    private static final double LON0 = GridFixture.LON0, LAT0 = GridFixture.LAT0;
+    private static final GridFixture GRID = new GridFixture(SIDE);
+    private static final int NUM_QUERIES = 200;
+
+    private GraphDB graph;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = new GraphDB(GRID.write(new Random(61)));
+    }
+
+    @Test
+    public void testMatchesUnpartitionedRouter() throws Exception {
+        List<GraphShard> shards = GraphPartitioner.partition(graph.snapshot(), 0.0001);
+        assertTrue("Expected several shards, got " + shards.size(), shards.size() > 4);
+        ShardedRouter sharded = new ShardedRouter(new LoopbackTransport(shards));
+
+        Random r = new Random(1);
+        for (int i = 0; i < NUM_QUERIES; i += 1) {
+            double stlon = LON0 + r.nextDouble() * SIDE * SPACING;
+            double stlat = LAT0 + r.nextDouble() * SIDE * SPACING;
+            double destlon = LON0 + r.nextDouble() * SIDE * SPACING;
+            double destlat = LAT0 + r.nextDouble() * SIDE * SPACING;
+            List<Long> expected = Router.shortestPath(graph, stlon, stlat, destlon, destlat);
+            List<Long> actual = sharded.shortestPath(stlon, stlat, destlon, destlat);
+
+            assertEquals(expected.isEmpty(), actual.isEmpty());
+            if (!expected.isEmpty()) {
+                assertEquals(expected.get(0), actual.get(0));
+                assertEquals(expected.get(expected.size() - 1), actual.get(actual.size() - 1));
+                assertEquals(length(expected), length(actual), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testCoarsePartition() throws Exception {
+        /* Cells are aligned to the projection origin, which lies inside the grid. */
+        List<GraphShard> shards = GraphPartitioner.partition(graph.snapshot(), 1.0);
+        assertTrue(shards.size() <= 4);
+        ShardedRouter sharded = new ShardedRouter(new LoopbackTransport(shards));
+        List<Long> expected = Router.shortestPath(graph, LON0, LAT0, LON0 + 0.015, LAT0 + 0.012);
+        List<Long> actual = sharded.shortestPath(LON0, LAT0, LON0 + 0.015, LAT0 + 0.012);
+        assertEquals(length(expected), length(actual), 1e-9);
+    }
+
+    /**
+     * Routing through shards served over TCP, here split between two servers, gives the same
+     * paths as calling them in-process.
+     */
+    @Test
+    public void testOverSockets() throws Exception {
+        List<GraphShard> shards = GraphPartitioner.partition(graph.snapshot(), 0.0001);
+        List<GraphShard> even = new ArrayList<>(), odd = new ArrayList<>();
+        for (GraphShard s : shards) {
+            (s.id() % 2 == 0 ? even : odd).add(s);
+        }
+        try (ShardServer a = new ShardServer(even, 0); ShardServer b = new ShardServer(odd, 0)) {
+            List<InetSocketAddress> addresses = new ArrayList<>();
+            for (GraphShard s : shards) {
+                int port = s.id() % 2 == 0 ? a.port() : b.port();
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            }
+            try (SocketTransport transport = new SocketTransport(addresses)) {
+                ShardedRouter remote = new ShardedRouter(transport);
+                ShardedRouter local = new ShardedRouter(new LoopbackTransport(shards));
+                Random r = new Random(2);
+                for (int i = 0; i < NUM_QUERIES / 4; i += 1) {
+                    double stlon = LON0 + r.nextDouble() * SIDE * SPACING;
+                    double stlat = LAT0 + r.nextDouble() * SIDE * SPACING;
+                    double destlon = LON0 + r.nextDouble() * SIDE * SPACING;
+                    double destlat = LAT0 + r.nextDouble() * SIDE * SPACING;
+                    assertEquals(local.shortestPath(stlon, stlat, destlon, destlat),
+                            remote.shortestPath(stlon, stlat, destlon, destlat));
+                }
+
+                /* A server reports requests for shards it does not host, and keeps serving. */
+                byte[] request = {GraphShard.BOUNDARY};
+                List<InetSocketAddress> wrong = List.of(addresses.get(1), addresses.get(0));
+                try (SocketTransport misrouted = new SocketTransport(wrong)) {
+                    misrouted.call(0, request);
+                    fail("Server answered for a shard it does not host.");
+                } catch (IOException e) {
+                    assertTrue(e.getMessage(), e.getMessage().contains("No such shard"));
+                }
+                assertEquals(transport.call(0, request).length,
+                        new LoopbackTransport(shards).call(0, request).length);
+            }
+        }
+    }
+
+    /** Shards written to files and loaded one at a time route exactly like the originals. */
+    @Test
+    public void testWrittenShards() throws Exception {
+        File dir = Files.createTempDirectory("shards").toFile();
+        int n = GraphPartitioner.write(graph.snapshot(), 0.0001, dir);
+        List<GraphShard> loaded = new ArrayList<>();
+        for (int i = 0; i < n; i += 1) {
+            File f = GraphShard.file(dir, i);
+            f.deleteOnExit();
+            loaded.add(ShardServer.read(f));
+        }
+        dir.deleteOnExit();
+        List<GraphShard> shards = GraphPartitioner.partition(graph.snapshot(), 0.0001);
+        assertEquals(shards.size(), n);
+        ShardedRouter local = new ShardedRouter(new LoopbackTransport(shards));
+        ShardedRouter fromFiles = new ShardedRouter(new LoopbackTransport(loaded));
+        Random r = new Random(3);
+        for (int i = 0; i < NUM_QUERIES / 4; i += 1) {
+            double stlon = LON0 + r.nextDouble() * SIDE * SPACING;
+            double stlat = LAT0 + r.nextDouble() * SIDE * SPACING;
+            double destlon = LON0 + r.nextDouble() * SIDE * SPACING;
+            double destlat = LAT0 + r.nextDouble() * SIDE * SPACING;
+            assertEquals(local.shortestPath(stlon, stlat, destlon, destlat),
+                    fromFiles.shortestPath(stlon, stlat, destlon, destlat));
+        }
+    }
+
+    /** Returns the length of a path, checking that consecutive vertices are adjacent. */
+    private double length(List<Long> path) {
+        double total = 0;
+        for (int i = 1; i < path.size(); i += 1) {
+            boolean adjacent = false;
+            for (long w : graph.adjacent(path.get(i - 1))) {
+                adjacent |= w == path.get(i);
+            }
+            assertTrue("Path uses a missing edge", adjacent);
+            total += graph.distance(path.get(i - 1), path.get(i));
+        }
+        return total;
+    }
+}
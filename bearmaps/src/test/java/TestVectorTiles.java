@@ -0,0 +1,243 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks vector tiles generated from a small graph by decoding their protocol buffer encoding.
+ */
+public class TestVectorTiles {
+    private static final String BASE = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<osm version=\"0.6\">\n"
+            + "  <node id=\"1\" lat=\"37.87\" lon=\"-122.25\"/>\n"
+            + "  <node id=\"2\" lat=\"37.87\" lon=\"-122.24\"/>\n"
+            + "  <node id=\"3\" lat=\"37.86\" lon=\"-122.23\"/>\n"
+            + "  <node id=\"4\" lat=\"37.85\" lon=\"-122.29\">\n"
+            + "    <tag k=\"name\" v=\"Cafe Strada\"/>\n"
+            + "  </node>\n"
+            + "  <way id=\"10\">\n"
+            + "    <nd ref=\"1\"/><nd ref=\"2\"/><nd ref=\"3\"/>\n"
+            + "    <tag k=\"highway\" v=\"residential\"/>\n"
+            + "    <tag k=\"name\" v=\"Main Street\"/>\n"
+            + "    <tag k=\"maxspeed\" v=\"25 mph\"/>\n"
+            + "  </way>\n"
+            + "</osm>\n";
+
+    private static final String CHANGE = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<osmChange version=\"0.6\">\n"
+            + "  <delete>\n"
+            + "    <way id=\"10\"/>\n"
+            + "  </delete>\n"
+            + "</osmChange>\n";
+
+    private static final int MOVE_TO = 1, LINE_TO = 2;
+
+    private GraphDB graph;
+    private VectorTiles tiles;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = new GraphDB(write(BASE));
+        tiles = new VectorTiles(graph);
+    }
+
+    @Test
+    public void testRootTile() {
+        Map<String, Map<Integer, List<Object>>> layers = layers(tiles.tile(0, 0, 0));
+        assertEquals(2, layers.size());
+
+        Map<Integer, List<Object>> roads = layers.get("roads");
+        assertEquals(4096L, roads.get(5).get(0));
+        assertEquals(1, roads.get(2).size());
+        Map<Integer, List<Object>> road = decode((byte[]) roads.get(2).get(0));
+        assertEquals(10L, road.get(1).get(0));
+        assertEquals(2L, road.get(3).get(0));
+        assertEquals(List.of("name", "maxspeed"), strings(roads.get(3)));
+
+        List<int[]> points = geometry((byte[]) road.get(4).get(0));
+        assertEquals(3, points.size());
+        for (int[] p : points) {
+            assertTrue(p[0] >= 0 && p[0] < 4096 && p[1] >= 0 && p[1] < 4096);
+        }
+        /* Latitude decreases down the tile. */
+        assertTrue(points.get(2)[1] > points.get(0)[1]);
+
+        Map<Integer, List<Object>> locations = layers.get("locations");
+        Map<Integer, List<Object>> cafe = decode((byte[]) locations.get(2).get(0));
+        assertEquals(4L, cafe.get(1).get(0));
+        assertEquals(1L, cafe.get(3).get(0));
+    }
+
+    @Test
+    public void testClipsToTile() {
+        /* At depth 3, the road crosses from column 5 into column 6. */
+        int y = (int) ((MapServer.ROOT_ULLAT - 37.87) / (MapServer.ROOT_LAT_DELTA / 8));
+        int x = (int) ((-122.24 - MapServer.ROOT_ULLON) / (MapServer.ROOT_LON_DELTA / 8));
+        Map<String, Map<Integer, List<Object>>> layers = layers(tiles.tile(3, x, y));
+        Map<Integer, List<Object>> road = decode((byte[]) layers.get("roads").get(2).get(0));
+        for (int[] p : geometry((byte[]) road.get(4).get(0))) {
+            assertTrue(p[0] >= -64 && p[0] <= 4096 + 64 && p[1] >= -64 && p[1] <= 4096 + 64);
+        }
+        assertEquals(0, tiles.tile(3, 7, 7).length);
+    }
+
+    /** A deep tile in the middle of an edge draws it, however far the edge's vertices are. */
+    @Test
+    public void testDeepTileInsideLongEdge() {
+        int depth = 18;
+        double lonWidth = MapServer.ROOT_LON_DELTA / (1 << depth);
+        double latHeight = MapServer.ROOT_LAT_DELTA / (1 << depth);
+        int y = (int) ((MapServer.ROOT_ULLAT - 37.865) / latHeight);
+        int x = (int) ((-122.235 - MapServer.ROOT_ULLON) / lonWidth);
+        Map<Integer, List<Object>> roads = layers(tiles.tile(depth, x, y)).get("roads");
+        assertEquals(1, roads.get(2).size());
+    }
+
+    @Test
+    public void testCachedPerVersion() throws Exception {
+        byte[] first = tiles.tile(1, 1, 0);
+        assertSame(first, tiles.tile(1, 1, 0));
+        graph.applyChange(write(CHANGE));
+        byte[] updated = tiles.tile(1, 1, 0);
+        assertNotSame(first, updated);
+        assertEquals(null, layers(updated).get("roads"));
+    }
+
+    /** A location moved by a change is drawn only in the tile it moved to. */
+    @Test
+    public void testMovedLocation() throws Exception {
+        assertEquals(1, layers(tiles.tile(1, 0, 1)).get("locations").get(2).size());
+        graph.applyChange(write("<osmChange version=\"0.6\"><modify>"
+                + "<node id=\"4\" lat=\"37.88\" lon=\"-122.22\">"
+                + "<tag k=\"name\" v=\"Cafe Strada\"/></node>"
+                + "</modify></osmChange>"));
+        assertEquals(null, layers(tiles.tile(1, 0, 1)).get("locations"));
+        Map<Integer, List<Object>> locations = layers(tiles.tile(1, 1, 0)).get("locations");
+        assertEquals(4L, decode((byte[]) locations.get(2).get(0)).get(1).get(0));
+    }
+
+    /** A way through a node outside the extract is drawn as two lines, one on each side. */
+    @Test
+    public void testDanglingRef() throws Exception {
+        String refs = "<nd ref=\"99\"/><nd ref=\"3\"/><nd ref=\"4\"/>";
+        graph = new GraphDB(write(BASE.replace("<nd ref=\"3\"/>", refs)));
+        tiles = new VectorTiles(graph);
+        Map<Integer, List<Object>> roads = layers(tiles.tile(0, 0, 0)).get("roads");
+        Map<Integer, List<Object>> road = decode((byte[]) roads.get(2).get(0));
+        byte[] packed = (byte[]) road.get(4).get(0);
+        assertEquals(List.of(MOVE_TO, LINE_TO, MOVE_TO, LINE_TO), commands(packed));
+        assertEquals(4, geometry(packed).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTileOutOfRange() {
+        tiles.tile(2, 4, 0);
+    }
+
+    /** Returns each layer of a tile by name, as decoded fields. */
+    private static Map<String, Map<Integer, List<Object>>> layers(byte[] tile) {
+        Map<String, Map<Integer, List<Object>>> result = new HashMap<>();
+        for (Object layer : decode(tile).getOrDefault(3, List.of())) {
+            Map<Integer, List<Object>> fields = decode((byte[]) layer);
+            result.put(new String((byte[]) fields.get(1).get(0), StandardCharsets.UTF_8), fields);
+        }
+        return result;
+    }
+
+    private static List<String> strings(List<Object> values) {
+        List<String> result = new ArrayList<>();
+        for (Object v : values) {
+            result.add(new String((byte[]) v, StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    /** Decodes drawing commands into absolute points. */
+    private static List<int[]> geometry(byte[] packed) {
+        List<Long> ints = new ArrayList<>();
+        int[] pos = {0};
+        while (pos[0] < packed.length) {
+            ints.add(varint(packed, pos));
+        }
+        List<int[]> points = new ArrayList<>();
+        int x = 0, y = 0;
+        for (int i = 0; i < ints.size();) {
+            long command = ints.get(i++);
+            for (long n = command >> 3; n > 0; n -= 1) {
+                x += unzigzag(ints.get(i++));
+                y += unzigzag(ints.get(i++));
+                points.add(new int[]{x, y});
+            }
+        }
+        return points;
+    }
+
+    /** Returns the IDs of the drawing commands, in order, skipping their parameters. */
+    private static List<Integer> commands(byte[] packed) {
+        List<Integer> result = new ArrayList<>();
+        int[] pos = {0};
+        while (pos[0] < packed.length) {
+            long command = varint(packed, pos);
+            result.add((int) (command & 7));
+            for (long n = 2 * (command >> 3); n > 0; n -= 1) {
+                varint(packed, pos);
+            }
+        }
+        return result;
+    }
+
+    private static int unzigzag(long n) {
+        return (int) ((n >>> 1) ^ -(n & 1));
+    }
+
+    /** Decodes one protocol buffer message into its varint and length-delimited fields. */
+    private static Map<Integer, List<Object>> decode(byte[] bytes) {
+        Map<Integer, List<Object>> fields = new HashMap<>();
+        int[] pos = {0};
+        while (pos[0] < bytes.length) {
+            long key = varint(bytes, pos);
+            Object value;
+            if ((key & 7) == 0) {
+                value = varint(bytes, pos);
+            } else {
+                assertEquals(2, key & 7);
+                int length = (int) varint(bytes, pos);
+                byte[] b = new byte[length];
+                System.arraycopy(bytes, pos[0], b, 0, length);
+                pos[0] += length;
+                value = b;
+            }
+            fields.computeIfAbsent((int) (key >> 3), k -> new ArrayList<>()).add(value);
+        }
+        return fields;
+    }
+
+    private static long varint(byte[] bytes, int[] pos) {
+        long result = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = bytes[pos[0]++];
+            result |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+    }
+
+    private static String write(String xml) throws Exception {
+        File f = File.createTempFile("tiles", ".osm.xml");
+        f.deleteOnExit();
+        Files.write(f.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        return f.getPath();
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/* A disjoint-set structure that any number of threads may use at once,
+   without locks. Based on Anderson and Woll, "Wait-free Parallel Algorithms
+   for the Union-Find Problem".
+
+   Like UnionFind, each vertex has one int: the parent of a non-root vertex, or
+   a negative number for a root. Here a root holds -(rank + 1) instead of its
+   negative size, so that a root's rank and its root-ness change together in a
+   single compare-and-set. Roots are linked in (rank, index) order, lower under
+   higher. A link only succeeds if the lower root still has the rank that was
+   compared, and ranks never decrease, so parent chains always climb in that
+   order and can never form a cycle.
+
+   find uses path splitting: each vertex on the path is swung to its
+   grandparent with a compare-and-set. A failed compare-and-set only means
+   another thread already moved that vertex further up, so find never retries
+   a step and never waits on another thread. */
+public class ConcurrentUnionFind {
+
+    private final AtomicIntegerArray parent;
+    /* The number of disjoint sets. */
+    private final AtomicInteger count;
+
+    /* Creates a ConcurrentUnionFind holding N vertices, each in its own set. */
+    public ConcurrentUnionFind(int N) {
+        if (N < 0) {
+            throw new IllegalArgumentException("Negative size: " + N);
+        }
+        parent = new AtomicIntegerArray(N);
+        for (int i = 0; i < N; i += 1) {
+            parent.set(i, -1);
+        }
+        count = new AtomicInteger(N);
+    }
+
+    /* Returns the number of vertices. */
+    public int size() {
+        return parent.length();
+    }
+
+    /* Returns the number of disjoint sets. Exact once all unions complete. */
+    public int count() {
+        return count.get();
+    }
+
+    /* Returns the root of the set V belongs to at some instant during the
+       call. Unions by other threads may make it a non-root soon after. */
+    public int find(int v) {
+        validate(v);
+        return root(v);
+    }
+
+    /* Returns true if V1 and V2 are in the same set. The answer is true at
+       some instant during the call. */
+    public boolean connected(int v1, int v2) {
+        validate(v1);
+        validate(v2);
+        while (true) {
+            int r1 = root(v1);
+            int r2 = root(v2);
+            if (r1 == r2) {
+                return true;
+            }
+            /* r1 and r2 were distinct roots only if r1 is still a root after
+               r2 was found. Otherwise, r1 was linked in between: look again. */
+            if (parent.get(r1) < 0) {
+                return false;
+            }
+        }
+    }
+
+    /* Joins the sets of V1 and V2. Returns true if this call joined two
+       different sets, and false if they were already one set. */
+    public boolean union(int v1, int v2) {
+        validate(v1);
+        validate(v2);
+        while (true) {
+            int r1 = root(v1);
+            int r2 = root(v2);
+            if (r1 == r2) {
+                return false;
+            }
+            int w1 = parent.get(r1);
+            int w2 = parent.get(r2);
+            if (w1 >= 0 || w2 >= 0) {
+                /* Linked by another thread since root() returned. */
+                continue;
+            }
+            /* Ranks are -(w + 1), so a larger rank is a more negative word. */
+            if (w1 < w2 || (w1 == w2 && r1 > r2)) {
+                int r = r1;
+                r1 = r2;
+                r2 = r;
+                int w = w1;
+                w1 = w2;
+                w2 = w;
+            }
+            /* (rank, index) of r1 is now below that of r2: link r1 under r2. */
+            if (parent.compareAndSet(r1, w1, r2)) {
+                if (w1 == w2) {
+                    /* Equal ranks: r2's rank grows, unless r2 already changed. */
+                    parent.compareAndSet(r2, w2, w2 - 1);
+                }
+                count.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /* Returns the root of V, splitting the path on the way. */
+    private int root(int v) {
+        while (true) {
+            int p = parent.get(v);
+            if (p < 0) {
+                return v;
+            }
+            int grandparent = parent.get(p);
+            if (grandparent < 0) {
+                return p;
+            }
+            parent.compareAndSet(v, p, grandparent);
+            v = p;
+        }
+    }
+
+    private void validate(int v) {
+        if (v < 0 || v >= parent.length()) {
+            throw new IllegalArgumentException("Not a valid vertex: " + v);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentUnionFindTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void testSequential() {
+        ConcurrentUnionFind uf = new ConcurrentUnionFind(6);
+        assertEquals(6, uf.count());
+        assertTrue(uf.union(0, 1));
+        assertTrue(uf.union(2, 3));
+        assertFalse(uf.union(1, 0));
+        assertTrue(uf.union(1, 3));
+        assertTrue(uf.connected(0, 2));
+        assertFalse(uf.connected(0, 4));
+        assertEquals(uf.find(0), uf.find(3));
+        assertEquals(3, uf.count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidVertex() {
+        new ConcurrentUnionFind(4).union(0, 4);
+    }
+
+    /* Many threads union random pairs at once, while others query. The final
+       partition must match a sequential UnionFind given the same pairs. */
+    @Test
+    public void testStressAgainstUnionFind() throws InterruptedException {
+        for (int round = 0; round < 5; round += 1) {
+            Random r = new Random(round);
+            int n = 20000;
+            int m = 3 * n / 2;
+            int[] a = new int[m];
+            int[] b = new int[m];
+            for (int i = 0; i < m; i += 1) {
+                /* Mostly local pairs, so many threads race on the same sets. */
+                a[i] = r.nextInt(n);
+                b[i] = r.nextBoolean() ? r.nextInt(n) : (a[i] + 1 + r.nextInt(8)) % n;
+            }
+
+            UnionFind expected = new UnionFind(n);
+            int expectedMerges = 0;
+            for (int i = 0; i < m; i += 1) {
+                if (!expected.connected(a[i], b[i])) {
+                    expectedMerges += 1;
+                }
+                expected.union(a[i], b[i]);
+            }
+
+            ConcurrentUnionFind actual = new ConcurrentUnionFind(n);
+            AtomicInteger merges = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] threads = new Thread[THREADS];
+            Throwable[] failure = new Throwable[1];
+            for (int t = 0; t < THREADS; t += 1) {
+                int offset = t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        start.await();
+                        /* Every thread walks the pairs from a different offset. */
+                        for (int k = 0; k < m; k += 1) {
+                            int i = (k + offset * (m / THREADS)) % m;
+                            if (actual.union(a[i], b[i])) {
+                                merges.incrementAndGet();
+                            }
+                            assertTrue(actual.connected(a[i], b[i]));
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertNull(failure[0]);
+
+            /* Each distinct merge was reported by exactly one thread. */
+            assertEquals(expectedMerges, merges.get());
+            assertEquals(n - expectedMerges, actual.count());
+            for (int i = 0; i < 20000; i += 1) {
+                int u = r.nextInt(n);
+                int v = i % 2 == 0 ? r.nextInt(n) : b[r.nextInt(m)];
+                assertEquals(expected.connected(u, v), actual.connected(u, v));
+            }
+            for (int v = 0; v < n; v += 1) {
+                assertEquals(expected.connected(v, a[0]), actual.find(v) == actual.find(a[0]));
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.Arrays;
+
+/* A disjoint-set structure for workloads with very many operations. Like
+   UnionFind, it keeps everything in one int[]: parent[v] is the parent of v,
+   or the negative size of v's tree if v is a root. Unlike UnionFind, find uses
+   path halving, which shortens paths in the same single pass that walks them.
+
+   The batch operations unionAll and findAll check their whole input once up
+   front and then run without per-element validation or method call overhead,
+   and compact flattens every tree so that later finds take a single step. */
+public class FastUnionFind {
+
+    private final int[] parent;
+    /* The number of disjoint sets. */
+    private int count;
+
+    /* Creates a FastUnionFind holding N vertices, each in its own set. */
+    public FastUnionFind(int N) {
+        if (N < 0) {
+            throw new IllegalArgumentException("Negative size: " + N);
+        }
+        parent = new int[N];
+        Arrays.fill(parent, -1);
+        count = N;
+    }
+
+    /* Returns the number of vertices. */
+    public int size() {
+        return parent.length;
+    }
+
+    /* Returns the number of disjoint sets. */
+    public int count() {
+        return count;
+    }
+
+    /* Returns the size of the set V belongs to. */
+    public int sizeOf(int v) {
+        return -parent[find(v)];
+    }
+
+    /* Returns true if V1 and V2 are in the same set. */
+    public boolean connected(int v1, int v2) {
+        validate(v1);
+        validate(v2);
+        return root(v1) == root(v2);
+    }
+
+    /* Returns the root of the set V belongs to. */
+    public int find(int v) {
+        validate(v);
+        return root(v);
+    }
+
+    /* Joins the sets of V1 and V2, by size, with ties going to V2's root.
+       Returns true if they were in different sets. */
+    public boolean union(int v1, int v2) {
+        validate(v1);
+        validate(v2);
+        return link(root(v1), root(v2));
+    }
+
+    /* Unions A[i] with B[i] for every i, in order. Throws an
+       IllegalArgumentException, before changing anything, if the arrays differ
+       in length or hold an invalid vertex. Returns the number of unions that
+       joined two different sets. */
+    public int unionAll(int[] a, int[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Arrays differ in length.");
+        }
+        validateAll(a, a.length);
+        validateAll(b, b.length);
+        int merged = 0;
+        for (int i = 0; i < a.length; i += 1) {
+            if (link(root(a[i]), root(b[i]))) {
+                merged += 1;
+            }
+        }
+        return merged;
+    }
+
+    /* Sets OUT[i] to the root of IN[i] for every i. OUT may be IN. Throws an
+       IllegalArgumentException, before changing anything, if OUT is shorter
+       than IN or IN holds an invalid vertex. */
+    public void findAll(int[] in, int[] out) {
+        if (out.length < in.length) {
+            throw new IllegalArgumentException("Output array is too short.");
+        }
+        validateAll(in, in.length);
+        for (int i = 0; i < in.length; i += 1) {
+            out[i] = root(in[i]);
+        }
+    }
+
+    /* Points every vertex directly at its root, so that every find afterwards
+       takes at most one step until the next union. */
+    public void compact() {
+        for (int v = 0; v < parent.length; v += 1) {
+            if (parent[v] >= 0) {
+                parent[v] = root(v);
+            }
+        }
+    }
+
+    /* Returns the root of V with path halving: every other vertex on the path
+       is pointed at its grandparent. V must be valid. */
+    private int root(int v) {
+        int p = parent[v];
+        while (p >= 0) {
+            int grandparent = parent[p];
+            if (grandparent < 0) {
+                return p;
+            }
+            parent[v] = grandparent;
+            v = grandparent;
+            p = parent[v];
+        }
+        return v;
+    }
+
+    /* Links two roots by size. Returns false if they are the same root. */
+    private boolean link(int r1, int r2) {
+        if (r1 == r2) {
+            return false;
+        }
+        if (parent[r1] < parent[r2]) {
+            parent[r1] += parent[r2];
+            parent[r2] = r1;
+        } else {
+            parent[r2] += parent[r1];
+            parent[r1] = r2;
+        }
+        count -= 1;
+        return true;
+    }
+
+    private void validate(int v) {
+        if (v < 0 || v >= parent.length) {
+            throw new IllegalArgumentException("Not a valid vertex: " + v);
+        }
+    }
+
+    /* Validates the first LENGTH vertices of VS in a single pass. */
+    private void validateAll(int[] vs, int length) {
+        int n = parent.length;
+        for (int i = 0; i < length; i += 1) {
+            /* One unsigned comparison catches both negative and too-large values. */
+            if (Integer.compareUnsigned(vs[i], n) >= 0) {
+                throw new IllegalArgumentException("Not a valid vertex: " + vs[i]);
+            }
+        }
+    }
+}
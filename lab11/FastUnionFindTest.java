@@ -0,0 +1,178 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+public class FastUnionFindTest {
+
+    @Test
+    public void testSequential() {
+        FastUnionFind uf = new FastUnionFind(6);
+        assertEquals(6, uf.size());
+        assertEquals(6, uf.count());
+        assertTrue(uf.union(0, 1));
+        assertTrue(uf.union(2, 3));
+        assertFalse(uf.union(1, 0));
+        assertTrue(uf.union(1, 3));
+        assertTrue(uf.connected(0, 2));
+        assertFalse(uf.connected(0, 4));
+        assertEquals(uf.find(0), uf.find(3));
+        assertEquals(4, uf.sizeOf(2));
+        assertEquals(1, uf.sizeOf(5));
+        assertEquals(3, uf.count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidVertex() {
+        new FastUnionFind(4).union(0, 4);
+    }
+
+    /* Random pairs, joined one at a time or in batches, must give the same
+       partition as UnionFind, with count tracking the number of merges. */
+    @Test
+    public void testAgainstUnionFind() {
+        for (int round = 0; round < 5; round += 1) {
+            Random r = new Random(round);
+            int n = 5000;
+            int m = 3 * n / 2;
+            int[] a = new int[m];
+            int[] b = new int[m];
+            for (int i = 0; i < m; i += 1) {
+                a[i] = r.nextInt(n);
+                b[i] = r.nextBoolean() ? r.nextInt(n) : (a[i] + 1 + r.nextInt(8)) % n;
+            }
+
+            UnionFind expected = new UnionFind(n);
+            FastUnionFind actual = new FastUnionFind(n);
+            int merges = 0;
+            for (int i = 0; i < m; i += 1) {
+                if (!expected.connected(a[i], b[i])) {
+                    merges += 1;
+                }
+                expected.union(a[i], b[i]);
+            }
+            int reported = 0;
+            for (int i = 0; i < m; i += 1) {
+                if (r.nextInt(4) == 0) {
+                    /* A batch of the next few pairs. */
+                    int length = Math.min(m - i, 1 + r.nextInt(64));
+                    int[] batchA = new int[length];
+                    int[] batchB = new int[length];
+                    System.arraycopy(a, i, batchA, 0, length);
+                    System.arraycopy(b, i, batchB, 0, length);
+                    reported += actual.unionAll(batchA, batchB);
+                    i += length - 1;
+                } else if (actual.union(a[i], b[i])) {
+                    reported += 1;
+                }
+            }
+            assertEquals(merges, reported);
+            assertEquals(n - merges, actual.count());
+            for (int i = 0; i < 20000; i += 1) {
+                int u = r.nextInt(n);
+                int v = i % 2 == 0 ? r.nextInt(n) : b[r.nextInt(m)];
+                assertEquals(expected.connected(u, v), actual.connected(u, v));
+            }
+            for (int v = 0; v < n; v += 1) {
+                assertEquals(expected.sizeOf(v), actual.sizeOf(v));
+            }
+        }
+    }
+
+    /* An invalid vertex anywhere in a batch rejects the whole batch. */
+    @Test
+    public void testUnionAllValidatesFirst() {
+        FastUnionFind uf = new FastUnionFind(4);
+        try {
+            uf.unionAll(new int[]{0, 1, 2}, new int[]{1, 2, 4});
+            fail("Accepted an invalid vertex.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(4, uf.count());
+            assertFalse(uf.connected(0, 1));
+        }
+        try {
+            uf.unionAll(new int[]{0, -1}, new int[]{1, 2});
+            fail("Accepted a negative vertex.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(4, uf.count());
+        }
+        try {
+            uf.unionAll(new int[]{0, 1}, new int[]{1});
+            fail("Accepted arrays of different lengths.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(4, uf.count());
+        }
+        assertEquals(2, uf.unionAll(new int[]{0, 1, 2}, new int[]{1, 0, 3}));
+        assertEquals(2, uf.count());
+    }
+
+    @Test
+    public void testFindAll() {
+        FastUnionFind uf = new FastUnionFind(8);
+        uf.unionAll(new int[]{0, 2, 4, 6}, new int[]{1, 3, 5, 7});
+        uf.union(1, 3);
+        int[] in = {0, 1, 2, 3, 4, 5, 6, 7};
+        int[] out = new int[10];
+        uf.findAll(in, out);
+        for (int i = 0; i < in.length; i += 1) {
+            assertEquals(uf.find(in[i]), out[i]);
+        }
+
+        /* Writing the roots over the input. */
+        int[] inPlace = in.clone();
+        uf.findAll(inPlace, inPlace);
+        for (int i = 0; i < in.length; i += 1) {
+            assertEquals(uf.find(in[i]), inPlace[i]);
+        }
+    }
+
+    @Test
+    public void testFindAllValidatesFirst() {
+        FastUnionFind uf = new FastUnionFind(4);
+        int[] out = {-7, -7, -7};
+        try {
+            uf.findAll(new int[]{0, 1, 9}, out);
+            fail("Accepted an invalid vertex.");
+        } catch (IllegalArgumentException e) {
+            assertArrayEquals(new int[]{-7, -7, -7}, out);
+        }
+        try {
+            uf.findAll(new int[]{0, 1, 2}, new int[2]);
+            fail("Accepted a short output array.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(4, uf.count());
+        }
+    }
+
+    /* Compacting changes no set, and unions keep working afterwards. */
+    @Test
+    public void testCompact() {
+        Random r = new Random(35);
+        int n = 1000;
+        FastUnionFind uf = new FastUnionFind(n);
+        for (int i = 0; i < n; i += 1) {
+            uf.union(r.nextInt(n), r.nextInt(n));
+        }
+        int[] roots = new int[n];
+        int[] sizes = new int[n];
+        for (int v = 0; v < n; v += 1) {
+            roots[v] = uf.find(v);
+            sizes[v] = uf.sizeOf(v);
+        }
+        int count = uf.count();
+        uf.compact();
+        assertEquals(count, uf.count());
+        for (int v = 0; v < n; v += 1) {
+            assertEquals(roots[v], uf.find(v));
+            assertEquals(sizes[v], uf.sizeOf(v));
+        }
+        int a = roots[0];
+        int b = 0;
+        while (uf.connected(a, b)) {
+            b += 1;
+        }
+        assertTrue(uf.union(a, b));
+        assertEquals(count - 1, uf.count());
+        assertEquals(sizes[0] + sizes[b], uf.sizeOf(b));
+    }
+}
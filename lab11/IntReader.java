@@ -0,0 +1,169 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/* Reads whitespace-separated decimal ints from a file, such as the
+   percolation inputs in inputFiles.
+
+   In parses every token with Scanner and a regular expression, and hands back
+   one int per call. IntReader instead maps the file into memory and parses the
+   ASCII digits itself, straight into a caller's int[], so reading allocates
+   nothing per number. Files larger than one mapping are mapped a window at a
+   time; a number may span two windows. */
+public class IntReader implements Closeable {
+
+    private final FileChannel channel;
+    private final long fileSize;
+    /* The file offset of the start of WINDOW. */
+    private long windowStart;
+    private MappedByteBuffer window;
+
+    /* Opens FILENAME for reading. */
+    public IntReader(String filename) throws IOException {
+        this(Paths.get(filename));
+    }
+
+    /* Opens the file at PATH for reading. */
+    public IntReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileSize = channel.size();
+        windowStart = 0;
+        window = map(0);
+    }
+
+    /* Returns true if the file holds another int. */
+    public boolean hasNext() throws IOException {
+        return skipWhitespace() >= 0;
+    }
+
+    /* Returns the next int. Throws a NoSuchElementException at the end of the
+       file, and a NumberFormatException if the next token is not an int. */
+    public int next() throws IOException {
+        if (skipWhitespace() < 0) {
+            throw new NoSuchElementException("End of file.");
+        }
+        return parse();
+    }
+
+    /* Reads up to BUFFER.length ints into BUFFER, and returns how many were
+       read. Returns fewer than BUFFER.length only at the end of the file. */
+    public int read(int[] buffer) throws IOException {
+        return read(buffer, 0, buffer.length);
+    }
+
+    /* Reads up to LENGTH ints into BUFFER, starting at OFFSET, and returns how
+       many were read. Returns fewer than LENGTH only at the end of the file. */
+    public int read(int[] buffer, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > buffer.length - offset) {
+            throw new IllegalArgumentException("Range out of bounds: " + offset + ", " + length);
+        }
+        int count = 0;
+        while (count < length) {
+            if (skipWhitespace() < 0) {
+                break;
+            }
+            buffer[offset + count] = parse();
+            count += 1;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /* Consumes and parses the int that starts at the next byte. */
+    private int parse() throws IOException {
+        int c = nextByte();
+        boolean negative = c == '-';
+        if (negative || c == '+') {
+            c = nextByte();
+        }
+        if (!isDigit(c)) {
+            throw new NumberFormatException("Not an int at byte " + position());
+        }
+        /* Accumulate negatively, since -Integer.MIN_VALUE is not an int. */
+        int value = 0;
+        do {
+            int digit = c - '0';
+            if (value < (Integer.MIN_VALUE + digit) / 10) {
+                throw new NumberFormatException("Int out of range at byte " + position());
+            }
+            value = value * 10 - digit;
+            c = nextByte();
+        } while (isDigit(c));
+        if (c >= 0 && !isWhitespace(c)) {
+            throw new NumberFormatException("Not an int at byte " + position());
+        }
+        if (negative) {
+            return value;
+        }
+        if (value == Integer.MIN_VALUE) {
+            throw new NumberFormatException("Int out of range at byte " + position());
+        }
+        return -value;
+    }
+
+    /* Consumes whitespace and returns the byte after it without consuming
+       it, or returns -1 at the end of the file. */
+    private int skipWhitespace() throws IOException {
+        while (fill()) {
+            int c = window.get(window.position()) & 0xFF;
+            if (!isWhitespace(c)) {
+                return c;
+            }
+            window.position(window.position() + 1);
+        }
+        return -1;
+    }
+
+    /* Consumes and returns the next byte as 0 to 255, or -1 at the end of the
+       file. */
+    private int nextByte() throws IOException {
+        return fill() ? window.get() & 0xFF : -1;
+    }
+
+    /* Maps the next window if the current one is used up. Returns false if
+       the whole file has been read. */
+    private boolean fill() throws IOException {
+        if (window.hasRemaining()) {
+            return true;
+        }
+        long next = windowStart + window.limit();
+        if (next >= fileSize) {
+            return false;
+        }
+        window = map(next);
+        windowStart = next;
+        return true;
+    }
+
+    /* Maps the window of the file starting at START. */
+    private MappedByteBuffer map(long start) throws IOException {
+        long length = Math.min(WINDOW_SIZE, fileSize - start);
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+    }
+
+    /* Returns the file offset of the next unread byte. */
+    private long position() {
+        return windowStart + window.position();
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+    }
+
+    /* The most bytes mapped at once. */
+    private static final long WINDOW_SIZE = 1L << 26;
+}
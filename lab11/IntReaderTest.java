@@ -0,0 +1,73 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class IntReaderTest {
+
+    private static Path write(String contents) throws IOException {
+        Path path = Files.createTempFile("IntReaderTest", ".txt");
+        path.toFile().deleteOnExit();
+        Files.write(path, contents.getBytes(StandardCharsets.US_ASCII));
+        return path;
+    }
+
+    @Test
+    public void testNextAndHasNext() throws IOException {
+        try (IntReader in = new IntReader(write("  10\n9 1\r\n-3\t+7 2147483647 -2147483648\n"))) {
+            int[] expected = {10, 9, 1, -3, 7, Integer.MAX_VALUE, Integer.MIN_VALUE};
+            for (int e : expected) {
+                assertTrue(in.hasNext());
+                assertEquals(e, in.next());
+            }
+            assertFalse(in.hasNext());
+        }
+    }
+
+    @Test
+    public void testReadBatches() throws IOException {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 1000; i += 1) {
+            contents.append(i * 37).append(i % 3 == 0 ? '\n' : ' ');
+        }
+        try (IntReader in = new IntReader(write(contents.toString()))) {
+            int[] batch = new int[64];
+            int total = 0;
+            int count = in.read(batch);
+            while (count > 0) {
+                for (int k = 0; k < count; k += 1) {
+                    assertEquals((total + k) * 37, batch[k]);
+                }
+                total += count;
+                count = in.read(batch);
+            }
+            assertEquals(1000, total);
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        try (IntReader in = new IntReader(write(" \n"))) {
+            assertFalse(in.hasNext());
+            assertEquals(0, in.read(new int[4]));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testNotAnInt() throws IOException {
+        try (IntReader in = new IntReader(write("12 3x"))) {
+            in.next();
+            in.next();
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testOverflow() throws IOException {
+        try (IntReader in = new IntReader(write("2147483648"))) {
+            in.next();
+        }
+    }
+}
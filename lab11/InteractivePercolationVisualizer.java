@@ -13,7 +13,7 @@ import edu.princeton.cs.algs4.StdDraw;
 import edu.princeton.cs.algs4.StdOut;
 
 public class InteractivePercolationVisualizer {
-    /*private static final int DELAY = 20;
+    private static final int DELAY = 20;
 
     public static void main(String[] args) {
         // N-by-N percolation system (read from command-line, default = 10)
@@ -23,14 +23,16 @@ public class InteractivePercolationVisualizer {
         }
 
         // turn on animation mode
-        StdDraw.show(0);
+        StdDraw.enableDoubleBuffering();
 
-        // repeatedly open site specified my mouse click and draw resulting system
+        // repeatedly open site specified my mouse click and draw what changed
         StdOut.println(N);
 
         Percolation perc = new Percolation(N);
+        PercolationVisualizer.Painter painter = new PercolationVisualizer.Painter(N);
+        perc.addListener(painter);
         PercolationVisualizer.draw(perc, N);
-        StdDraw.show(DELAY);
+        StdDraw.show();
         while (true) {
 
             // detected mouse click
@@ -52,10 +54,12 @@ public class InteractivePercolationVisualizer {
                     perc.open(i, j);
                 }
 
-                // draw N-by-N percolation system
-                PercolationVisualizer.draw(perc, N);
+                // show the sites the click changed, if any
+                if (painter.flush(perc)) {
+                    StdDraw.show();
+                }
             }
-            StdDraw.show(DELAY);
+            StdDraw.pause(DELAY);
         }
-    }*/
+    }
 }
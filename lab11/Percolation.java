@@ -1,55 +1,297 @@
-// import edu.princeton.cs.algs4.QuickFindUF;
-// import edu.princeton.cs.algs4.QuickUnionUF;
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class Percolation {
 
-    // TODO: Add instance variables here.
+    /* Receives the changes open makes to a Percolation, in the order they
+       happen, so that a view can update only what changed. */
+    public interface Listener {
+        /* Called when the site (row, col) goes from blocked to open. */
+        default void opened(int row, int col) { }
+
+        /* Called when the open site (row, col) becomes full. A site that fills
+           as it opens gets opened first and then filled. */
+        default void filled(int row, int col) { }
+    }
+
+    /* The side length of the grid. */
+    private final int N;
+    /* Bit xyTo1D(row, col) is set if the site (row, col) is open: bit i of
+       the grid lives in bit (i % 64) of openBits[i / 64]. One bit per site
+       keeps the grid at N * N / 8 bytes, and row neighbours usually share a
+       word with the site itself. */
+    private final long[] openBits;
+    private int numOpen;
+    /* Connectivity among open sites. */
+    private final UnionFind sites;
+    /* For each root of SITES, whether its component touches the top row
+       (TOP) and the bottom row (BOTTOM). Entries for non-roots are stale. The
+       two flags of site i live in bits 2 * (i % 32) and up of
+       touchBits[i / 32], so they cost N * N / 4 bytes in all.
+
+       Tracking these per component replaces the usual virtual top and bottom
+       sites. A site is full exactly when its own component touches the top,
+       so there is no backwash through the bottom row, and no second
+       union-find is needed to rule it out. */
+    private final long[] touchBits;
+    /* Whether some component touches both the top and the bottom. Once true,
+       it stays true until clear. */
+    private boolean percolates;
+    private final List<Listener> listeners = new ArrayList<>();
+    /* While there are listeners, bit i is set if site i has been reported
+       full, laid out like openBits. Null while there are none, so that
+       Percolations nobody watches do no extra work. */
+    private long[] fullBits;
+    /* Scratch space for the flood fill in reportFilled. It starts small and
+       doubles when a fill needs more, so it only ever grows to the largest
+       fill seen rather than to the whole grid. */
+    private int[] stack;
 
     /* Creates an N-by-N grid with all sites initially blocked. */
     public Percolation(int N) {
-        // TODO: YOUR CODE HERE
+        if (N <= 0) {
+            throw new IllegalArgumentException("Grid size must be positive: " + N);
+        }
+        this.N = N;
+        openBits = new long[(N * N + 63) >>> 6];
+        sites = new UnionFind(N * N);
+        touchBits = new long[(N * N + 31) >>> 5];
+    }
+
+    /* Blocks every site again, reusing this Percolation's storage. */
+    public void clear() {
+        Arrays.fill(openBits, 0L);
+        numOpen = 0;
+        sites.clear();
+        Arrays.fill(touchBits, 0L);
+        percolates = false;
+        if (fullBits != null) {
+            Arrays.fill(fullBits, 0L);
+        }
+    }
+
+    /* Sends every later change to LISTENER. Changes made before it was added,
+       or made by clear, are not sent; read them from isOpen and isFull. */
+    public void addListener(Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Null listener.");
+        }
+        if (listeners.isEmpty()) {
+            /* Catch up on the sites that filled while nobody was watching. */
+            fullBits = new long[openBits.length];
+            stack = new int[INITIAL_STACK];
+            for (int site = 0; site < N * N; site += 1) {
+                if (isOpenSite(site) && (touches(sites.find(site)) & TOP) != 0) {
+                    fullBits[site >>> 6] |= 1L << site;
+                }
+            }
+        }
+        listeners.add(listener);
+    }
+
+    /* Stops sending changes to LISTENER. */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            fullBits = null;
+            stack = null;
+        }
+    }
+
+    /* Returns the side length of the grid. */
+    public int size() {
+        return N;
     }
 
     /* Opens the site (row, col) if it is not open already. */
     public void open(int row, int col) {
-        // TODO: YOUR CODE HERE
+        validate(row, col);
+        openSite(xyTo1D(row, col), row, col);
+    }
+
+    /* Opens the sites (ROWS[i], COLS[i]) for every i. Throws an
+       IllegalArgumentException, before opening anything, if the arrays differ
+       in length or name a site outside the grid.
+
+       The end state does not depend on the order sites are opened in, so the
+       sites are opened in row-major order. Consecutive sites then share words
+       of the grid and sit near each other in the union-find, instead of
+       jumping across memory as a random order would. */
+    public void openAll(int[] rows, int[] cols) {
+        if (rows.length != cols.length) {
+            throw new IllegalArgumentException("Arrays differ in length.");
+        }
+        int[] order = new int[rows.length];
+        for (int i = 0; i < rows.length; i += 1) {
+            validate(rows[i], cols[i]);
+            order[i] = xyTo1D(rows[i], cols[i]);
+        }
+        Arrays.sort(order);
+        for (int site : order) {
+            openSite(site, site / N, site % N);
+        }
+    }
+
+    /* Opens SITE, which is at (row, col), if it is not open already. */
+    private void openSite(int site, int row, int col) {
+        if (isOpenSite(site)) {
+            return;
+        }
+        openBits[site >>> 6] |= 1L << site;
+        numOpen += 1;
+        int flags = 0;
+        if (row == 0) {
+            flags |= TOP;
+        }
+        if (row == N - 1) {
+            flags |= BOTTOM;
+        }
+        if (row > 0) {
+            flags |= connect(site, site - N);
+        }
+        if (row < N - 1) {
+            flags |= connect(site, site + N);
+        }
+        if (col > 0) {
+            flags |= connect(site, site - 1);
+        }
+        if (col < N - 1) {
+            flags |= connect(site, site + 1);
+        }
+        setTouches(sites.find(site), flags);
+        if (flags == (TOP | BOTTOM)) {
+            percolates = true;
+        }
+        if (!listeners.isEmpty()) {
+            for (Listener listener : listeners) {
+                listener.opened(row, col);
+            }
+            if ((flags & TOP) != 0) {
+                reportFilled(site);
+            }
+        }
+    }
+
+    /* Reports every site that became full when SITE, whose component touches
+       the top, was opened. Those are exactly the open sites reachable from
+       SITE without passing through a site that was full already: anything
+       joined to a full site was in its component, and so was full too. Each
+       site is reported once, so all reports over a run take O(N * N). */
+    private void reportFilled(int site) {
+        int size = 0;
+        fullBits[site >>> 6] |= 1L << site;
+        stack[size++] = site;
+        while (size > 0) {
+            int s = stack[--size];
+            int row = s / N;
+            int col = s % N;
+            for (Listener listener : listeners) {
+                listener.filled(row, col);
+            }
+            if (row > 0) {
+                size = pushFilled(s - N, size);
+            }
+            if (row < N - 1) {
+                size = pushFilled(s + N, size);
+            }
+            if (col > 0) {
+                size = pushFilled(s - 1, size);
+            }
+            if (col < N - 1) {
+                size = pushFilled(s + 1, size);
+            }
+        }
+    }
+
+    /* Marks SITE full and pushes it onto a stack of SIZE entries, if it is
+       open and not marked yet. Returns the new size of the stack. */
+    private int pushFilled(int site, int size) {
+        if (!isOpenSite(site) || ((fullBits[site >>> 6] >>> site) & 1L) != 0) {
+            return size;
+        }
+        fullBits[site >>> 6] |= 1L << site;
+        if (size == stack.length) {
+            stack = Arrays.copyOf(stack, 2 * size);
+        }
+        stack[size] = site;
+        return size + 1;
     }
 
     /* Returns true if the site at (row, col) is open. */
     public boolean isOpen(int row, int col) {
-        // TODO: YOUR CODE HERE
-        return false;
+        validate(row, col);
+        return isOpenSite(xyTo1D(row, col));
     }
 
     /* Returns true if the site (row, col) is full. */
     public boolean isFull(int row, int col) {
-        // TODO: YOUR CODE HERE
-        return false;
+        validate(row, col);
+        int site = xyTo1D(row, col);
+        return isOpenSite(site) && (touches(sites.find(site)) & TOP) != 0;
     }
 
     /* Returns the number of open sites. */
     public int numberOfOpenSites() {
-        // TODO: YOUR CODE HERE
-        return 0;
+        return numOpen;
     }
 
     /* Returns true if the system percolates. */
     public boolean percolates() {
-        // TODO: YOUR CODE HERE
-        return false;
+        return percolates;
+    }
+
+    /* Joins SITE to the site NEIGHBOR if NEIGHBOR is open. Returns the TOP and
+       BOTTOM flags of the joined component. */
+    private int connect(int site, int neighbor) {
+        if (!isOpenSite(neighbor)) {
+            return 0;
+        }
+        int flags = touches(sites.find(neighbor));
+        sites.union(site, neighbor);
+        return flags;
+    }
+
+    /* Returns the TOP and BOTTOM flags stored for ROOT. */
+    private int touches(int root) {
+        return (int) (touchBits[root >>> 5] >>> ((root & 31) << 1)) & (TOP | BOTTOM);
+    }
+
+    /* Replaces the TOP and BOTTOM flags stored for ROOT with FLAGS. */
+    private void setTouches(int root, int flags) {
+        int shift = (root & 31) << 1;
+        long word = touchBits[root >>> 5] & ~((long) (TOP | BOTTOM) << shift);
+        touchBits[root >>> 5] = word | (long) flags << shift;
+    }
+
+    /* Returns true if SITE is open. Shifts of a long only use the low six bits
+       of the distance, so site >>> 6 picks the word and site the bit in it. */
+    private boolean isOpenSite(int site) {
+        return ((openBits[site >>> 6] >>> site) & 1L) != 0;
     }
 
     /* Converts row and column coordinates into a number. This will be helpful
        when trying to tie in the disjoint sets into our NxN grid of sites. */
     private int xyTo1D(int row, int col) {
-        // TODO: YOUR CODE HERE
-        return 0;
+        return row * N + col;
     }
+
     /* Returns true if (row, col) site exists in the NxN grid of sites.
        Otherwise, return false. */
     private boolean valid(int row, int col) {
-        // TODO: YOUR CODE HERE
-        return true;
+        return row >= 0 && row < N && col >= 0 && col < N;
+    }
+
+    /* Throws an IllegalArgumentException if (row, col) is outside the grid. */
+    private void validate(int row, int col) {
+        if (!valid(row, col)) {
+            throw new IllegalArgumentException("Site out of bounds: (" + row + ", " + col + ")");
+        }
     }
+
+    /* Flags in TOUCHBITS. */
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+    /* Starting capacity of STACK. */
+    private static final int INITIAL_STACK = 16;
 }
@@ -0,0 +1,159 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/* Estimates the percolation threshold of an N-by-N grid by Monte Carlo
+   simulation: each trial opens uniformly random blocked sites until the system
+   percolates, and records the fraction of sites that were opened.
+
+   Trials are independent, so they are spread across a fork-join pool. Each
+   worker thread keeps one Percolation (with its UnionFind and bit-packed grid)
+   and one site order array, and reuses them for every trial it runs, so trials
+   do not allocate. Every task gets its own SplittableRandom stream, split off
+   before the task is forked, so results depend only on the seed and not on
+   how the pool schedules the work. */
+public class PercolationMonteCarlo {
+
+    /* The outcome of an estimate. */
+    public static class Result {
+        public final int N;
+        public final int trials;
+        public final double mean;
+        public final double stddev;
+        /* Bounds of the 95% confidence interval for the threshold. */
+        public final double confidenceLo;
+        public final double confidenceHi;
+        public final double trialsPerSecond;
+
+        Result(int N, double[] thresholds, long elapsedNanos) {
+            this.N = N;
+            this.trials = thresholds.length;
+            double sum = 0;
+            for (double t : thresholds) {
+                sum += t;
+            }
+            mean = sum / trials;
+            double squares = 0;
+            for (double t : thresholds) {
+                squares += (t - mean) * (t - mean);
+            }
+            stddev = trials > 1 ? Math.sqrt(squares / (trials - 1)) : Double.NaN;
+            double halfWidth = CONFIDENCE_95 * stddev / Math.sqrt(trials);
+            confidenceLo = mean - halfWidth;
+            confidenceHi = mean + halfWidth;
+            trialsPerSecond = trials / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("N = %d, trials = %d%n"
+                    + "mean threshold    = %.6f%n"
+                    + "stddev            = %.6f%n"
+                    + "95%% confidence    = [%.6f, %.6f]%n"
+                    + "trials per second = %.1f",
+                    N, trials, mean, stddev, confidenceLo, confidenceHi, trialsPerSecond);
+        }
+    }
+
+    /* Runs TRIALS trials on N-by-N grids in the common fork-join pool. */
+    public static Result estimate(int N, int trials, long seed) {
+        return estimate(N, trials, seed, ForkJoinPool.commonPool());
+    }
+
+    /* Runs TRIALS trials on N-by-N grids in POOL. */
+    public static Result estimate(int N, int trials, long seed, ForkJoinPool pool) {
+        if (N <= 0 || trials <= 0) {
+            throw new IllegalArgumentException("N and trials must be positive.");
+        }
+        double[] thresholds = new double[trials];
+        ThreadLocal<Worker> workers = ThreadLocal.withInitial(() -> new Worker(N));
+        long start = System.nanoTime();
+        pool.invoke(new Trials(thresholds, 0, trials, new SplittableRandom(seed), workers));
+        return new Result(N, thresholds, System.nanoTime() - start);
+    }
+
+    /* The reusable state of one worker thread. */
+    private static class Worker {
+        private final Percolation perc;
+        /* A permutation of the sites. Each trial resets it and shuffles it as
+           it goes, so that a trial depends only on its random stream, and not
+           on which trials this worker ran before. */
+        private final int[] order;
+
+        Worker(int N) {
+            perc = new Percolation(N);
+            order = new int[N * N];
+        }
+
+        /* Opens random sites until the grid percolates, and returns the
+           fraction of sites opened. */
+        double trial(SplittableRandom random) {
+            int N = perc.size();
+            perc.clear();
+            for (int i = 0; i < order.length; i += 1) {
+                order[i] = i;
+            }
+            for (int k = 0; k < order.length; k += 1) {
+                /* One step of a Fisher-Yates shuffle picks the next site. */
+                int j = k + random.nextInt(order.length - k);
+                int site = order[j];
+                order[j] = order[k];
+                order[k] = site;
+                perc.open(site / N, site % N);
+                if (perc.percolates()) {
+                    return (double) (k + 1) / order.length;
+                }
+            }
+            return 1.0;
+        }
+    }
+
+    /* Runs the trials in [lo, hi), splitting the range while it is large. */
+    private static class Trials extends RecursiveAction {
+        private final double[] thresholds;
+        private final int lo;
+        private final int hi;
+        private final SplittableRandom random;
+        private final ThreadLocal<Worker> workers;
+
+        Trials(double[] thresholds, int lo, int hi, SplittableRandom random,
+               ThreadLocal<Worker> workers) {
+            this.thresholds = thresholds;
+            this.lo = lo;
+            this.hi = hi;
+            this.random = random;
+            this.workers = workers;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= TRIALS_PER_TASK) {
+                Worker worker = workers.get();
+                for (int i = lo; i < hi; i += 1) {
+                    thresholds[i] = worker.trial(random);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            Trials left = new Trials(thresholds, lo, mid, random.split(), workers);
+            Trials right = new Trials(thresholds, mid, hi, random, workers);
+            invokeAll(left, right);
+        }
+
+        /* Tasks are never serialized, but RecursiveAction is Serializable. */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /* Usage: java PercolationMonteCarlo N trials [seed] */
+    public static void main(String[] args) {
+        int N = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        System.out.println(estimate(N, trials, seed));
+    }
+
+    /* Trials run sequentially by one task before it stops splitting. */
+    private static final int TRIALS_PER_TASK = 4;
+    /* The 97.5th percentile of the standard normal distribution. */
+    private static final double CONFIDENCE_95 = 1.96;
+}
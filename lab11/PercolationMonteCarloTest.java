@@ -0,0 +1,42 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class PercolationMonteCarloTest {
+
+    /* The estimate depends only on the seed, not on how many threads run the
+       trials or which thread runs each one. */
+    @Test
+    public void testReproducibleAcrossPools() {
+        double[] expected = null;
+        for (int threads : new int[]{1, 2, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                PercolationMonteCarlo.Result r = PercolationMonteCarlo.estimate(20, 64, 42, pool);
+                double[] actual = {r.mean, r.stddev};
+                if (expected == null) {
+                    expected = actual;
+                }
+                assertEquals(expected[0], actual[0], 0);
+                assertEquals(expected[1], actual[1], 0);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testThresholdRange() {
+        PercolationMonteCarlo.Result r = PercolationMonteCarlo.estimate(30, 100, 7);
+        assertEquals(100, r.trials);
+        assertTrue(r.confidenceLo <= r.mean && r.mean <= r.confidenceHi);
+        /* The threshold of a large grid is about 0.593. */
+        assertTrue(r.mean > 0.5 && r.mean < 0.7);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTrials() {
+        PercolationMonteCarlo.estimate(10, 0, 1);
+    }
+}
@@ -0,0 +1,134 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+public class PercolationTest {
+
+    /* Replays the events it receives onto a copy of the grid it watches. */
+    private static class Recorder implements Percolation.Listener {
+        private final boolean[][] open;
+        private final boolean[][] full;
+
+        Recorder(Percolation perc) {
+            int N = perc.size();
+            open = new boolean[N][N];
+            full = new boolean[N][N];
+            for (int row = 0; row < N; row += 1) {
+                for (int col = 0; col < N; col += 1) {
+                    open[row][col] = perc.isOpen(row, col);
+                    full[row][col] = perc.isFull(row, col);
+                }
+            }
+            perc.addListener(this);
+        }
+
+        @Override
+        public void opened(int row, int col) {
+            assertFalse(open[row][col]);
+            open[row][col] = true;
+        }
+
+        @Override
+        public void filled(int row, int col) {
+            assertTrue(open[row][col]);
+            assertFalse(full[row][col]);
+            full[row][col] = true;
+        }
+    }
+
+    @Test
+    public void testEventsFillComponent() {
+        Percolation perc = new Percolation(3);
+        Recorder recorder = new Recorder(perc);
+        perc.open(2, 0);
+        perc.open(1, 0);
+        perc.open(1, 1);
+        assertFalse(recorder.full[1][1]);
+        /* Opening (0, 1) fills the whole component below it at once. */
+        perc.open(0, 1);
+        assertTrue(recorder.full[0][1]);
+        assertTrue(recorder.full[1][1]);
+        assertTrue(recorder.full[1][0]);
+        assertTrue(recorder.full[2][0]);
+        assertTrue(perc.percolates());
+    }
+
+    /* One open can fill nearly the whole grid, far more sites than the flood
+       fill starts out with room for. */
+    @Test
+    public void testEventsFillLargeComponent() {
+        int N = 40;
+        Percolation perc = new Percolation(N);
+        Recorder recorder = new Recorder(perc);
+        for (int row = 1; row < N; row += 1) {
+            for (int col = 0; col < N; col += 1) {
+                perc.open(row, col);
+            }
+        }
+        perc.open(0, N / 2);
+        for (int row = 1; row < N; row += 1) {
+            for (int col = 0; col < N; col += 1) {
+                assertTrue(recorder.full[row][col]);
+            }
+        }
+        assertTrue(recorder.full[0][N / 2]);
+        assertFalse(recorder.full[0][0]);
+    }
+
+    /* Over random runs, the events always carry a copy of the grid along with
+       it, including for a listener added partway through. */
+    @Test
+    public void testEventsMatchGrid() {
+        Random r = new Random(7);
+        for (int round = 0; round < 20; round += 1) {
+            int N = 1 + r.nextInt(30);
+            Percolation perc = new Percolation(N);
+            Recorder early = new Recorder(perc);
+            Recorder late = null;
+            for (int k = 0; k < N * N; k += 1) {
+                perc.open(r.nextInt(N), r.nextInt(N));
+                if (k == N * N / 2) {
+                    late = new Recorder(perc);
+                }
+            }
+            for (int row = 0; row < N; row += 1) {
+                for (int col = 0; col < N; col += 1) {
+                    assertEquals(perc.isOpen(row, col), early.open[row][col]);
+                    assertEquals(perc.isFull(row, col), early.full[row][col]);
+                    assertEquals(perc.isOpen(row, col), late.open[row][col]);
+                    assertEquals(perc.isFull(row, col), late.full[row][col]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOpenAllMatchesOpen() {
+        Random r = new Random(11);
+        int N = 40;
+        int[] rows = new int[N * N];
+        int[] cols = new int[N * N];
+        Percolation one = new Percolation(N);
+        for (int i = 0; i < rows.length; i += 1) {
+            rows[i] = r.nextInt(N);
+            cols[i] = r.nextInt(N);
+            one.open(rows[i], cols[i]);
+        }
+        Percolation all = new Percolation(N);
+        all.openAll(rows, cols);
+        assertEquals(one.numberOfOpenSites(), all.numberOfOpenSites());
+        assertEquals(one.percolates(), all.percolates());
+        for (int row = 0; row < N; row += 1) {
+            for (int col = 0; col < N; col += 1) {
+                assertEquals(one.isOpen(row, col), all.isOpen(row, col));
+                assertEquals(one.isFull(row, col), all.isFull(row, col));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOpenAllValidatesFirst() {
+        new Percolation(4).openAll(new int[] {0, 4}, new int[] {0, 0});
+    }
+}
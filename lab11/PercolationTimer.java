@@ -1,20 +1,28 @@
-import edu.princeton.cs.algs4.In;
+import java.io.IOException;
 
 public class PercolationTimer {
-    private static void runFile(String filename) {
-        In in = new In(filename);
-        int N = in.readInt();
-        Percolation perc = new Percolation(N);
+    private static void runFile(String filename) throws IOException {
+        try (IntReader in = new IntReader(filename)) {
+            int N = in.next();
+            Percolation perc = new Percolation(N);
 
-        while (!in.isEmpty()) {
-            int i = in.readInt();
-            int j = in.readInt();
-            perc.open(i, j);
-            perc.percolates();
+            /* Sites come in (row, col) pairs, read a batch at a time. */
+            int[] batch = new int[BATCH_SIZE];
+            int count = in.read(batch);
+            while (count > 0) {
+                if (count % 2 != 0) {
+                    throw new IllegalArgumentException("Unpaired coordinate in " + filename);
+                }
+                for (int k = 0; k < count; k += 2) {
+                    perc.open(batch[k], batch[k + 1]);
+                    perc.percolates();
+                }
+                count = in.read(batch);
+            }
         }
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         String filename = "inputFiles/wayne98.txt";
         long total = 0;
         for (int i = 0; i < 100; i++) {
@@ -25,4 +33,7 @@ public class PercolationTimer {
         }
         System.out.println("ms elapsed: " + total / 100);
     }
+
+    /* Ints read per batch. Even, so that a batch never splits a pair. */
+    private static final int BATCH_SIZE = 4096;
 }
@@ -15,10 +15,13 @@
  *  with with site (0, 0) in the upper left-hand corner.
  *
  ******************************************************************************/
+import edu.princeton.cs.algs4.StdDraw;
+
+import java.awt.Color;
 import java.awt.Font;
+import java.io.IOException;
 
 public class PercolationVisualizer {
-/*
     // delay in miliseconds (controls animation speed)
     private static final int DELAY = 100;
 
@@ -43,8 +46,13 @@ public class PercolationVisualizer {
                 StdDraw.filledSquare(col + 0.5, N - row - 0.5, 0.45);
             }
         }
+        drawStatus(perc, N);
+    }
 
-        // write status text
+    // write status text, painting over the previous status first
+    public static void drawStatus(Percolation perc, int N) {
+        StdDraw.setPenColor(StdDraw.WHITE);
+        StdDraw.filledRectangle(N / 2.0, -N * .025, N * .55, N * .025);
         StdDraw.setFont(new Font("SansSerif", Font.PLAIN, 12));
         StdDraw.setPenColor(StdDraw.BLACK);
         StdDraw.text(.25 * N, -N * .025, perc.numberOfOpenSites() + " open sites");
@@ -53,31 +61,75 @@ public class PercolationVisualizer {
         } else {
             StdDraw.text(.75 * N, -N * .025, "does not percolate");
         }
+    }
 
+    /* Repaints just the sites a Percolation reports as changed, so a frame
+       costs time proportional to what changed rather than to N * N. */
+    public static class Painter implements Percolation.Listener {
+        private final int N;
+        /* Whether anything was painted since the last call to flush. */
+        private boolean dirty;
+
+        public Painter(int N) {
+            this.N = N;
+        }
+
+        @Override
+        public void opened(int row, int col) {
+            paint(row, col, StdDraw.WHITE);
+        }
+
+        @Override
+        public void filled(int row, int col) {
+            paint(row, col, StdDraw.BOOK_LIGHT_BLUE);
+        }
+
+        /* Updates the status text of PERC if any site changed since the last
+           call. Returns true if anything needs to be shown. */
+        public boolean flush(Percolation perc) {
+            if (!dirty) {
+                return false;
+            }
+            drawStatus(perc, N);
+            dirty = false;
+            return true;
+        }
+
+        private void paint(int row, int col, Color color) {
+            StdDraw.setPenColor(color);
+            StdDraw.filledSquare(col + 0.5, N - row - 0.5, 0.45);
+            dirty = true;
+        }
     }
 
-    private static void simulateFromFile(String filename) {
-        In in = new In(filename);
-        int N = in.readInt();
-        Percolation perc = new Percolation(N);
+    private static void simulateFromFile(String filename) throws IOException {
+        try (IntReader in = new IntReader(filename)) {
+            int N = in.next();
+            Percolation perc = new Percolation(N);
+            Painter painter = new Painter(N);
+            perc.addListener(painter);
 
-        // turn on animation mode
-        StdDraw.show(0);
+            // turn on animation mode
+            StdDraw.enableDoubleBuffering();
 
-        // repeatedly read in sites to open and draw resulting system
-        draw(perc, N);
-        StdDraw.show(DELAY);
-        while (!in.isEmpty()) {
-            int i = in.readInt();
-            int j = in.readInt();
-            perc.open(i, j);
+            // repeatedly read in sites to open and draw only what changed
             draw(perc, N);
-            StdDraw.show(DELAY);
+            StdDraw.show();
+            StdDraw.pause(DELAY);
+            while (in.hasNext()) {
+                int i = in.next();
+                int j = in.next();
+                perc.open(i, j);
+                if (painter.flush(perc)) {
+                    StdDraw.show();
+                    StdDraw.pause(DELAY);
+                }
+            }
         }
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         String filename = args[0];
         simulateFromFile(filename);
-    }*/
+    }
 }
@@ -1,38 +1,61 @@
+import java.util.Arrays;
+
 public class UnionFind {
 
-    /* TODO: Add instance variables here. */
+    /* parent[v] is the parent of v, or the negative size of v's tree if v is
+       a root. */
+    private int[] parent;
 
     /* Creates a UnionFind data structure holding N vertices. Initially, all
        vertices are in disjoint sets. */
     public UnionFind(int N) {
-        // TODO: YOUR CODE HERE
+        parent = new int[N];
+        Arrays.fill(parent, -1);
+    }
+
+    /* Returns the number of vertices in this UnionFind. */
+    public int size() {
+        return parent.length;
+    }
+
+    /* Puts every vertex back into its own set, without reallocating. Lets one
+       UnionFind be reused across many independent experiments. */
+    public void clear() {
+        Arrays.fill(parent, -1);
     }
 
     /* Returns the size of the set V belongs to. */
     public int sizeOf(int v) {
-        // TODO: YOUR CODE HERE
-        return -1;
+        return -parent[find(v)];
     }
 
     /* Returns the parent of V. If V is the root of a tree, returns the
        negative size of the tree for which V is the root. */
     public int parent(int v) {
-        // TODO: YOUR CODE HERE
-        return -1;
+        validate(v);
+        return parent[v];
     }
 
     /* Returns true if nodes V1 and V2 are connected. */
     public boolean connected(int v1, int v2) {
-        // TODO: YOUR CODE HERE
-        return false;
+        return find(v1) == find(v2);
     }
 
     /* Returns the root of the set V belongs to. Path-compression is employed
        allowing for fast search-time. If invalid vertices are passed into this
        function, throw an IllegalArgumentException. */
     public int find(int v) {
-        // TODO: YOUR CODE HERE
-        return -1;
+        validate(v);
+        int root = v;
+        while (parent[root] >= 0) {
+            root = parent[root];
+        }
+        while (v != root) {
+            int next = parent[v];
+            parent[v] = root;
+            v = next;
+        }
+        return root;
     }
 
     /* Connects two elements V1 and V2 together. V1 and V2 can be any element,
@@ -41,6 +64,25 @@ public class UnionFind {
        with itself or vertices that are already connected should not change the
        structure. */
     public void union(int v1, int v2) {
-        // TODO: YOUR CODE HERE
+        int r1 = find(v1);
+        int r2 = find(v2);
+        if (r1 == r2) {
+            return;
+        }
+        if (parent[r1] < parent[r2]) {
+            /* r1's tree is strictly larger. */
+            parent[r1] += parent[r2];
+            parent[r2] = r1;
+        } else {
+            parent[r2] += parent[r1];
+            parent[r1] = r2;
+        }
+    }
+
+    /* Throws an IllegalArgumentException if V is not a vertex. */
+    private void validate(int v) {
+        if (v < 0 || v >= parent.length) {
+            throw new IllegalArgumentException("Not a valid vertex: " + v);
+        }
     }
 }
@@ -0,0 +1,334 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/* A Map61BL that resolves collisions by separate chaining: each bucket holds
+   a linked list of the entries whose keys hash to it.
+
+   Once the number of entries passes loadFactor times the number of buckets,
+   the map doubles its buckets. By default it moves every entry to the new
+   buckets at once, which takes time proportional to the size of the map. In
+   incremental mode it instead keeps both the old and the new buckets, the
+   way Redis's dict does, and each later put or remove moves a few old
+   buckets over, so that no single call does more than a constant amount of
+   rehashing. While both tables are in use, a key's bucket is in the old
+   table until that bucket is moved, and in the new one after, so lookups
+   still only search one bucket. Lookups and iteration never move entries, so
+   iterating while calling get is safe in either mode. */
+public class HashMap<K, V> implements Map61BL<K, V> {
+
+    /* The table new entries go into. */
+    private Node<K, V>[] table;
+    /* While an incremental resize is in progress, the table being emptied,
+       of which buckets [0, migrated) have been moved already. Null
+       otherwise. */
+    private Node<K, V>[] oldTable;
+    private int migrated;
+    private int size;
+    private final double loadFactor;
+    private final boolean incremental;
+
+    public HashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public HashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public HashMap(int initialCapacity, double loadFactor) {
+        this(initialCapacity, loadFactor, false);
+    }
+
+    /* Creates a map with INITIALCAPACITY buckets that resizes once it holds
+       more than LOADFACTOR entries per bucket. If INCREMENTAL, resizes are
+       spread over the puts and removes that follow. */
+    public HashMap(int initialCapacity, double loadFactor, boolean incremental) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + initialCapacity);
+        }
+        if (!(loadFactor > 0)) {
+            throw new IllegalArgumentException("Load factor must be positive: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        this.incremental = incremental;
+        table = newTable(initialCapacity);
+    }
+
+    /* Returns the number of buckets, counting only the new table while an
+       incremental resize is in progress. */
+    public int capacity() {
+        return table.length;
+    }
+
+    /* Returns true if an incremental resize is still moving entries. */
+    public boolean isResizing() {
+        return oldTable != null;
+    }
+
+    /* Returns the layout and estimated footprint of this map, counting the
+       unmoved buckets of the old table during an incremental resize. */
+    public MemoryStats memoryStats() {
+        MemoryStats.Counts chains = new MemoryStats.Counts();
+        MemoryStats.Counts probes = new MemoryStats.Counts();
+        long bytes = MemoryStats.objectBytes(FIELD_BYTES) + walk(table, 0, chains, probes);
+        long buckets = table.length;
+        if (oldTable != null) {
+            bytes += walk(oldTable, migrated, chains, probes);
+            buckets += oldTable.length - migrated;
+        }
+        return new MemoryStats(this, buckets, bytes, chains, probes);
+    }
+
+    /* Adds the buckets of T from FROM on to CHAINS and PROBES, and returns
+       the bytes T and its nodes take. */
+    private static long walk(Object[] t, int from, MemoryStats.Counts chains,
+                             MemoryStats.Counts probes) {
+        long nodes = 0;
+        for (int i = from; i < t.length; i += 1) {
+            int length = 0;
+            for (Node<?, ?> e = (Node<?, ?>) t[i]; e != null; e = e.next) {
+                length += 1;
+                probes.add(length);
+            }
+            chains.add(length);
+            nodes += length;
+        }
+        return MemoryStats.arrayBytes(t.length, MemoryStats.REFERENCE) + nodes * NODE_BYTES;
+    }
+
+    @Override
+    public void clear() {
+        table = newTable(table.length);
+        oldTable = null;
+        size = 0;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return find(key, hash(key)) != null;
+    }
+
+    @Override
+    public V get(K key) {
+        Node<K, V> node = find(key, hash(key));
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        int hash = hash(key);
+        migrateStep();
+        Node<K, V> node = find(key, hash);
+        if (node != null) {
+            node.value = value;
+            return;
+        }
+        /* Every key lives in tableFor(its hash), so lookups check one table. */
+        Node<K, V>[] t = tableFor(hash);
+        int i = indexFor(hash, t.length);
+        t[i] = new Node<>(hash, key, value, t[i]);
+        size += 1;
+        if (size > loadFactor * table.length) {
+            resize();
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        Node<K, V> node = unlink(key, null, false);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        return unlink(key, value, true) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new KeyIterator();
+    }
+
+    /* Visits the unmoved buckets of the old table, then the new table. */
+    private class KeyIterator implements Iterator<K> {
+        private Node<K, V>[] current;
+        private int bucket;
+        private Node<K, V> next;
+
+        KeyIterator() {
+            if (oldTable != null) {
+                current = oldTable;
+                bucket = migrated;
+            } else {
+                current = table;
+                bucket = 0;
+            }
+            advance();
+        }
+
+        /* Moves NEXT to the first entry of the next nonempty bucket. */
+        private void advance() {
+            while (next == null) {
+                if (bucket < current.length) {
+                    next = current[bucket];
+                    bucket += 1;
+                } else if (current != table) {
+                    current = table;
+                    bucket = 0;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public K next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            K key = next.key;
+            next = next.next;
+            advance();
+            return key;
+        }
+    }
+
+    private static class Node<K, V> {
+        /* The hash of KEY, kept so that rehashing never calls hashCode. */
+        private final int hash;
+        private final K key;
+        private V value;
+        private Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /* Returns the node for KEY, whose hash is HASH, or null. */
+    private Node<K, V> find(K key, int hash) {
+        Node<K, V>[] t = tableFor(hash);
+        for (Node<K, V> e = t[indexFor(hash, t.length)]; e != null; e = e.next) {
+            if (e.hash == hash && key.equals(e.key)) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /* Removes and returns the node for KEY, or returns null if there is
+       none. If CHECKVALUE, only removes it if its value equals VALUE. */
+    private Node<K, V> unlink(K key, V value, boolean checkValue) {
+        int hash = hash(key);
+        migrateStep();
+        Node<K, V>[] t = tableFor(hash);
+        int i = indexFor(hash, t.length);
+        Node<K, V> previous = null;
+        for (Node<K, V> e = t[i]; e != null; previous = e, e = e.next) {
+            if (e.hash == hash && key.equals(e.key)) {
+                if (checkValue && !(value == null ? e.value == null : value.equals(e.value))) {
+                    return null;
+                }
+                if (previous == null) {
+                    t[i] = e.next;
+                } else {
+                    previous.next = e.next;
+                }
+                size -= 1;
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /* Returns the table that holds the bucket for HASH. */
+    private Node<K, V>[] tableFor(int hash) {
+        if (oldTable != null && indexFor(hash, oldTable.length) >= migrated) {
+            return oldTable;
+        }
+        return table;
+    }
+
+    /* Doubles the number of buckets, either all at once or by starting an
+       incremental resize. */
+    private void resize() {
+        if (oldTable != null) {
+            /* Only possible with a load factor under 1 / BUCKETS_PER_STEP.
+               Finish the last resize, so there are never three tables. */
+            migrate(oldTable.length);
+        }
+        oldTable = table;
+        migrated = 0;
+        table = newTable(table.length * 2);
+        if (!incremental) {
+            migrate(oldTable.length);
+        }
+    }
+
+    /* Moves a bounded number of old buckets, if a resize is in progress. */
+    private void migrateStep() {
+        if (oldTable != null) {
+            migrate(BUCKETS_PER_STEP);
+        }
+    }
+
+    /* Moves up to COUNT old buckets into the new table, relinking their
+       nodes by their cached hashes. Ends the resize once all are moved. */
+    private void migrate(int count) {
+        int end = Math.min(migrated + count, oldTable.length);
+        for (; migrated < end; migrated += 1) {
+            Node<K, V> e = oldTable[migrated];
+            oldTable[migrated] = null;
+            while (e != null) {
+                Node<K, V> next = e.next;
+                int i = indexFor(e.hash, table.length);
+                e.next = table[i];
+                table[i] = e;
+                e = next;
+            }
+        }
+        if (migrated == oldTable.length) {
+            oldTable = null;
+        }
+    }
+
+    private static int indexFor(int hash, int capacity) {
+        return Math.floorMod(hash, capacity);
+    }
+
+    private static int hash(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null key.");
+        }
+        return key.hashCode();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> Node<K, V>[] newTable(int capacity) {
+        return (Node<K, V>[]) new Node[capacity];
+    }
+
+    /* The fields of a HashMap: two tables, two ints, a double, a boolean. */
+    private static final int FIELD_BYTES = 2 * MemoryStats.REFERENCE + 2 * 4 + 8 + 1;
+    /* A Node: an int and three references. */
+    private static final long NODE_BYTES = MemoryStats.objectBytes(4 + 3 * MemoryStats.REFERENCE);
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+    /* Old buckets moved by each put or remove during an incremental resize.
+       Any constant of at least one keeps each call's work bounded; a few
+       finish resizes sooner so that lookups rarely check two tables. */
+    private static final int BUCKETS_PER_STEP = 4;
+}
@@ -168,4 +168,36 @@ public class HashMapTest {
         assertEquals(expected, output);
     }
 
+    @Test
+    public void testIncrementalResize() {
+        HashMap<Integer, Integer> h = new HashMap<Integer, Integer>(16, 0.75, true);
+        for (int i = 0; i < 12; i += 1) {
+            h.put(i, i);
+        }
+        assertEquals(16, h.capacity());
+        assertFalse(h.isResizing());
+        // the 13th put doubles the buckets, but moves no entries yet
+        h.put(12, 12);
+        assertEquals(32, h.capacity());
+        assertTrue(h.isResizing());
+
+        // every entry stays reachable while the buckets move over
+        int puts = 13;
+        while (h.isResizing()) {
+            for (int i = 0; i < puts; i += 1) {
+                assertEquals(i, h.get(i).intValue());
+            }
+            h.put(puts, puts);
+            puts += 1;
+        }
+        assertEquals(puts, h.size());
+        HashSet<Integer> output = new HashSet<Integer>();
+        for (int key : h) {
+            output.add(key);
+        }
+        assertEquals(puts, output.size());
+        assertEquals(12, h.remove(12).intValue());
+        assertFalse(h.containsKey(12));
+    }
+
 }
@@ -0,0 +1,71 @@
+/* Turns a String key into a hash code, for maps such as SimpleNameMap that
+   let the caller choose how keys are hashed. Equal strings must get equal
+   hash codes. */
+public interface HashStrategy {
+
+    /* Returns the hash code of KEY. */
+    int hash(String key);
+
+    /* The position of the first letter in the alphabet, so that 'A' is 0. As
+       a hash code it only has 26 values, and names cluster on a few common
+       first letters. */
+    HashStrategy FIRST_LETTER = key -> key.charAt(0) - 'A';
+
+    /* String.hashCode. It spreads names well, but its low bits depend mostly
+       on the last few characters, and short strings sharing a prefix differ
+       only in those bits. */
+    HashStrategy STRING_HASH_CODE = String::hashCode;
+
+    /* String.hashCode followed by the final avalanche of MIX, so that every
+       bit of the result depends on every bit of the hash code and the low
+       bits no longer hinge on the last few characters. Strings cache their
+       hash code, so once a key has been hashed this costs a few shifts and
+       multiplies. */
+    HashStrategy SPREAD = key -> MixConstants.avalanche(key.hashCode());
+
+    /* A hash in the style of xxHash32 over the chars of the key, two chars
+       (one 32-bit word) per round, with a final avalanche so that every bit
+       of the result depends on every char. It spreads keys evenly over any
+       number of buckets, but it walks the whole key on every call, where
+       String.hashCode is cached, so lookups cost clearly more than under
+       SPREAD or STRING_HASH_CODE. It only pays off for keysets whose hash
+       codes collide outright, which no final mix can separate. */
+    HashStrategy MIX = key -> {
+        int length = key.length();
+        int h = MixConstants.PRIME_5 + 2 * length;
+        int i = 0;
+        for (; i + 1 < length; i += 2) {
+            int word = key.charAt(i) | (key.charAt(i + 1) << 16);
+            h += word * MixConstants.PRIME_3;
+            h = Integer.rotateLeft(h, 17) * MixConstants.PRIME_4;
+        }
+        if (i < length) {
+            h += key.charAt(i) * MixConstants.PRIME_5;
+            h = Integer.rotateLeft(h, 11) * MixConstants.PRIME_1;
+        }
+        return MixConstants.avalanche(h);
+    };
+
+    /* The 32-bit primes and final avalanche of xxHash. Interface fields are
+       all public, so they are kept out of HashStrategy itself. */
+    final class MixConstants {
+        private MixConstants() {
+        }
+
+        /* Mixes the bits of H so that each affects every bit of the result. */
+        private static int avalanche(int h) {
+            h ^= h >>> 15;
+            h *= PRIME_2;
+            h ^= h >>> 13;
+            h *= PRIME_3;
+            h ^= h >>> 16;
+            return h;
+        }
+
+        private static final int PRIME_1 = 0x9E3779B1;
+        private static final int PRIME_2 = 0x85EBCA77;
+        private static final int PRIME_3 = 0xC2B2AE3D;
+        private static final int PRIME_4 = 0x27D4EB2F;
+        private static final int PRIME_5 = 0x165667B1;
+    }
+}
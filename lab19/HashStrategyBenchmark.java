@@ -0,0 +1,82 @@
+import java.util.Random;
+
+/* Compares the hash strategies of SimpleNameMap by the chains they build
+   over the same names, and by how long lookups of those names take.
+
+   Usage: java HashStrategyBenchmark [count] [seed] */
+public class HashStrategyBenchmark {
+
+    /* Returns COUNT distinct made-up names, each a capitalized run of
+       syllables followed by a number, the way generated user names look. */
+    private static String[] names(int count, long seed) {
+        Random random = new Random(seed);
+        String[] names = new String[count];
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < count; i += 1) {
+            name.setLength(0);
+            int syllables = 1 + random.nextInt(3);
+            for (int s = 0; s < syllables; s += 1) {
+                name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+            names[i] = name.append(i).toString();
+        }
+        return names;
+    }
+
+    /* Loads NAMES into a map using STRATEGY, and prints its chain statistics
+       and the mean time of a successful lookup, over the fastest of ROUNDS
+       passes so that the JIT has warmed up. */
+    private static void run(String label, HashStrategy strategy, String[] names) {
+        SimpleNameMap map = new SimpleNameMap(strategy);
+        for (String name : names) {
+            map.put(name, name);
+        }
+        int[] counts = map.chainLengthCounts();
+        long compares = 0;
+        int used = 0;
+        for (int length = 1; length < counts.length; length += 1) {
+            /* Finding the k-th entry of a chain takes k compares. */
+            compares += (long) counts[length] * length * (length + 1) / 2;
+            used += counts[length];
+        }
+        long best = Long.MAX_VALUE;
+        int found = 0;
+        for (int round = 0; round < ROUNDS; round += 1) {
+            long start = System.nanoTime();
+            found = 0;
+            for (String name : names) {
+                if (map.get(name) != null) {
+                    found += 1;
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double nanosPerGet = (double) best / names.length;
+        System.out.printf("%-16s buckets %8d  used %8d  longest %7d  "
+                + "compares/get %9.2f  ns/get %10.1f%n",
+                label, map.capacity(), used, counts.length - 1,
+                (double) compares / map.size(), nanosPerGet);
+        if (found != names.length) {
+            throw new IllegalStateException("Lost names under " + label);
+        }
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 61;
+        String[] names = names(count, seed);
+        run("FIRST_LETTER", HashStrategy.FIRST_LETTER, names);
+        run("STRING_HASH", HashStrategy.STRING_HASH_CODE, names);
+        run("SPREAD", HashStrategy.SPREAD, names);
+        run("MIX", HashStrategy.MIX, names);
+    }
+
+    /* Timed passes over the names per strategy. */
+    private static final int ROUNDS = 10;
+
+    private static final String[] SYLLABLES = {
+        "al", "an", "bel", "car", "da", "el", "fran", "jo", "ka", "li",
+        "ma", "na", "ra", "sam", "ta", "vi"
+    };
+}
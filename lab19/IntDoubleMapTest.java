@@ -0,0 +1,62 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+public class IntDoubleMapTest {
+
+    @Test
+    public void basicFunctionalityTest() {
+        IntDoubleMap h = new IntDoubleMap();
+        assertEquals(0, h.size());
+        assertTrue(Double.isNaN(h.get(3)));
+        h.put(3, 1.5);
+        h.put(0, 2.5);
+        h.put(-3, Double.NaN);
+        h.put(3, 4.5);
+        assertEquals(3, h.size());
+        assertEquals(4.5, h.get(3), 0);
+        assertEquals(2.5, h.get(0), 0);
+        assertTrue(h.containsKey(-3));
+        assertTrue(h.remove(-3, Double.NaN));
+        assertFalse(h.containsKey(-3));
+        assertFalse(h.remove(0, 2.0));
+        assertEquals(2.5, h.remove(0), 0);
+        assertEquals(1, h.size());
+        h.clear();
+        assertEquals(0, h.size());
+    }
+
+    /* Random operations on dense vertex ids, including the free key, must
+       agree with java.util.HashMap. */
+    @Test
+    public void testAgainstHashMap() {
+        Random r = new Random(20);
+        IntDoubleMap actual = new IntDoubleMap(4, -1);
+        HashMap<Integer, Double> expected = new HashMap<>();
+        for (int op = 0; op < 200000; op += 1) {
+            int key = r.nextInt(3000);
+            int choice = r.nextInt(3);
+            if (choice == 0) {
+                actual.put(key, op / 2.0);
+                expected.put(key, op / 2.0);
+            } else if (choice == 1) {
+                Double removed = expected.remove(key);
+                assertEquals(removed == null ? -1 : removed, actual.remove(key), 0);
+            } else {
+                Double value = expected.get(key);
+                assertEquals(value == null ? -1 : value, actual.get(key), 0);
+            }
+            assertEquals(expected.size(), actual.size());
+        }
+        HashSet<Integer> keys = new HashSet<>();
+        PrimitiveIterator.OfInt iter = actual.keys();
+        while (iter.hasNext()) {
+            assertTrue(keys.add(iter.nextInt()));
+        }
+        assertEquals(expected.keySet(), keys);
+    }
+}
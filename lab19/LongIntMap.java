@@ -0,0 +1,270 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/* A map from long keys to int values, with the same operations as Map61BL
+   but without boxing. Keys and values live in flat parallel arrays, and no
+   operation but a resize allocates.
+
+   Slots are found by linear probing. An unused slot holds the key FREE_KEY,
+   so that no separate array is needed to tell which slots are in use; the
+   one real key equal to FREE_KEY is kept in its own field instead. Since
+   there is no null, lookups of missing keys return a NOVALUE chosen when the
+   map is created. */
+public class LongIntMap {
+
+    private long[] keys;
+    private int[] values;
+    /* Whether FREE_KEY is a key of the map, and its value if so. */
+    private boolean hasFreeKey;
+    private int freeValue;
+    /* The number of keys in the arrays, not counting FREE_KEY. */
+    private int used;
+    private final int noValue;
+    /* 64 minus the base 2 log of the capacity: how far to shift a hash. */
+    private int shift;
+    /* The number of keys in the arrays at which they double. */
+    private int threshold;
+
+    public LongIntMap() {
+        this(DEFAULT_CAPACITY, -1);
+    }
+
+    /* Creates a map that holds INITIALCAPACITY keys before it resizes, and
+       whose lookups return NOVALUE for keys it does not contain. */
+    public LongIntMap(int initialCapacity, int noValue) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+        }
+        this.noValue = noValue;
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < initialCapacity) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+    }
+
+    /* Returns the value get returns for a missing key. */
+    public int noValue() {
+        return noValue;
+    }
+
+    /* Returns the layout and estimated footprint of this map. Open addressing
+       has no chains, so only probe lengths are reported. The free key, if
+       present, is found without probing and counts as one comparison. */
+    public MemoryStats memoryStats() {
+        MemoryStats.Counts probes = new MemoryStats.Counts();
+        int mask = keys.length - 1;
+        for (int i = 0; i < keys.length; i += 1) {
+            if (keys[i] != FREE_KEY) {
+                probes.add(((i - slot(keys[i])) & mask) + 1);
+            }
+        }
+        if (hasFreeKey) {
+            probes.add(1);
+        }
+        long bytes = MemoryStats.objectBytes(FIELD_BYTES)
+                + MemoryStats.arrayBytes(keys.length, 8)
+                + MemoryStats.arrayBytes(keys.length, 4);
+        return new MemoryStats(this, keys.length, bytes, null, probes);
+    }
+
+    /* Removes all of the mappings from this map. */
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        used = 0;
+    }
+
+    /* Returns true if this map contains a mapping for KEY. */
+    public boolean containsKey(long key) {
+        return key == FREE_KEY ? hasFreeKey : indexOf(key) >= 0;
+    }
+
+    /* Returns the value KEY is mapped to, or noValue() if there is none. */
+    public int get(long key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeValue : noValue;
+        }
+        int i = indexOf(key);
+        return i >= 0 ? values[i] : noValue;
+    }
+
+    /* Maps KEY to VALUE, replacing any value KEY had. */
+    public void put(long key, int value) {
+        if (key == FREE_KEY) {
+            hasFreeKey = true;
+            freeValue = value;
+            return;
+        }
+        int mask = keys.length - 1;
+        int i = slot(key);
+        while (keys[i] != FREE_KEY) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        used += 1;
+        if (used > threshold) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /* Removes KEY and returns its value, or returns noValue() if KEY is not
+       in the map. */
+    public int remove(long key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                return noValue;
+            }
+            hasFreeKey = false;
+            return freeValue;
+        }
+        int i = indexOf(key);
+        if (i < 0) {
+            return noValue;
+        }
+        int value = values[i];
+        removeAt(i);
+        return value;
+    }
+
+    /* Removes KEY if it maps to VALUE, and returns true if it did. */
+    public boolean remove(long key, int value) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey || freeValue != value) {
+                return false;
+            }
+            hasFreeKey = false;
+            return true;
+        }
+        int i = indexOf(key);
+        if (i < 0 || values[i] != value) {
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+
+    /* Returns the number of key-value pairs in this map. */
+    public int size() {
+        return hasFreeKey ? used + 1 : used;
+    }
+
+    /* Returns an iterator over the keys in this map. Its nextLong does not
+       box. */
+    public PrimitiveIterator.OfLong keys() {
+        return new PrimitiveIterator.OfLong() {
+            /* The next slot to look at, or -1 to visit FREE_KEY first. */
+            private int next = hasFreeKey ? -1 : advance(0);
+
+            private int advance(int i) {
+                while (i < keys.length && keys[i] == FREE_KEY) {
+                    i += 1;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < keys.length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (next < 0) {
+                    next = advance(0);
+                    return FREE_KEY;
+                }
+                long key = keys[next];
+                next = advance(next + 1);
+                return key;
+            }
+        };
+    }
+
+    /* Returns the slot holding KEY, which is not FREE_KEY, or -1. */
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key);
+        while (keys[i] != FREE_KEY) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /* Empties slot I, then moves back any later key in the same run that
+       can no longer be reached from its home slot, so no tombstones are
+       needed. This is Algorithm R from Knuth, TAOCP 6.4. */
+    private void removeAt(int i) {
+        int mask = keys.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == FREE_KEY) {
+                break;
+            }
+            int home = slot(keys[j]);
+            /* The key at J may move to I if I is no earlier in its probe
+               sequence than J, that is, if I lies cyclically in [home, j). */
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = FREE_KEY;
+        used -= 1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int k = 0; k < oldKeys.length; k += 1) {
+            if (oldKeys[k] != FREE_KEY) {
+                int i = slot(oldKeys[k]);
+                while (keys[i] != FREE_KEY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[k];
+                values[i] = oldValues[k];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /* Returns the home slot of KEY. Multiplying by 2^64 divided by the golden
+       ratio and keeping the top bits spreads dense and strided ids, such as
+       OSM ids, evenly over the table. */
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /* The fields of a LongIntMap: two arrays, a boolean, and five ints. */
+    private static final int FIELD_BYTES = 2 * MemoryStats.REFERENCE + 1 + 5 * 4;
+    /* The key that marks an unused slot. It is 0, so new arrays start out
+       with every slot unused. */
+    private static final long FREE_KEY = 0;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double LOAD_FACTOR = 0.5;
+    /* Tables are powers of two, so that a hash picks a slot with a shift. */
+    private static final int MIN_CAPACITY = 2;
+}
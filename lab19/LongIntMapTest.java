@@ -0,0 +1,64 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+public class LongIntMapTest {
+
+    @Test
+    public void basicFunctionalityTest() {
+        LongIntMap h = new LongIntMap();
+        assertEquals(0, h.size());
+        assertEquals(-1, h.get(42));
+        h.put(42, 7);
+        h.put(0, 8);
+        h.put(Long.MIN_VALUE, 9);
+        h.put(42, 10);
+        assertEquals(3, h.size());
+        assertEquals(10, h.get(42));
+        assertEquals(8, h.get(0));
+        assertTrue(h.containsKey(0));
+        assertFalse(h.containsKey(1));
+        assertFalse(h.remove(0, 9));
+        assertTrue(h.remove(0, 8));
+        assertFalse(h.containsKey(0));
+        assertEquals(9, h.remove(Long.MIN_VALUE));
+        assertEquals(-1, h.remove(Long.MIN_VALUE));
+        h.clear();
+        assertEquals(0, h.size());
+        assertFalse(h.containsKey(42));
+    }
+
+    /* Random operations, on ids strided like OSM ids and including the free
+       key, must agree with java.util.HashMap. */
+    @Test
+    public void testAgainstHashMap() {
+        Random r = new Random(19);
+        LongIntMap actual = new LongIntMap(0, Integer.MIN_VALUE);
+        HashMap<Long, Integer> expected = new HashMap<>();
+        for (int op = 0; op < 200000; op += 1) {
+            long key = r.nextInt(2000) * 1024L;
+            int choice = r.nextInt(3);
+            if (choice == 0) {
+                actual.put(key, op);
+                expected.put(key, op);
+            } else if (choice == 1) {
+                Integer removed = expected.remove(key);
+                assertEquals(removed == null ? Integer.MIN_VALUE : removed, actual.remove(key));
+            } else {
+                Integer value = expected.get(key);
+                assertEquals(value == null ? Integer.MIN_VALUE : value, actual.get(key));
+            }
+            assertEquals(expected.size(), actual.size());
+        }
+        HashSet<Long> keys = new HashSet<>();
+        PrimitiveIterator.OfLong iter = actual.keys();
+        while (iter.hasNext()) {
+            assertTrue(keys.add(iter.nextLong()));
+        }
+        assertEquals(expected.keySet(), keys);
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.Arrays;
+
+/* A snapshot of how a hash map lays out its entries, and roughly how much
+   memory that layout takes. Maps build one on demand with memoryStats(), by
+   walking their tables once; none of them lock writers out to do it.
+
+   The byte estimate counts what the map itself retains: its own object, its
+   arrays, and any per-entry node objects. It assumes a 64-bit JVM with
+   compressed references (12-byte object headers, 4-byte references, 8-byte
+   alignment). Keys and values are not counted, since other objects may
+   share them, but boxed keys and values cost a further 16 bytes or more
+   each on top of what is reported. */
+public class MemoryStats {
+
+    /* The class of the map. */
+    public final String implementation;
+    /* The number of entries found while walking the map. */
+    public final long size;
+    /* The number of buckets, or slots for open addressing. */
+    public final long buckets;
+    /* Entries per bucket. */
+    public final double loadFactor;
+    public final long estimatedBytes;
+    /* Element i is the number of buckets chaining exactly i entries. Empty
+       for maps without chains. */
+    private final long[] chainLengths;
+    /* Element i is the number of entries a successful get finds on its i-th
+       key comparison: their position in a chain, or their probe distance
+       plus one. */
+    private final long[] probeLengths;
+
+    MemoryStats(Object map, long buckets, long estimatedBytes, Counts chainLengths,
+                Counts probeLengths) {
+        this.implementation = map.getClass().getSimpleName();
+        this.buckets = buckets;
+        this.estimatedBytes = estimatedBytes;
+        this.chainLengths = chainLengths == null ? new long[0] : chainLengths.toArray();
+        this.probeLengths = probeLengths.toArray();
+        long entries = 0;
+        for (long count : this.probeLengths) {
+            entries += count;
+        }
+        this.size = entries;
+        this.loadFactor = buckets == 0 ? 0 : (double) entries / buckets;
+    }
+
+    /* Returns a copy of the chain-length histogram. */
+    public long[] chainLengths() {
+        return chainLengths.clone();
+    }
+
+    /* Returns a copy of the probe-length histogram. */
+    public long[] probeLengths() {
+        return probeLengths.clone();
+    }
+
+    /* Returns the mean number of key comparisons of a successful get. */
+    public double meanProbeLength() {
+        long total = 0;
+        for (int i = 1; i < probeLengths.length; i += 1) {
+            total += i * probeLengths[i];
+        }
+        return size == 0 ? 0 : (double) total / size;
+    }
+
+    /* Returns the most key comparisons any successful get needs. */
+    public int maxProbeLength() {
+        return Math.max(probeLengths.length - 1, 0);
+    }
+
+    /* Returns the estimated bytes per entry. */
+    public double bytesPerEntry() {
+        return size == 0 ? 0 : (double) estimatedBytes / size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d entries in %d buckets (load %.3f)%n"
+                + "  estimated bytes   %d (%.1f per entry, keys and values excluded)%n"
+                + "  chain lengths     %s%n"
+                + "  probe lengths     %s (mean %.3f, max %d)",
+                implementation, size, buckets, loadFactor,
+                estimatedBytes, bytesPerEntry(),
+                chainLengths.length == 0 ? "n/a" : Arrays.toString(chainLengths),
+                Arrays.toString(probeLengths), meanProbeLength(), maxProbeLength());
+    }
+
+    /* A histogram of small non-negative ints that grows as needed. */
+    static class Counts {
+        private long[] counts = new long[8];
+        private int length;
+
+        void add(int value) {
+            if (value >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(value + 1, counts.length * 2));
+            }
+            counts[value] += 1;
+            length = Math.max(length, value + 1);
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(counts, length);
+        }
+    }
+
+    /* Fills each map implementation with the same N long keys and prints its
+       stats, to compare their footprints.
+
+       Usage: java MemoryStats [N] */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        HashMap<Long, Integer> chained = new HashMap<>();
+        RobinHoodMap<Long, Integer> robinHood = new RobinHoodMap<>();
+        StripedHashMap<Long, Integer> striped = new StripedHashMap<>();
+        LongIntMap primitive = new LongIntMap();
+        for (int i = 0; i < n; i += 1) {
+            /* Spaced out like OSM node ids. */
+            long key = 30000000L + 37L * i;
+            chained.put(key, i);
+            robinHood.put(key, i);
+            striped.put(key, i);
+            primitive.put(key, i);
+        }
+        System.out.println(chained.memoryStats());
+        System.out.println(robinHood.memoryStats());
+        System.out.println(striped.memoryStats());
+        System.out.println(primitive.memoryStats());
+    }
+
+    /* Returns the bytes taken by an object whose fields take FIELDBYTES. */
+    static long objectBytes(long fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    /* Returns the bytes taken by an array of LENGTH elements of
+       ELEMENTBYTES each. */
+    static long arrayBytes(long length, int elementBytes) {
+        return align(ARRAY_HEADER + length * elementBytes);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    static final int REFERENCE = 4;
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int ALIGNMENT = 8;
+}
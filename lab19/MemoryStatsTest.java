@@ -0,0 +1,76 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MemoryStatsTest {
+
+    @Test
+    public void testChainedLayout() {
+        // capacity 4 and load factor 10 keep all 6 entries in 4 buckets
+        HashMap<Integer, Integer> h = new HashMap<Integer, Integer>(4, 10);
+        for (int i = 0; i < 6; i += 1) {
+            h.put(i * 4, i);
+        }
+        h.put(1, 1);
+        MemoryStats stats = h.memoryStats();
+        assertEquals(7, stats.size);
+        assertEquals(4, stats.buckets);
+        assertEquals(7 / 4.0, stats.loadFactor, 1e-9);
+        // buckets 2 and 3 are empty, bucket 1 holds one entry, bucket 0 six
+        assertArrayEquals(new long[] {2, 1, 0, 0, 0, 0, 1}, stats.chainLengths());
+        assertArrayEquals(new long[] {0, 2, 1, 1, 1, 1, 1}, stats.probeLengths());
+        assertEquals(6, stats.maxProbeLength());
+        assertEquals((2 + 2 + 3 + 4 + 5 + 6) / 7.0, stats.meanProbeLength(), 1e-9);
+    }
+
+    @Test
+    public void testIncrementalResizeCountsBothTables() {
+        HashMap<Integer, Integer> h = new HashMap<Integer, Integer>(16, 0.75, true);
+        for (int i = 0; i < 13; i += 1) {
+            h.put(i, i);
+        }
+        assertTrue(h.isResizing());
+        MemoryStats stats = h.memoryStats();
+        assertEquals(13, stats.size);
+        assertEquals(32 + 16, stats.buckets);
+    }
+
+    @Test
+    public void testOpenAddressing() {
+        RobinHoodMap<Integer, Integer> robinHood = new RobinHoodMap<>();
+        LongIntMap primitive = new LongIntMap();
+        for (int i = 0; i < 1000; i += 1) {
+            robinHood.put(i, i);
+            primitive.put(i, i);
+        }
+        for (MemoryStats stats : new MemoryStats[] {
+            robinHood.memoryStats(), primitive.memoryStats()}) {
+            assertEquals(1000, stats.size);
+            assertEquals(0, stats.chainLengths().length);
+            assertEquals(0, stats.probeLengths()[0]);
+            assertTrue(stats.meanProbeLength() >= 1);
+        }
+        // flat primitive arrays take far less than an array per reference
+        assertTrue(primitive.memoryStats().estimatedBytes
+                < robinHood.memoryStats().estimatedBytes);
+    }
+
+    @Test
+    public void testByteEstimates() {
+        HashMap<Integer, Integer> chained = new HashMap<>();
+        StripedHashMap<Integer, Integer> striped = new StripedHashMap<>();
+        IntDoubleMap primitive = new IntDoubleMap();
+        for (int i = 0; i < 10000; i += 1) {
+            chained.put(i, i);
+            striped.put(i, i);
+            primitive.put(i, i);
+        }
+        assertEquals(10000, striped.memoryStats().size);
+        assertEquals(10000, primitive.memoryStats().size);
+        // a 32-byte node per entry, plus the table
+        assertTrue(chained.memoryStats().bytesPerEntry() > 32);
+        // 4 bytes of key and 8 of value per slot, whether used or not
+        MemoryStats stats = primitive.memoryStats();
+        assertTrue(stats.estimatedBytes >= 12 * stats.buckets);
+        assertTrue(stats.estimatedBytes < 12 * stats.buckets + 200);
+    }
+}
@@ -0,0 +1,291 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/* A Map61BL that keeps its entries in three flat parallel arrays instead of
+   a node object per entry: the keys, the values, and the hash of each key.
+
+   Collisions are resolved by linear probing with Robin Hood insertion. An
+   entry's probe distance is how far its slot is past the slot its hash
+   picks. While probing for a place to insert, a new entry takes the slot of
+   any entry closer to home than itself, and that entry moves on instead. This
+   keeps probe distances short and even, and lets get stop as soon as it
+   passes an entry closer to home than its key would be. remove shifts the
+   following entries back one slot rather than leaving a tombstone, so that
+   the table never fills up with deleted slots.
+
+   Caching each hash lets resizing place entries without calling hashCode
+   again, and lets a probe skip most non-matching keys without calling
+   equals. */
+public class RobinHoodMap<K, V> implements Map61BL<K, V> {
+
+    /* hashes[i] is the hash of keys[i], with its top bit set so that it is
+       never zero, or EMPTY if slot i is unused. */
+    private int[] hashes;
+    private Object[] keys;
+    private Object[] values;
+    private int size;
+    private final double loadFactor;
+    /* The size at which the table doubles. */
+    private int threshold;
+
+    public RobinHoodMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public RobinHoodMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /* Creates a map that holds INITIALCAPACITY entries before it resizes,
+       and resizes whenever more than LOADFACTOR of its slots are in use. */
+    public RobinHoodMap(int initialCapacity, double loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+        }
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("Load factor must be in (0, 1): " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        int capacity = MIN_CAPACITY;
+        while (capacity * loadFactor < initialCapacity) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+    }
+
+    /* Returns the number of slots in the table. */
+    public int capacity() {
+        return hashes.length;
+    }
+
+    /* Returns the layout and estimated footprint of this map. Open addressing
+       has no chains, so only probe lengths are reported. */
+    public MemoryStats memoryStats() {
+        MemoryStats.Counts probes = new MemoryStats.Counts();
+        for (int i = 0; i < hashes.length; i += 1) {
+            if (hashes[i] != EMPTY) {
+                probes.add(probeDistance(hashes[i], i) + 1);
+            }
+        }
+        long bytes = MemoryStats.objectBytes(FIELD_BYTES)
+                + MemoryStats.arrayBytes(hashes.length, 4)
+                + 2 * MemoryStats.arrayBytes(hashes.length, MemoryStats.REFERENCE);
+        return new MemoryStats(this, hashes.length, bytes, null, probes);
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < hashes.length; i += 1) {
+            hashes[i] = EMPTY;
+            keys[i] = null;
+            values[i] = null;
+        }
+        size = 0;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        int i = indexOf(key);
+        return i >= 0 ? (V) values[i] : null;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        int hash = hash(key);
+        int mask = hashes.length - 1;
+        int i = hash & mask;
+        int distance = 0;
+        /* Look for KEY first, so that replacing a value never moves entries. */
+        while (hashes[i] != EMPTY && distance <= probeDistance(hashes[i], i)) {
+            if (hashes[i] == hash && key.equals(keys[i])) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+            distance += 1;
+        }
+        if (size >= threshold) {
+            resize(hashes.length * 2);
+        }
+        insert(hash, key, value);
+        size += 1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        V value = (V) values[i];
+        removeAt(i);
+        return value;
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        int i = indexOf(key);
+        if (i < 0 || !(value == null ? values[i] == null : value.equals(values[i]))) {
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new KeyIterator();
+    }
+
+    /* Visits the used slots in table order. */
+    private class KeyIterator implements Iterator<K> {
+        private int next = advance(0);
+
+        private int advance(int i) {
+            while (i < hashes.length && hashes[i] == EMPTY) {
+                i += 1;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < hashes.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            K key = (K) keys[next];
+            next = advance(next + 1);
+            return key;
+        }
+    }
+
+    /* Returns the slot holding KEY, or -1 if KEY is not in the map. */
+    private int indexOf(K key) {
+        int hash = hash(key);
+        int mask = hashes.length - 1;
+        int i = hash & mask;
+        int distance = 0;
+        /* Entries are ordered by home slot, so once a probe meets an entry
+           closer to its home than KEY would be, KEY cannot be further on. */
+        while (hashes[i] != EMPTY && distance <= probeDistance(hashes[i], i)) {
+            if (hashes[i] == hash && key.equals(keys[i])) {
+                return i;
+            }
+            i = (i + 1) & mask;
+            distance += 1;
+        }
+        return -1;
+    }
+
+    /* Places an entry whose key is not in the table, displacing entries that
+       are closer to home as it goes. The table must have a free slot. */
+    private void insert(int hash, Object key, Object value) {
+        int mask = hashes.length - 1;
+        int i = hash & mask;
+        int distance = 0;
+        while (hashes[i] != EMPTY) {
+            int existing = probeDistance(hashes[i], i);
+            if (existing < distance) {
+                /* Take this slot, and carry on placing the entry we evicted. */
+                int h = hashes[i];
+                Object k = keys[i];
+                Object v = values[i];
+                hashes[i] = hash;
+                keys[i] = key;
+                values[i] = value;
+                hash = h;
+                key = k;
+                value = v;
+                distance = existing;
+            }
+            i = (i + 1) & mask;
+            distance += 1;
+        }
+        hashes[i] = hash;
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    /* Empties slot I, then shifts each following entry back one slot until
+       reaching an empty slot or an entry already in its home slot. */
+    private void removeAt(int i) {
+        int mask = hashes.length - 1;
+        int next = (i + 1) & mask;
+        while (hashes[next] != EMPTY && probeDistance(hashes[next], next) > 0) {
+            hashes[i] = hashes[next];
+            keys[i] = keys[next];
+            values[i] = values[next];
+            i = next;
+            next = (next + 1) & mask;
+        }
+        hashes[i] = EMPTY;
+        keys[i] = null;
+        values[i] = null;
+        size -= 1;
+    }
+
+    /* Moves every entry into a new table of CAPACITY slots, using the cached
+       hashes. */
+    private void resize(int capacity) {
+        int[] oldHashes = hashes;
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldHashes.length; i += 1) {
+            if (oldHashes[i] != EMPTY) {
+                insert(oldHashes[i], oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        /* Always leave at least one slot empty, so that probes end. */
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    /* Returns how far slot I is past the home slot of HASH. */
+    private int probeDistance(int hash, int i) {
+        return (i - hash) & (hashes.length - 1);
+    }
+
+    /* Returns the stored hash of KEY: its hashCode with the bits mixed, so
+       that the low bits used to pick a slot depend on all of them, and the
+       top bit set, so that it is never EMPTY. */
+    private static int hash(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null key.");
+        }
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) | 0x80000000;
+    }
+
+    /* The fields of a RobinHoodMap: three arrays, two ints, a double. */
+    private static final int FIELD_BYTES = 3 * MemoryStats.REFERENCE + 2 * 4 + 8;
+    /* The hash of an unused slot. */
+    private static final int EMPTY = 0;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double DEFAULT_LOAD_FACTOR = 0.875;
+    /* Tables are powers of two, so that a hash picks a slot with a mask. */
+    private static final int MIN_CAPACITY = 2;
+}
@@ -0,0 +1,117 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+public class RobinHoodMapTest {
+
+    /* A key whose hash code is chosen by the test, to force collisions. */
+    private static class Collider {
+        private final int id;
+        private final int hash;
+
+        Collider(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Collider && ((Collider) other).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    @Test
+    public void basicFunctionalityTest() {
+        RobinHoodMap<String, Integer> studentIDs = new RobinHoodMap<>();
+        assertEquals(0, studentIDs.size());
+        studentIDs.put("christine", 12345);
+        studentIDs.put("kevin", 345);
+        studentIDs.put("kevin", 346);
+        assertEquals(2, studentIDs.size());
+        assertEquals(346, studentIDs.get("kevin").intValue());
+        assertFalse(studentIDs.containsKey("joe"));
+        assertNull(studentIDs.get("joe"));
+        assertFalse(studentIDs.remove("kevin", 345));
+        assertTrue(studentIDs.remove("kevin", 346));
+        assertEquals(12345, studentIDs.remove("christine").intValue());
+        assertNull(studentIDs.remove("christine"));
+        assertEquals(0, studentIDs.size());
+    }
+
+    @Test
+    public void testResize() {
+        RobinHoodMap<Integer, Integer> h = new RobinHoodMap<>(10, 0.5);
+        int capacity = h.capacity();
+        assertTrue(capacity * 0.5 >= 10);
+        int full = capacity / 2;
+        for (int i = 0; i < full; i += 1) {
+            h.put(i, i);
+        }
+        assertEquals(capacity, h.capacity());
+        h.put(full, full);
+        assertEquals(2 * capacity, h.capacity());
+        for (int i = 0; i <= full; i += 1) {
+            assertEquals(i, h.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void iteratorTest() {
+        RobinHoodMap<String, Integer> h = new RobinHoodMap<>();
+        HashSet<String> expected = new HashSet<>();
+        for (int i = 0; i < 100; i += 1) {
+            h.put("key" + i, i);
+            expected.add("key" + i);
+        }
+        HashSet<String> output = new HashSet<>();
+        for (String key : h) {
+            assertTrue(output.add(key));
+        }
+        assertEquals(expected, output);
+    }
+
+    /* Random operations on keys that collide heavily must agree with
+       java.util.HashMap, which exercises displacement and backward shifts
+       across the end of the table. */
+    @Test
+    public void testAgainstHashMap() {
+        Random r = new Random(61);
+        RobinHoodMap<Collider, Integer> actual = new RobinHoodMap<>(4);
+        java.util.HashMap<Collider, Integer> expected = new java.util.HashMap<>();
+        for (int op = 0; op < 100000; op += 1) {
+            int id = r.nextInt(500);
+            Collider key = new Collider(id, id % 7 == 0 ? -1 : id / 3);
+            int choice = r.nextInt(3);
+            if (choice == 0) {
+                actual.put(key, op);
+                expected.put(key, op);
+            } else if (choice == 1) {
+                assertEquals(expected.remove(key), actual.remove(key));
+            } else {
+                assertEquals(expected.get(key), actual.get(key));
+            }
+            assertEquals(expected.size(), actual.size());
+        }
+        int count = 0;
+        for (Collider key : actual) {
+            assertEquals(expected.get(key), actual.get(key));
+            count += 1;
+        }
+        assertEquals(expected.size(), count);
+        actual.clear();
+        assertEquals(0, actual.size());
+        assertFalse(actual.iterator().hasNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullKey() {
+        new RobinHoodMap<String, String>().put(null, "value");
+    }
+}
@@ -1,8 +1,26 @@
+import java.util.LinkedList;
+
 public class SimpleNameMap {
 
-    /* Instance variables here? */
+    /* The buckets. Each holds the entries whose keys hash to its index. */
+    private LinkedList<Entry>[] table;
+    private int size;
+    /* How keys are turned into bucket indices. */
+    private final HashStrategy strategy;
+
+    /* Creates an empty map that hashes names with HashStrategy.SPREAD. */
+    public SimpleNameMap() {
+        this(HashStrategy.SPREAD);
+    }
 
-    /* TODO: Add a constructor here */
+    /* Creates an empty map that hashes names with STRATEGY. */
+    public SimpleNameMap(HashStrategy strategy) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("Null hash strategy.");
+        }
+        this.strategy = strategy;
+        table = newTable(INITIAL_CAPACITY);
+    }
 
     /* Returns true if the given KEY is a valid name that starts with A - Z. */
     private static boolean isValidName(String key) {
@@ -11,30 +29,109 @@ public class SimpleNameMap {
 
     /* Returns true if the map contains the KEY. */
     boolean containsKey(String key) {
-        // TODO: YOUR CODE HERE
-        return false;
+        return find(key) != null;
     }
 
     /* Returns the value for the specified KEY. If KEY is not found, return
        null. */
     String get(String key) {
-        // TODO: YOUR CODE HERE
-        return null;
+        Entry entry = find(key);
+        return entry == null ? null : entry.value;
     }
 
     /* Puts a (KEY, VALUE) pair into this map. If the KEY already exists in the
        SimpleNameMap, replace the current corresponding value with VALUE. */
     void put(String key, String value) {
-        // TODO: YOUR CODE HERE
+        if (key == null || key.isEmpty() || !isValidName(key)) {
+            throw new IllegalArgumentException("Not a valid name: " + key);
+        }
+        Entry entry = find(key);
+        if (entry != null) {
+            entry.value = value;
+            return;
+        }
+        if (size + 1 > LOAD_FACTOR * table.length) {
+            resize(table.length * 2);
+        }
+        table[indexOf(key, table.length)].add(new Entry(key, value));
+        size += 1;
     }
 
     /* Removes a single entry, KEY, from this table and return the VALUE if
        successful or NULL otherwise. */
     String remove(String key) {
-        // TODO: YOUR CODE HERE
+        Entry entry = find(key);
+        if (entry == null) {
+            return null;
+        }
+        /* Remove by identity: Entry.equals also compares values. */
+        table[indexOf(key, table.length)].removeIf(e -> e == entry);
+        size -= 1;
+        return entry.value;
+    }
+
+    /* Returns the number of entries in this map. */
+    int size() {
+        return size;
+    }
+
+    /* Returns the number of buckets. */
+    int capacity() {
+        return table.length;
+    }
+
+    /* Returns a histogram of the chain lengths: element i is the number of
+       buckets that hold exactly i entries. A good hash strategy keeps every
+       chain short; one that clusters keys shows up as a long tail. */
+    int[] chainLengthCounts() {
+        int longest = 0;
+        for (LinkedList<Entry> bucket : table) {
+            longest = Math.max(longest, bucket.size());
+        }
+        int[] counts = new int[longest + 1];
+        for (LinkedList<Entry> bucket : table) {
+            counts[bucket.size()] += 1;
+        }
+        return counts;
+    }
+
+    /* Returns the entry for KEY, or null if there is none. */
+    private Entry find(String key) {
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        for (Entry entry : table[indexOf(key, table.length)]) {
+            if (entry.key.equals(key)) {
+                return entry;
+            }
+        }
         return null;
     }
 
+    /* Returns the bucket KEY belongs in among CAPACITY buckets. */
+    private int indexOf(String key, int capacity) {
+        return Math.floorMod(strategy.hash(key), capacity);
+    }
+
+    private void resize(int capacity) {
+        LinkedList<Entry>[] old = table;
+        table = newTable(capacity);
+        for (LinkedList<Entry> bucket : old) {
+            for (Entry entry : bucket) {
+                table[indexOf(entry.key, capacity)].add(entry);
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static LinkedList<Entry>[] newTable(int capacity) {
+        LinkedList<Entry>[] buckets = (LinkedList<Entry>[]) new LinkedList[capacity];
+        for (int i = 0; i < capacity; i += 1) {
+            buckets[i] = new LinkedList<>();
+        }
+        return buckets;
+    }
+
     private static class Entry {
 
         private String key;
@@ -58,9 +155,15 @@ public class SimpleNameMap {
                     && value.equals(((Entry) other).value));
         }
 
+        /* Returns a hash of the key alone. Entries that are equal have equal
+           keys, so they get equal hash codes, as equals requires. */
         @Override
         public int hashCode() {
-            return super.hashCode();
+            return key.hashCode();
         }
     }
+
+    /* One bucket per letter, as a start. */
+    private static final int INITIAL_CAPACITY = 26;
+    private static final double LOAD_FACTOR = 0.75;
 }
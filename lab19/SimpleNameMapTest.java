@@ -0,0 +1,73 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class SimpleNameMapTest {
+
+    private static void checkBasics(SimpleNameMap map) {
+        map.put("Alice", "Smith");
+        map.put("Bob", "Jones");
+        map.put("Alice", "Wong");
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey("Alice"));
+        assertEquals("Wong", map.get("Alice"));
+        assertFalse(map.containsKey("Carol"));
+        assertNull(map.get("Carol"));
+        assertEquals("Jones", map.remove("Bob"));
+        assertNull(map.remove("Bob"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testEveryStrategy() {
+        checkBasics(new SimpleNameMap());
+        checkBasics(new SimpleNameMap(HashStrategy.FIRST_LETTER));
+        checkBasics(new SimpleNameMap(HashStrategy.STRING_HASH_CODE));
+        checkBasics(new SimpleNameMap(HashStrategy.MIX));
+    }
+
+    @Test
+    public void testResizeKeepsEntries() {
+        SimpleNameMap map = new SimpleNameMap();
+        for (int i = 0; i < 1000; i += 1) {
+            map.put("Name" + i, Integer.toString(i));
+        }
+        assertEquals(1000, map.size());
+        assertTrue(map.capacity() * 0.75 >= 1000);
+        for (int i = 0; i < 1000; i += 1) {
+            assertEquals(Integer.toString(i), map.get("Name" + i));
+        }
+    }
+
+    /* Names sharing a first letter all land in one bucket by first letter,
+       but spread out under MIX and SPREAD. */
+    @Test
+    public void testChainLengths() {
+        SimpleNameMap byLetter = new SimpleNameMap(HashStrategy.FIRST_LETTER);
+        SimpleNameMap mixed = new SimpleNameMap(HashStrategy.MIX);
+        SimpleNameMap spread = new SimpleNameMap(HashStrategy.SPREAD);
+        for (int i = 0; i < 1000; i += 1) {
+            byLetter.put("Name" + i, "");
+            mixed.put("Name" + i, "");
+            spread.put("Name" + i, "");
+        }
+        assertEquals(1001, byLetter.chainLengthCounts().length);
+        assertTrue(mixed.chainLengthCounts().length <= 10);
+        assertTrue(spread.chainLengthCounts().length <= 10);
+        int buckets = 0;
+        for (int count : mixed.chainLengthCounts()) {
+            buckets += count;
+        }
+        assertEquals(mixed.capacity(), buckets);
+    }
+
+    @Test
+    public void testMixIsDeterministic() {
+        assertEquals(HashStrategy.MIX.hash("Alice"), HashStrategy.MIX.hash(new String("Alice")));
+        assertNotEquals(HashStrategy.MIX.hash("Name12"), HashStrategy.MIX.hash("Name21"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidName() {
+        new SimpleNameMap().put("alice", "Smith");
+    }
+}
@@ -0,0 +1,347 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* A Map61BL that any number of threads may use at once.
+
+   Keys are split by hash among a fixed number of segments. Each segment is
+   a small separately chained hash table with its own lock, which only puts,
+   removes and clears in that segment take, so writers to different segments
+   never wait on each other. A segment also resizes under its own lock, so a
+   resize only holds up writers to that one segment.
+
+   Reads take no lock at all. A node's key, hash and next pointer never
+   change once it is published, and its value is volatile, so a reader
+   walking a chain always sees a consistent chain: put adds new nodes at the
+   head of a chain, and remove and resize build new nodes for any part of a
+   chain they change rather than relinking nodes a reader may be on.
+
+   Each segment keeps its own count, so size only has to add up the counts
+   of the segments, with no shared counter for writers to contend on. Like
+   the iterator, size is exact when no writes are in progress, and otherwise
+   reflects some of them. */
+public class StripedHashMap<K, V> implements Map61BL<K, V> {
+
+    private final Segment<K, V>[] segments;
+    /* How far to shift a hash to get its segment. */
+    private final int segmentShift;
+
+    public StripedHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_SEGMENTS);
+    }
+
+    /* Creates a map with room for INITIALCAPACITY entries before any segment
+       resizes, split into at least CONCURRENCY segments. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public StripedHashMap(int initialCapacity, int concurrency) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+        }
+        if (concurrency <= 0 || concurrency > MAX_SEGMENTS) {
+            throw new IllegalArgumentException("Concurrency out of range: " + concurrency);
+        }
+        int count = 1;
+        while (count < concurrency) {
+            count *= 2;
+        }
+        segmentShift = 32 - Integer.numberOfTrailingZeros(count);
+        segments = (Segment<K, V>[]) new Segment[count];
+        int perSegment = MIN_SEGMENT_CAPACITY;
+        while (perSegment * LOAD_FACTOR * count < initialCapacity) {
+            perSegment *= 2;
+        }
+        for (int i = 0; i < count; i += 1) {
+            segments[i] = new Segment<>(perSegment);
+        }
+    }
+
+    /* Returns the layout and estimated footprint of this map. Like get, it
+       takes no locks, so writers carry on while it runs; the result then
+       reflects some of their changes and not others. */
+    public MemoryStats memoryStats() {
+        MemoryStats.Counts chains = new MemoryStats.Counts();
+        MemoryStats.Counts probes = new MemoryStats.Counts();
+        long buckets = 0;
+        long bytes = MemoryStats.objectBytes(MemoryStats.REFERENCE + 4)
+                + MemoryStats.arrayBytes(segments.length, MemoryStats.REFERENCE);
+        for (Segment<K, V> segment : segments) {
+            AtomicReferenceArray<Node<K, V>> t = segment.table;
+            long nodes = 0;
+            for (int i = 0; i < t.length(); i += 1) {
+                int length = 0;
+                for (Node<K, V> e = t.get(i); e != null; e = e.next) {
+                    length += 1;
+                    probes.add(length);
+                }
+                chains.add(length);
+                nodes += length;
+            }
+            buckets += t.length();
+            bytes += SEGMENT_BYTES + TABLE_BYTES
+                    + MemoryStats.arrayBytes(t.length(), MemoryStats.REFERENCE)
+                    + nodes * NODE_BYTES;
+        }
+        return new MemoryStats(this, buckets, bytes, chains, probes);
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V get(K key) {
+        int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /* Puts (KEY, VALUE) in this map. Values may not be null, so that a null
+       from get always means the key is missing. */
+    @Override
+    public void put(K key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null value.");
+        }
+        int hash = hash(key);
+        segmentFor(hash).put(key, hash, value);
+    }
+
+    @Override
+    public V remove(K key) {
+        int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, null);
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        if (value == null) {
+            return false;
+        }
+        int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, value) != null;
+    }
+
+    @Override
+    public int size() {
+        long sum = 0;
+        for (Segment<K, V> segment : segments) {
+            sum += segment.count;
+        }
+        return (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    /* Returns an iterator over the keys. It never throws a
+       ConcurrentModificationException: it sees every key that is in the map
+       for the whole iteration, and may or may not see keys put or removed
+       while it runs. */
+    @Override
+    public Iterator<K> iterator() {
+        return new KeyIterator();
+    }
+
+    private class KeyIterator implements Iterator<K> {
+        private int segmentIndex = 0;
+        /* The table being walked, as it was when the iterator reached it. */
+        private AtomicReferenceArray<Node<K, V>> table;
+        private int bucket;
+        private Node<K, V> next;
+
+        KeyIterator() {
+            advance();
+        }
+
+        /* Moves NEXT to the following node, or to null at the end. */
+        private void advance() {
+            if (next != null) {
+                next = next.next;
+            }
+            while (next == null) {
+                if (table != null && bucket < table.length()) {
+                    next = table.get(bucket);
+                    bucket += 1;
+                } else if (segmentIndex < segments.length) {
+                    table = segments[segmentIndex].table;
+                    segmentIndex += 1;
+                    bucket = 0;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public K next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            K key = next.key;
+            advance();
+            return key;
+        }
+    }
+
+    private static class Node<K, V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        final Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /* One independently locked hash table. It holds its lock rather than
+       extending ReentrantLock, which would make it Serializable. */
+    private static class Segment<K, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        /* Replaced, never resized in place, so readers can keep using an old
+           table while a new one is built. */
+        volatile AtomicReferenceArray<Node<K, V>> table;
+        /* The number of entries. Written only under the lock. */
+        volatile int count;
+        private int threshold;
+
+        Segment(int capacity) {
+            setTable(new AtomicReferenceArray<>(capacity));
+        }
+
+        V get(Object key, int hash) {
+            AtomicReferenceArray<Node<K, V>> t = table;
+            for (Node<K, V> e = t.get(hash & (t.length() - 1)); e != null; e = e.next) {
+                if (e.hash == hash && key.equals(e.key)) {
+                    return e.value;
+                }
+            }
+            return null;
+        }
+
+        void put(K key, int hash, V value) {
+            lock.lock();
+            try {
+                AtomicReferenceArray<Node<K, V>> t = table;
+                int i = hash & (t.length() - 1);
+                Node<K, V> first = t.get(i);
+                for (Node<K, V> e = first; e != null; e = e.next) {
+                    if (e.hash == hash && key.equals(e.key)) {
+                        e.value = value;
+                        return;
+                    }
+                }
+                t.set(i, new Node<>(hash, key, value, first));
+                count += 1;
+                if (count > threshold) {
+                    resize();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /* Removes KEY if it is present and, unless EXPECTED is null, maps to
+           EXPECTED. Returns the removed value, or null if nothing was. */
+        V remove(Object key, int hash, Object expected) {
+            lock.lock();
+            try {
+                AtomicReferenceArray<Node<K, V>> t = table;
+                int i = hash & (t.length() - 1);
+                Node<K, V> first = t.get(i);
+                Node<K, V> e = first;
+                while (e != null && !(e.hash == hash && key.equals(e.key))) {
+                    e = e.next;
+                }
+                if (e == null || (expected != null && !expected.equals(e.value))) {
+                    return null;
+                }
+                /* Copy the nodes before E onto the nodes after it, leaving
+                   the old chain intact for readers still walking it. */
+                Node<K, V> chain = e.next;
+                for (Node<K, V> p = first; p != e; p = p.next) {
+                    chain = new Node<>(p.hash, p.key, p.value, chain);
+                }
+                t.set(i, chain);
+                count -= 1;
+                return e.value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                setTable(new AtomicReferenceArray<>(table.length()));
+                count = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /* Doubles the table. Called with the lock held. Nodes are copied
+           rather than relinked, since readers may still be on the old ones. */
+        private void resize() {
+            AtomicReferenceArray<Node<K, V>> old = table;
+            AtomicReferenceArray<Node<K, V>> t = new AtomicReferenceArray<>(old.length() * 2);
+            int mask = t.length() - 1;
+            for (int i = 0; i < old.length(); i += 1) {
+                for (Node<K, V> e = old.get(i); e != null; e = e.next) {
+                    int j = e.hash & mask;
+                    t.set(j, new Node<>(e.hash, e.key, e.value, t.get(j)));
+                }
+            }
+            setTable(t);
+        }
+
+        private void setTable(AtomicReferenceArray<Node<K, V>> t) {
+            threshold = (int) (t.length() * LOAD_FACTOR);
+            table = t;
+        }
+    }
+
+    private Segment<K, V> segmentFor(int hash) {
+        /* Segments use the top bits, and buckets within them the low bits. */
+        return segmentShift == 32 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    /* Returns the hashCode of KEY with its bits mixed, so that both the top
+       and the bottom bits depend on all of them. */
+    private static int hash(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null key.");
+        }
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /* A Segment: a lock, a table and two ints, then the lock and its Sync
+       object. */
+    private static final long SEGMENT_BYTES =
+            MemoryStats.objectBytes(2 * MemoryStats.REFERENCE + 2 * 4)
+            + MemoryStats.objectBytes(MemoryStats.REFERENCE)
+            + MemoryStats.objectBytes(MemoryStats.REFERENCE + 2 * 4);
+    /* The AtomicReferenceArray around each table. */
+    private static final long TABLE_BYTES = MemoryStats.objectBytes(MemoryStats.REFERENCE);
+    /* A Node: an int and three references. */
+    private static final long NODE_BYTES = MemoryStats.objectBytes(4 + 3 * MemoryStats.REFERENCE);
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int DEFAULT_SEGMENTS = 16;
+    private static final int MAX_SEGMENTS = 1 << 16;
+    private static final int MIN_SEGMENT_CAPACITY = 2;
+    private static final double LOAD_FACTOR = 0.75;
+}
@@ -0,0 +1,104 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+
+public class StripedHashMapTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void basicFunctionalityTest() {
+        StripedHashMap<String, Integer> h = new StripedHashMap<>();
+        assertEquals(0, h.size());
+        h.put("christine", 12345);
+        h.put("kevin", 345);
+        h.put("kevin", 346);
+        assertEquals(2, h.size());
+        assertEquals(346, h.get("kevin").intValue());
+        assertFalse(h.containsKey("joe"));
+        assertFalse(h.remove("kevin", 345));
+        assertTrue(h.remove("kevin", 346));
+        assertEquals(12345, h.remove("christine").intValue());
+        assertNull(h.remove("christine"));
+        assertEquals(0, h.size());
+    }
+
+    @Test
+    public void iteratorTest() {
+        StripedHashMap<Integer, Integer> h = new StripedHashMap<>(0, 4);
+        HashSet<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 1000; i += 1) {
+            h.put(i, i);
+            expected.add(i);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            h.remove(i);
+            expected.remove(i);
+        }
+        HashSet<Integer> output = new HashSet<>();
+        for (int key : h) {
+            assertTrue(output.add(key));
+        }
+        assertEquals(expected, output);
+        assertEquals(expected.size(), h.size());
+        h.clear();
+        assertEquals(0, h.size());
+        assertFalse(h.iterator().hasNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullValue() {
+        new StripedHashMap<String, String>().put("key", null);
+    }
+
+    /* Each thread owns a range of keys that it puts, checks and removes,
+       while every thread also reads a shared range that stays put. Segments
+       resize under all of this. */
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        StripedHashMap<Integer, Integer> h = new StripedHashMap<>(0, 4);
+        int shared = 1000;
+        for (int i = 0; i < shared; i += 1) {
+            h.put(-1 - i, i);
+        }
+        int perThread = 20000;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < THREADS; t += 1) {
+            int base = t * perThread;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = base; i < base + perThread; i += 1) {
+                        h.put(i, i);
+                        assertEquals(i, h.get(i).intValue());
+                        assertEquals(i % shared, h.get(-1 - i % shared).intValue());
+                    }
+                    for (int i = base; i < base + perThread; i += 2) {
+                        assertEquals(i, h.remove(i).intValue());
+                    }
+                } catch (Throwable e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure[0]);
+        assertEquals(shared + THREADS * perThread / 2, h.size());
+        int count = 0;
+        for (int key : h) {
+            assertTrue(key < 0 || key % 2 == 1);
+            count += 1;
+        }
+        assertEquals(h.size(), count);
+    }
+}
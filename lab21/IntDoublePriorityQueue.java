@@ -0,0 +1,216 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/* A priority queue of int ids in [0, capacity) with double priorities, for
+   graph searches over densely numbered vertices.
+
+   Like MinHeap it is a 4-ary heap with a position map, but everything lives
+   in three primitive arrays sized once up front: the heap of ids, the
+   priority of each id, and the heap index of each id. No operation
+   allocates, so one queue can be reused across many searches. clear takes
+   time proportional to the number of ids still queued rather than to the
+   capacity. */
+public class IntDoublePriorityQueue {
+
+    /* heap[0, size) holds the queued ids in heap order. */
+    private final int[] heap;
+    /* The priority of each queued id. Entries for other ids are stale. */
+    private final double[] priorities;
+    /* The index in HEAP of each id, or NOT_QUEUED. */
+    private final int[] positions;
+    private int size;
+    /* The id polled last, or NOT_QUEUED. */
+    private int lastPolled = NOT_QUEUED;
+
+    /* Creates an empty queue for the ids 0 through CAPACITY - 1. */
+    public IntDoublePriorityQueue(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        }
+        heap = new int[capacity];
+        priorities = new double[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, NOT_QUEUED);
+    }
+
+    /* Returns the number of ids this queue can hold. */
+    public int capacity() {
+        return heap.length;
+    }
+
+    /* Returns the number of queued ids. */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /* Returns true if ID is queued. */
+    public boolean contains(int id) {
+        validate(id);
+        return positions[id] != NOT_QUEUED;
+    }
+
+    /* Returns the priority of the queued id ID. */
+    public double priority(int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("Not queued: " + id);
+        }
+        return priorities[id];
+    }
+
+    /* Queues ID with priority PRIORITY. Throws an IllegalArgumentException if
+       ID is already queued. */
+    public void insert(int id, double priority) {
+        if (contains(id)) {
+            throw new IllegalArgumentException("Already queued: " + id);
+        }
+        checkPriority(priority);
+        priorities[id] = priority;
+        size += 1;
+        siftUp(size - 1, id);
+    }
+
+    /* Lowers the priority of the queued id ID to PRIORITY. Throws an
+       IllegalArgumentException if ID is not queued or PRIORITY is higher than
+       its current priority. */
+    public void decreaseKey(int id, double priority) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("Not queued: " + id);
+        }
+        checkPriority(priority);
+        if (priority > priorities[id]) {
+            throw new IllegalArgumentException("Priority increased: " + id);
+        }
+        priorities[id] = priority;
+        siftUp(positions[id], id);
+    }
+
+    /* Queues ID with PRIORITY, or lowers its priority to PRIORITY if it is
+       queued with a higher one. Returns true if the queue changed. This is
+       the relaxation step of Dijkstra's and Prim's algorithms. */
+    public boolean insertOrDecrease(int id, double priority) {
+        if (!contains(id)) {
+            insert(id, priority);
+            return true;
+        }
+        checkPriority(priority);
+        if (priority >= priorities[id]) {
+            return false;
+        }
+        priorities[id] = priority;
+        siftUp(positions[id], id);
+        return true;
+    }
+
+    /* Returns the id with the smallest priority without removing it. */
+    public int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException("Empty queue.");
+        }
+        return heap[0];
+    }
+
+    /* Returns the smallest priority. */
+    public double peekPriority() {
+        return priorities[peek()];
+    }
+
+    /* Removes and returns the id with the smallest priority. Its priority
+       stays readable through lastPriority until the next poll, or until the
+       id is queued again. */
+    public int poll() {
+        int smallest = peek();
+        positions[smallest] = NOT_QUEUED;
+        size -= 1;
+        if (size > 0) {
+            siftDown(0, heap[size]);
+        }
+        lastPolled = smallest;
+        return smallest;
+    }
+
+    /* Returns the priority the last polled id had. */
+    public double lastPriority() {
+        if (lastPolled == NOT_QUEUED) {
+            throw new NoSuchElementException("Nothing polled yet.");
+        }
+        return priorities[lastPolled];
+    }
+
+    /* Removes every queued id, in time proportional to how many there are. */
+    public void clear() {
+        for (int i = 0; i < size; i += 1) {
+            positions[heap[i]] = NOT_QUEUED;
+        }
+        size = 0;
+        lastPolled = NOT_QUEUED;
+    }
+
+    /* Places ID, which belongs at heap index INDEX or above, moving larger
+       parents down into the hole rather than swapping at each level. */
+    private void siftUp(int index, int id) {
+        double priority = priorities[id];
+        while (index > 0) {
+            int parent = (index - 1) / ARITY;
+            int parentId = heap[parent];
+            if (priorities[parentId] <= priority) {
+                break;
+            }
+            heap[index] = parentId;
+            positions[parentId] = index;
+            index = parent;
+        }
+        heap[index] = id;
+        positions[id] = index;
+    }
+
+    /* Places ID, which belongs at heap index INDEX or below, moving smaller
+       children up into the hole. */
+    private void siftDown(int index, int id) {
+        double priority = priorities[id];
+        while (true) {
+            int first = ARITY * index + 1;
+            if (first >= size) {
+                break;
+            }
+            int last = Math.min(first + ARITY, size);
+            int smallest = first;
+            double smallestPriority = priorities[heap[first]];
+            for (int child = first + 1; child < last; child += 1) {
+                double p = priorities[heap[child]];
+                if (p < smallestPriority) {
+                    smallest = child;
+                    smallestPriority = p;
+                }
+            }
+            if (smallestPriority >= priority) {
+                break;
+            }
+            heap[index] = heap[smallest];
+            positions[heap[index]] = index;
+            index = smallest;
+        }
+        heap[index] = id;
+        positions[id] = index;
+    }
+
+    private void validate(int id) {
+        if (id < 0 || id >= heap.length) {
+            throw new IllegalArgumentException("Not a valid id: " + id);
+        }
+    }
+
+    private static void checkPriority(double priority) {
+        if (Double.isNaN(priority)) {
+            throw new IllegalArgumentException("NaN priority.");
+        }
+    }
+
+    /* The children per node, as in MinHeap's default. */
+    private static final int ARITY = 4;
+    /* The position of an id that is not queued. */
+    private static final int NOT_QUEUED = -1;
+}
@@ -0,0 +1,91 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class IntDoublePriorityQueueTest {
+
+    @Test
+    public void testBasics() {
+        IntDoublePriorityQueue pq = new IntDoublePriorityQueue(10);
+        pq.insert(3, 5.0);
+        pq.insert(7, 2.0);
+        pq.insert(1, 4.0);
+        assertEquals(7, pq.peek());
+        assertEquals(2.0, pq.peekPriority(), 0);
+        pq.decreaseKey(3, 1.0);
+        assertFalse(pq.insertOrDecrease(1, 4.5));
+        assertTrue(pq.insertOrDecrease(1, 1.5));
+        assertTrue(pq.insertOrDecrease(9, 3.0));
+        assertEquals(3, pq.poll());
+        assertEquals(1.0, pq.lastPriority(), 0);
+        assertFalse(pq.contains(3));
+        assertEquals(1, pq.poll());
+        assertEquals(7, pq.poll());
+        assertEquals(9, pq.poll());
+        assertTrue(pq.isEmpty());
+    }
+
+    @Test
+    public void testClearForReuse() {
+        IntDoublePriorityQueue pq = new IntDoublePriorityQueue(100);
+        for (int i = 0; i < 100; i += 2) {
+            pq.insert(i, -i);
+        }
+        pq.poll();
+        pq.clear();
+        assertEquals(0, pq.size());
+        for (int i = 0; i < 100; i += 1) {
+            assertFalse(pq.contains(i));
+        }
+        pq.insert(98, 1.0);
+        assertEquals(98, pq.poll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIncreaseRejected() {
+        IntDoublePriorityQueue pq = new IntDoublePriorityQueue(4);
+        pq.insert(0, 1.0);
+        pq.decreaseKey(0, 2.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidId() {
+        new IntDoublePriorityQueue(4).insert(4, 1.0);
+    }
+
+    /* Random relaxations, as Dijkstra makes, always poll in priority order
+       and agree with MinHeapPQ. */
+    @Test
+    public void testAgainstMinHeapPQ() {
+        Random r = new Random(48);
+        int n = 2000;
+        IntDoublePriorityQueue pq = new IntDoublePriorityQueue(n);
+        MinHeapPQ<Integer> expected = new MinHeapPQ<>();
+        double[] best = new double[n];
+        java.util.Arrays.fill(best, Double.POSITIVE_INFINITY);
+        double last = Double.NEGATIVE_INFINITY;
+        for (int op = 0; op < 50000; op += 1) {
+            if (r.nextInt(4) == 0 && !pq.isEmpty()) {
+                int id = pq.poll();
+                assertEquals(best[id], pq.lastPriority(), 0);
+                assertEquals(best[id], best[expected.poll()], 0);
+                assertTrue(best[id] >= last);
+                last = best[id];
+                continue;
+            }
+            int id = r.nextInt(n);
+            double priority = last + r.nextDouble();
+            boolean queued = pq.contains(id);
+            if (pq.insertOrDecrease(id, priority)) {
+                if (queued) {
+                    expected.changePriority(id, priority);
+                } else {
+                    expected.insert(id, priority);
+                }
+                best[id] = priority;
+            }
+            assertEquals(expected.size(), pq.size());
+        }
+    }
+}
@@ -1,37 +1,133 @@
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 
-/* A MinHeap class of Comparable elements backed by an ArrayList. */
+/* A MinHeap class of Comparable elements backed by an array.
+
+   Each node has up to ARITY children rather than two. With four, the default,
+   the heap is half as tall as a binary heap, and the children that
+   bubbleDown compares sit next to each other in memory.
+
+   Elements need not be distinct. An element that implements Indexed is told
+   its index whenever it moves, so that update and contains find it without
+   scanning the heap; MinHeapPQ's items do this, which makes changePriority
+   take O(log n) time. Other elements are found by a linear scan. An Indexed
+   element may only be in one heap, once, at a time.
+
+   A MinHeap built from a collection or array of elements, or given a large
+   batch through insertAll, places the elements all at once and then bubbles
+   down every parent from the bottom up, as in Floyd's heapify. That takes
+   O(n) time rather than the O(n log n) of inserting them one at a time. */
 public class MinHeap<E extends Comparable<E>> {
 
-    /* An ArrayList that stores the elements in this MinHeap. */
-    private ArrayList<E> contents;
+    /* The elements in this MinHeap, at indices 1 through SIZE. Every other
+       index holds null. */
+    private E[] contents;
     private int size;
+    /* The number of children of each node. */
+    private final int arity;
+
+    /* An element that records its own index in the MinHeap holding it. */
+    public interface Indexed {
+        /* Returns the index last recorded, or 0 if the element is in no
+           MinHeap. */
+        int heapIndex();
 
-    /* Initializes an empty MinHeap. */
+        /* Records that the element is at index INDEX, or in no MinHeap if
+           INDEX is 0. */
+        void setHeapIndex(int index);
+    }
+
+    /* Initializes an empty 4-ary MinHeap. */
     public MinHeap() {
-        contents = new ArrayList<>();
-        contents.add(null);
+        this(DEFAULT_ARITY);
+    }
+
+    /* Initializes an empty MinHeap whose nodes have up to ARITY children. */
+    public MinHeap(int arity) {
+        this(arity, DEFAULT_CAPACITY);
+    }
+
+    /* Initializes an empty MinHeap whose nodes have up to ARITY children,
+       with room for CAPACITY elements before it has to grow. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MinHeap(int arity, int capacity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("Arity must be at least 2: " + arity);
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        }
+        this.arity = arity;
+        contents = (E[]) new Comparable[capacity + 1];
+    }
+
+    /* Initializes a 4-ary MinHeap holding ELEMENTS, in O(n) time. Throws an
+       IllegalArgumentException if any element is null, or is Indexed and
+       appears twice. */
+    public MinHeap(Collection<? extends E> elements) {
+        this(DEFAULT_ARITY, elements.size());
+        insertAll(elements);
+    }
+
+    /* Initializes a 4-ary MinHeap holding ELEMENTS, in O(n) time. Throws an
+       IllegalArgumentException if any element is null, or is Indexed and
+       appears twice. */
+    public MinHeap(E[] elements) {
+        this(Arrays.asList(elements));
     }
 
     /* Returns the element at index INDEX, and null if it is out of bounds. */
     private E getElement(int index) {
-        if (index >= contents.size()) {
+        if (index >= contents.length) {
             return null;
         } else {
-            return contents.get(index);
+            return contents[index];
         }
     }
 
-    /* Sets the element at index INDEX to ELEMENT. If the ArrayList is not big
-       enough, add elements until it is the right size. */
+    /* Sets the element at index INDEX, which must be within the array, to
+       ELEMENT, and records its index if it is Indexed. */
     private void setElement(int index, E element) {
-        while (index >= contents.size()) {
-            contents.add(null);
+        contents[index] = element;
+        if (element instanceof Indexed) {
+            ((Indexed) element).setHeapIndex(index);
         }
-        contents.set(index, element);
     }
 
-    /* Swaps the elements at the two indices. */
+    /* Returns the index of ELEMENT if it is in the MinHeap, else the index
+       of some copy of it, or 0 if there is none. */
+    private int indexOf(E element) {
+        if (element instanceof Indexed) {
+            int index = ((Indexed) element).heapIndex();
+            if (index >= 1 && index <= size && contents[index] == element) {
+                return index;
+            }
+        }
+        for (int index = 1; index <= size; index += 1) {
+            if (contents[index].equals(element)) {
+                return index;
+            }
+        }
+        return 0;
+    }
+
+    /* Returns the number of elements the MinHeap can hold before it has to
+       grow its array. */
+    public int capacity() {
+        return contents.length - 1;
+    }
+
+    /* Grows the array, if needed, so that it holds at least CAPACITY
+       elements. */
+    public void ensureCapacity(int capacity) {
+        if (capacity > capacity()) {
+            int length = Math.max(capacity, 2 * capacity()) + 1;
+            contents = Arrays.copyOf(contents, length);
+        }
+    }
+
+    /* Swaps the elements at the two indices. setElement records the new
+       index of both. */
     private void swap(int index1, int index2) {
         E element1 = getElement(index1);
         E element2 = getElement(index2);
@@ -45,89 +141,200 @@ public class MinHeap<E extends Comparable<E>> {
         return toStringHelper(1, "");
     }
 
-    /* Recursive helper method for toString. */
+    /* Recursive helper method for toString. Children are printed last child
+       first, so the first child ends up at the bottom. */
     private String toStringHelper(int index, String soFar) {
         if (getElement(index) == null) {
             return "";
         } else {
             String toReturn = "";
-            int rightChild = getRightOf(index);
-            toReturn += toStringHelper(rightChild, "        " + soFar);
-            if (getElement(rightChild) != null) {
+            int firstChild = getChildOf(index, 0);
+            for (int k = arity - 1; k > 0; k -= 1) {
+                toReturn += toStringHelper(firstChild + k, "        " + soFar);
+            }
+            if (getElement(firstChild + 1) != null) {
                 toReturn += soFar + "    /";
             }
             toReturn += "\n" + soFar + getElement(index) + "\n";
-            int leftChild = getLeftOf(index);
-            if (getElement(leftChild) != null) {
+            if (getElement(firstChild) != null) {
                 toReturn += soFar + "    \\";
             }
-            toReturn += toStringHelper(leftChild, "        " + soFar);
+            toReturn += toStringHelper(firstChild, "        " + soFar);
             return toReturn;
         }
     }
 
-    /* Returns the index of the left child of the element at index INDEX. */
-    private int getLeftOf(int index) {
-        // TODO: YOUR CODE HERE
-        return -1;
-    }
-
-    /* Returns the index of the right child of the element at index INDEX. */
-    private int getRightOf(int index) {
-        // TODO: YOUR CODE HERE
-        return -1;
+    /* Returns the index of the K-th child, counting from 0, of the element at
+       index INDEX. */
+    private int getChildOf(int index, int k) {
+        return arity * (index - 1) + 2 + k;
     }
 
     /* Returns the index of the parent of the element at index INDEX. */
     private int getParentOf(int index) {
-        // TODO: YOUR CODE HERE
-        return -1;
+        return (index - 2) / arity + 1;
     }
 
     /* Returns the index of the smaller element. At least one index has a
        non-null element. */
     private int min(int index1, int index2) {
-        // TODO: YOUR CODE HERE
-        return -1;
+        E element1 = getElement(index1);
+        E element2 = getElement(index2);
+        if (element1 == null) {
+            return index2;
+        } else if (element2 == null) {
+            return index1;
+        } else {
+            return element2.compareTo(element1) < 0 ? index2 : index1;
+        }
     }
 
     /* Returns but does not remove the smallest element in the MinHeap. */
     public E peek() {
-        // TODO: YOUR CODE HERE
-        return null;
+        return getElement(1);
     }
 
-    /* Bubbles up the element currently at index INDEX. */
-    private void bubbleUp(int index) {
-        // TODO: YOUR CODE HERE
+    /* Bubbles up the element currently at index INDEX, and returns the index
+       it ends up at. */
+    private int bubbleUp(int index) {
+        while (index > 1 && min(getParentOf(index), index) == index) {
+            int parent = getParentOf(index);
+            swap(index, parent);
+            index = parent;
+        }
+        return index;
     }
 
     /* Bubbles down the element currently at index INDEX. */
     private void bubbleDown(int index) {
-        // TODO: YOUR CODE HERE
+        while (true) {
+            int firstChild = getChildOf(index, 0);
+            if (firstChild > size) {
+                return;
+            }
+            int smallest = firstChild;
+            int lastChild = Math.min(firstChild + arity - 1, size);
+            for (int child = firstChild + 1; child <= lastChild; child += 1) {
+                smallest = min(smallest, child);
+            }
+            if (min(index, smallest) == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
     }
 
-    /* Inserts element into the MinHeap. */
+    /* Inserts element into the MinHeap. Throws an IllegalArgumentException if
+       ELEMENT is null, or is Indexed and already in the MinHeap. */
     public void insert(E element) {
-        // TODO: YOUR CODE HERE
+        if (element == null) {
+            throw new IllegalArgumentException("Null element.");
+        }
+        if (isPlaced(element, size)) {
+            throw new IllegalArgumentException("Already in the heap: " + element);
+        }
+        ensureCapacity(size + 1);
+        size += 1;
+        setElement(size, element);
+        bubbleUp(size);
+    }
+
+    /* Inserts every element of ELEMENTS into the MinHeap. If the batch is at
+       least as large as the MinHeap already is, it is placed at the end and
+       the whole heap rebuilt in O(n) time; otherwise each element is
+       inserted in turn. Throws an IllegalArgumentException, leaving the
+       MinHeap as it was, if any element is null, or is Indexed and either
+       already in the MinHeap or in ELEMENTS twice. */
+    public void insertAll(Collection<? extends E> elements) {
+        int count = elements.size();
+        ensureCapacity(size + count);
+        int end = size;
+        for (E element : elements) {
+            if (element == null || isPlaced(element, end)) {
+                /* Undo the elements placed so far. */
+                for (int i = size + 1; i <= end; i += 1) {
+                    if (contents[i] instanceof Indexed) {
+                        ((Indexed) contents[i]).setHeapIndex(0);
+                    }
+                    contents[i] = null;
+                }
+                throw new IllegalArgumentException(element == null
+                        ? "Null element." : "Already in the heap: " + element);
+            }
+            end += 1;
+            setElement(end, element);
+        }
+        if (count >= size) {
+            size = end;
+            heapify();
+        } else {
+            while (size < end) {
+                size += 1;
+                bubbleUp(size);
+            }
+        }
+    }
+
+    /* Restores the heap property over the whole array by bubbling down each
+       parent, from the last one up to the root. Nodes near the bottom, which
+       are most of them, only move a level or two, so this takes O(n) time. */
+    private void heapify() {
+        for (int index = getParentOf(size); index >= 1; index -= 1) {
+            bubbleDown(index);
+        }
+    }
+
+    /* Returns true if ELEMENT is Indexed and already at one of the indices 1
+       through END. */
+    private boolean isPlaced(E element, int end) {
+        if (!(element instanceof Indexed)) {
+            return false;
+        }
+        int index = ((Indexed) element).heapIndex();
+        return index >= 1 && index <= end && contents[index] == element;
+    }
+
+    /* Returns true if a copy of ELEMENT is in the MinHeap. */
+    public boolean contains(E element) {
+        return element != null && indexOf(element) != 0;
     }
 
     /* Returns the number of elements in the MinHeap. */
     public int size() {
-        // TODO: YOUR CODE HERE
-        return 0;
+        return size;
     }
 
     /* Returns the smallest element. */
     public E removeMin() {
-        // TODO: YOUR CODE HERE
-        return null;
+        if (size == 0) {
+            return null;
+        }
+        E smallest = getElement(1);
+        swap(1, size);
+        contents[size] = null;
+        if (smallest instanceof Indexed) {
+            ((Indexed) smallest).setHeapIndex(0);
+        }
+        size -= 1;
+        bubbleDown(1);
+        return smallest;
     }
 
     /* Updates the position of ELEMENT inside the MinHeap, which may have been
        mutated since the inital insert. If a copy of ELEMENT does not exist in
-       the MinHeap, do nothing.*/
+       the MinHeap, do nothing. ELEMENT replaces the copy, or one of them if
+       there are several. Takes O(log n) time if ELEMENT is Indexed and in
+       the MinHeap itself, and O(n) time otherwise.*/
     public void update(E element) {
-        // TODO: YOUR CODE HERE
+        int index = element == null ? 0 : indexOf(element);
+        if (index == 0) {
+            return;
+        }
+        setElement(index, element);
+        bubbleDown(bubbleUp(index));
     }
+
+    private static final int DEFAULT_ARITY = 4;
+    private static final int DEFAULT_CAPACITY = 16;
 }
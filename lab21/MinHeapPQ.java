@@ -1,44 +1,71 @@
+import java.util.HashMap;
+
 /* A PriorityQueue class that uses a min heap to maintain ordering. */
 public class MinHeapPQ<T> implements PriorityQueue<T> {
 
     /* The heap backing our MinHeapPQ. */
     private MinHeap<PriorityItem> heap;
+    /* The PriorityItem of each item, so that changePriority finds it
+       directly. */
+    private HashMap<T, PriorityItem> items;
 
     /* Initializes an empty MinHeapPQ. */
     public MinHeapPQ() {
         heap = new MinHeap<PriorityItem>();
+        items = new HashMap<>();
     }
 
     /* Returns the item with the smallest priority value, but does not remove it
        from the MinHeapPQ. */
     public T peek() {
-        // TODO: YOUR CODE HERE
-        return null;
+        PriorityItem smallest = heap.peek();
+        return smallest == null ? null : smallest.item();
     }
 
-    /* Inserts ITEM with the priority value PRIORITY into the MinHeapPQ. */
+    /* Inserts ITEM with the priority value PRIORITY into the MinHeapPQ.
+       Throws an IllegalArgumentException if ITEM is already in the
+       MinHeapPQ. */
     public void insert(T item, double priority) {
-        // TODO: YOUR CODE HERE
+        if (items.containsKey(item)) {
+            throw new IllegalArgumentException("Already in the heap: " + item);
+        }
+        PriorityItem p = new PriorityItem(item, priority);
+        heap.insert(p);
+        items.put(item, p);
     }
 
     /* Returns the item with the highest priority (smallest priority value), and
        removes it from the MinHeapPQ. */
     public T poll() {
-        // TODO: YOUR CODE HERE
-        return null;
+        PriorityItem smallest = heap.removeMin();
+        if (smallest == null) {
+            return null;
+        }
+        items.remove(smallest.item);
+        return smallest.item();
     }
 
     /* Changes the PriorityItem with item ITEM to have priority value PRIORITY.
        Assume the items in the MinHeapPQ are all distinct. Check for item equality
-       with .equals(), not ==. */
+       with .equals(), not ==. The map finds the PriorityItem in O(1), and
+       since it records its own index, the heap moves it in O(log n). */
     public void changePriority(T item, double priority) {
-        // TODO: YOUR CODE HERE
+        PriorityItem p = items.get(item);
+        if (p == null) {
+            return;
+        }
+        p.priority = priority;
+        heap.update(p);
+    }
+
+    /* Returns true if ITEM is in the MinHeapPQ. */
+    public boolean contains(T item) {
+        return items.containsKey(item);
     }
 
     /* Returns the number of items in the MinHeapPQ. */
     public int size() {
-        // TODO: YOUR CODE HERE
-        return 0;
+        return heap.size();
     }
 
     @Override
@@ -47,9 +74,12 @@ public class MinHeapPQ<T> implements PriorityQueue<T> {
     }
 
     /* A wrapper class that stores items and their associated priorities. */
-    public class PriorityItem implements Comparable<PriorityItem> {
+    public class PriorityItem
+            implements Comparable<PriorityItem>, MinHeap.Indexed {
         private T item;
         private double priority;
+        /* The index of this PriorityItem in the heap, or 0. */
+        private int index;
 
         private PriorityItem(T item, double priority) {
             this.item = item;
@@ -64,6 +94,16 @@ public class MinHeapPQ<T> implements PriorityQueue<T> {
             return this.priority;
         }
 
+        @Override
+        public int heapIndex() {
+            return index;
+        }
+
+        @Override
+        public void setHeapIndex(int index) {
+            this.index = index;
+        }
+
         @Override
         public String toString() {
             return "(PriorityItem: " + this.item.toString() + ", "
@@ -92,5 +132,11 @@ public class MinHeapPQ<T> implements PriorityQueue<T> {
             }
             return false;
         }
+
+        /* Returns the hash code of the item, to agree with equals. */
+        @Override
+        public int hashCode() {
+            return item.hashCode();
+        }
     }
 }
@@ -0,0 +1,248 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class MinHeapTest {
+
+    @Test
+    public void testInsertRemoveMin() {
+        for (int arity = 2; arity <= 5; arity += 1) {
+            MinHeap<Integer> heap = new MinHeap<>(arity);
+            Random r = new Random(arity);
+            java.util.PriorityQueue<Integer> expected = new java.util.PriorityQueue<>();
+            for (int i = 0; i < 2000; i += 1) {
+                int x = r.nextInt(1000000);
+                if (!heap.contains(x)) {
+                    heap.insert(x);
+                    expected.add(x);
+                }
+                if (i % 3 == 0) {
+                    assertEquals(expected.poll(), heap.removeMin());
+                }
+                assertEquals(expected.size(), heap.size());
+                assertEquals(expected.peek(), heap.peek());
+            }
+            while (heap.size() > 0) {
+                assertEquals(expected.poll(), heap.removeMin());
+            }
+            assertNull(heap.removeMin());
+        }
+    }
+
+    /* Equal elements are kept side by side, as top-k jobs with tied scores
+       need. */
+    @Test
+    public void testDuplicates() {
+        MinHeap<Integer> heap = new MinHeap<>(Arrays.asList(3, 1, 3, 2, 1));
+        heap.insert(1);
+        heap.insertAll(Arrays.asList(2, 2));
+        assertEquals(8, heap.size());
+        assertTrue(heap.contains(3));
+        for (int expected : new int[]{1, 1, 1, 2, 2, 2, 3}) {
+            assertEquals((Integer) expected, heap.removeMin());
+        }
+        assertTrue(heap.contains(3));
+        assertEquals((Integer) 3, heap.removeMin());
+        assertFalse(heap.contains(3));
+    }
+
+    /* An Indexed element can only be in the heap once, and is found by its
+       recorded index. */
+    @Test
+    public void testIndexed() {
+        MinHeap<Task> heap = new MinHeap<>(2);
+        Task[] tasks = new Task[100];
+        for (int i = 0; i < tasks.length; i += 1) {
+            tasks[i] = new Task(i % 10);
+            heap.insert(tasks[i]);
+        }
+        try {
+            heap.insert(tasks[7]);
+            fail("Inserted the same Indexed element twice.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(100, heap.size());
+        }
+        tasks[42].score = -1;
+        heap.update(tasks[42]);
+        assertSame(tasks[42], heap.removeMin());
+        assertEquals(0, tasks[42].heapIndex());
+        assertFalse(heap.contains(tasks[42]));
+        /* An equal copy is still found by scanning. */
+        assertTrue(heap.contains(new Task(5)));
+        /* Ten tasks of each score, less the one with score 2 removed. */
+        for (int i = 0; i < 99; i += 1) {
+            assertEquals(i < 29 ? i / 10 : (i + 1) / 10, heap.removeMin().score, 0);
+        }
+    }
+
+    @Test
+    public void testChangePriority() {
+        MinHeapPQ<String> pq = new MinHeapPQ<>();
+        pq.insert("a", 5);
+        pq.insert("b", 3);
+        pq.insert("c", 4);
+        pq.insert("d", 1);
+        assertEquals("d", pq.peek());
+        pq.changePriority("a", 0);
+        assertEquals("a", pq.peek());
+        pq.changePriority("a", 10);
+        pq.changePriority("d", 3.5);
+        pq.changePriority("missing", -1);
+        assertEquals(4, pq.size());
+        assertEquals("b", pq.poll());
+        assertEquals("d", pq.poll());
+        assertEquals("c", pq.poll());
+        assertTrue(pq.contains("a"));
+        assertEquals("a", pq.poll());
+        assertFalse(pq.contains("a"));
+        assertNull(pq.poll());
+    }
+
+    /* Random priority changes, as Dijkstra makes, keep the queue ordered. */
+    @Test
+    public void testRandomChanges() {
+        Random r = new Random(21);
+        MinHeapPQ<Integer> pq = new MinHeapPQ<>();
+        double[] priorities = new double[500];
+        for (int i = 0; i < priorities.length; i += 1) {
+            priorities[i] = r.nextDouble();
+            pq.insert(i, priorities[i]);
+        }
+        for (int k = 0; k < 5000; k += 1) {
+            int i = r.nextInt(priorities.length);
+            priorities[i] = r.nextDouble();
+            pq.changePriority(i, priorities[i]);
+        }
+        double last = Double.NEGATIVE_INFINITY;
+        while (pq.size() > 0) {
+            double p = priorities[pq.poll()];
+            assertTrue(p >= last);
+            last = p;
+        }
+    }
+
+    @Test
+    public void testHeapify() {
+        Random r = new Random(50);
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < 5000; i += 1) {
+            elements.add(i);
+        }
+        java.util.Collections.shuffle(elements, r);
+        MinHeap<Integer> heap = new MinHeap<>(elements);
+        assertEquals(5000, heap.size());
+        assertEquals(5000, heap.capacity());
+        assertTrue(heap.contains(1234));
+        /* Updates rely on the positions recorded while heapifying. */
+        heap.update(4999);
+        for (int i = 0; i < 5000; i += 1) {
+            assertEquals((Integer) i, heap.removeMin());
+        }
+        assertNull(heap.removeMin());
+
+        MinHeap<String> fromArray = new MinHeap<>(new String[] {"c", "a", "b"});
+        assertEquals("a", fromArray.removeMin());
+        assertEquals("b", fromArray.removeMin());
+        assertEquals("c", fromArray.removeMin());
+    }
+
+    /* Both small batches, inserted one at a time, and large ones, heapified,
+       keep the heap ordered. */
+    @Test
+    public void testInsertAll() {
+        Random r = new Random(51);
+        MinHeap<Integer> heap = new MinHeap<>(3, 0);
+        java.util.PriorityQueue<Integer> expected = new java.util.PriorityQueue<>();
+        int next = 0;
+        for (int batch = 1; batch < 200; batch += 7) {
+            List<Integer> elements = new ArrayList<>();
+            for (int i = 0; i < batch * (batch % 3 == 0 ? 10 : 1); i += 1) {
+                elements.add(next * 7919 % 100003);
+                next += 1;
+            }
+            heap.insertAll(elements);
+            expected.addAll(elements);
+            for (int i = r.nextInt(batch + 1); i > 0; i -= 1) {
+                assertEquals(expected.poll(), heap.removeMin());
+            }
+            assertEquals(expected.size(), heap.size());
+        }
+        while (heap.size() > 0) {
+            assertEquals(expected.poll(), heap.removeMin());
+        }
+    }
+
+    /* A batch with a bad element leaves the heap as it was. */
+    @Test
+    public void testInsertAllRejects() {
+        MinHeap<Integer> heap = new MinHeap<>(Arrays.asList(5, 3, 8));
+        try {
+            heap.insertAll(Arrays.asList(1, null));
+            fail("Accepted a null element.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(3, heap.size());
+            assertFalse(heap.contains(1));
+        }
+        heap.insertAll(Arrays.asList(1, 2));
+        assertEquals((Integer) 1, heap.removeMin());
+        assertEquals((Integer) 2, heap.removeMin());
+        assertEquals((Integer) 3, heap.removeMin());
+
+        Task a = new Task(1);
+        Task b = new Task(2);
+        MinHeap<Task> tasks = new MinHeap<>(Arrays.asList(a));
+        List<List<Task>> bad = Arrays.asList(Arrays.asList(b, a), Arrays.asList(b, b));
+        for (List<Task> batch : bad) {
+            try {
+                tasks.insertAll(batch);
+                fail("Accepted an Indexed element twice.");
+            } catch (IllegalArgumentException e) {
+                assertEquals(1, tasks.size());
+                assertEquals(0, b.heapIndex());
+                assertEquals(1, a.heapIndex());
+            }
+        }
+        tasks.insertAll(Arrays.asList(b));
+        assertSame(a, tasks.removeMin());
+        assertSame(b, tasks.removeMin());
+    }
+
+    /* A mutable element that records its index, as MinHeapPQ's items do. */
+    private static class Task implements Comparable<Task>, MinHeap.Indexed {
+        private double score;
+        private int index;
+
+        Task(double score) {
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            return Double.compare(score, o.score);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Task && ((Task) o).score == score;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(score);
+        }
+
+        @Override
+        public int heapIndex() {
+            return index;
+        }
+
+        @Override
+        public void setHeapIndex(int index) {
+            this.index = index;
+        }
+    }
+}
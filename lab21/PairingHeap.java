@@ -0,0 +1,179 @@
+import java.util.HashMap;
+
+/* A PriorityQueue backed by a pairing heap: a tree in which every node's
+   priority is at most its children's, kept as a root with a list of child
+   trees.
+
+   insert and lowering a priority only meld one tree into the root's
+   children, so both take O(1) time, and poll pays for that later by pairing
+   up the root's children in two passes, in O(log n) amortized time. This
+   suits searches that lower priorities far more often than they poll, as
+   Dijkstra's algorithm does on dense graphs. Raising a priority removes the
+   item and inserts it again, in O(log n) amortized time. */
+public class PairingHeap<T> implements PriorityQueue<T> {
+
+    /* The tree with the smallest priority at its root, or null. */
+    private Node<T> root;
+    /* The node of each item, so that changePriority finds it directly. */
+    private HashMap<T, Node<T>> nodes;
+
+    /* Initializes an empty PairingHeap. */
+    public PairingHeap() {
+        nodes = new HashMap<>();
+    }
+
+    /* Returns the item with the smallest priority value, but does not remove
+       it. */
+    public T peek() {
+        return root == null ? null : root.item;
+    }
+
+    /* Inserts ITEM with the priority value PRIORITY. Throws an
+       IllegalArgumentException if ITEM is already in the PairingHeap. */
+    public void insert(T item, double priority) {
+        if (nodes.containsKey(item)) {
+            throw new IllegalArgumentException("Already in the heap: " + item);
+        }
+        Node<T> node = new Node<>(item, priority);
+        nodes.put(item, node);
+        root = meld(root, node);
+    }
+
+    /* Returns the item with the smallest priority value, and removes it. */
+    public T poll() {
+        if (root == null) {
+            return null;
+        }
+        Node<T> smallest = root;
+        nodes.remove(smallest.item);
+        root = mergePairs(smallest.child);
+        return smallest.item;
+    }
+
+    /* Changes the priority value of ITEM to PRIORITY. Does nothing if ITEM is
+       not in the PairingHeap. */
+    public void changePriority(T item, double priority) {
+        Node<T> node = nodes.get(item);
+        if (node == null) {
+            return;
+        }
+        if (priority <= node.priority) {
+            node.priority = priority;
+            if (node != root) {
+                cut(node);
+                root = meld(root, node);
+            }
+        } else {
+            /* A node can only move up by melding, so take it out, children
+               and all, and put it back in as a single node. */
+            if (node == root) {
+                root = mergePairs(node.child);
+            } else {
+                cut(node);
+                root = meld(root, mergePairs(node.child));
+            }
+            node.child = null;
+            node.priority = priority;
+            root = meld(root, node);
+        }
+    }
+
+    /* Returns the number of items in the PairingHeap. */
+    public int size() {
+        return nodes.size();
+    }
+
+    private static class Node<T> {
+        private final T item;
+        private double priority;
+        /* The first child. */
+        private Node<T> child;
+        /* The next sibling. */
+        private Node<T> next;
+        /* The previous sibling, or the parent if this is a first child. */
+        private Node<T> previous;
+
+        Node(T item, double priority) {
+            this.item = item;
+            this.priority = priority;
+        }
+    }
+
+    /* Detaches NODE, which is not the root, with its subtree from its parent
+       or siblings. */
+    private void cut(Node<T> node) {
+        if (node.previous.child == node) {
+            node.previous.child = node.next;
+        } else {
+            node.previous.next = node.next;
+        }
+        if (node.next != null) {
+            node.next.previous = node.previous;
+        }
+        node.next = null;
+        node.previous = null;
+    }
+
+    /* Returns the root of the tree made by making the root with the larger
+       priority of A and B the first child of the other. Either may be null;
+       neither may have siblings. */
+    private static <T> Node<T> meld(Node<T> a, Node<T> b) {
+        if (a == null) {
+            return b;
+        } else if (b == null) {
+            return a;
+        }
+        if (b.priority < a.priority) {
+            Node<T> t = a;
+            a = b;
+            b = t;
+        }
+        b.next = a.child;
+        if (a.child != null) {
+            a.child.previous = b;
+        }
+        b.previous = a;
+        a.child = b;
+        a.next = null;
+        a.previous = null;
+        return a;
+    }
+
+    /* Melds the list of sibling trees starting at FIRST into one tree, and
+       returns its root: first melding them in pairs from left to right,
+       then melding the pairs together from right to left. */
+    private static <T> Node<T> mergePairs(Node<T> first) {
+        if (first == null) {
+            return null;
+        }
+        /* First pass: meld pairs, keeping the results on a stack threaded
+           through their previous pointers. */
+        Node<T> pairs = null;
+        Node<T> a = first;
+        while (a != null) {
+            Node<T> b = a.next;
+            Node<T> rest = b == null ? null : b.next;
+            a.next = null;
+            a.previous = null;
+            if (b != null) {
+                b.next = null;
+                b.previous = null;
+            }
+            Node<T> pair = meld(a, b);
+            pair.previous = pairs;
+            pairs = pair;
+            a = rest;
+        }
+        /* Second pass: meld the pairs from the last one back. */
+        Node<T> result = pairs;
+        Node<T> next = result.previous;
+        result.previous = null;
+        while (next != null) {
+            Node<T> pair = next;
+            next = pair.previous;
+            pair.previous = null;
+            result = meld(result, pair);
+        }
+        return result;
+    }
+}
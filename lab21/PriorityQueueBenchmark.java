@@ -0,0 +1,202 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/* Times the PriorityQueue implementations on the operations Dijkstra's
+   algorithm makes on a road-like graph.
+
+   The graph is a grid of intersections with jittered positions, some
+   streets missing, and edge weights of length divided by a random speed, as
+   in a city street map. One Dijkstra run per source records its trace of
+   inserts, priority changes and polls, and every queue then replays the same
+   traces, so that each is timed on exactly the same work and none of the
+   graph traversal is counted.
+
+   Usage: java PriorityQueueBenchmark [side] [sources] [seed] */
+public class PriorityQueueBenchmark {
+
+    /* A recorded sequence of queue operations. */
+    private static class Trace {
+        private int[] ops = new int[1024];
+        private int[] ids = new int[1024];
+        private double[] priorities = new double[1024];
+        private int length;
+
+        void add(int op, int id, double priority) {
+            if (length == ops.length) {
+                ops = Arrays.copyOf(ops, length * 2);
+                ids = Arrays.copyOf(ids, length * 2);
+                priorities = Arrays.copyOf(priorities, length * 2);
+            }
+            ops[length] = op;
+            ids[length] = id;
+            priorities[length] = priority;
+            length += 1;
+        }
+    }
+
+    /* A graph stored as adjacency arrays. */
+    private static class Graph {
+        private final int[][] edges;
+        private final double[][] weights;
+
+        Graph(int side, Random random) {
+            int n = side * side;
+            double[] x = new double[n];
+            double[] y = new double[n];
+            for (int v = 0; v < n; v += 1) {
+                x[v] = v % side + 0.3 * random.nextGaussian();
+                y[v] = v / side + 0.3 * random.nextGaussian();
+            }
+            edges = new int[n][];
+            weights = new double[n][];
+            int[] neighbors = new int[4];
+            int[][] steps = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+            for (int v = 0; v < n; v += 1) {
+                int count = 0;
+                int row = v / side;
+                int col = v % side;
+                for (int[] step : steps) {
+                    int r = row + step[0];
+                    int c = col + step[1];
+                    /* Streets exist both ways or not at all: the lower vertex
+                       decides, so both ends agree. */
+                    int w = r * side + c;
+                    if (r >= 0 && r < side && c >= 0 && c < side
+                            && new Random(Math.min(v, w) * 31L + Math.max(v, w))
+                            .nextDouble() >= MISSING_STREETS) {
+                        neighbors[count] = w;
+                        count += 1;
+                    }
+                }
+                edges[v] = Arrays.copyOf(neighbors, count);
+                weights[v] = new double[count];
+                for (int k = 0; k < count; k += 1) {
+                    int w = edges[v][k];
+                    double length = Math.hypot(x[v] - x[w], y[v] - y[w]);
+                    /* Speeds from side streets to arterials. */
+                    weights[v][k] = length / (0.5 + random.nextInt(4) * 0.5);
+                }
+            }
+        }
+    }
+
+    /* Runs Dijkstra's algorithm from SOURCE and returns its queue trace. */
+    private static Trace record(Graph g, int source) {
+        int n = g.edges.length;
+        IntDoublePriorityQueue pq = new IntDoublePriorityQueue(n);
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Trace trace = new Trace();
+        dist[source] = 0;
+        pq.insert(source, 0);
+        trace.add(INSERT, source, 0);
+        while (!pq.isEmpty()) {
+            int v = pq.poll();
+            trace.add(POLL, v, dist[v]);
+            for (int k = 0; k < g.edges[v].length; k += 1) {
+                int w = g.edges[v][k];
+                double d = dist[v] + g.weights[v][k];
+                if (d < dist[w]) {
+                    trace.add(pq.contains(w) ? CHANGE : INSERT, w, d);
+                    pq.insertOrDecrease(w, d);
+                    dist[w] = d;
+                }
+            }
+        }
+        return trace;
+    }
+
+    /* Replays TRACE on PQ, whose items are boxed once up front in BOXES, and
+       returns the sum of the polled ids, so the work cannot be skipped. */
+    private static long replay(PriorityQueue<Integer> pq, Trace trace, Integer[] boxes) {
+        long sum = 0;
+        for (int i = 0; i < trace.length; i += 1) {
+            int op = trace.ops[i];
+            if (op == INSERT) {
+                pq.insert(boxes[trace.ids[i]], trace.priorities[i]);
+            } else if (op == CHANGE) {
+                pq.changePriority(boxes[trace.ids[i]], trace.priorities[i]);
+            } else {
+                sum += pq.poll();
+            }
+        }
+        return sum;
+    }
+
+    /* Replays TRACE on PQ. */
+    private static long replay(IntDoublePriorityQueue pq, Trace trace) {
+        long sum = 0;
+        pq.clear();
+        for (int i = 0; i < trace.length; i += 1) {
+            int op = trace.ops[i];
+            if (op == INSERT) {
+                pq.insert(trace.ids[i], trace.priorities[i]);
+            } else if (op == CHANGE) {
+                pq.decreaseKey(trace.ids[i], trace.priorities[i]);
+            } else {
+                sum += pq.poll();
+            }
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int sources = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 21;
+        Random random = new Random(seed);
+        Graph g = new Graph(side, random);
+        int n = g.edges.length;
+        Trace[] traces = new Trace[sources];
+        long operations = 0;
+        long changes = 0;
+        for (int s = 0; s < sources; s += 1) {
+            traces[s] = record(g, random.nextInt(n));
+            operations += traces[s].length;
+            for (int i = 0; i < traces[s].length; i += 1) {
+                changes += traces[s].ops[i] == CHANGE ? 1 : 0;
+            }
+        }
+        System.out.printf("%d vertices, %d traces, %d operations (%.1f%% changes)%n",
+                n, sources, operations, 100.0 * changes / operations);
+
+        Integer[] boxes = new Integer[n];
+        for (int v = 0; v < n; v += 1) {
+            boxes[v] = v;
+        }
+        String[] names = {"MinHeapPQ", "PairingHeap", "RadixHeap", "IntDoublePriorityQueue"};
+        IntDoublePriorityQueue reused = new IntDoublePriorityQueue(n);
+        for (int round = 0; round < ROUNDS; round += 1) {
+            boolean warmup = round < ROUNDS - 1;
+            for (int q = 0; q < names.length; q += 1) {
+                long start = System.nanoTime();
+                long check = 0;
+                for (Trace trace : traces) {
+                    if (q == 0) {
+                        check += replay(new MinHeapPQ<>(), trace, boxes);
+                    } else if (q == 1) {
+                        check += replay(new PairingHeap<>(), trace, boxes);
+                    } else if (q == 2) {
+                        check += replay(new RadixHeap<>(), trace, boxes);
+                    } else {
+                        check += replay(reused, trace);
+                    }
+                }
+                double ms = (System.nanoTime() - start) / 1e6;
+                if (!warmup) {
+                    System.out.printf("%-24s %10.1f ms  %8.1f ns/op  (check %d)%n",
+                            names[q], ms, ms * 1e6 / operations, check);
+                }
+            }
+        }
+    }
+
+    /* Trace operations. */
+    private static final int INSERT = 0;
+    private static final int CHANGE = 1;
+    private static final int POLL = 2;
+    /* The fraction of grid streets left out. */
+    private static final double MISSING_STREETS = 0.1;
+    /* Rounds run, all but the last to warm up the JIT. */
+    private static final int ROUNDS = 3;
+}
@@ -0,0 +1,170 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PriorityQueueTest {
+
+    private static void checkBasics(PriorityQueue<String> pq) {
+        pq.insert("a", 5);
+        pq.insert("b", 3);
+        pq.insert("c", 4);
+        pq.insert("d", 6);
+        assertEquals("b", pq.peek());
+        pq.changePriority("d", 3.5);
+        pq.changePriority("b", 4.5);
+        pq.changePriority("missing", 1);
+        assertEquals(4, pq.size());
+        assertEquals("d", pq.poll());
+        assertEquals("c", pq.poll());
+        assertEquals("b", pq.poll());
+        assertEquals("a", pq.poll());
+        assertNull(pq.poll());
+        assertEquals(0, pq.size());
+    }
+
+    @Test
+    public void testBasics() {
+        checkBasics(new MinHeapPQ<>());
+        checkBasics(new PairingHeap<>());
+        checkBasics(new RadixHeap<>());
+    }
+
+    /* Returns a random graph on N vertices in which vertex v has edges to
+       the vertices in edges[v] with the weights in weights[v], including
+       zero weights, which make ties. */
+    private static int[][] randomEdges(int n, Random r) {
+        int[][] edges = new int[n][];
+        for (int v = 0; v < n; v += 1) {
+            edges[v] = new int[1 + r.nextInt(5)];
+            for (int k = 0; k < edges[v].length; k += 1) {
+                edges[v][k] = r.nextInt(n);
+            }
+        }
+        return edges;
+    }
+
+    /* Returns the distances from vertex 0 found by Dijkstra's algorithm
+       using PQ, checking that PQ polls priorities in order. */
+    private static double[] dijkstra(PriorityQueue<Integer> pq, int[][] edges,
+                                     int[][] weights) {
+        double[] dist = new double[edges.length];
+        java.util.Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        boolean[] done = new boolean[edges.length];
+        dist[0] = 0;
+        pq.insert(0, 0);
+        double last = 0;
+        while (pq.size() > 0) {
+            int v = pq.poll();
+            assertTrue(dist[v] >= last);
+            last = dist[v];
+            done[v] = true;
+            for (int k = 0; k < edges[v].length; k += 1) {
+                int w = edges[v][k];
+                double d = dist[v] + weights[v][k];
+                if (!done[w] && d < dist[w]) {
+                    if (dist[w] == Double.POSITIVE_INFINITY) {
+                        pq.insert(w, d);
+                    } else {
+                        pq.changePriority(w, d);
+                    }
+                    dist[w] = d;
+                }
+            }
+        }
+        assertNull(pq.poll());
+        return dist;
+    }
+
+    /* Every queue must find the same shortest paths, on graphs with many
+       ties. */
+    @Test
+    public void testDijkstra() {
+        Random r = new Random(49);
+        for (int round = 0; round < 5; round += 1) {
+            int n = 3000;
+            int[][] edges = randomEdges(n, r);
+            int[][] weights = new int[n][];
+            for (int v = 0; v < n; v += 1) {
+                weights[v] = new int[edges[v].length];
+                for (int k = 0; k < weights[v].length; k += 1) {
+                    weights[v][k] = r.nextInt(4) == 0 ? 0 : r.nextInt(100);
+                }
+            }
+            double[] expected = dijkstra(new MinHeapPQ<>(), edges, weights);
+            assertArrayEquals(expected, dijkstra(new PairingHeap<>(), edges, weights), 0);
+            assertArrayEquals(expected, dijkstra(new RadixHeap<>(), edges, weights), 0);
+        }
+    }
+
+    @Test
+    public void testPairingHeapIncrease() {
+        Random r = new Random(49);
+        PairingHeap<Integer> pq = new PairingHeap<>();
+        double[] priorities = new double[500];
+        for (int i = 0; i < priorities.length; i += 1) {
+            priorities[i] = r.nextDouble();
+            pq.insert(i, priorities[i]);
+        }
+        for (int k = 0; k < 5000; k += 1) {
+            if (k % 50 == 0) {
+                /* Polling restructures the heap between changes. */
+                int i = pq.poll();
+                priorities[i] = r.nextDouble();
+                pq.insert(i, priorities[i]);
+            }
+            int i = r.nextInt(priorities.length);
+            priorities[i] = r.nextDouble();
+            pq.changePriority(i, priorities[i]);
+        }
+        double last = Double.NEGATIVE_INFINITY;
+        while (pq.size() > 0) {
+            double p = priorities[pq.poll()];
+            assertTrue(p >= last);
+            last = p;
+        }
+    }
+
+    /* Peeking does not raise the bound on later priorities, and returns the
+       item that poll then removes, even among ties. */
+    @Test
+    public void testRadixHeapPeekThenInsert() {
+        RadixHeap<String> pq = new RadixHeap<>();
+        pq.insert("a", 5);
+        assertEquals("a", pq.peek());
+        pq.insert("b", 3);
+        assertEquals("b", pq.peek());
+        pq.insert("c", 3);
+        pq.insert("d", 7);
+        String first = pq.peek();
+        assertEquals(first, pq.poll());
+        String second = pq.peek();
+        assertTrue(second.equals("b") || second.equals("c"));
+        assertNotEquals(first, second);
+        assertEquals(second, pq.poll());
+        pq.insert("e", 3);
+        assertEquals("e", pq.peek());
+        assertEquals("e", pq.poll());
+        assertEquals("a", pq.peek());
+        pq.insert("f", 4);
+        assertEquals("f", pq.peek());
+
+        Random r = new Random(49);
+        RadixHeap<Integer> ties = new RadixHeap<>();
+        for (int i = 0; i < 200; i += 1) {
+            ties.insert(i, r.nextInt(20));
+        }
+        while (ties.size() > 0) {
+            Integer peeked = ties.peek();
+            assertEquals(peeked, ties.poll());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRadixHeapIsMonotone() {
+        RadixHeap<String> pq = new RadixHeap<>();
+        pq.insert("a", 2);
+        pq.poll();
+        pq.insert("b", 1);
+    }
+}
@@ -0,0 +1,182 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/* A monotone PriorityQueue for non-negative priorities: no item may be
+   given a priority below that of the last item polled. Dijkstra's algorithm
+   with non-negative edge weights never does, since every priority it sets is
+   the priority just polled plus an edge weight.
+
+   Items are kept in buckets by how their priority differs from LAST, the
+   smallest priority polled so far, instead of in a heap. Non-negative
+   doubles order the same way as their bit patterns read as longs, so bucket
+   0 holds the items whose bits equal LAST's, and bucket i the items whose
+   bits first differ from LAST's at bit i - 1, counting from the lowest.
+   insert and changePriority just put an item in its bucket. poll takes from
+   bucket 0, and when that is empty, finds the smallest item in the first
+   nonempty bucket, makes it the new LAST and spreads that bucket over the
+   lower ones. An item only ever moves to lower buckets, so each is moved at
+   most 65 times in all, and no priority comparisons are made except while
+   finding a bucket's smallest item. */
+public class RadixHeap<T> implements PriorityQueue<T> {
+
+    /* buckets[i] holds the nodes of bucket i, in no particular order. */
+    private ArrayList<Node<T>>[] buckets;
+    /* The bits of the smallest priority polled so far. */
+    private long last;
+    /* The node of each item, so that changePriority finds it directly. */
+    private HashMap<T, Node<T>> nodes;
+
+    /* Initializes an empty RadixHeap. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public RadixHeap() {
+        buckets = (ArrayList<Node<T>>[]) new ArrayList[BUCKETS];
+        for (int i = 0; i < BUCKETS; i += 1) {
+            buckets[i] = new ArrayList<>();
+        }
+        nodes = new HashMap<>();
+    }
+
+    /* Returns the item with the smallest priority value, but does not remove
+       it. Unlike poll, it leaves LAST alone, so items may still be inserted
+       below the priority of the item it returns. */
+    public T peek() {
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        int i = 0;
+        while (buckets[i].isEmpty()) {
+            i += 1;
+        }
+        ArrayList<Node<T>> bucket = buckets[i];
+        if (i == 0) {
+            return bucket.get(bucket.size() - 1).item;
+        }
+        /* Return the node poll would: refill moves the smallest nodes to
+           bucket 0 in this order, and poll takes the last of them. */
+        Node<T> smallest = bucket.get(0);
+        for (Node<T> node : bucket) {
+            if (node.bits <= smallest.bits) {
+                smallest = node;
+            }
+        }
+        return smallest.item;
+    }
+
+    /* Inserts ITEM with the priority value PRIORITY. Throws an
+       IllegalArgumentException if ITEM is already in the RadixHeap, or if
+       PRIORITY is negative or below the last priority polled. */
+    public void insert(T item, double priority) {
+        if (nodes.containsKey(item)) {
+            throw new IllegalArgumentException("Already in the heap: " + item);
+        }
+        Node<T> node = new Node<>(item, bitsOf(priority));
+        nodes.put(item, node);
+        place(node);
+    }
+
+    /* Returns the item with the smallest priority value, and removes it. */
+    public T poll() {
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        refill();
+        ArrayList<Node<T>> bucket = buckets[0];
+        Node<T> node = bucket.remove(bucket.size() - 1);
+        nodes.remove(node.item);
+        return node.item;
+    }
+
+    /* Changes the priority value of ITEM to PRIORITY. Does nothing if ITEM is
+       not in the RadixHeap. Throws an IllegalArgumentException if PRIORITY is
+       negative or below the last priority polled. */
+    public void changePriority(T item, double priority) {
+        Node<T> node = nodes.get(item);
+        if (node == null) {
+            return;
+        }
+        long bits = bitsOf(priority);
+        unplace(node);
+        node.bits = bits;
+        place(node);
+    }
+
+    /* Returns the number of items in the RadixHeap. */
+    public int size() {
+        return nodes.size();
+    }
+
+    private static class Node<T> {
+        private final T item;
+        /* The bits of the priority. */
+        private long bits;
+        /* The bucket holding this node, and its index there. */
+        private int bucket;
+        private int index;
+
+        Node(T item, long bits) {
+            this.item = item;
+            this.bits = bits;
+        }
+    }
+
+    /* Makes bucket 0 nonempty, if any bucket is. */
+    private void refill() {
+        if (!buckets[0].isEmpty()) {
+            return;
+        }
+        int i = 1;
+        while (buckets[i].isEmpty()) {
+            i += 1;
+        }
+        ArrayList<Node<T>> bucket = buckets[i];
+        long smallest = Long.MAX_VALUE;
+        for (Node<T> node : bucket) {
+            smallest = Math.min(smallest, node.bits);
+        }
+        last = smallest;
+        /* The nodes agreed with the old LAST above bit i - 1 and all had that
+           bit set, so each now differs from the new LAST only below it, and
+           moves to a lower bucket. */
+        for (Node<T> node : bucket) {
+            place(node);
+        }
+        bucket.clear();
+    }
+
+    /* Adds NODE to the bucket its bits belong in. */
+    private void place(Node<T> node) {
+        int i = 64 - Long.numberOfLeadingZeros(node.bits ^ last);
+        ArrayList<Node<T>> bucket = buckets[i];
+        node.bucket = i;
+        node.index = bucket.size();
+        bucket.add(node);
+    }
+
+    /* Removes NODE from its bucket, by moving the bucket's last node into
+       its place. */
+    private void unplace(Node<T> node) {
+        ArrayList<Node<T>> bucket = buckets[node.bucket];
+        Node<T> moved = bucket.remove(bucket.size() - 1);
+        if (moved != node) {
+            bucket.set(node.index, moved);
+            moved.index = node.index;
+        }
+    }
+
+    /* Returns the bits of PRIORITY, checking that it may be queued. */
+    private long bitsOf(double priority) {
+        if (!(priority >= 0)) {
+            throw new IllegalArgumentException("Priority not non-negative: " + priority);
+        }
+        /* Adding 0.0 turns -0.0 into 0.0, whose bits are all zero. */
+        long bits = Double.doubleToLongBits(priority + 0.0);
+        if (bits < last) {
+            throw new IllegalArgumentException("Priority below the last one polled: "
+                    + priority);
+        }
+        return bits;
+    }
+
+    /* Bucket 0 and one bucket per bit of a long. */
+    private static final int BUCKETS = 65;
+}